@@ -0,0 +1,183 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.elasticsearch.benchmark.bulk;
+
+import org.elasticsearch.Version;
+import org.elasticsearch.cluster.metadata.IndexMetaData;
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.compress.CompressedXContent;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.util.concurrent.EsExecutors;
+import org.elasticsearch.common.util.concurrent.EsThreadPoolExecutor;
+import org.elasticsearch.common.util.concurrent.ParallelBatchRunner;
+import org.elasticsearch.common.util.concurrent.ThreadContext;
+import org.elasticsearch.env.Environment;
+import org.elasticsearch.index.IndexSettings;
+import org.elasticsearch.index.mapper.DocumentMapper;
+import org.elasticsearch.index.mapper.MapperService;
+import org.elasticsearch.index.mapper.ParsedDocument;
+import org.elasticsearch.index.mapper.SourceToParse;
+import org.elasticsearch.index.similarity.SimilarityService;
+import org.elasticsearch.indices.IndicesModule;
+import org.elasticsearch.indices.analysis.AnalysisModule;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Measures how many bulk shard requests per second a node parses when bulk requests for <code>shards</code> shards arrive at the
+ * same time, with items parsed one after another on the bulk thread (<code>sequential</code>) or in parallel batches like
+ * <code>action.bulk.primary.parallel_parsing.enabled</code> does (<code>parallel</code>). The bulk pool has one thread per
+ * core, so parallel parsing is expected to help as long as there are fewer active shards than cores and to be on par otherwise.
+ * Multiply the score by <code>shards * itemsPerBulk</code> to get documents per second.
+ */
+@Fork(3)
+@Warmup(iterations = 10)
+@Measurement(iterations = 10)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@SuppressWarnings("unused") //invoked by benchmarking framework
+public class BulkParsingBenchmark {
+
+    @Param({"1", "2", "4", "8", "16", "32"})
+    public int shards = 1;
+
+    @Param({"sequential", "parallel"})
+    public String mode = "sequential";
+
+    @Param({"128"})
+    public int itemsPerBulk = 128;
+
+    @Param({"8"})
+    public int batchSize = 8;
+
+    private EsThreadPoolExecutor bulkPool;
+    private EsThreadPoolExecutor helperPool;
+    private ParallelBatchRunner runner;
+    private DocumentMapper documentMapper;
+    private BytesReference[] sources;
+    private ParsedDocument[][] parsed;
+
+    @Setup
+    public void setUp() throws Exception {
+        final int processors = Runtime.getRuntime().availableProcessors();
+        final ThreadContext threadContext = new ThreadContext(Settings.EMPTY);
+        bulkPool = EsExecutors.newFixed("bulk", processors, -1, EsExecutors.daemonThreadFactory("bulk"), threadContext);
+        helperPool = EsExecutors.newScaling("generic", 0, Integer.MAX_VALUE, 30, TimeUnit.SECONDS,
+            EsExecutors.daemonThreadFactory("generic"), threadContext);
+        runner = "parallel".equals(mode) ? new ParallelBatchRunner(helperPool, batchSize, processors - 1) : null;
+
+        final Settings settings = Settings.builder()
+            .put(Environment.PATH_HOME_SETTING.getKey(), Files.createTempDirectory("bulk-parsing-benchmark").toString())
+            .put(IndexMetaData.SETTING_VERSION_CREATED, Version.CURRENT)
+            .put(IndexMetaData.SETTING_NUMBER_OF_SHARDS, 1)
+            .put(IndexMetaData.SETTING_NUMBER_OF_REPLICAS, 0)
+            .build();
+        final IndexSettings indexSettings = new IndexSettings(IndexMetaData.builder("index").settings(settings).build(), settings);
+        final MapperService mapperService = new MapperService(indexSettings,
+            new AnalysisModule(new Environment(settings), Collections.emptyList()).getAnalysisRegistry().build(indexSettings),
+            new SimilarityService(indexSettings, Collections.emptyMap()),
+            new IndicesModule(Collections.emptyList()).getMapperRegistry(), () -> null);
+        documentMapper = mapperService.merge("doc", new CompressedXContent("{\"doc\":{\"properties\":{" +
+            "\"title\":{\"type\":\"text\"}," +
+            "\"body\":{\"type\":\"text\"}," +
+            "\"tags\":{\"type\":\"keyword\"}," +
+            "\"views\":{\"type\":\"long\"}," +
+            "\"rating\":{\"type\":\"double\"}," +
+            "\"published\":{\"type\":\"date\"}}}}"), MapperService.MergeReason.MAPPING_UPDATE, false);
+
+        final Random random = new Random(42);
+        sources = new BytesReference[itemsPerBulk];
+        for (int i = 0; i < itemsPerBulk; i++) {
+            StringBuilder body = new StringBuilder();
+            for (int w = 0; w < 100; w++) {
+                body.append("word").append(random.nextInt(1000)).append(' ');
+            }
+            sources[i] = new BytesArray(("{\"title\":\"document " + i + "\",\"body\":\"" + body + "\"," +
+                "\"tags\":[\"tag" + random.nextInt(10) + "\",\"tag" + random.nextInt(10) + "\"]," +
+                "\"views\":" + random.nextInt(100000) + ",\"rating\":" + random.nextDouble() + "," +
+                "\"published\":\"2016-0" + (1 + random.nextInt(9)) + "-1" + random.nextInt(10) + "\"}")
+                .getBytes(StandardCharsets.UTF_8));
+        }
+        parsed = new ParsedDocument[shards][itemsPerBulk];
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        bulkPool.shutdown();
+        helperPool.shutdown();
+        bulkPool.awaitTermination(10, TimeUnit.SECONDS);
+        helperPool.awaitTermination(10, TimeUnit.SECONDS);
+    }
+
+    @Benchmark
+    public void parseBulkShardRequests(Blackhole bh) throws Exception {
+        final CountDownLatch latch = new CountDownLatch(shards);
+        final AtomicReference<Exception> failure = new AtomicReference<>();
+        for (int shard = 0; shard < shards; shard++) {
+            final ParsedDocument[] docs = parsed[shard];
+            final String index = "index-" + shard;
+            bulkPool.execute(() -> {
+                try {
+                    if (runner == null) {
+                        for (int i = 0; i < itemsPerBulk; i++) {
+                            docs[i] = parse(index, i);
+                        }
+                    } else {
+                        runner.run(itemsPerBulk, i -> docs[i] = parse(index, i));
+                    }
+                } catch (Exception e) {
+                    failure.set(e);
+                } finally {
+                    latch.countDown();
+                }
+            });
+        }
+        latch.await();
+        if (failure.get() != null) {
+            throw failure.get();
+        }
+        bh.consume(parsed);
+    }
+
+    private ParsedDocument parse(String index, int item) {
+        return documentMapper.parse(SourceToParse.source(SourceToParse.Origin.PRIMARY, index, "doc", Integer.toString(item),
+            sources[item]));
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.elasticsearch.benchmark.index.mapper;
+
+import org.elasticsearch.Version;
+import org.elasticsearch.cluster.metadata.IndexMetaData;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.compress.CompressedXContent;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.common.xcontent.XContentFactory;
+import org.elasticsearch.env.Environment;
+import org.elasticsearch.index.IndexSettings;
+import org.elasticsearch.index.mapper.DocumentMapper;
+import org.elasticsearch.index.mapper.MapperService;
+import org.elasticsearch.index.mapper.ParsedDocument;
+import org.elasticsearch.index.mapper.SourceToParse;
+import org.elasticsearch.index.similarity.SimilarityService;
+import org.elasticsearch.indices.IndicesModule;
+import org.elasticsearch.indices.analysis.AnalysisModule;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how many documents per second {@link DocumentMapper#parse(SourceToParse)} turns into Lucene documents for documents
+ * with <code>fields</code> mapped fields. With the <code>flat</code> layout all fields are at the root of the document, with the
+ * <code>objects</code> layout they are spread over objects of ten fields each, and with <code>dotted</code> they are the same
+ * fields as with <code>objects</code>, but sent with dots in their names.
+ */
+@Fork(3)
+@Warmup(iterations = 10)
+@Measurement(iterations = 10)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@SuppressWarnings("unused") //invoked by benchmarking framework
+public class DocumentParsingBenchmark {
+
+    private static final int FIELDS_PER_OBJECT = 10;
+
+    @Param({"20", "200", "1000"})
+    public int fields = 200;
+
+    @Param({"flat", "objects", "dotted"})
+    public String layout = "flat";
+
+    private DocumentMapper documentMapper;
+    private BytesReference source;
+
+    @Setup
+    public void setUp() throws Exception {
+        final Settings settings = Settings.builder()
+            .put(Environment.PATH_HOME_SETTING.getKey(), Files.createTempDirectory("document-parsing-benchmark").toString())
+            .put(IndexMetaData.SETTING_VERSION_CREATED, Version.CURRENT)
+            .put(IndexMetaData.SETTING_NUMBER_OF_SHARDS, 1)
+            .put(IndexMetaData.SETTING_NUMBER_OF_REPLICAS, 0)
+            .put(MapperService.INDEX_MAPPING_TOTAL_FIELDS_LIMIT_SETTING.getKey(), Math.max(1000, fields * 2))
+            .build();
+        final IndexSettings indexSettings = new IndexSettings(IndexMetaData.builder("index").settings(settings).build(), settings);
+        final MapperService mapperService = new MapperService(indexSettings,
+            new AnalysisModule(new Environment(settings), Collections.emptyList()).getAnalysisRegistry().build(indexSettings),
+            new SimilarityService(indexSettings, Collections.emptyMap()),
+            new IndicesModule(Collections.emptyList()).getMapperRegistry(), () -> null);
+
+        final boolean flat = "flat".equals(layout);
+        XContentBuilder mapping = XContentFactory.jsonBuilder().startObject().startObject("doc").startObject("properties");
+        for (int i = 0; i < fields; i++) {
+            if (flat == false && i % FIELDS_PER_OBJECT == 0) {
+                if (i > 0) {
+                    mapping.endObject().endObject();
+                }
+                mapping.startObject("object" + i / FIELDS_PER_OBJECT).startObject("properties");
+            }
+            mapping.startObject("field" + i).field("type", fieldType(i)).endObject();
+        }
+        if (flat == false) {
+            mapping.endObject().endObject();
+        }
+        mapping.endObject().endObject().endObject();
+        documentMapper = mapperService.merge("doc", new CompressedXContent(mapping.bytes()),
+            MapperService.MergeReason.MAPPING_UPDATE, false);
+
+        final Random random = new Random(42);
+        XContentBuilder doc = XContentFactory.jsonBuilder().startObject();
+        for (int i = 0; i < fields; i++) {
+            final String name;
+            if ("objects".equals(layout)) {
+                if (i % FIELDS_PER_OBJECT == 0) {
+                    if (i > 0) {
+                        doc.endObject();
+                    }
+                    doc.startObject("object" + i / FIELDS_PER_OBJECT);
+                }
+                name = "field" + i;
+            } else if ("dotted".equals(layout)) {
+                name = "object" + i / FIELDS_PER_OBJECT + ".field" + i;
+            } else {
+                name = "field" + i;
+            }
+            if ("keyword".equals(fieldType(i))) {
+                doc.field(name, "value" + random.nextInt(1000));
+            } else {
+                doc.field(name, random.nextInt(100000));
+            }
+        }
+        if ("objects".equals(layout)) {
+            doc.endObject();
+        }
+        source = doc.endObject().bytes();
+    }
+
+    private static String fieldType(int field) {
+        return field % 2 == 0 ? "keyword" : "long";
+    }
+
+    @Benchmark
+    public ParsedDocument parseWideDocument() {
+        return documentMapper.parse(SourceToParse.source(SourceToParse.Origin.PRIMARY, "index", "doc", "1", source));
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.elasticsearch.benchmark.index.translog;
+
+import org.elasticsearch.Version;
+import org.elasticsearch.cluster.metadata.IndexMetaData;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.util.BigArrays;
+import org.elasticsearch.index.IndexSettings;
+import org.elasticsearch.index.shard.ShardId;
+import org.elasticsearch.index.translog.Translog;
+import org.elasticsearch.index.translog.TranslogConfig;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how many index operations with a <code>sourceSize</code> bytes large source per second {@link Translog#add} writes
+ * with the given translog <code>codec</code>. Run with <code>-prof gc</code> to see how many bytes are allocated per operation.
+ */
+@Fork(3)
+@Warmup(iterations = 10)
+@Measurement(iterations = 10)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@SuppressWarnings("unused") //invoked by benchmarking framework
+public class TranslogAddBenchmark {
+
+    // commit every so often so that old generations are removed and the benchmark does not fill up the disk
+    private static final int OPERATIONS_PER_COMMIT = 1000;
+
+    @Param({"1024", "102400"})
+    public int sourceSize = 1024;
+
+    @Param({"default", "lz4"})
+    public String codec = "default";
+
+    private Translog translog;
+    private Translog.Index operation;
+    private int operations;
+
+    @Setup
+    public void setUp() throws IOException {
+        final Settings settings = Settings.builder()
+            .put(IndexMetaData.SETTING_VERSION_CREATED, Version.CURRENT)
+            .put(IndexMetaData.SETTING_NUMBER_OF_SHARDS, 1)
+            .put(IndexMetaData.SETTING_NUMBER_OF_REPLICAS, 0)
+            .put(IndexSettings.INDEX_TRANSLOG_CODEC_SETTING.getKey(), codec)
+            .build();
+        final IndexSettings indexSettings = new IndexSettings(IndexMetaData.builder("index").settings(settings).build(), settings);
+        final ShardId shardId = new ShardId(indexSettings.getIndex(), 0);
+        translog = new Translog(new TranslogConfig(shardId, Files.createTempDirectory("translog-add-benchmark"), indexSettings,
+            BigArrays.NON_RECYCLING_INSTANCE), null);
+
+        // json-ish text so that the lz4 codec has something to compress
+        final Random random = new Random(42);
+        final byte[] source = new byte[sourceSize];
+        for (int i = 0; i < source.length; i++) {
+            source[i] = (byte) ('a' + random.nextInt(16));
+        }
+        operation = new Translog.Index("doc", "1", source);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        translog.close();
+    }
+
+    @Benchmark
+    public Translog.Location add() throws IOException {
+        final Translog.Location location = translog.add(operation);
+        if (++operations % OPERATIONS_PER_COMMIT == 0) {
+            translog.prepareCommit();
+            translog.commit();
+        }
+        return location;
+    }
+}
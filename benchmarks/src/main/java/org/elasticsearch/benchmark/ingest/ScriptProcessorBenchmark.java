@@ -0,0 +1,111 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.elasticsearch.benchmark.ingest;
+
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.env.Environment;
+import org.elasticsearch.ingest.IngestDocument;
+import org.elasticsearch.ingest.Processor;
+import org.elasticsearch.ingest.common.ScriptProcessor;
+import org.elasticsearch.painless.PainlessScriptEngineService;
+import org.elasticsearch.script.ExecutableScript;
+import org.elasticsearch.script.Script;
+import org.elasticsearch.script.ScriptContext;
+import org.elasticsearch.script.ScriptContextRegistry;
+import org.elasticsearch.script.ScriptEngineRegistry;
+import org.elasticsearch.script.ScriptService;
+import org.elasticsearch.script.ScriptSettings;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how many documents per second a painless script processor handles. <code>resolvePerDocument</code> resolves the
+ * script through the {@link ScriptService} for every document, the way the processor used to, <code>scriptProcessor</code>
+ * runs the processor, which binds the script that it compiled up-front to the params of every document.
+ */
+@Fork(3)
+@Warmup(iterations = 10)
+@Measurement(iterations = 10)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@SuppressWarnings("unused") //invoked by benchmarking framework
+public class ScriptProcessorBenchmark {
+
+    private static final String SCRIPT = "ctx.bytes_total = (ctx.bytes_in + ctx.bytes_out) * params.factor";
+
+    private ScriptService scriptService;
+    private Script script;
+    private Processor processor;
+    private IngestDocument document;
+
+    @Setup
+    public void setUp() throws Exception {
+        final Settings settings = Settings.builder()
+            .put(Environment.PATH_HOME_SETTING.getKey(), Files.createTempDirectory("script-processor-benchmark"))
+            .put(ScriptService.SCRIPT_AUTO_RELOAD_ENABLED_SETTING.getKey(), false)
+            .build();
+        final ScriptEngineRegistry scriptEngineRegistry =
+            new ScriptEngineRegistry(Collections.singletonList(new PainlessScriptEngineService(settings)));
+        final ScriptContextRegistry scriptContextRegistry = new ScriptContextRegistry(Collections.emptyList());
+        scriptService = new ScriptService(settings, new Environment(settings), null, scriptEngineRegistry, scriptContextRegistry,
+            new ScriptSettings(scriptEngineRegistry, scriptContextRegistry));
+
+        final Map<String, Object> params = Collections.singletonMap("factor", 10);
+        script = new Script(SCRIPT, ScriptService.ScriptType.INLINE, PainlessScriptEngineService.NAME, params);
+        final Map<String, Object> config = new HashMap<>();
+        config.put("lang", PainlessScriptEngineService.NAME);
+        config.put("inline", SCRIPT);
+        config.put("params", params);
+        processor = new ScriptProcessor.Factory(scriptService).create(Collections.emptyMap(), "benchmark", config);
+
+        final Map<String, Object> source = new HashMap<>();
+        source.put("bytes_in", 1234);
+        source.put("bytes_out", 4321);
+        document = new IngestDocument("index", "type", "id", null, null, null, null, source);
+    }
+
+    @Benchmark
+    public Object resolvePerDocument() {
+        final ExecutableScript executableScript = scriptService.executable(script, ScriptContext.Standard.INGEST, Collections.emptyMap());
+        executableScript.setNextVar("ctx", document.getSourceAndMetadata());
+        executableScript.run();
+        return document;
+    }
+
+    @Benchmark
+    public Object scriptProcessor() throws Exception {
+        processor.execute(document);
+        return document;
+    }
+}
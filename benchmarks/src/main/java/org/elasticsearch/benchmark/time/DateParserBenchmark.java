@@ -0,0 +1,64 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.elasticsearch.benchmark.time;
+
+import org.elasticsearch.common.joda.FormatDateTimeFormatter;
+import org.elasticsearch.index.mapper.DateFieldMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how many dates per second the default format of date fields parses. <code>joda</code> parses the date with the
+ * joda parser of the format, <code>fastPath</code> with {@link FormatDateTimeFormatter#parseMillis(String)}, which handles
+ * the common shapes of timestamps without joda.
+ */
+@Fork(3)
+@Warmup(iterations = 10)
+@Measurement(iterations = 10)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@SuppressWarnings("unused") //invoked by benchmarking framework
+public class DateParserBenchmark {
+
+    @Param({"2016-05-01", "2016-05-01T12:34:56Z", "2016-05-01T12:34:56.789Z", "2016-05-01T12:34:56.789+02:00", "1462106096789"})
+    private String date;
+
+    private final FormatDateTimeFormatter formatter = DateFieldMapper.DEFAULT_DATE_TIME_FORMATTER;
+
+    @Benchmark
+    public long joda() {
+        return formatter.parser().parseMillis(date);
+    }
+
+    @Benchmark
+    public long fastPath() {
+        return formatter.parseMillis(date);
+    }
+}
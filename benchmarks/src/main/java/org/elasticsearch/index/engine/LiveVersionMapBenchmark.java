@@ -0,0 +1,231 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.elasticsearch.index.engine;
+
+import org.apache.lucene.index.Term;
+import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.util.BigArrays;
+import org.elasticsearch.common.util.concurrent.ConcurrentCollections;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares {@link LiveVersionMap} with a map built from two swapped {@link java.util.concurrent.ConcurrentHashMap}s, which is how
+ * the live version map was implemented before, under concurrent indexing, deletes and refreshes. Run with <code>-prof gc</code> to
+ * compare the allocation rates.
+ *
+ * This benchmark lives in the engine package since the version map is package private.
+ */
+@Fork(3)
+@Warmup(iterations = 10)
+@Measurement(iterations = 10)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Group)
+@SuppressWarnings("unused") //invoked by benchmarking framework
+public class LiveVersionMapBenchmark {
+    // Do NOT make any field final (even if it is not annotated with @Param)! See also
+    // http://hg.openjdk.java.net/code-tools/jmh/file/tip/jmh-samples/src/main/java/org/openjdk/jmh/samples/JMHSample_10_ConstantFold.java
+
+    @Param({"live_version_map", "concurrent_hash_maps"})
+    public String implementation = "live_version_map";
+
+    @Param({"1000", "100000"})
+    public int numUids = 1000;
+
+    // amount of work the refresh thread performs between two refreshes, see Blackhole#consumeCPU
+    @Param({"100000"})
+    public long refreshInterval = 100000;
+
+    private VersionMap versionMap;
+
+    private BytesRef[] uids;
+
+    @State(Scope.Thread)
+    public static class ThreadState {
+        // Do NOT make any field final (even if it is not annotated with @Param)!
+        private Random random = new Random();
+        private long version = 0;
+    }
+
+    @Setup
+    public void setUp() {
+        switch (implementation) {
+            case "live_version_map":
+                // recycle pages like a node does, the map releases its pages on every refresh
+                versionMap = new LiveVersionMapAdapter(new LiveVersionMap(new BigArrays(Settings.EMPTY, null)));
+                break;
+            case "concurrent_hash_maps":
+                versionMap = new ConcurrentHashMapsVersionMap();
+                break;
+            default:
+                throw new IllegalArgumentException("unknown implementation [" + implementation + "]");
+        }
+        uids = new BytesRef[numUids];
+        for (int i = 0; i < numUids; i++) {
+            uids[i] = new BytesRef(("type#" + i).getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        versionMap.close();
+    }
+
+    @Benchmark
+    @Group("index_delete_refresh")
+    @GroupThreads(4)
+    public VersionValue index(ThreadState state) {
+        final BytesRef uid = uids[state.random.nextInt(uids.length)];
+        final VersionValue current = versionMap.get(uid);
+        versionMap.put(uid, new VersionValue(current == null ? 1 : current.version() + 1));
+        return current;
+    }
+
+    @Benchmark
+    @Group("index_delete_refresh")
+    @GroupThreads(1)
+    public VersionValue delete(ThreadState state) {
+        final BytesRef uid = uids[state.random.nextInt(uids.length)];
+        final VersionValue current = versionMap.get(uid);
+        versionMap.put(uid, new DeleteVersionValue(++state.version, state.version));
+        // prune right away, otherwise the tombstones would grow without bounds
+        versionMap.removeTombstone(uid);
+        return current;
+    }
+
+    @Benchmark
+    @Group("index_delete_refresh")
+    @GroupThreads(1)
+    public void refresh() throws Exception {
+        Blackhole.consumeCPU(refreshInterval);
+        versionMap.refresh();
+    }
+
+    private interface VersionMap {
+
+        VersionValue get(BytesRef uid);
+
+        void put(BytesRef uid, VersionValue version);
+
+        void removeTombstone(BytesRef uid);
+
+        void refresh() throws Exception;
+
+        void close();
+    }
+
+    private static final class LiveVersionMapAdapter implements VersionMap {
+        private final LiveVersionMap map;
+
+        LiveVersionMapAdapter(LiveVersionMap map) {
+            this.map = map;
+        }
+
+        @Override
+        public VersionValue get(BytesRef uid) {
+            return map.getUnderLock(new Term("_uid", uid));
+        }
+
+        @Override
+        public void put(BytesRef uid, VersionValue version) {
+            map.putUnderLock(uid, version);
+        }
+
+        @Override
+        public void removeTombstone(BytesRef uid) {
+            map.removeTombstoneUnderLock(uid);
+        }
+
+        @Override
+        public void refresh() throws Exception {
+            map.beforeRefresh();
+            map.afterRefresh(true);
+        }
+
+        @Override
+        public void close() {
+            map.clear();
+        }
+    }
+
+    /** The current and old maps as plain concurrent hash maps that are swapped on refresh. */
+    private static final class ConcurrentHashMapsVersionMap implements VersionMap {
+        private final Map<BytesRef, VersionValue> tombstones = ConcurrentCollections.newConcurrentMapWithAggressiveConcurrency();
+        private volatile Map<BytesRef, VersionValue> current = ConcurrentCollections.newConcurrentMapWithAggressiveConcurrency();
+        private volatile Map<BytesRef, VersionValue> old = ConcurrentCollections.newConcurrentMapWithAggressiveConcurrency();
+
+        @Override
+        public VersionValue get(BytesRef uid) {
+            VersionValue value = current.get(uid);
+            if (value == null) {
+                value = old.get(uid);
+            }
+            return value == null ? tombstones.get(uid) : value;
+        }
+
+        @Override
+        public void put(BytesRef uid, VersionValue version) {
+            current.put(uid, version);
+            if (version.delete()) {
+                tombstones.put(uid, version);
+            } else {
+                tombstones.remove(uid);
+            }
+        }
+
+        @Override
+        public void removeTombstone(BytesRef uid) {
+            tombstones.remove(uid);
+        }
+
+        @Override
+        public void refresh() {
+            old = current;
+            current = ConcurrentCollections.newConcurrentMapWithAggressiveConcurrency();
+            old = ConcurrentCollections.newConcurrentMapWithAggressiveConcurrency();
+        }
+
+        @Override
+        public void close() {
+            current.clear();
+            old.clear();
+            tombstones.clear();
+        }
+    }
+}
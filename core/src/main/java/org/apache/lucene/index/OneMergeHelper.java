@@ -27,4 +27,9 @@ public class OneMergeHelper {
     public static String getSegmentName(MergePolicy.OneMerge merge) {
         return merge.info != null ? merge.info.info.name : "_na_";
     }
+
+    /** Returns true if the merge was triggered by a forced merge rather than by the merge policy */
+    public static boolean isExternal(MergePolicy.OneMerge merge) {
+        return merge.isExternal;
+    }
 }
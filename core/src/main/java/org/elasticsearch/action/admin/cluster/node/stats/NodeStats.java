@@ -19,6 +19,7 @@
 
 package org.elasticsearch.action.admin.cluster.node.stats;
 
+import org.elasticsearch.Version;
 import org.elasticsearch.action.support.nodes.BaseNodeResponse;
 import org.elasticsearch.cluster.node.DiscoveryNode;
 import org.elasticsearch.common.Nullable;
@@ -28,6 +29,8 @@ import org.elasticsearch.common.xcontent.ToXContent;
 import org.elasticsearch.common.xcontent.XContentBuilder;
 import org.elasticsearch.discovery.DiscoveryStats;
 import org.elasticsearch.http.HttpStats;
+import org.elasticsearch.indices.IndexingBufferStats;
+import org.elasticsearch.indices.MergeIOStats;
 import org.elasticsearch.indices.NodeIndicesStats;
 import org.elasticsearch.indices.breaker.AllCircuitBreakerStats;
 import org.elasticsearch.ingest.IngestStats;
@@ -35,6 +38,7 @@ import org.elasticsearch.monitor.fs.FsInfo;
 import org.elasticsearch.monitor.jvm.JvmStats;
 import org.elasticsearch.monitor.os.OsStats;
 import org.elasticsearch.monitor.process.ProcessStats;
+import org.elasticsearch.node.AdaptiveSelectionStats;
 import org.elasticsearch.script.ScriptStats;
 import org.elasticsearch.threadpool.ThreadPoolStats;
 import org.elasticsearch.transport.TransportStats;
@@ -85,6 +89,15 @@ public class NodeStats extends BaseNodeResponse implements ToXContent {
     @Nullable
     private IngestStats ingestStats;
 
+    @Nullable
+    private MergeIOStats mergeIOStats;
+
+    @Nullable
+    private IndexingBufferStats indexingBufferStats;
+
+    @Nullable
+    private AdaptiveSelectionStats adaptiveSelectionStats;
+
     NodeStats() {
     }
 
@@ -94,7 +107,10 @@ public class NodeStats extends BaseNodeResponse implements ToXContent {
                      @Nullable AllCircuitBreakerStats breaker,
                      @Nullable ScriptStats scriptStats,
                      @Nullable DiscoveryStats discoveryStats,
-                     @Nullable IngestStats ingestStats) {
+                     @Nullable IngestStats ingestStats,
+                     @Nullable MergeIOStats mergeIOStats,
+                     @Nullable IndexingBufferStats indexingBufferStats,
+                     @Nullable AdaptiveSelectionStats adaptiveSelectionStats) {
         super(node);
         this.timestamp = timestamp;
         this.indices = indices;
@@ -109,6 +125,9 @@ public class NodeStats extends BaseNodeResponse implements ToXContent {
         this.scriptStats = scriptStats;
         this.discoveryStats = discoveryStats;
         this.ingestStats = ingestStats;
+        this.mergeIOStats = mergeIOStats;
+        this.indexingBufferStats = indexingBufferStats;
+        this.adaptiveSelectionStats = adaptiveSelectionStats;
     }
 
     public long getTimestamp() {
@@ -198,6 +217,21 @@ public class NodeStats extends BaseNodeResponse implements ToXContent {
         return ingestStats;
     }
 
+    @Nullable
+    public MergeIOStats getMergeIOStats() {
+        return mergeIOStats;
+    }
+
+    @Nullable
+    public IndexingBufferStats getIndexingBufferStats() {
+        return indexingBufferStats;
+    }
+
+    @Nullable
+    public AdaptiveSelectionStats getAdaptiveSelectionStats() {
+        return adaptiveSelectionStats;
+    }
+
     public static NodeStats readNodeStats(StreamInput in) throws IOException {
         NodeStats nodeInfo = new NodeStats();
         nodeInfo.readFrom(in);
@@ -222,6 +256,11 @@ public class NodeStats extends BaseNodeResponse implements ToXContent {
         scriptStats = in.readOptionalWriteable(ScriptStats::new);
         discoveryStats = in.readOptionalWriteable(DiscoveryStats::new);
         ingestStats = in.readOptionalWriteable(IngestStats::new);
+        if (in.getVersion().onOrAfter(Version.V_6_0_0_alpha1)) {
+            mergeIOStats = in.readOptionalWriteable(MergeIOStats::new);
+            indexingBufferStats = in.readOptionalWriteable(IndexingBufferStats::new);
+            adaptiveSelectionStats = in.readOptionalWriteable(AdaptiveSelectionStats::new);
+        }
     }
 
     @Override
@@ -245,6 +284,11 @@ public class NodeStats extends BaseNodeResponse implements ToXContent {
         out.writeOptionalWriteable(scriptStats);
         out.writeOptionalWriteable(discoveryStats);
         out.writeOptionalWriteable(ingestStats);
+        if (out.getVersion().onOrAfter(Version.V_6_0_0_alpha1)) {
+            out.writeOptionalWriteable(mergeIOStats);
+            out.writeOptionalWriteable(indexingBufferStats);
+            out.writeOptionalWriteable(adaptiveSelectionStats);
+        }
     }
 
     @Override
@@ -305,6 +349,15 @@ public class NodeStats extends BaseNodeResponse implements ToXContent {
         if (getIngestStats() != null) {
             getIngestStats().toXContent(builder, params);
         }
+        if (getMergeIOStats() != null) {
+            getMergeIOStats().toXContent(builder, params);
+        }
+        if (getIndexingBufferStats() != null) {
+            getIndexingBufferStats().toXContent(builder, params);
+        }
+        if (getAdaptiveSelectionStats() != null) {
+            getAdaptiveSelectionStats().toXContent(builder, params);
+        }
         return builder;
     }
 }
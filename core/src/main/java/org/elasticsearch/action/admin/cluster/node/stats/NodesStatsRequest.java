@@ -19,6 +19,7 @@
 
 package org.elasticsearch.action.admin.cluster.node.stats;
 
+import org.elasticsearch.Version;
 import org.elasticsearch.action.admin.indices.stats.CommonStatsFlags;
 import org.elasticsearch.action.support.nodes.BaseNodesRequest;
 import org.elasticsearch.common.io.stream.StreamInput;
@@ -43,6 +44,9 @@ public class NodesStatsRequest extends BaseNodesRequest<NodesStatsRequest> {
     private boolean script;
     private boolean discovery;
     private boolean ingest;
+    private boolean mergeIO;
+    private boolean indexingBuffer;
+    private boolean adaptiveSelection;
 
     public NodesStatsRequest() {
     }
@@ -71,6 +75,9 @@ public class NodesStatsRequest extends BaseNodesRequest<NodesStatsRequest> {
         this.script = true;
         this.discovery = true;
         this.ingest = true;
+        this.mergeIO = true;
+        this.indexingBuffer = true;
+        this.adaptiveSelection = true;
         return this;
     }
 
@@ -90,6 +97,9 @@ public class NodesStatsRequest extends BaseNodesRequest<NodesStatsRequest> {
         this.script = false;
         this.discovery = false;
         this.ingest = false;
+        this.mergeIO = false;
+        this.indexingBuffer = false;
+        this.adaptiveSelection = false;
         return this;
     }
 
@@ -265,6 +275,42 @@ public class NodesStatsRequest extends BaseNodesRequest<NodesStatsRequest> {
         return this;
     }
 
+    public boolean mergeIO() {
+        return mergeIO;
+    }
+
+    /**
+     * Should the merge IO throttling statistics of the node's devices be returned.
+     */
+    public NodesStatsRequest mergeIO(boolean mergeIO) {
+        this.mergeIO = mergeIO;
+        return this;
+    }
+
+    public boolean indexingBuffer() {
+        return indexingBuffer;
+    }
+
+    /**
+     * Should the per shard breakdown of the node's indexing buffer be returned.
+     */
+    public NodesStatsRequest indexingBuffer(boolean indexingBuffer) {
+        this.indexingBuffer = indexingBuffer;
+        return this;
+    }
+
+    public boolean adaptiveSelection() {
+        return adaptiveSelection;
+    }
+
+    /**
+     * Should the statistics that adaptive replica selection ranks the nodes by be returned.
+     */
+    public NodesStatsRequest adaptiveSelection(boolean adaptiveSelection) {
+        this.adaptiveSelection = adaptiveSelection;
+        return this;
+    }
+
     @Override
     public void readFrom(StreamInput in) throws IOException {
         super.readFrom(in);
@@ -280,6 +326,11 @@ public class NodesStatsRequest extends BaseNodesRequest<NodesStatsRequest> {
         script = in.readBoolean();
         discovery = in.readBoolean();
         ingest = in.readBoolean();
+        if (in.getVersion().onOrAfter(Version.V_6_0_0_alpha1)) {
+            mergeIO = in.readBoolean();
+            indexingBuffer = in.readBoolean();
+            adaptiveSelection = in.readBoolean();
+        }
     }
 
     @Override
@@ -297,5 +348,10 @@ public class NodesStatsRequest extends BaseNodesRequest<NodesStatsRequest> {
         out.writeBoolean(script);
         out.writeBoolean(discovery);
         out.writeBoolean(ingest);
+        if (out.getVersion().onOrAfter(Version.V_6_0_0_alpha1)) {
+            out.writeBoolean(mergeIO);
+            out.writeBoolean(indexingBuffer);
+            out.writeBoolean(adaptiveSelection);
+        }
     }
 }
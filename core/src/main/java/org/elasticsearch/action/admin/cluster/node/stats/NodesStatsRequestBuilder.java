@@ -145,4 +145,28 @@ public class NodesStatsRequestBuilder extends NodesOperationRequestBuilder<Nodes
         request.ingest(ingest);
         return this;
     }
+
+    /**
+     * Should merge IO throttling statistics be returned.
+     */
+    public NodesStatsRequestBuilder setMergeIO(boolean mergeIO) {
+        request.mergeIO(mergeIO);
+        return this;
+    }
+
+    /**
+     * Should indexing buffer statistics be returned.
+     */
+    public NodesStatsRequestBuilder setIndexingBuffer(boolean indexingBuffer) {
+        request.indexingBuffer(indexingBuffer);
+        return this;
+    }
+
+    /**
+     * Should adaptive replica selection statistics be returned.
+     */
+    public NodesStatsRequestBuilder setAdaptiveSelection(boolean adaptiveSelection) {
+        request.adaptiveSelection(adaptiveSelection);
+        return this;
+    }
 }
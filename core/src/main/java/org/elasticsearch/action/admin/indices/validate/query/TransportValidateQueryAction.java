@@ -163,6 +163,8 @@ public class TransportValidateQueryAction extends TransportBroadcastAction<Valid
     protected ShardValidateQueryResponse shardOperation(ShardValidateQueryRequest request) {
         IndexService indexService = indicesService.indexServiceSafe(request.shardId().getIndex());
         IndexShard indexShard = indexService.getShard(request.shardId().id());
+        // like explain, mark the shard search active without waiting for the refresh this may trigger
+        indexShard.awaitShardSearchActive(refreshed -> {});
 
         boolean valid;
         String explanation = null;
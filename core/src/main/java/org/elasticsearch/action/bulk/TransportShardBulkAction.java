@@ -44,15 +44,21 @@ import org.elasticsearch.cluster.metadata.IndexNameExpressionResolver;
 import org.elasticsearch.cluster.metadata.MappingMetaData;
 import org.elasticsearch.cluster.service.ClusterService;
 import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.Nullable;
 import org.elasticsearch.common.collect.Tuple;
 import org.elasticsearch.common.inject.Inject;
+import org.elasticsearch.common.settings.Setting;
+import org.elasticsearch.common.settings.Setting.Property;
 import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.util.concurrent.EsExecutors;
+import org.elasticsearch.common.util.concurrent.ParallelBatchRunner;
 import org.elasticsearch.common.xcontent.XContentHelper;
 import org.elasticsearch.common.xcontent.XContentType;
 import org.elasticsearch.index.IndexService;
 import org.elasticsearch.index.VersionType;
 import org.elasticsearch.index.engine.Engine;
 import org.elasticsearch.index.engine.VersionConflictEngineException;
+import org.elasticsearch.index.mapper.DocumentMapper;
 import org.elasticsearch.index.shard.IndexShard;
 import org.elasticsearch.index.shard.ShardId;
 import org.elasticsearch.index.translog.Translog;
@@ -63,6 +69,8 @@ import org.elasticsearch.threadpool.ThreadPool;
 import org.elasticsearch.transport.TransportRequestOptions;
 import org.elasticsearch.transport.TransportService;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 
 import static org.elasticsearch.action.support.replication.ReplicationOperation.ignoreReplicaException;
@@ -78,9 +86,23 @@ public class TransportShardBulkAction extends TransportWriteAction<BulkShardRequ
 
     public static final String ACTION_NAME = BulkAction.NAME + "[s]";
 
+    /**
+     * If enabled, the documents of all index items of a bulk shard request are parsed in parallel before the items are executed
+     * one by one on the primary.
+     */
+    public static final Setting<Boolean> PARALLEL_PARSING_ENABLED_SETTING =
+        Setting.boolSetting("action.bulk.primary.parallel_parsing.enabled", false, Property.NodeScope);
+    /**
+     * The number of items a thread claims at once when parsing in parallel.
+     */
+    public static final Setting<Integer> PARALLEL_PARSING_BATCH_SIZE_SETTING =
+        Setting.intSetting("action.bulk.primary.parallel_parsing.batch_size", 8, 1, Property.NodeScope);
+
     private final UpdateHelper updateHelper;
     private final boolean allowIdGeneration;
     private final MappingUpdatedAction mappingUpdatedAction;
+    @Nullable
+    private final ParallelBatchRunner parallelParser;
 
     @Inject
     public TransportShardBulkAction(Settings settings, TransportService transportService, ClusterService clusterService,
@@ -92,6 +114,14 @@ public class TransportShardBulkAction extends TransportWriteAction<BulkShardRequ
         this.updateHelper = updateHelper;
         this.allowIdGeneration = settings.getAsBoolean("action.allow_id_generation", true);
         this.mappingUpdatedAction = mappingUpdatedAction;
+        if (PARALLEL_PARSING_ENABLED_SETTING.get(settings)) {
+            // parsing helpers get their own bounded pool so that they neither queue behind nor take the queue of bulk requests,
+            // the bulk thread parses the batches of rejected helpers itself
+            this.parallelParser = new ParallelBatchRunner(threadPool.executor(ThreadPool.Names.BULK_WORKER),
+                PARALLEL_PARSING_BATCH_SIZE_SETTING.get(settings), EsExecutors.boundedNumberOfProcessors(settings) - 1);
+        } else {
+            this.parallelParser = null;
+        }
     }
 
     @Override
@@ -117,10 +147,12 @@ public class TransportShardBulkAction extends TransportWriteAction<BulkShardRequ
 
         long[] preVersions = new long[request.items().length];
         VersionType[] preVersionTypes = new VersionType[request.items().length];
+        final PreparedIndexOperations preparedOperations = parallelParser == null ? null : prepareIndexOperations(request, indexShard);
         Translog.Location location = null;
         for (int requestIndex = 0; requestIndex < request.items().length; requestIndex++) {
             BulkItemRequest item = request.items()[requestIndex];
-            location = handleItem(metaData, request, indexShard, preVersions, preVersionTypes, location, requestIndex, item);
+            location = handleItem(metaData, request, indexShard, preVersions, preVersionTypes, location, requestIndex, item,
+                preparedOperations);
         }
 
         BulkItemResponse[] responses = new BulkItemResponse[request.items().length];
@@ -132,9 +164,63 @@ public class TransportShardBulkAction extends TransportWriteAction<BulkShardRequ
         return new WriteResult<>(response, location);
     }
 
-    private Translog.Location handleItem(IndexMetaData metaData, BulkShardRequest request, IndexShard indexShard, long[] preVersions, VersionType[] preVersionTypes, Translog.Location location, int requestIndex, BulkItemRequest item) {
+    /**
+     * Parses the documents of all index items in parallel. Only the parsing happens here, the resulting operations are executed
+     * in item order by {@link #onPrimaryShard(BulkShardRequest, IndexShard)} so versioning, per item results and the order of the
+     * operations in the translog are the same as without parallel parsing.
+     */
+    private PreparedIndexOperations prepareIndexOperations(BulkShardRequest request, IndexShard indexShard) throws InterruptedException {
+        final BulkItemRequest[] items = request.items();
+        final PreparedIndexOperations prepared = new PreparedIndexOperations(items.length);
+        parallelParser.run(items.length, i -> {
+            if (items[i].request() instanceof IndexRequest) {
+                final IndexRequest indexRequest = (IndexRequest) items[i].request();
+                final DocumentMapper parsedWith = indexShard.mapperService().documentMapper(indexRequest.type());
+                try {
+                    prepared.operations[i] = TransportIndexAction.prepareIndexOperationOnPrimary(indexRequest, indexShard);
+                    prepared.parsedWith[i] = parsedWith;
+                } catch (Exception e) {
+                    // parsed again when the item is executed, which fails the item as usual
+                }
+            }
+        });
+        return prepared;
+    }
+
+    /**
+     * Index operations parsed ahead of execution together with the mapper they were parsed with.
+     */
+    private static final class PreparedIndexOperations {
+        final Engine.Index[] operations;
+        final DocumentMapper[] parsedWith;
+
+        PreparedIndexOperations(int size) {
+            operations = new Engine.Index[size];
+            parsedWith = new DocumentMapper[size];
+        }
+
+        /**
+         * Returns the operation prepared for the given item or <code>null</code> if there is none or the mapping changed since it
+         * was parsed, in which case the item needs to be parsed again.
+         */
+        @Nullable
+        Engine.Index take(int requestIndex, IndexRequest request, IndexShard indexShard) {
+            final Engine.Index operation = operations[requestIndex];
+            operations[requestIndex] = null;
+            if (operation != null && indexShard.mapperService().documentMapper(request.type()) == parsedWith[requestIndex]) {
+                return operation;
+            }
+            return null;
+        }
+    }
+
+    private Translog.Location handleItem(IndexMetaData metaData, BulkShardRequest request, IndexShard indexShard, long[] preVersions,
+                                         VersionType[] preVersionTypes, Translog.Location location, int requestIndex, BulkItemRequest item,
+                                         @Nullable PreparedIndexOperations preparedOperations) {
         if (item.request() instanceof IndexRequest) {
-            location = index(metaData, request, indexShard, preVersions, preVersionTypes, location, requestIndex, item);
+            final Engine.Index prepared = preparedOperations == null ? null :
+                preparedOperations.take(requestIndex, (IndexRequest) item.request(), indexShard);
+            location = index(metaData, request, indexShard, preVersions, preVersionTypes, location, requestIndex, item, prepared);
         } else if (item.request() instanceof DeleteRequest) {
             location = delete(request, indexShard, preVersions, preVersionTypes, location, requestIndex, item);
         } else if (item.request() instanceof UpdateRequest) {
@@ -150,12 +236,13 @@ public class TransportShardBulkAction extends TransportWriteAction<BulkShardRequ
         return location;
     }
 
-    private Translog.Location index(IndexMetaData metaData, BulkShardRequest request, IndexShard indexShard, long[] preVersions, VersionType[] preVersionTypes, Translog.Location location, int requestIndex, BulkItemRequest item) {
+    private Translog.Location index(IndexMetaData metaData, BulkShardRequest request, IndexShard indexShard, long[] preVersions, VersionType[] preVersionTypes, Translog.Location location, int requestIndex, BulkItemRequest item,
+                                    @Nullable Engine.Index prepared) {
         IndexRequest indexRequest = (IndexRequest) item.request();
         preVersions[requestIndex] = indexRequest.version();
         preVersionTypes[requestIndex] = indexRequest.versionType();
         try {
-            WriteResult<IndexResponse> result = shardIndexOperation(request, indexRequest, metaData, indexShard, true);
+            WriteResult<IndexResponse> result = shardIndexOperation(request, indexRequest, metaData, indexShard, true, prepared);
             location = locationToSync(location, result.getLocation());
             // add the response
             IndexResponse indexResponse = result.getResponse();
@@ -341,13 +428,13 @@ public class TransportShardBulkAction extends TransportWriteAction<BulkShardRequ
     }
 
     private WriteResult<IndexResponse> shardIndexOperation(BulkShardRequest request, IndexRequest indexRequest, IndexMetaData metaData,
-            IndexShard indexShard, boolean processed) throws Exception {
+            IndexShard indexShard, boolean processed, @Nullable Engine.Index prepared) throws Exception {
 
         MappingMetaData mappingMd = metaData.mappingOrDefault(indexRequest.type());
         if (!processed) {
             indexRequest.process(mappingMd, allowIdGeneration, request.index());
         }
-        return TransportIndexAction.executeIndexRequestOnPrimary(indexRequest, indexShard, mappingUpdatedAction);
+        return TransportIndexAction.executeIndexRequestOnPrimary(indexRequest, indexShard, mappingUpdatedAction, prepared);
     }
 
     static class UpdateResult {
@@ -410,7 +497,7 @@ public class TransportShardBulkAction extends TransportWriteAction<BulkShardRequ
             case UPDATED:
                 IndexRequest indexRequest = translate.action();
                 try {
-                    WriteResult result = shardIndexOperation(bulkShardRequest, indexRequest, metaData, indexShard, false);
+                    WriteResult result = shardIndexOperation(bulkShardRequest, indexRequest, metaData, indexShard, false, null);
                     return new UpdateResult(translate, indexRequest, result);
                 } catch (Exception e) {
                     final Throwable cause = ExceptionsHelper.unwrapCause(e);
@@ -445,6 +532,8 @@ public class TransportShardBulkAction extends TransportWriteAction<BulkShardRequ
     @Override
     protected Location onReplicaShard(BulkShardRequest request, IndexShard indexShard) {
         Translog.Location location = null;
+        // consecutive index operations are applied together, which allows the engine to batch version lookups and writes
+        final List<Engine.Index> pendingIndexOperations = new ArrayList<>();
         for (int i = 0; i < request.items().length; i++) {
             BulkItemRequest item = request.items()[i];
             if (item == null || item.isIgnoreOnReplica()) {
@@ -453,9 +542,9 @@ public class TransportShardBulkAction extends TransportWriteAction<BulkShardRequ
             if (item.request() instanceof IndexRequest) {
                 IndexRequest indexRequest = (IndexRequest) item.request();
                 try {
-                    Engine.Index operation = TransportIndexAction.executeIndexRequestOnReplica(indexRequest, indexShard);
-                    location = locationToSync(location, operation.getTranslogLocation());
+                    pendingIndexOperations.add(TransportIndexAction.prepareIndexOperationOnReplica(indexRequest, indexShard));
                 } catch (Exception e) {
+                    location = applyIndexOperationsOnReplica(pendingIndexOperations, indexShard, location);
                     // if its not an ignore replica failure, we need to make sure to bubble up the failure
                     // so we will fail the shard
                     if (!ignoreReplicaException(e)) {
@@ -463,6 +552,7 @@ public class TransportShardBulkAction extends TransportWriteAction<BulkShardRequ
                     }
                 }
             } else if (item.request() instanceof DeleteRequest) {
+                location = applyIndexOperationsOnReplica(pendingIndexOperations, indexShard, location);
                 DeleteRequest deleteRequest = (DeleteRequest) item.request();
                 try {
                     Engine.Delete delete = TransportDeleteAction.executeDeleteRequestOnReplica(deleteRequest, indexShard);
@@ -479,7 +569,40 @@ public class TransportShardBulkAction extends TransportWriteAction<BulkShardRequ
                 throw new IllegalStateException("Unexpected index operation: " + item.request());
             }
         }
-        return location;
+        return applyIndexOperationsOnReplica(pendingIndexOperations, indexShard, location);
+    }
+
+    /**
+     * Applies and clears the given pending index operations and returns the location to sync up to.
+     */
+    private Translog.Location applyIndexOperationsOnReplica(List<Engine.Index> operations, IndexShard indexShard,
+                                                            Translog.Location location) {
+        if (operations.isEmpty()) {
+            return location;
+        }
+        try {
+            final Exception[] failures;
+            try {
+                failures = indexShard.index(operations);
+            } catch (Exception e) {
+                if (!ignoreReplicaException(e)) {
+                    throw e;
+                }
+                return location;
+            }
+            for (int i = 0; i < failures.length; i++) {
+                if (failures[i] == null) {
+                    location = locationToSync(location, operations.get(i).getTranslogLocation());
+                } else if (!ignoreReplicaException(failures[i])) {
+                    // if its not an ignore replica failure, we need to make sure to bubble up the failure
+                    // so we will fail the shard
+                    throw ExceptionsHelper.convertToRuntime(failures[i]);
+                }
+            }
+            return location;
+        } finally {
+            operations.clear();
+        }
     }
 
     private void applyVersion(BulkItemRequest item, long version, VersionType versionType) {
@@ -84,22 +84,37 @@ public class TransportShardMultiGetAction extends TransportSingleShardAction<Mul
             indexShard.refresh("refresh_flag_mget");
         }
 
+        final GetResponse[] responses = new GetResponse[request.locations.size()];
+        final MultiGetResponse.Failure[] failures = new MultiGetResponse.Failure[request.locations.size()];
+        try {
+            indexShard.getService().multiGet(request.items, request.realtime(), request.ignoreErrorsOnGeneratedFields(),
+                (getResult, i) -> responses[i] = new GetResponse(getResult),
+                (e, i) -> failures[i] = onFailure(request, shardId, request.items.get(i), e));
+        } catch (Exception e) {
+            for (int i = 0; i < request.locations.size(); i++) {
+                if (responses[i] == null && failures[i] == null) {
+                    failures[i] = onFailure(request, shardId, request.items.get(i), e);
+                }
+            }
+        }
+
         MultiGetShardResponse response = new MultiGetShardResponse();
         for (int i = 0; i < request.locations.size(); i++) {
-            MultiGetRequest.Item item = request.items.get(i);
-            try {
-                GetResult getResult = indexShard.getService().get(item.type(), item.id(), item.fields(), request.realtime(), item.version(), item.versionType(), item.fetchSourceContext(), request.ignoreErrorsOnGeneratedFields());
-                response.add(request.locations.get(i), new GetResponse(getResult));
-            } catch (Exception e) {
-                if (TransportActions.isShardNotAvailableException(e)) {
-                    throw (ElasticsearchException) e;
-                } else {
-                    logger.debug((Supplier<?>) () -> new ParameterizedMessage("{} failed to execute multi_get for [{}]/[{}]", shardId, item.type(), item.id()), e);
-                    response.add(request.locations.get(i), new MultiGetResponse.Failure(request.index(), item.type(), item.id(), e));
-                }
+            if (responses[i] != null) {
+                response.add(request.locations.get(i), responses[i]);
+            } else {
+                response.add(request.locations.get(i), failures[i]);
             }
         }
 
         return response;
     }
+
+    private MultiGetResponse.Failure onFailure(MultiGetShardRequest request, ShardId shardId, MultiGetRequest.Item item, Exception e) {
+        if (TransportActions.isShardNotAvailableException(e)) {
+            throw (ElasticsearchException) e;
+        }
+        logger.debug((Supplier<?>) () -> new ParameterizedMessage("{} failed to execute multi_get for [{}]/[{}]", shardId, item.type(), item.id()), e);
+        return new MultiGetResponse.Failure(request.index(), item.type(), item.id(), e);
+    }
 }
@@ -36,6 +36,7 @@ import org.elasticsearch.cluster.metadata.IndexNameExpressionResolver;
 import org.elasticsearch.cluster.metadata.MappingMetaData;
 import org.elasticsearch.cluster.metadata.MetaData;
 import org.elasticsearch.cluster.service.ClusterService;
+import org.elasticsearch.common.Nullable;
 import org.elasticsearch.common.inject.Inject;
 import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.index.engine.Engine;
@@ -154,6 +155,16 @@ public class TransportIndexAction extends TransportWriteAction<IndexRequest, Ind
      * {@link RetryOnReplicaException} if the operation needs to be re-tried.
      */
     public static Engine.Index executeIndexRequestOnReplica(IndexRequest request, IndexShard indexShard) {
+        final Engine.Index operation = prepareIndexOperationOnReplica(request, indexShard);
+        indexShard.index(operation);
+        return operation;
+    }
+
+    /**
+     * Utility method to prepare an index operation on replica shards, throwing a {@link RetryOnReplicaException} if the mappings
+     * of the document are not available on the replica yet.
+     */
+    public static Engine.Index prepareIndexOperationOnReplica(IndexRequest request, IndexShard indexShard) {
         final ShardId shardId = indexShard.shardId();
         SourceToParse sourceToParse = SourceToParse.source(SourceToParse.Origin.REPLICA, shardId.getIndexName(), request.type(), request.id(), request.source())
                 .routing(request.routing()).parent(request.parent()).timestamp(request.timestamp()).ttl(request.ttl());
@@ -163,7 +174,6 @@ public class TransportIndexAction extends TransportWriteAction<IndexRequest, Ind
         if (update != null) {
             throw new RetryOnReplicaException(shardId, "Mappings are not available on the replica yet, triggered update: " + update);
         }
-        indexShard.index(operation);
         return operation;
     }
 
@@ -176,11 +186,26 @@ public class TransportIndexAction extends TransportWriteAction<IndexRequest, Ind
 
     public static WriteResult<IndexResponse> executeIndexRequestOnPrimary(IndexRequest request, IndexShard indexShard,
             MappingUpdatedAction mappingUpdatedAction) throws Exception {
-        Engine.Index operation = prepareIndexOperationOnPrimary(request, indexShard);
+        return executeIndexRequestOnPrimary(request, indexShard, mappingUpdatedAction, null);
+    }
+
+    /**
+     * Executes the given index request on the primary. If <code>prepared</code> is not null it must have been created with
+     * {@link #prepareIndexOperationOnPrimary(IndexRequest, IndexShard)} for the request and is used instead of parsing the
+     * document again.
+     */
+    public static WriteResult<IndexResponse> executeIndexRequestOnPrimary(IndexRequest request, IndexShard indexShard,
+            MappingUpdatedAction mappingUpdatedAction, @Nullable Engine.Index prepared) throws Exception {
+        Engine.Index operation = prepared == null ? prepareIndexOperationOnPrimary(request, indexShard) : prepared;
         Mapping update = operation.parsedDoc().dynamicMappingsUpdate();
         final ShardId shardId = indexShard.shardId();
         if (update != null) {
-            mappingUpdatedAction.updateMappingOnMaster(shardId.getIndex(), request.type(), update);
+            final long startTime = System.nanoTime();
+            try {
+                mappingUpdatedAction.updateMappingOnMaster(shardId.getIndex(), request.type(), update);
+            } finally {
+                indexShard.mappingUpdate(request.type(), System.nanoTime() - startTime);
+            }
             operation = prepareIndexOperationOnPrimary(request, indexShard);
             update = operation.parsedDoc().dynamicMappingsUpdate();
             if (update != null) {
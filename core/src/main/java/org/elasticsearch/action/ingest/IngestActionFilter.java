@@ -108,7 +108,7 @@ public final class IngestActionFilter extends AbstractComponent implements Actio
         BulkRequestModifier bulkRequestModifier = new BulkRequestModifier(original);
         executionService.executeBulkRequest(() -> bulkRequestModifier, (indexRequest, exception) -> {
             logger.debug((Supplier<?>) () -> new ParameterizedMessage("failed to execute pipeline [{}] for document [{}/{}/{}]", indexRequest.getPipeline(), indexRequest.index(), indexRequest.type(), indexRequest.id()), exception);
-            bulkRequestModifier.markCurrentItemAsFailed(exception);
+            bulkRequestModifier.markItemAsFailed(indexRequest, exception);
         }, (exception) -> {
             if (exception != null) {
                 logger.error("failed to execute pipeline for a bulk request", exception);
@@ -141,6 +141,7 @@ public final class IngestActionFilter extends AbstractComponent implements Actio
         final List<BulkItemResponse> itemResponses;
 
         int currentSlot = -1;
+        int lastFailedSlot = -1;
         int[] originalSlots;
 
         BulkRequestModifier(BulkRequest bulkRequest) {
@@ -199,15 +200,23 @@ public final class IngestActionFilter extends AbstractComponent implements Actio
             }
         }
 
-        void markCurrentItemAsFailed(Exception e) {
-            IndexRequest indexRequest = (IndexRequest) bulkRequest.requests().get(currentSlot);
+        /**
+         * Marks the given request as failed. Failures must be reported in the order of the requests in the bulk, which allows
+         * to find the slot of the failed request by only looking at the requests after the previously failed one.
+         */
+        void markItemAsFailed(IndexRequest indexRequest, Exception e) {
+            int slot = lastFailedSlot + 1;
+            while (bulkRequest.requests().get(slot) != indexRequest) {
+                slot++;
+            }
+            lastFailedSlot = slot;
             // We hit a error during preprocessing a request, so we:
             // 1) Remember the request item slot from the bulk, so that we're done processing all requests we know what failed
             // 2) Add a bulk item failure for this request
             // 3) Continue with the next request in the bulk.
-            failedSlots.add(currentSlot);
+            failedSlots.add(slot);
             BulkItemResponse.Failure failure = new BulkItemResponse.Failure(indexRequest.index(), indexRequest.type(), indexRequest.id(), e);
-            itemResponses.add(new BulkItemResponse(currentSlot, indexRequest.opType().lowercase(), failure));
+            itemResponses.add(new BulkItemResponse(slot, indexRequest.opType().lowercase(), failure));
         }
 
     }
@@ -38,7 +38,9 @@ import org.elasticsearch.cluster.routing.ShardRouting;
 import org.elasticsearch.cluster.service.ClusterService;
 import org.elasticsearch.common.Nullable;
 import org.elasticsearch.common.util.concurrent.AtomicArray;
+import org.elasticsearch.common.util.concurrent.CountDown;
 import org.elasticsearch.search.SearchPhaseResult;
+import org.elasticsearch.search.SearchService;
 import org.elasticsearch.search.SearchShardTarget;
 import org.elasticsearch.search.action.SearchTransportService;
 import org.elasticsearch.search.controller.SearchPhaseController;
@@ -73,6 +75,7 @@ abstract class AbstractSearchAsyncAction<FirstResult extends SearchPhaseResult>
     protected final AtomicInteger successfulOps = new AtomicInteger();
     private final AtomicInteger totalOps = new AtomicInteger();
     protected final AtomicArray<FirstResult> firstResults;
+    protected final SearchPhaseController.QueryResultConsumer queryResultConsumer;
     private volatile AtomicArray<ShardSearchFailure> shardFailures;
     private final Object shardFailuresMutex = new Object();
     protected volatile ScoreDoc[] sortedShardDocs;
@@ -107,7 +110,8 @@ abstract class AbstractSearchAsyncAction<FirstResult extends SearchPhaseResult>
         Map<String, Set<String>> routingMap = indexNameExpressionResolver.resolveSearchRouting(clusterState, request.routing(),
             request.indices());
 
-        shardsIts = clusterService.operationRouting().searchShards(clusterState, concreteIndices, routingMap, request.preference());
+        shardsIts = clusterService.operationRouting().searchShards(clusterState, concreteIndices, routingMap, request.preference(),
+            searchTransportService.getResponseCollectorService(), searchTransportService.getPendingSearchRequests());
         final int shardCount = shardsIts.size();
         failIfOverShardCountLimit(clusterService, shardCount);
         expectedSuccessfulOps = shardCount;
@@ -115,6 +119,7 @@ abstract class AbstractSearchAsyncAction<FirstResult extends SearchPhaseResult>
         expectedTotalOps = shardsIts.totalSizeWith1ForEmpty();
 
         firstResults = new AtomicArray<>(shardsIts.size());
+        queryResultConsumer = searchPhaseController.newQueryResultConsumer(request.batchedReduceSize(), shardsIts.size());
     }
 
     private void failIfOverShardCountLimit(ClusterService clusterService, int shardCount) {
@@ -136,9 +141,89 @@ abstract class AbstractSearchAsyncAction<FirstResult extends SearchPhaseResult>
                 ShardSearchFailure.EMPTY_ARRAY));
             return;
         }
+        if (shardsIts.size() > request.preFilterShardSize() && SearchService.canRewriteToMatchNone(request.source())) {
+            preFilterShards();
+        } else {
+            executeFirstPhase(null);
+        }
+    }
+
+    /**
+     * Asks a copy of each shard whether the query can match any of its documents and then executes the first phase, skipping the
+     * shards that can't match. Shards that don't answer are searched anyway so that the first phase reports their failures.
+     */
+    private void preFilterShards() {
+        final boolean[] skipShards = new boolean[shardsIts.size()];
+        final CountDown counter = new CountDown(shardsIts.size());
+        final Runnable onCanMatchDone = () -> {
+            if (counter.countDown()) {
+                boolean skipAll = true;
+                for (boolean skipShard : skipShards) {
+                    skipAll &= skipShard;
+                }
+                if (skipAll) {
+                    // we still need a shard to build the response, e.g. to get the structure of the aggregations right
+                    skipShards[0] = false;
+                }
+                for (ShardIterator shardIt : shardsIts) {
+                    shardIt.reset();
+                }
+                executeFirstPhase(skipShards);
+            }
+        };
+        int shardIndex = -1;
+        for (final ShardIterator shardIt : shardsIts) {
+            shardIndex++;
+            sendCanMatch(shardIndex, shardIt, shardIt.nextOrNull(), skipShards, onCanMatchDone);
+        }
+    }
+
+    private void sendCanMatch(final int shardIndex, final ShardIterator shardIt, final ShardRouting shard, final boolean[] skipShards,
+                              final Runnable onCanMatchDone) {
+        if (shard == null) {
+            onCanMatchDone.run();
+            return;
+        }
+        final DiscoveryNode node = nodes.get(shard.currentNodeId());
+        if (node == null) {
+            sendCanMatch(shardIndex, shardIt, shardIt.nextOrNull(), skipShards, onCanMatchDone);
+            return;
+        }
+        final ActionListener<SearchTransportService.CanMatchResponse> canMatchListener =
+            new ActionListener<SearchTransportService.CanMatchResponse>() {
+                @Override
+                public void onResponse(SearchTransportService.CanMatchResponse response) {
+                    // the count down makes these writes visible to the thread that reads them
+                    skipShards[shardIndex] = response.canMatch() == false;
+                    onCanMatchDone.run();
+                }
+
+                @Override
+                public void onFailure(Exception e) {
+                    logger.trace((Supplier<?>) () -> new ParameterizedMessage("{}: Failed to pre-filter [{}]", shard, request), e);
+                    sendCanMatch(shardIndex, shardIt, shardIt.nextOrNull(), skipShards, onCanMatchDone);
+                }
+            };
+        try {
+            String[] filteringAliases = indexNameExpressionResolver.filteringAliases(clusterState,
+                shard.index().getName(), request.indices());
+            searchTransportService.sendCanMatch(node, internalSearchRequest(shard, shardsIts.size(), request, filteringAliases,
+                startTime()), canMatchListener);
+        } catch (Exception e) {
+            canMatchListener.onFailure(e);
+        }
+    }
+
+    private void executeFirstPhase(@Nullable boolean[] skipShards) {
         int shardIndex = -1;
         for (final ShardIterator shardIt : shardsIts) {
             shardIndex++;
+            if (skipShards != null && skipShards[shardIndex]) {
+                // the shard can't match any documents, count it as successful without searching it
+                successfulOps.incrementAndGet();
+                onShardDone(shardIt, shardIt.remaining());
+                continue;
+            }
             final ShardRouting shard = shardIt.nextOrNull();
             if (shard != null) {
                 performFirstPhase(shardIndex, shardIt, shard);
@@ -185,7 +270,11 @@ abstract class AbstractSearchAsyncAction<FirstResult extends SearchPhaseResult>
         successfulOps.incrementAndGet();
         // increment all the "future" shards to update the total ops since we some may work and some may not...
         // and when that happens, we break on total ops, so we must maintain them
-        final int xTotalOps = totalOps.addAndGet(shardIt.remaining() + 1);
+        onShardDone(shardIt, shardIt.remaining() + 1);
+    }
+
+    private void onShardDone(ShardIterator shardIt, int ops) {
+        final int xTotalOps = totalOps.addAndGet(ops);
         if (xTotalOps == expectedTotalOps) {
             try {
                 innerMoveToSecondPhase();
@@ -373,6 +462,7 @@ abstract class AbstractSearchAsyncAction<FirstResult extends SearchPhaseResult>
 
     protected final void processFirstPhaseResult(int shardIndex, FirstResult result) {
         firstResults.set(shardIndex, result);
+        consumeFirstPhaseResult(result);
 
         if (logger.isTraceEnabled()) {
             logger.trace("got first-phase result from {}", result != null ? result.shardTarget() : null);
@@ -387,6 +477,13 @@ abstract class AbstractSearchAsyncAction<FirstResult extends SearchPhaseResult>
         }
     }
 
+    /**
+     * Called with the result of each shard that succeeded in the first phase before the shard counts as successful, for example
+     * to hand its query result to the {@link #queryResultConsumer}.
+     */
+    protected void consumeFirstPhaseResult(FirstResult result) {
+    }
+
     final void innerMoveToSecondPhase() throws Exception {
         if (logger.isTraceEnabled()) {
             StringBuilder sb = new StringBuilder();
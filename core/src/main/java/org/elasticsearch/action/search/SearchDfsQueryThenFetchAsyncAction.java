@@ -93,6 +93,7 @@ class SearchDfsQueryThenFetchAsyncAction extends AbstractSearchAsyncAction<DfsSe
             public void onResponse(QuerySearchResult result) {
                 result.shardTarget(dfsResult.shardTarget());
                 queryResults.set(shardIndex, result);
+                queryResultConsumer.consume(result);
                 if (counter.decrementAndGet() == 0) {
                     executeFetchPhase();
                 }
@@ -199,7 +200,7 @@ class SearchDfsQueryThenFetchAsyncAction extends AbstractSearchAsyncAction<DfsSe
             public void doRun() throws IOException {
                 final boolean isScrollRequest = request.scroll() != null;
                 final InternalSearchResponse internalResponse = searchPhaseController.merge(isScrollRequest, sortedShardDocs, queryResults,
-                    fetchResults);
+                    fetchResults, queryResultConsumer);
                 String scrollId = isScrollRequest ? TransportSearchHelper.buildScrollId(request.searchType(), firstResults) : null;
                 listener.onResponse(new SearchResponse(internalResponse, scrollId, expectedSuccessfulOps, successfulOps.get(),
                     buildTookInMillis(), buildShardFailures()));
@@ -55,6 +55,11 @@ class SearchQueryAndFetchAsyncAction extends AbstractSearchAsyncAction<QueryFetc
         searchTransportService.sendExecuteFetch(node, request, listener);
     }
 
+    @Override
+    protected void consumeFirstPhaseResult(QueryFetchSearchResult result) {
+        queryResultConsumer.consume(result.queryResult());
+    }
+
     @Override
     protected void moveToSecondPhase() throws Exception {
         threadPool.executor(ThreadPool.Names.SEARCH).execute(new ActionRunnable<SearchResponse>(listener) {
@@ -63,7 +68,7 @@ class SearchQueryAndFetchAsyncAction extends AbstractSearchAsyncAction<QueryFetc
                 final boolean isScrollRequest = request.scroll() != null;
                 sortedShardDocs = searchPhaseController.sortDocs(isScrollRequest, firstResults);
                 final InternalSearchResponse internalResponse = searchPhaseController.merge(isScrollRequest, sortedShardDocs, firstResults,
-                    firstResults);
+                    firstResults, queryResultConsumer);
                 String scrollId = isScrollRequest ? TransportSearchHelper.buildScrollId(request.searchType(), firstResults) : null;
                 listener.onResponse(new SearchResponse(internalResponse, scrollId, expectedSuccessfulOps, successfulOps.get(),
                     buildTookInMillis(), buildShardFailures()));
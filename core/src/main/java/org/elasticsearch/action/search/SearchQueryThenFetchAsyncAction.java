@@ -68,6 +68,11 @@ class SearchQueryThenFetchAsyncAction extends AbstractSearchAsyncAction<QuerySea
         searchTransportService.sendExecuteQuery(node, request, listener);
     }
 
+    @Override
+    protected void consumeFirstPhaseResult(QuerySearchResultProvider result) {
+        queryResultConsumer.consume(result.queryResult());
+    }
+
     @Override
     protected void moveToSecondPhase() throws Exception {
         final boolean isScrollRequest = request.scroll() != null;
@@ -132,7 +137,7 @@ class SearchQueryThenFetchAsyncAction extends AbstractSearchAsyncAction<QuerySea
             public void doRun() throws IOException {
                 final boolean isScrollRequest = request.scroll() != null;
                 final InternalSearchResponse internalResponse = searchPhaseController.merge(isScrollRequest, sortedShardDocs, firstResults,
-                    fetchResults);
+                    fetchResults, queryResultConsumer);
                 String scrollId = isScrollRequest ? TransportSearchHelper.buildScrollId(request.searchType(), firstResults) : null;
                 listener.onResponse(new SearchResponse(internalResponse, scrollId, expectedSuccessfulOps,
                     successfulOps.get(), buildTookInMillis(), buildShardFailures()));
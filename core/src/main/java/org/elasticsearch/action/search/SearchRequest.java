@@ -19,6 +19,7 @@
 
 package org.elasticsearch.action.search;
 
+import org.elasticsearch.Version;
 import org.elasticsearch.action.ActionRequest;
 import org.elasticsearch.action.ActionRequestValidationException;
 import org.elasticsearch.action.IndicesRequest;
@@ -64,10 +65,18 @@ public final class SearchRequest extends ActionRequest<SearchRequest> implements
 
     private Scroll scroll;
 
+    private int batchedReduceSize = DEFAULT_BATCHED_REDUCE_SIZE;
+
+    private int preFilterShardSize = DEFAULT_PRE_FILTER_SHARD_SIZE;
+
     private String[] types = Strings.EMPTY_ARRAY;
 
     public static final IndicesOptions DEFAULT_INDICES_OPTIONS = IndicesOptions.strictExpandOpenAndForbidClosed();
 
+    public static final int DEFAULT_BATCHED_REDUCE_SIZE = 512;
+
+    public static final int DEFAULT_PRE_FILTER_SHARD_SIZE = 128;
+
     private IndicesOptions indicesOptions = DEFAULT_INDICES_OPTIONS;
 
     public SearchRequest() {
@@ -268,6 +277,47 @@ public final class SearchRequest extends ActionRequest<SearchRequest> implements
         return this.requestCache;
     }
 
+    /**
+     * Sets the number of shard results that should be reduced at once on the coordinating node. This value should be used as a
+     * protection mechanism to reduce the memory overhead per search request if the potential number of shards in the request
+     * can be large. Defaults to {@link #DEFAULT_BATCHED_REDUCE_SIZE}.
+     */
+    public SearchRequest batchedReduceSize(int batchedReduceSize) {
+        if (batchedReduceSize <= 1) {
+            throw new IllegalArgumentException("batchedReduceSize must be >= 2");
+        }
+        this.batchedReduceSize = batchedReduceSize;
+        return this;
+    }
+
+    /**
+     * The number of shard results that should be reduced at once on the coordinating node.
+     */
+    public int batchedReduceSize() {
+        return batchedReduceSize;
+    }
+
+    /**
+     * Sets the number of shards above which each shard is first asked whether the query can match any of its documents at all,
+     * based on the value ranges of its fields, so that the search only executes on shards that can match. This is cheap compared
+     * to executing the search and pays off for searches over time-based indices whose ranges don't overlap with most of the
+     * shards. Defaults to {@link #DEFAULT_PRE_FILTER_SHARD_SIZE}.
+     */
+    public SearchRequest preFilterShardSize(int preFilterShardSize) {
+        if (preFilterShardSize < 1) {
+            throw new IllegalArgumentException("preFilterShardSize must be >= 1");
+        }
+        this.preFilterShardSize = preFilterShardSize;
+        return this;
+    }
+
+    /**
+     * The number of shards above which each shard is first asked whether the query can match any of its documents.
+     */
+    public int preFilterShardSize() {
+        return preFilterShardSize;
+    }
+
     /**
      * @return true if the request only has suggest
      */
@@ -290,6 +340,10 @@ public final class SearchRequest extends ActionRequest<SearchRequest> implements
         types = in.readStringArray();
         indicesOptions = IndicesOptions.readIndicesOptions(in);
         requestCache = in.readOptionalBoolean();
+        if (in.getVersion().onOrAfter(Version.V_6_0_0_alpha1)) {
+            batchedReduceSize = in.readVInt();
+            preFilterShardSize = in.readVInt();
+        }
     }
 
     @Override
@@ -307,6 +361,10 @@ public final class SearchRequest extends ActionRequest<SearchRequest> implements
         out.writeStringArray(types);
         indicesOptions.writeIndicesOptions(out);
         out.writeOptionalBoolean(requestCache);
+        if (out.getVersion().onOrAfter(Version.V_6_0_0_alpha1)) {
+            out.writeVInt(batchedReduceSize);
+            out.writeVInt(preFilterShardSize);
+        }
     }
 
     @Override
@@ -326,13 +384,15 @@ public final class SearchRequest extends ActionRequest<SearchRequest> implements
                 Objects.equals(requestCache, that.requestCache)  &&
                 Objects.equals(scroll, that.scroll) &&
                 Arrays.equals(types, that.types) &&
-                Objects.equals(indicesOptions, that.indicesOptions);
+                Objects.equals(indicesOptions, that.indicesOptions) &&
+                batchedReduceSize == that.batchedReduceSize &&
+                preFilterShardSize == that.preFilterShardSize;
     }
 
     @Override
     public int hashCode() {
         return Objects.hash(searchType, Arrays.hashCode(indices), routing, preference, source, requestCache,
-                scroll, Arrays.hashCode(types), indicesOptions);
+                scroll, Arrays.hashCode(types), indicesOptions, batchedReduceSize, preFilterShardSize);
     }
 
     @Override
@@ -346,6 +406,8 @@ public final class SearchRequest extends ActionRequest<SearchRequest> implements
                 ", preference='" + preference + '\'' +
                 ", requestCache=" + requestCache +
                 ", scroll=" + scroll +
+                ", batchedReduceSize=" + batchedReduceSize +
+                ", preFilterShardSize=" + preFilterShardSize +
                 ", source=" + source + '}';
     }
 }
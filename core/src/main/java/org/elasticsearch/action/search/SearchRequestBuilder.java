@@ -370,6 +370,15 @@ public class SearchRequestBuilder extends ActionRequestBuilder<SearchRequest, Se
         return this;
     }
 
+    /**
+     * Controls if the total number of hits is counted accurately, or may be a lower bound when the request sorts by
+     * a prefix of the index sort. Defaults to <tt>true</tt>.
+     */
+    public SearchRequestBuilder setTrackTotalHits(boolean trackTotalHits) {
+        sourceBuilder().trackTotalHits(trackTotalHits);
+        return this;
+    }
+
     /**
      * Adds stored fields to load and return (note, it must be stored) as part of the search request.
      * To disable the stored fields entirely (source and metadata fields) use {@code storedField("_none_")}.
@@ -495,6 +504,25 @@ public class SearchRequestBuilder extends ActionRequestBuilder<SearchRequest, Se
         return this;
     }
 
+    /**
+     * Sets the number of shard results that should be reduced at once on the coordinating node. This value should be used as a
+     * protection mechanism to reduce the memory overhead per search request if the potential number of shards in the request
+     * can be large.
+     */
+    public SearchRequestBuilder setBatchedReduceSize(int batchedReduceSize) {
+        request.batchedReduceSize(batchedReduceSize);
+        return this;
+    }
+
+    /**
+     * Sets the number of shards above which each shard is first asked whether the query can match any of its documents at all,
+     * so that the search only executes on shards that can match.
+     */
+    public SearchRequestBuilder setPreFilterShardSize(int preFilterShardSize) {
+        request.preFilterShardSize(preFilterShardSize);
+        return this;
+    }
+
     /**
      * Should the query be profiled. Defaults to <code>false</code>
      */
@@ -19,9 +19,14 @@
 
 package org.elasticsearch.cluster.action.index;
 
+import org.elasticsearch.ExceptionsHelper;
+import org.elasticsearch.action.ActionListener;
 import org.elasticsearch.action.admin.indices.mapping.put.PutMappingRequestBuilder;
+import org.elasticsearch.action.admin.indices.mapping.put.PutMappingResponse;
+import org.elasticsearch.action.support.PlainActionFuture;
 import org.elasticsearch.client.Client;
 import org.elasticsearch.client.IndicesAdminClient;
+import org.elasticsearch.common.collect.Tuple;
 import org.elasticsearch.common.component.AbstractComponent;
 import org.elasticsearch.common.inject.Inject;
 import org.elasticsearch.common.settings.ClusterSettings;
@@ -30,44 +35,65 @@ import org.elasticsearch.common.settings.Setting.Property;
 import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.common.unit.TimeValue;
 import org.elasticsearch.index.Index;
+import org.elasticsearch.index.mapper.MapperException;
 import org.elasticsearch.index.mapper.MapperService;
 import org.elasticsearch.index.mapper.Mapping;
+import org.elasticsearch.threadpool.ThreadPool;
 
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeoutException;
 
 /**
  * Called by shards in the cluster when their mapping was dynamically updated and it needs to be updated
  * in the cluster state meta data (and broadcast to all members).
+ *
+ * Dynamic updates of the same index and type that shards of this node send concurrently are coalesced: while a put
+ * mapping request is in flight, or during {@link #INDICES_MAPPING_DYNAMIC_UPDATE_WINDOW_SETTING} after the first update,
+ * updates are merged into a single mapping that is sent to the master with one request, and all shards that contributed
+ * to it continue once it was applied.
  */
 public class MappingUpdatedAction extends AbstractComponent {
 
     public static final Setting<TimeValue> INDICES_MAPPING_DYNAMIC_TIMEOUT_SETTING =
         Setting.positiveTimeSetting("indices.mapping.dynamic_timeout", TimeValue.timeValueSeconds(30),
             Property.Dynamic, Property.NodeScope);
+    public static final Setting<TimeValue> INDICES_MAPPING_DYNAMIC_UPDATE_WINDOW_SETTING =
+        Setting.positiveTimeSetting("indices.mapping.dynamic_update_window", TimeValue.timeValueMillis(0),
+            Property.Dynamic, Property.NodeScope);
 
+    private final ThreadPool threadPool;
     private IndicesAdminClient client;
     private volatile TimeValue dynamicMappingUpdateTimeout;
+    private volatile TimeValue dynamicMappingUpdateWindow;
+
+    // guarded by this
+    private final Map<Tuple<Index, String>, PendingUpdates> pendingUpdates = new HashMap<>();
 
     @Inject
-    public MappingUpdatedAction(Settings settings, ClusterSettings clusterSettings) {
+    public MappingUpdatedAction(Settings settings, ClusterSettings clusterSettings, ThreadPool threadPool) {
         super(settings);
+        this.threadPool = threadPool;
         this.dynamicMappingUpdateTimeout = INDICES_MAPPING_DYNAMIC_TIMEOUT_SETTING.get(settings);
+        this.dynamicMappingUpdateWindow = INDICES_MAPPING_DYNAMIC_UPDATE_WINDOW_SETTING.get(settings);
         clusterSettings.addSettingsUpdateConsumer(INDICES_MAPPING_DYNAMIC_TIMEOUT_SETTING, this::setDynamicMappingUpdateTimeout);
+        clusterSettings.addSettingsUpdateConsumer(INDICES_MAPPING_DYNAMIC_UPDATE_WINDOW_SETTING, this::setDynamicMappingUpdateWindow);
     }
 
     private void setDynamicMappingUpdateTimeout(TimeValue dynamicMappingUpdateTimeout) {
         this.dynamicMappingUpdateTimeout = dynamicMappingUpdateTimeout;
     }
 
+    private void setDynamicMappingUpdateWindow(TimeValue dynamicMappingUpdateWindow) {
+        this.dynamicMappingUpdateWindow = dynamicMappingUpdateWindow;
+    }
 
     public void setClient(Client client) {
         this.client = client.admin().indices();
     }
 
     private PutMappingRequestBuilder updateMappingRequest(Index index, String type, Mapping mappingUpdate, final TimeValue timeout) {
-        if (type.equals(MapperService.DEFAULT_MAPPING)) {
-            throw new IllegalArgumentException("_default_ mapping should not be updated");
-        }
         return client.preparePutMapping().setConcreteIndex(index).setType(type).setSource(mappingUpdate.toString())
                 .setMasterNodeTimeout(timeout).setTimeout(timeout);
     }
@@ -83,11 +109,171 @@ public class MappingUpdatedAction extends AbstractComponent {
     /**
      * Update mappings synchronously on the master node, waiting for at most
      * {@code timeout}. When this method returns successfully mappings have
-     * been applied to the master node and propagated to data nodes.
+     * been applied to the master node and propagated to data nodes. The update
+     * may be sent to the master together with concurrent updates of other shards.
      */
     public void updateMappingOnMaster(Index index, String type, Mapping mappingUpdate, TimeValue timeout) throws Exception {
-        if (updateMappingRequest(index, type, mappingUpdate, timeout).get().isAcknowledged() == false) {
+        if (type.equals(MapperService.DEFAULT_MAPPING)) {
+            throw new IllegalArgumentException("_default_ mapping should not be updated");
+        }
+        final Batch batch = addToBatch(new Tuple<>(index, type), mappingUpdate, timeout);
+        if (batch == null) {
+            // conflicts with the updates that are waiting to be sent
+            sendUpdate(index, type, mappingUpdate, timeout);
+            return;
+        }
+        try {
+            if (batch.future.get().isAcknowledged() == false) {
+                throw new TimeoutException("Failed to acknowledge mapping update within [" + batch.timeout + "]");
+            }
+        } catch (ExecutionException e) {
+            if (batch.size == 1 || isRejectedMerge(e.getCause()) == false) {
+                // timeouts and master failures would hit our own update as well, don't multiply the requests and the wait
+                throw e;
+            }
+            // the merged update may have been rejected because of the update of another shard, try our own one on its own
+            logger.debug("failed to apply [{}] coalesced dynamic mapping updates of [{}][{}], sending update on its own",
+                e.getCause(), batch.size, index, type);
+            sendUpdate(index, type, mappingUpdate, timeout);
+        }
+    }
+
+    /**
+     * Returns <code>true</code> if the master rejected the mapping of a batch, as opposed to failing to apply it at all.
+     */
+    private static boolean isRejectedMerge(Throwable failure) {
+        final Throwable cause = ExceptionsHelper.unwrapCause(failure);
+        return cause instanceof IllegalArgumentException || cause instanceof MapperException;
+    }
+
+    private void sendUpdate(Index index, String type, Mapping mappingUpdate, TimeValue timeout) throws Exception {
+        PlainActionFuture<PutMappingResponse> future = PlainActionFuture.newFuture();
+        putMapping(index, type, mappingUpdate, timeout, future);
+        if (future.get().isAcknowledged() == false) {
             throw new TimeoutException("Failed to acknowledge mapping update within [" + timeout + "]");
         }
     }
+
+    // package private for testing
+    void putMapping(Index index, String type, Mapping mappingUpdate, TimeValue timeout, ActionListener<PutMappingResponse> listener) {
+        updateMappingRequest(index, type, mappingUpdate, timeout).execute(listener);
+    }
+
+    /**
+     * Merges the update into the batch that waits to be sent for the index and type, or starts a new one. Returns
+     * <code>null</code> if the update conflicts with the updates that are already waiting.
+     */
+    private Batch addToBatch(Tuple<Index, String> key, Mapping mappingUpdate, TimeValue timeout) {
+        final TimeValue window = dynamicMappingUpdateWindow;
+        final Batch batch;
+        synchronized (this) {
+            PendingUpdates pending = pendingUpdates.get(key);
+            if (pending == null) {
+                pending = new PendingUpdates();
+                pendingUpdates.put(key, pending);
+            }
+            if (pending.waiting != null) {
+                return pending.waiting.add(mappingUpdate) ? pending.waiting : null;
+            }
+            batch = new Batch(mappingUpdate, timeout);
+            pending.waiting = batch;
+            if (pending.inFlight || window.millis() > 0) {
+                // sent once the request in flight returns, or once the window is over
+                if (pending.inFlight == false) {
+                    threadPool.schedule(window, ThreadPool.Names.SAME, () -> sendWaiting(key));
+                }
+                return batch;
+            }
+        }
+        sendWaiting(key);
+        return batch;
+    }
+
+    private void sendWaiting(Tuple<Index, String> key) {
+        final Batch batch;
+        synchronized (this) {
+            PendingUpdates pending = pendingUpdates.get(key);
+            if (pending == null || pending.waiting == null || pending.inFlight) {
+                // already sent, or will be sent once the request in flight returns
+                return;
+            }
+            batch = pending.waiting;
+            pending.waiting = null;
+            pending.inFlight = true;
+        }
+        ActionListener<PutMappingResponse> listener = new ActionListener<PutMappingResponse>() {
+            @Override
+            public void onResponse(PutMappingResponse response) {
+                onBatchSent(key);
+                batch.future.onResponse(response);
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                onBatchSent(key);
+                batch.future.onFailure(e);
+            }
+        };
+        try {
+            putMapping(key.v1(), key.v2(), batch.mapping, batch.timeout, listener);
+        } catch (Exception e) {
+            listener.onFailure(e);
+        }
+    }
+
+    private void onBatchSent(Tuple<Index, String> key) {
+        final boolean sendNext;
+        synchronized (this) {
+            PendingUpdates pending = pendingUpdates.get(key);
+            assert pending != null && pending.inFlight;
+            pending.inFlight = false;
+            if (pending.waiting == null) {
+                pendingUpdates.remove(key);
+                sendNext = false;
+            } else {
+                sendNext = true;
+            }
+        }
+        if (sendNext) {
+            // updates kept coming in while the previous request was in flight, no need to wait for the window
+            sendWaiting(key);
+        }
+    }
+
+    // package private for testing
+    synchronized int waitingUpdates(Index index, String type) {
+        PendingUpdates pending = pendingUpdates.get(new Tuple<>(index, type));
+        return pending == null || pending.waiting == null ? 0 : pending.waiting.size;
+    }
+
+    private static final class PendingUpdates {
+        /** the batch that accepts new updates, if any */
+        Batch waiting;
+        /** whether a put mapping request for the index and type is in flight */
+        boolean inFlight;
+    }
+
+    private static final class Batch {
+        final PlainActionFuture<PutMappingResponse> future = PlainActionFuture.newFuture();
+        final TimeValue timeout;
+        Mapping mapping;
+        int size;
+
+        Batch(Mapping mapping, TimeValue timeout) {
+            this.mapping = mapping;
+            this.timeout = timeout;
+            this.size = 1;
+        }
+
+        // guarded by MappingUpdatedAction.this
+        boolean add(Mapping update) {
+            try {
+                mapping = mapping.merge(update, false);
+            } catch (IllegalArgumentException e) {
+                return false;
+            }
+            size++;
+            return true;
+        }
+    }
 }
@@ -356,6 +356,12 @@ public class MetaDataCreateIndexService extends AbstractComponent {
                                 throw mpe;
                             }
 
+                            if (request.shrinkFrom() == null) {
+                                // the sort fields of the index must be mapped by now, a shrunk index gets the mappings and the
+                                // index sort of its source index which are valid already
+                                indexService.getIndexSettings().getIndexSortConfig().validate(mapperService::fullName);
+                            }
+
                             final QueryShardContext queryShardContext = indexService.newQueryShardContext();
                             for (Alias alias : request.aliases()) {
                                 if (Strings.hasLength(alias.filter())) {
@@ -574,7 +580,7 @@ public class MetaDataCreateIndexService extends AbstractComponent {
         final List<String> nodesToAllocateOn = validateShrinkIndex(currentState, shrinkFromIndex.getName(),
             mappingKeys, shrinkIntoName, indexSettingsBuilder.build());
         final Predicate<String> analysisSimilarityPredicate = (s) -> s.startsWith("index.similarity.")
-            || s.startsWith("index.analysis.");
+            || s.startsWith("index.analysis.") || s.startsWith("index.sort.");
         indexSettingsBuilder
             // we use "i.r.a.initial_recovery" rather than "i.r.a.require|include" since we want the replica to allocate right away
             // once we are allocated.
@@ -583,7 +589,8 @@ public class MetaDataCreateIndexService extends AbstractComponent {
             // we only try once and then give up with a shrink index
             .put("index.allocation.max_retries", 1)
             // now copy all similarity / analysis settings - this overrides all settings from the user unless they
-            // wanna add extra settings
+            // wanna add extra settings. The index sort is copied as well since the merged segments of the source index are
+            // sorted by it
             .put(sourceMetaData.getSettings().filter(analysisSimilarityPredicate))
             .put(IndexMetaData.INDEX_SHRINK_SOURCE_NAME.getKey(), shrinkFromIndex.getName())
             .put(IndexMetaData.INDEX_SHRINK_SOURCE_UUID.getKey(), shrinkFromIndex.getUUID());
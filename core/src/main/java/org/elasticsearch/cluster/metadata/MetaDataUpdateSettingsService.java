@@ -163,12 +163,17 @@ public class MetaDataUpdateSettingsService extends AbstractComponent implements
         Settings.Builder skipppedSettings = Settings.builder();
 
         indexScopedSettings.validate(normalizedSettings);
-        // never allow to change the number of shards
+        // never allow to change the number of shards or the index sort, the segments of the index are sorted by it
         for (Map.Entry<String, String> entry : normalizedSettings.getAsMap().entrySet()) {
             if (entry.getKey().equals(IndexMetaData.SETTING_NUMBER_OF_SHARDS)) {
                 listener.onFailure(new IllegalArgumentException("can't change the number of shards for an index"));
                 return;
             }
+            if (entry.getKey().startsWith("index.sort.")) {
+                listener.onFailure(new IllegalArgumentException("can't change the index sort of an index, [" + entry.getKey() +
+                    "] can only be set on index creation"));
+                return;
+            }
             Setting setting = indexScopedSettings.get(entry.getKey());
             assert setting != null; // we already validated the normalized settings
             settingsForClosedIndices.put(entry.getKey(), entry.getValue());
@@ -28,11 +28,13 @@ import org.elasticsearch.common.io.stream.StreamOutput;
 import org.elasticsearch.common.util.set.Sets;
 import org.elasticsearch.index.Index;
 import org.elasticsearch.index.shard.ShardId;
+import org.elasticsearch.node.ResponseCollectorService;
 
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
@@ -245,6 +247,55 @@ public class IndexShardRoutingTable implements Iterable<ShardRouting> {
         return new PlainShardIterator(shardId, ordered);
     }
 
+    /**
+     * Returns an iterator over active and initializing shards, ordered by the adaptive replica selection rank of the nodes that hold
+     * the active shards, see {@link ResponseCollectorService.ComputedNodeStats#rank(long)}. Active shards on nodes that this node has
+     * no statistics for yet come first so that they get probed, ties are broken randomly and initializing shards are the last to
+     * iterate through.
+     *
+     * @param collector         the statistics of the search responses this node received
+     * @param nodeSearchCounts  the number of search requests this node has outstanding per node id, the count of the node of the
+     *                          first shard is incremented so that the other shards of the same search spread over the other copies
+     */
+    public ShardIterator activeInitializingShardsRankedIt(ResponseCollectorService collector, Map<String, Long> nodeSearchCounts) {
+        final List<ShardRouting> shuffled = shuffler.shuffle(activeShards);
+        if (shuffled.isEmpty()) {
+            return new PlainShardIterator(shardId, allInitializingShards);
+        }
+        final Map<String, Double> ranks = new HashMap<>(shuffled.size());
+        for (ShardRouting shard : shuffled) {
+            final String nodeId = shard.currentNodeId();
+            if (ranks.containsKey(nodeId) == false) {
+                final long outstandingRequests = nodeSearchCounts.getOrDefault(nodeId, 0L);
+                ranks.put(nodeId, collector.getNodeStatistics(nodeId).map(stats -> stats.rank(outstandingRequests)).orElse(null));
+            }
+        }
+        final ArrayList<ShardRouting> ordered = new ArrayList<>(activeShards.size() + allInitializingShards.size());
+        ordered.addAll(shuffled);
+        // a stable sort, copies with equal ranks keep their random order
+        ordered.sort((shard1, shard2) -> {
+            final Double rank1 = ranks.get(shard1.currentNodeId());
+            final Double rank2 = ranks.get(shard2.currentNodeId());
+            if (rank1 == null || rank2 == null) {
+                return rank1 == null ? (rank2 == null ? 0 : -1) : 1;
+            }
+            return Double.compare(rank1, rank2);
+        });
+        final ShardRouting winner = ordered.get(0);
+        nodeSearchCounts.merge(winner.currentNodeId(), 1L, Long::sum);
+        collector.getNodeStatistics(winner.currentNodeId()).ifPresent(winnerStats -> {
+            // move the other copies towards the winner so that they are tried again every now and then, their statistics would
+            // otherwise never change if they stopped getting requests after a slow spell
+            for (String nodeId : ranks.keySet()) {
+                if (nodeId.equals(winner.currentNodeId()) == false) {
+                    collector.adjustNodeStatistics(nodeId, winnerStats);
+                }
+            }
+        });
+        ordered.addAll(allInitializingShards);
+        return new PlainShardIterator(shardId, ordered);
+    }
+
     /**
      * Returns true if no primaries are active or initializing for this shard
      */
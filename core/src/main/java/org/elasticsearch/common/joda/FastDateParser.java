@@ -0,0 +1,219 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.elasticsearch.common.joda;
+
+import org.joda.time.DateTimeConstants;
+import org.joda.time.DateTimeZone;
+
+/**
+ * Hand written parsers for the most common date formats, which don't allocate and are a lot faster than parsing with joda.
+ * They return {@link #UNSUPPORTED} for all texts that they don't handle, including invalid dates, which have to be parsed
+ * with joda then. For all texts that they parse, they return the same as the equivalent joda parser.
+ */
+public final class FastDateParser {
+
+    /**
+     * Returned if a text isn't in one of the formats that the fast parsers handle.
+     */
+    public static final long UNSUPPORTED = Long.MIN_VALUE;
+
+    private FastDateParser() {
+    }
+
+    /**
+     * Parses ISO-8601 dates with an optional time and offset, like <code>2016-05-01</code>, <code>2016-05-01T12:34</code>,
+     * <code>2016-05-01T12:34:56Z</code> or <code>2016-05-01T12:34:56.789+02:00</code>. The fraction of the second can have
+     * up to nine digits, digits beyond milliseconds are dropped like joda does. This is the common subset of the
+     * <code>strict_date_optional_time</code>, <code>date_optional_time</code> and ISO8601 date time parsers.
+     *
+     * @param defaultZone the zone of dates without an offset, which are unsupported if the zone isn't fixed
+     * @return the milliseconds since the epoch or {@link #UNSUPPORTED}
+     */
+    public static long parseDateOptionalTime(String text, DateTimeZone defaultZone) {
+        final int length = text.length();
+        if (length < 10 || text.charAt(4) != '-' || text.charAt(7) != '-') {
+            return UNSUPPORTED;
+        }
+        final int year = digits(text, 0, 4);
+        final int month = digits(text, 5, 2);
+        final int day = digits(text, 8, 2);
+        if (year < 0 || month < 1 || month > 12 || day < 1 || day > daysInMonth(year, month)) {
+            return UNSUPPORTED;
+        }
+        long millis = daysSinceEpoch(year, month, day) * DateTimeConstants.MILLIS_PER_DAY;
+        int pos = 10;
+        if (pos < length) {
+            // a time is the only thing that can follow the date
+            if (text.charAt(pos) != 'T' || pos + 6 > length || text.charAt(pos + 3) != ':') {
+                return UNSUPPORTED;
+            }
+            final int hour = digits(text, pos + 1, 2);
+            final int minute = digits(text, pos + 4, 2);
+            if (hour < 0 || hour > 23 || minute < 0 || minute > 59) {
+                return UNSUPPORTED;
+            }
+            millis += hour * DateTimeConstants.MILLIS_PER_HOUR + minute * DateTimeConstants.MILLIS_PER_MINUTE;
+            pos += 6;
+            if (pos < length && text.charAt(pos) == ':') {
+                if (pos + 3 > length) {
+                    return UNSUPPORTED;
+                }
+                final int second = digits(text, pos + 1, 2);
+                if (second < 0 || second > 59) {
+                    return UNSUPPORTED;
+                }
+                millis += second * DateTimeConstants.MILLIS_PER_SECOND;
+                pos += 3;
+                if (pos < length && text.charAt(pos) == '.') {
+                    pos++;
+                    int fractionDigits = 0;
+                    int fraction = 0;
+                    while (pos < length && isDigit(text.charAt(pos))) {
+                        if (fractionDigits < 3) {
+                            fraction = fraction * 10 + text.charAt(pos) - '0';
+                        }
+                        fractionDigits++;
+                        pos++;
+                    }
+                    if (fractionDigits == 0 || fractionDigits > 9) {
+                        return UNSUPPORTED;
+                    }
+                    for (int i = fractionDigits; i < 3; i++) {
+                        fraction *= 10;
+                    }
+                    millis += fraction;
+                }
+            }
+        }
+        if (pos == length) {
+            if (defaultZone.isFixed() == false) {
+                // the offset would depend on the local time, including ambiguous and skipped local times at transitions
+                return UNSUPPORTED;
+            }
+            return millis - defaultZone.getOffset(millis);
+        }
+        // only a time can be followed by an offset
+        final char sign = text.charAt(pos);
+        if (sign == 'Z' && pos + 1 == length) {
+            return millis;
+        }
+        if ((sign != '+' && sign != '-') || pos + 6 != length || text.charAt(pos + 3) != ':') {
+            return UNSUPPORTED;
+        }
+        final int offsetHours = digits(text, pos + 1, 2);
+        final int offsetMinutes = digits(text, pos + 4, 2);
+        if (offsetHours < 0 || offsetHours > 23 || offsetMinutes < 0 || offsetMinutes > 59) {
+            return UNSUPPORTED;
+        }
+        final int offset = offsetHours * DateTimeConstants.MILLIS_PER_HOUR + offsetMinutes * DateTimeConstants.MILLIS_PER_MINUTE;
+        return sign == '+' ? millis - offset : millis + offset;
+    }
+
+    /**
+     * Parses milliseconds since the epoch, like <code>1462106096789</code> or <code>-1000</code>, the same as the
+     * <code>epoch_millis</code> parser. Only supports values with up to 18 digits.
+     *
+     * @return the milliseconds since the epoch or {@link #UNSUPPORTED}
+     */
+    public static long parseEpochMillis(String text) {
+        final int length = text.length();
+        final boolean negative = length > 0 && text.charAt(0) == '-';
+        int pos = negative ? 1 : 0;
+        if (length == pos || length - pos > 18) {
+            return UNSUPPORTED;
+        }
+        long millis = 0;
+        for (; pos < length; pos++) {
+            final char c = text.charAt(pos);
+            if (isDigit(c) == false) {
+                return UNSUPPORTED;
+            }
+            millis = millis * 10 + c - '0';
+        }
+        return negative ? -millis : millis;
+    }
+
+    /**
+     * Parses texts the same as <code>strict_date_optional_time||epoch_millis</code>, the default format of date fields. Four
+     * digit numbers are years for that format and not supported.
+     *
+     * @return the milliseconds since the epoch or {@link #UNSUPPORTED}
+     */
+    public static long parseDateOptionalTimeOrEpochMillis(String text) {
+        final long millis = parseDateOptionalTime(text, DateTimeZone.UTC);
+        if (millis != UNSUPPORTED) {
+            return millis;
+        }
+        final int digits = text.startsWith("-") ? text.length() - 1 : text.length();
+        if (digits == 4) {
+            return UNSUPPORTED;
+        }
+        return parseEpochMillis(text);
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    /**
+     * @return the value of the given number of digits at the given position, or <code>-1</code> if they aren't all digits
+     */
+    private static int digits(String text, int pos, int count) {
+        int value = 0;
+        for (int i = pos; i < pos + count; i++) {
+            final char c = text.charAt(i);
+            if (isDigit(c) == false) {
+                return -1;
+            }
+            value = value * 10 + c - '0';
+        }
+        return value;
+    }
+
+    private static boolean isLeapYear(int year) {
+        return (year & 3) == 0 && (year % 100 != 0 || year % 400 == 0);
+    }
+
+    private static int daysInMonth(int year, int month) {
+        switch (month) {
+            case 2:
+                return isLeapYear(year) ? 29 : 28;
+            case 4:
+            case 6:
+            case 9:
+            case 11:
+                return 30;
+            default:
+                return 31;
+        }
+    }
+
+    /**
+     * The days since 1970-01-01 of the given date of the proleptic gregorian calendar, which joda's ISO chronology uses.
+     */
+    private static long daysSinceEpoch(int year, int month, int day) {
+        // shifts the year to start in march, so that the leap day is the last day of the year
+        final int y = month <= 2 ? year - 1 : year;
+        final int era = (y >= 0 ? y : y - 399) / 400;
+        final int yearOfEra = y - era * 400;
+        final int dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+        final int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097L + dayOfEra - 719468;
+    }
+}
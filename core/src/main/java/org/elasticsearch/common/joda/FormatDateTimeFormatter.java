@@ -19,6 +19,7 @@
 
 package org.elasticsearch.common.joda;
 
+import org.joda.time.DateTimeZone;
 import org.joda.time.format.DateTimeFormatter;
 
 import java.util.Locale;
@@ -37,6 +38,8 @@ public class FormatDateTimeFormatter {
 
     private final Locale locale;
 
+    private final FastPath fastPath;
+
     public FormatDateTimeFormatter(String format, DateTimeFormatter parser, Locale locale) {
         this(format, parser, parser, locale);
     }
@@ -46,6 +49,7 @@ public class FormatDateTimeFormatter {
         this.locale = locale;
         this.printer = locale == null ? printer.withDefaultYear(1970) : printer.withLocale(locale).withDefaultYear(1970);
         this.parser = locale == null ? parser.withDefaultYear(1970) : parser.withLocale(locale).withDefaultYear(1970);
+        this.fastPath = this.parser.getZone() == DateTimeZone.UTC ? FastPath.forFormat(format) : FastPath.NONE;
     }
 
     public String format() {
@@ -63,4 +67,54 @@ public class FormatDateTimeFormatter {
     public Locale locale() {
         return locale;
     }
+
+    /**
+     * Parses the given text to milliseconds since the epoch, the same as {@link DateTimeFormatter#parseMillis(String)} of the
+     * {@link #parser()}. Texts in the most common formats are parsed by the {@link FastDateParser} if the format allows.
+     */
+    public long parseMillis(String text) {
+        final long millis;
+        switch (fastPath) {
+            case DATE_OPTIONAL_TIME:
+                millis = FastDateParser.parseDateOptionalTime(text, DateTimeZone.UTC);
+                break;
+            case EPOCH_MILLIS:
+                millis = FastDateParser.parseEpochMillis(text);
+                break;
+            case DATE_OPTIONAL_TIME_OR_EPOCH_MILLIS:
+                millis = FastDateParser.parseDateOptionalTimeOrEpochMillis(text);
+                break;
+            default:
+                millis = FastDateParser.UNSUPPORTED;
+                break;
+        }
+        return millis == FastDateParser.UNSUPPORTED ? parser.parseMillis(text) : millis;
+    }
+
+    private enum FastPath {
+        NONE,
+        DATE_OPTIONAL_TIME,
+        EPOCH_MILLIS,
+        DATE_OPTIONAL_TIME_OR_EPOCH_MILLIS;
+
+        static FastPath forFormat(String format) {
+            if (format == null) {
+                return NONE;
+            }
+            switch (format) {
+                case "strict_date_optional_time":
+                case "strictDateOptionalTime":
+                case "date_optional_time":
+                case "dateOptionalTime":
+                    return DATE_OPTIONAL_TIME;
+                case "epoch_millis":
+                    return EPOCH_MILLIS;
+                case "strict_date_optional_time||epoch_millis":
+                case "strictDateOptionalTime||epoch_millis":
+                    return DATE_OPTIONAL_TIME_OR_EPOCH_MILLIS;
+                default:
+                    return NONE;
+            }
+        }
+    }
 }
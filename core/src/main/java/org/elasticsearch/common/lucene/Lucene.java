@@ -35,10 +35,12 @@ import org.apache.lucene.index.IndexFormatTooNewException;
 import org.apache.lucene.index.IndexFormatTooOldException;
 import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.LeafReader;
 import org.apache.lucene.index.LeafReaderContext;
 import org.apache.lucene.index.NoMergePolicy;
 import org.apache.lucene.index.SegmentCommitInfo;
 import org.apache.lucene.index.SegmentInfos;
+import org.apache.lucene.search.CollectionTerminatedException;
 import org.apache.lucene.search.Collector;
 import org.apache.lucene.search.DocIdSetIterator;
 import org.apache.lucene.search.Explanation;
@@ -49,6 +51,7 @@ import org.apache.lucene.search.Query;
 import org.apache.lucene.search.ScoreDoc;
 import org.apache.lucene.search.Scorer;
 import org.apache.lucene.search.SimpleCollector;
+import org.apache.lucene.search.Sort;
 import org.apache.lucene.search.SortField;
 import org.apache.lucene.search.TimeLimitingCollector;
 import org.apache.lucene.search.TopDocs;
@@ -251,6 +254,15 @@ public class Lucene {
         return new EarlyTerminatingCollector(delegate, maxCountHits);
     }
 
+    /**
+     * Wraps <code>delegate</code> with a collector that stops collecting a segment sorted by <code>indexSort</code> after
+     * <code>numHits</code> documents of the segment
+     */
+    public static final SegmentEarlyTerminatingCollector wrapSegmentEarlyTerminatingCollector(final Collector delegate, Sort indexSort,
+                                                                                              int numHits) {
+        return new SegmentEarlyTerminatingCollector(delegate, indexSort, numHits);
+    }
+
     /**
      * Wraps <code>delegate</code> with a time limited collector with a timeout of <code>timeoutInMillis</code>
      */
@@ -573,6 +585,65 @@ public class Lucene {
         }
     }
 
+    /**
+     * A collector that stops collecting a segment by throwing {@link CollectionTerminatedException} once <code>numHits</code>
+     * documents of the segment were collected. The top hits of the delegate are still correct if the documents of the segment
+     * are sorted by its sort, since the documents that follow can't compete anymore. Only segments whose
+     * {@link LeafReader#getIndexSort() index sort} is <code>indexSort</code> are terminated early: segments that haven't been
+     * merged yet are not sorted and are collected entirely.
+     */
+    public static final class SegmentEarlyTerminatingCollector extends SimpleCollector {
+
+        private final Sort indexSort;
+        private final int numHits;
+        private final Collector delegate;
+
+        private int segmentCount = 0;
+        private boolean segmentSorted = false;
+        private boolean terminatedEarly = false;
+        private LeafCollector leafCollector;
+
+        SegmentEarlyTerminatingCollector(final Collector delegate, Sort indexSort, int numHits) {
+            this.indexSort = Objects.requireNonNull(indexSort);
+            this.numHits = numHits;
+            this.delegate = Objects.requireNonNull(delegate);
+        }
+
+        /**
+         * Whether the collection of at least one segment stopped before all its matching documents were collected.
+         */
+        public boolean terminatedEarly() {
+            return terminatedEarly;
+        }
+
+        @Override
+        public void setScorer(Scorer scorer) throws IOException {
+            leafCollector.setScorer(scorer);
+        }
+
+        @Override
+        public void collect(int doc) throws IOException {
+            if (segmentSorted && segmentCount >= numHits) {
+                terminatedEarly = true;
+                throw new CollectionTerminatedException();
+            }
+            leafCollector.collect(doc);
+            segmentCount++;
+        }
+
+        @Override
+        public void doSetNextReader(LeafReaderContext atomicReaderContext) throws IOException {
+            segmentCount = 0;
+            segmentSorted = indexSort.equals(atomicReaderContext.reader().getIndexSort());
+            leafCollector = delegate.getLeafCollector(atomicReaderContext);
+        }
+
+        @Override
+        public boolean needsScores() {
+            return delegate.needsScores();
+        }
+    }
+
     private Lucene() {
 
     }
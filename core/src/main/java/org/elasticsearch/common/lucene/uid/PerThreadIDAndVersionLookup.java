@@ -53,6 +53,9 @@ final class PerThreadIDAndVersionLookup {
     private final NumericDocValues versions;
     /** Reused for iteration (when the term exists) */
     private PostingsEnum docsEnum;
+    /** smallest and largest uid of the segment, used to skip uids that can't be in it */
+    private final BytesRef minId;
+    private final BytesRef maxId;
 
     /**
      * Initialize lookup for the provided segment
@@ -60,6 +63,8 @@ final class PerThreadIDAndVersionLookup {
     public PerThreadIDAndVersionLookup(LeafReader reader) throws IOException {
         TermsEnum termsEnum = null;
         NumericDocValues versions = null;
+        BytesRef minId = null;
+        BytesRef maxId = null;
 
         Fields fields = reader.fields();
         if (fields != null) {
@@ -69,31 +74,83 @@ final class PerThreadIDAndVersionLookup {
                 assert termsEnum != null;
                 versions = reader.getNumericDocValues(VersionFieldMapper.NAME);
                 assert versions != null;
+                minId = BytesRef.deepCopyOf(terms.getMin());
+                maxId = BytesRef.deepCopyOf(terms.getMax());
             }
         }
 
         this.versions = versions;
         this.termsEnum = termsEnum;
+        this.minId = minId;
+        this.maxId = maxId;
     }
 
     /** Return null if id is not found. */
     public DocIdAndVersion lookup(BytesRef id, Bits liveDocs, LeafReaderContext context) throws IOException {
         if (termsEnum.seekExact(id)) {
-            // there may be more than one matching docID, in the case of nested docs, so we want the last one:
-            docsEnum = termsEnum.postings(docsEnum, 0);
-            int docID = DocIdSetIterator.NO_MORE_DOCS;
-            for (int d = docsEnum.nextDoc(); d != DocIdSetIterator.NO_MORE_DOCS; d = docsEnum.nextDoc()) {
-                if (liveDocs != null && liveDocs.get(d) == false) {
-                    continue;
+            return current(liveDocs, context);
+        }
+
+        return null;
+    }
+
+    /**
+     * Looks up the ids at the given positions, which must be sorted by id, walking the terms dictionary once in id order instead of
+     * seeking every id on its own. Ids that are outside of the range of ids of this segment are skipped without touching the terms
+     * dictionary. Found ids are stored in <code>results</code> at their position, the positions of ids that weren't found are moved
+     * to the front of <code>positions</code> in order and their number is returned.
+     */
+    int lookup(BytesRef[] ids, int[] positions, int numPositions, DocIdAndVersion[] results, Bits liveDocs,
+               LeafReaderContext context) throws IOException {
+        if (termsEnum == null) {
+            return numPositions;
+        }
+        int numMissing = 0;
+        // the term the enum is positioned on, null if we haven't seeked yet
+        BytesRef current = null;
+        boolean exhausted = false;
+        for (int i = 0; i < numPositions; i++) {
+            final int position = positions[i];
+            final BytesRef id = ids[position];
+            DocIdAndVersion result = null;
+            if (exhausted == false && id.compareTo(minId) >= 0 && id.compareTo(maxId) <= 0) {
+                if (current == null || current.compareTo(id) < 0) {
+                    final TermsEnum.SeekStatus status = termsEnum.seekCeil(id);
+                    if (status == TermsEnum.SeekStatus.END) {
+                        exhausted = true;
+                        current = null;
+                    } else {
+                        current = termsEnum.term();
+                    }
+                }
+                if (current != null && current.equals(id)) {
+                    result = current(liveDocs, context);
                 }
-                docID = d;
             }
+            if (result == null) {
+                positions[numMissing++] = position;
+            } else {
+                results[position] = result;
+            }
+        }
+        return numMissing;
+    }
 
-            if (docID != DocIdSetIterator.NO_MORE_DOCS) {
-                return new DocIdAndVersion(docID, versions.get(docID), context);
+    /** Returns the last live document of the term the terms enum is positioned on, or null if all its documents are deleted. */
+    private DocIdAndVersion current(Bits liveDocs, LeafReaderContext context) throws IOException {
+        // there may be more than one matching docID, in the case of nested docs, so we want the last one:
+        docsEnum = termsEnum.postings(docsEnum, 0);
+        int docID = DocIdSetIterator.NO_MORE_DOCS;
+        for (int d = docsEnum.nextDoc(); d != DocIdSetIterator.NO_MORE_DOCS; d = docsEnum.nextDoc()) {
+            if (liveDocs != null && liveDocs.get(d) == false) {
+                continue;
             }
+            docID = d;
         }
 
+        if (docID != DocIdSetIterator.NO_MORE_DOCS) {
+            return new DocIdAndVersion(docID, versions.get(docID), context);
+        }
         return null;
     }
 }
@@ -24,7 +24,9 @@ import org.apache.lucene.index.LeafReader;
 import org.apache.lucene.index.LeafReader.CoreClosedListener;
 import org.apache.lucene.index.LeafReaderContext;
 import org.apache.lucene.index.Term;
+import org.apache.lucene.util.BytesRef;
 import org.apache.lucene.util.CloseableThreadLocal;
+import org.apache.lucene.util.InPlaceMergeSorter;
 import org.elasticsearch.common.util.concurrent.ConcurrentCollections;
 import org.elasticsearch.index.mapper.UidFieldMapper;
 
@@ -133,6 +135,65 @@ public class Versions {
         return null;
     }
 
+    /**
+     * Load the internal doc IDs and versions for many uids at once. The uids are sorted and every segment's terms dictionary is walked
+     * once in uid order, skipping uids that are outside of the range of uids of the segment and uids that were already found in a
+     * newer segment. This is cheaper than calling {@link #loadDocIdAndVersion(IndexReader, Term)} for every uid when looking up
+     * many uids. Returns an array with, for every uid, null if it wasn't found or its doc ID and version otherwise.
+     */
+    public static DocIdAndVersion[] loadDocIdAndVersions(IndexReader reader, List<Term> terms) throws IOException {
+        final DocIdAndVersion[] results = new DocIdAndVersion[terms.size()];
+        List<LeafReaderContext> leaves = reader.leaves();
+        if (leaves.isEmpty() || terms.isEmpty()) {
+            return results;
+        }
+        final BytesRef[] ids = new BytesRef[terms.size()];
+        for (int i = 0; i < ids.length; i++) {
+            assert terms.get(i).field().equals(UidFieldMapper.NAME);
+            ids[i] = terms.get(i).bytes();
+        }
+        final int[] positions = new int[ids.length];
+        for (int i = 0; i < positions.length; i++) {
+            positions[i] = i;
+        }
+        new InPlaceMergeSorter() {
+            @Override
+            protected void swap(int i, int j) {
+                final int tmp = positions[i];
+                positions[i] = positions[j];
+                positions[j] = tmp;
+            }
+
+            @Override
+            protected int compare(int i, int j) {
+                return ids[positions[i]].compareTo(ids[positions[j]]);
+            }
+        }.sort(0, positions.length);
+        int numMissing = positions.length;
+        // iterate backwards to optimize for the frequently updated documents
+        // which are likely to be in the last segments
+        for (int i = leaves.size() - 1; i >= 0 && numMissing > 0; i--) {
+            LeafReaderContext context = leaves.get(i);
+            LeafReader leaf = context.reader();
+            PerThreadIDAndVersionLookup lookup = getLookupState(leaf);
+            numMissing = lookup.lookup(ids, positions, numMissing, results, leaf.getLiveDocs(), context);
+        }
+        return results;
+    }
+
+    /**
+     * Load the versions for many uids at once, see {@link #loadDocIdAndVersions(IndexReader, List)}. Returns an array with, for
+     * every uid, {@link #NOT_FOUND} if no matching doc exists or its version otherwise.
+     */
+    public static long[] loadVersions(IndexReader reader, List<Term> terms) throws IOException {
+        final DocIdAndVersion[] docIdAndVersions = loadDocIdAndVersions(reader, terms);
+        final long[] versions = new long[docIdAndVersions.length];
+        for (int i = 0; i < versions.length; i++) {
+            versions[i] = docIdAndVersions[i] == null ? NOT_FOUND : docIdAndVersions[i].version;
+        }
+        return versions;
+    }
+
     /**
      * Load the version for the uid from the reader, returning<ul>
      * <li>{@link #NOT_FOUND} if no matching doc exists,
@@ -19,6 +19,7 @@
 package org.elasticsearch.common.settings;
 
 import org.elasticsearch.action.admin.indices.close.TransportCloseIndexAction;
+import org.elasticsearch.action.bulk.TransportShardBulkAction;
 import org.elasticsearch.action.search.TransportSearchAction;
 import org.elasticsearch.action.support.AutoCreateIndex;
 import org.elasticsearch.action.support.DestructiveOperations;
@@ -32,6 +33,7 @@ import org.elasticsearch.cluster.InternalClusterInfoService;
 import org.elasticsearch.cluster.NodeConnectionsService;
 import org.elasticsearch.cluster.action.index.MappingUpdatedAction;
 import org.elasticsearch.cluster.metadata.MetaData;
+import org.elasticsearch.cluster.routing.OperationRouting;
 import org.elasticsearch.cluster.routing.allocation.DiskThresholdSettings;
 import org.elasticsearch.cluster.routing.allocation.allocator.BalancedShardsAllocator;
 import org.elasticsearch.cluster.routing.allocation.decider.AwarenessAllocationDecider;
@@ -65,7 +67,9 @@ import org.elasticsearch.gateway.PrimaryShardAllocator;
 import org.elasticsearch.http.HttpTransportSettings;
 import org.elasticsearch.index.IndexSettings;
 import org.elasticsearch.index.store.IndexStoreConfig;
+import org.elasticsearch.index.translog.TranslogSyncCoordinator;
 import org.elasticsearch.indices.IndexingMemoryController;
+import org.elasticsearch.indices.MergeIOController;
 import org.elasticsearch.indices.IndicesQueryCache;
 import org.elasticsearch.indices.IndicesRequestCache;
 import org.elasticsearch.indices.IndicesService;
@@ -75,6 +79,7 @@ import org.elasticsearch.indices.fielddata.cache.IndicesFieldDataCache;
 import org.elasticsearch.indices.recovery.RecoverySettings;
 import org.elasticsearch.indices.store.IndicesStore;
 import org.elasticsearch.indices.ttl.IndicesTTLService;
+import org.elasticsearch.ingest.PipelineExecutionService;
 import org.elasticsearch.monitor.fs.FsService;
 import org.elasticsearch.monitor.jvm.JvmGcMonitorService;
 import org.elasticsearch.monitor.jvm.JvmService;
@@ -170,6 +175,7 @@ public final class ClusterSettings extends AbstractScopedSettings {
                     TransportClientNodesService.CLIENT_TRANSPORT_IGNORE_CLUSTER_NAME,
                     TransportClientNodesService.CLIENT_TRANSPORT_SNIFF,
                     AwarenessAllocationDecider.CLUSTER_ROUTING_ALLOCATION_AWARENESS_FORCE_GROUP_SETTING,
+                    OperationRouting.USE_ADAPTIVE_REPLICA_SELECTION_SETTING,
                     BalancedShardsAllocator.INDEX_BALANCE_FACTOR_SETTING,
                     BalancedShardsAllocator.SHARD_BALANCE_FACTOR_SETTING,
                     BalancedShardsAllocator.THRESHOLD_SETTING,
@@ -190,6 +196,7 @@ public final class ClusterSettings extends AbstractScopedSettings {
                     IndicesQueryCache.INDICES_QUERIES_CACHE_ALL_SEGMENTS_SETTING,
                     IndicesTTLService.INDICES_TTL_INTERVAL_SETTING,
                     MappingUpdatedAction.INDICES_MAPPING_DYNAMIC_TIMEOUT_SETTING,
+                    MappingUpdatedAction.INDICES_MAPPING_DYNAMIC_UPDATE_WINDOW_SETTING,
                     MetaData.SETTING_READ_ONLY_SETTING,
                     RecoverySettings.INDICES_RECOVERY_MAX_BYTES_PER_SEC_SETTING,
                     RecoverySettings.INDICES_RECOVERY_RETRY_DELAY_STATE_SYNC_SETTING,
@@ -404,6 +411,17 @@ public final class ClusterSettings extends AbstractScopedSettings {
                     IndexingMemoryController.MAX_INDEX_BUFFER_SIZE_SETTING,
                     IndexingMemoryController.SHARD_INACTIVE_TIME_SETTING,
                     IndexingMemoryController.SHARD_MEMORY_INTERVAL_TIME_SETTING,
+                    IndexingMemoryController.INDEX_BUFFER_ALLOCATION_SETTING,
+                    MergeIOController.MERGE_IO_CONTROL_ENABLED_SETTING,
+                    MergeIOController.MERGE_IO_CONTROL_INTERVAL_SETTING,
+                    MergeIOController.MERGE_IO_CONTROL_MIN_BYTES_PER_SEC_SETTING,
+                    MergeIOController.MERGE_IO_CONTROL_MAX_BYTES_PER_SEC_SETTING,
+                    MergeIOController.MERGE_IO_CONTROL_TARGET_UTILIZATION_SETTING,
+                    MergeIOController.MERGE_IO_CONTROL_MAX_QUEUE_DEPTH_SETTING,
+                    TranslogSyncCoordinator.MAX_WAIT_SETTING,
+                    TransportShardBulkAction.PARALLEL_PARSING_ENABLED_SETTING,
+                    TransportShardBulkAction.PARALLEL_PARSING_BATCH_SIZE_SETTING,
+                    PipelineExecutionService.BULK_MAX_CONCURRENT_DOCUMENTS_SETTING,
                     ResourceWatcherService.ENABLED,
                     ResourceWatcherService.RELOAD_INTERVAL_HIGH,
                     ResourceWatcherService.RELOAD_INTERVAL_MEDIUM,
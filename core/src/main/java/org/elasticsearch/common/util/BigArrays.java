@@ -429,6 +429,14 @@ public class BigArrays implements Releasable {
         return this.circuitBreakingInstance;
     }
 
+    /**
+     * Return an instance of this BigArrays class that shares the page recycler of this instance but doesn't account its memory
+     * on the request circuit breaker, for long lived structures whose memory is tracked elsewhere
+     */
+    public BigArrays withoutCircuitBreaking() {
+        return new BigArrays(recycler, null, false);
+    }
+
     public CircuitBreakerService breakerService() {
         return this.circuitBreakingInstance.breakerService;
     }
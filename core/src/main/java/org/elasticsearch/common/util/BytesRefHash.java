@@ -159,6 +159,13 @@ public final class BytesRefHash extends AbstractHash {
         reset(code, id);
     }
 
+    /**
+     * Returns the number of bytes held by the arrays backing this hash table.
+     */
+    public long ramBytesUsed() {
+        return ids.ramBytesUsed() + startOffsets.ramBytesUsed() + bytes.ramBytesUsed() + hashes.ramBytesUsed();
+    }
+
     @Override
     public void close() {
         try (Releasable releasable = Releasables.wrap(bytes, hashes, startOffsets)) {
@@ -0,0 +1,136 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.common.util.concurrent;
+
+import org.elasticsearch.ExceptionsHelper;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntConsumer;
+
+/**
+ * Runs a task for every slot of a range, split into batches that are claimed by the calling thread and by up to a given number
+ * of helper tasks forked to an executor. The calling thread always takes part and only ever waits for batches that another
+ * thread has already started, never for helper tasks that are still queued. This makes it safe to use from a thread of a
+ * saturated pool: if no helper gets to run, the calling thread simply processes all batches itself.
+ */
+public final class ParallelBatchRunner {
+
+    private final Executor executor;
+    private final int batchSize;
+    private final int maxHelpers;
+
+    /**
+     * @param executor   the executor helper tasks are forked to
+     * @param batchSize  the number of slots claimed at once
+     * @param maxHelpers the maximum number of helper tasks forked per run, in addition to the calling thread
+     */
+    public ParallelBatchRunner(Executor executor, int batchSize, int maxHelpers) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("batchSize must be >= 1 but was [" + batchSize + "]");
+        }
+        if (maxHelpers < 0) {
+            throw new IllegalArgumentException("maxHelpers must be >= 0 but was [" + maxHelpers + "]");
+        }
+        this.executor = executor;
+        this.batchSize = batchSize;
+        this.maxHelpers = maxHelpers;
+    }
+
+    /**
+     * Calls the given task once for every slot in <code>[0, count)</code> and returns once all calls returned. The task must handle
+     * its own failures, exceptions and errors that escape the task are rethrown on the calling thread after all batches are done.
+     */
+    public void run(int count, IntConsumer task) throws InterruptedException {
+        final int numBatches = (count + batchSize - 1) / batchSize;
+        final int numHelpers = Math.min(maxHelpers, numBatches - 1);
+        if (numHelpers <= 0) {
+            for (int i = 0; i < count; i++) {
+                task.accept(i);
+            }
+            return;
+        }
+        final Run run = new Run(count, numBatches, task);
+        for (int i = 0; i < numHelpers; i++) {
+            try {
+                executor.execute(run::processBatches);
+            } catch (EsRejectedExecutionException e) {
+                // fine - the calling thread picks up the batches
+                break;
+            }
+        }
+        run.processBatches();
+        run.awaitStartedBatches();
+    }
+
+    private final class Run {
+        private final int count;
+        private final int numBatches;
+        private final IntConsumer task;
+        private final AtomicInteger nextBatch = new AtomicInteger();
+        private int completedBatches = 0;
+        private Throwable failure;
+
+        Run(int count, int numBatches, IntConsumer task) {
+            this.count = count;
+            this.numBatches = numBatches;
+            this.task = task;
+        }
+
+        void processBatches() {
+            int batch;
+            while ((batch = nextBatch.getAndIncrement()) < numBatches) {
+                Throwable batchFailure = null;
+                try {
+                    final int end = Math.min(count, (batch + 1) * batchSize);
+                    for (int i = batch * batchSize; i < end; i++) {
+                        task.accept(i);
+                    }
+                } catch (Exception | Error e) {
+                    // errors too, the calling thread rethrows them
+                    batchFailure = e;
+                } finally {
+                    // the batch must count as completed whatever happened, or the calling thread would wait forever
+                    onBatchCompleted(batchFailure);
+                }
+            }
+        }
+
+        private synchronized void onBatchCompleted(Throwable batchFailure) {
+            if (batchFailure != null) {
+                failure = ExceptionsHelper.useOrSuppress(failure, batchFailure);
+            }
+            if (++completedBatches == numBatches) {
+                notifyAll();
+            }
+        }
+
+        synchronized void awaitStartedBatches() throws InterruptedException {
+            // all batches were claimed by the time the calling thread got here, so we only wait for running ones
+            while (completedBatches < numBatches) {
+                wait();
+            }
+            if (failure instanceof Error) {
+                throw (Error) failure;
+            }
+            ExceptionsHelper.reThrowIfNotNull(failure);
+        }
+    }
+}
@@ -89,6 +89,7 @@ import java.util.Set;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.LongSupplier;
 
 import static java.util.Collections.emptyMap;
 import static java.util.Collections.unmodifiableMap;
@@ -343,7 +344,7 @@ public class IndexService extends AbstractIndexComponent implements IndicesClust
             } else {
                 indexShard = new IndexShard(routing, this.indexSettings, path, store, indexCache, mapperService, similarityService,
                     indexFieldData, engineFactory, eventListener, searcherWrapper, threadPool, bigArrays, engineWarmer,
-                    searchOperationListeners, indexingOperationListeners);
+                    searchOperationListeners, indexingOperationListeners, nodeServicesProvider.getTranslogSyncCoordinator());
             }
             eventListener.indexShardStateChanged(indexShard, null, indexShard.state(), "shard created");
             eventListener.afterIndexShardCreated(indexShard);
@@ -449,11 +450,19 @@ public class IndexService extends AbstractIndexComponent implements IndicesClust
      * {@link QueryShardContext#setTypes(String...)}
      */
     public QueryShardContext newQueryShardContext(IndexReader indexReader) {
+        return newQueryShardContext(indexReader, System::currentTimeMillis);
+    }
+
+    /**
+     * Creates a new QueryShardContext like {@link #newQueryShardContext(IndexReader)} that resolves <code>now</code> to the given
+     * time if there is no current search context.
+     */
+    public QueryShardContext newQueryShardContext(IndexReader indexReader, LongSupplier nowInMillis) {
         return new QueryShardContext(
                 indexSettings, indexCache.bitsetFilterCache(), indexFieldData, mapperService(),
                 similarityService(), nodeServicesProvider.getScriptService(), nodeServicesProvider.getIndicesQueriesRegistry(),
                 nodeServicesProvider.getClient(), indexReader,
-                nodeServicesProvider.getClusterService().state()
+                nodeServicesProvider.getClusterService().state(), nowInMillis
         );
     }
 
@@ -728,9 +737,7 @@ public class IndexService extends AbstractIndexComponent implements IndicesClust
                     case STARTED:
                     case RELOCATED:
                         try {
-                            if (shard.isRefreshNeeded()) {
-                                shard.refresh("schedule");
-                            }
+                            shard.scheduledRefresh();
                         } catch (EngineClosedException | AlreadyClosedException ex) {
                             // fine - continue;
                         }
@@ -67,6 +67,15 @@ public final class IndexSettings {
     public static final Setting<Translog.Durability> INDEX_TRANSLOG_DURABILITY_SETTING =
         new Setting<>("index.translog.durability", Translog.Durability.REQUEST.name(),
             (value) -> Translog.Durability.valueOf(value.toUpperCase(Locale.ROOT)), Property.Dynamic, Property.IndexScope);
+    public static final Setting<Translog.Codec> INDEX_TRANSLOG_CODEC_SETTING =
+        new Setting<>("index.translog.codec", Translog.Codec.DEFAULT.name(),
+            (value) -> Translog.Codec.valueOf(value.toUpperCase(Locale.ROOT)), Property.IndexScope);
+    /**
+     * How many translog locations of recently indexed documents a shard remembers to serve realtime gets from the translog
+     * instead of refreshing. <code>0</code> makes every realtime get of a document that isn't visible to searches yet refresh.
+     */
+    public static final Setting<Integer> INDEX_TRANSLOG_REALTIME_GET_CACHE_SIZE_SETTING =
+        Setting.intSetting("index.translog.realtime_get_cache_size", 1000, 0, Property.IndexScope);
     public static final Setting<Boolean> INDEX_WARMER_ENABLED_SETTING =
         Setting.boolSetting("index.warmer.enabled", true, Property.Dynamic, Property.IndexScope);
     public static final Setting<Boolean> INDEX_TTL_DISABLE_PURGE_SETTING =
@@ -103,6 +112,19 @@ public final class IndexSettings {
     public static final Setting<TimeValue> INDEX_REFRESH_INTERVAL_SETTING =
         Setting.timeSetting("index.refresh_interval", DEFAULT_REFRESH_INTERVAL, new TimeValue(-1, TimeUnit.MILLISECONDS),
             Property.Dynamic, Property.IndexScope);
+    /**
+     * Index setting describing after how long without searches a shard is considered search idle. Search idle shards skip scheduled
+     * refreshes and are refreshed by the next search instead. <tt>-1</tt>, the default, disables search idle detection.
+     */
+    public static final Setting<TimeValue> INDEX_SEARCH_IDLE_AFTER_SETTING =
+        Setting.timeSetting("index.search.idle.after", new TimeValue(-1, TimeUnit.MILLISECONDS),
+            new TimeValue(-1, TimeUnit.MILLISECONDS), Property.Dynamic, Property.IndexScope);
+    /**
+     * Index setting describing the maximum number of threads that a search may use to search the segments of a shard concurrently.
+     * <tt>1</tt>, the default, searches the segments one after the other on the search thread.
+     */
+    public static final Setting<Integer> INDEX_SEARCH_CONCURRENCY_SETTING = Setting.intSetting("index.search.concurrency", 1, 1,
+        Property.Dynamic, Property.IndexScope);
     public static final Setting<ByteSizeValue> INDEX_TRANSLOG_FLUSH_THRESHOLD_SIZE_SETTING =
         Setting.byteSizeSetting("index.translog.flush_threshold_size", new ByteSizeValue(512, ByteSizeUnit.MB), Property.Dynamic,
             Property.IndexScope);
@@ -148,9 +170,12 @@ public final class IndexSettings {
     private volatile Translog.Durability durability;
     private final TimeValue syncInterval;
     private volatile TimeValue refreshInterval;
+    private volatile TimeValue searchIdleAfter;
+    private volatile int searchConcurrency;
     private volatile ByteSizeValue flushThresholdSize;
     private final MergeSchedulerConfig mergeSchedulerConfig;
     private final MergePolicyConfig mergePolicyConfig;
+    private final IndexSortConfig indexSortConfig;
     private final IndexScopedSettings scopedSettings;
     private long gcDeletesInMillis = DEFAULT_GC_DELETES.millis();
     private volatile boolean warmerEnabled;
@@ -243,6 +268,8 @@ public final class IndexSettings {
         this.durability = scopedSettings.get(INDEX_TRANSLOG_DURABILITY_SETTING);
         syncInterval = INDEX_TRANSLOG_SYNC_INTERVAL_SETTING.get(settings);
         refreshInterval = scopedSettings.get(INDEX_REFRESH_INTERVAL_SETTING);
+        searchIdleAfter = scopedSettings.get(INDEX_SEARCH_IDLE_AFTER_SETTING);
+        searchConcurrency = scopedSettings.get(INDEX_SEARCH_CONCURRENCY_SETTING);
         flushThresholdSize = scopedSettings.get(INDEX_TRANSLOG_FLUSH_THRESHOLD_SIZE_SETTING);
         mergeSchedulerConfig = new MergeSchedulerConfig(this);
         gcDeletesInMillis = scopedSettings.get(INDEX_GC_DELETES_SETTING).getMillis();
@@ -253,6 +280,7 @@ public final class IndexSettings {
         maxRefreshListeners = scopedSettings.get(MAX_REFRESH_LISTENERS_PER_SHARD);
         maxSlicesPerScroll = scopedSettings.get(MAX_SLICES_PER_SCROLL);
         this.mergePolicyConfig = new MergePolicyConfig(logger, this);
+        this.indexSortConfig = new IndexSortConfig(this);
         assert indexNameMatcher.test(indexMetaData.getIndex().getName());
 
         scopedSettings.addSettingsUpdateConsumer(MergePolicyConfig.INDEX_COMPOUND_FORMAT_SETTING, mergePolicyConfig::setNoCFSRatio);
@@ -275,6 +303,8 @@ public final class IndexSettings {
         scopedSettings.addSettingsUpdateConsumer(INDEX_GC_DELETES_SETTING, this::setGCDeletes);
         scopedSettings.addSettingsUpdateConsumer(INDEX_TRANSLOG_FLUSH_THRESHOLD_SIZE_SETTING, this::setTranslogFlushThresholdSize);
         scopedSettings.addSettingsUpdateConsumer(INDEX_REFRESH_INTERVAL_SETTING, this::setRefreshInterval);
+        scopedSettings.addSettingsUpdateConsumer(INDEX_SEARCH_IDLE_AFTER_SETTING, this::setSearchIdleAfter);
+        scopedSettings.addSettingsUpdateConsumer(INDEX_SEARCH_CONCURRENCY_SETTING, this::setSearchConcurrency);
         scopedSettings.addSettingsUpdateConsumer(MAX_REFRESH_LISTENERS_PER_SHARD, this::setMaxRefreshListeners);
         scopedSettings.addSettingsUpdateConsumer(MAX_SLICES_PER_SCROLL, this::setMaxSlicesPerScroll);
 
@@ -292,6 +322,14 @@ public final class IndexSettings {
         this.refreshInterval = timeValue;
     }
 
+    private void setSearchIdleAfter(TimeValue timeValue) {
+        this.searchIdleAfter = timeValue;
+    }
+
+    private void setSearchConcurrency(int searchConcurrency) {
+        this.searchConcurrency = searchConcurrency;
+    }
+
     /**
      * Returns the settings for this index. These settings contain the node and index level settings where
      * settings that are specified on both index and node level are overwritten by the index settings.
@@ -464,6 +502,20 @@ public final class IndexSettings {
         return refreshInterval;
     }
 
+    /**
+     * Returns the time without searches after which a shard is considered search idle. <tt>-1</tt> means search idle detection is disabled.
+     */
+    public TimeValue getSearchIdleAfter() {
+        return searchIdleAfter;
+    }
+
+    /**
+     * Returns the maximum number of threads that a search may use to search the segments of a shard concurrently.
+     */
+    public int getSearchConcurrency() {
+        return searchConcurrency;
+    }
+
     /**
      * Returns the transaction log threshold size when to forcefully flush the index and clear the transaction log.
      */
@@ -510,6 +562,13 @@ public final class IndexSettings {
         return mergePolicyConfig.getMergePolicy();
     }
 
+    /**
+     * Returns the index sort config that should be used for this index.
+     */
+    public IndexSortConfig getIndexSortConfig() {
+        return indexSortConfig;
+    }
+
     /**
      * Returns <code>true</code> if the TTL purge is disabled for this index. Default is <code>false</code>
      */
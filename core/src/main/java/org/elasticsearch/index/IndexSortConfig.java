@@ -0,0 +1,329 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.index;
+
+import org.apache.lucene.document.NumericDocValuesField;
+import org.apache.lucene.document.SortedDocValuesField;
+import org.apache.lucene.index.DocValuesType;
+import org.apache.lucene.index.IndexableField;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
+import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.common.settings.Setting;
+import org.elasticsearch.common.settings.Setting.Property;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.index.fielddata.IndexFieldData;
+import org.elasticsearch.index.mapper.BooleanFieldMapper;
+import org.elasticsearch.index.mapper.DateFieldMapper;
+import org.elasticsearch.index.mapper.IpFieldMapper;
+import org.elasticsearch.index.mapper.KeywordFieldMapper;
+import org.elasticsearch.index.mapper.MappedFieldType;
+import org.elasticsearch.index.mapper.NumberFieldMapper;
+import org.elasticsearch.index.mapper.ParseContext;
+import org.elasticsearch.index.mapper.ScaledFloatFieldMapper;
+import org.elasticsearch.search.MultiValueMode;
+import org.elasticsearch.search.sort.SortOrder;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Function;
+
+/**
+ * Holds all the information that is used to build the sort order of an index.
+ *
+ * The index sort settings are <b>final</b> and can only be set on index creation.
+ * The index sort is used at merge time to sort the documents of each merged segment, so that searches that sort
+ * by a prefix of the index sort can stop collecting such a segment once they found enough hits in it. Newly flushed
+ * segments are not sorted until they are merged.
+ * It has the following settings:
+ *
+ * <ul>
+ * <li><code>index.sort.field</code>:
+ *
+ *     The list of fields to sort the segments by. The fields must be mapped on index creation, have doc values
+ *     and be of type <code>keyword</code>, <code>ip</code>, <code>date</code>, <code>boolean</code> or one of the numeric types.
+ *
+ * <li><code>index.sort.order</code>:
+ *
+ *     The sort order to use for each field, <code>asc</code> or <code>desc</code>. Defaults to <code>asc</code>.
+ *
+ * <li><code>index.sort.mode</code>:
+ *
+ *     The value of multi-valued fields to sort on for each field, <code>min</code> or <code>max</code>.
+ *     Defaults to <code>min</code> for ascending and to <code>max</code> for descending fields.
+ *
+ * <li><code>index.sort.missing</code>:
+ *
+ *     Where to sort the documents that have no value for each field, <code>_first</code> or <code>_last</code>.
+ *     Defaults to <code>_last</code>.
+ * </ul>
+ *
+ * Lucene can only sort segments on single-valued doc values, so the value to sort on is copied at index time into a hidden
+ * doc values field named after {@link #SORT_FIELD_PREFIX} and the name of the field.
+ */
+public final class IndexSortConfig {
+
+    /**
+     * The prefix of the names of the hidden doc values fields that hold the values the segments are sorted on.
+     */
+    public static final String SORT_FIELD_PREFIX = "_index_sort.";
+
+    /**
+     * The list of field names
+     */
+    public static final Setting<List<String>> INDEX_SORT_FIELD_SETTING =
+        Setting.listSetting("index.sort.field", Collections.emptyList(), Function.identity(), Property.IndexScope);
+
+    /**
+     * The {@link SortOrder} for each specified sort field (ie. <b>asc</b> or <b>desc</b>).
+     */
+    public static final Setting<List<SortOrder>> INDEX_SORT_ORDER_SETTING =
+        Setting.listSetting("index.sort.order", Collections.emptyList(), IndexSortConfig::parseOrderMode, Property.IndexScope);
+
+    /**
+     * The {@link MultiValueMode} for each specified sort field (ie. <b>max</b> or <b>min</b>).
+     */
+    public static final Setting<List<MultiValueMode>> INDEX_SORT_MODE_SETTING =
+        Setting.listSetting("index.sort.mode", Collections.emptyList(), IndexSortConfig::parseMultiValueMode, Property.IndexScope);
+
+    /**
+     * The missing value for each specified sort field (ie. <b>_first</b> or <b>_last</b>)
+     */
+    public static final Setting<List<String>> INDEX_SORT_MISSING_SETTING =
+        Setting.listSetting("index.sort.missing", Collections.emptyList(), IndexSortConfig::validateMissingValue, Property.IndexScope);
+
+    private final String indexName;
+    private final SortSpec[] sortSpecs;
+
+    public IndexSortConfig(IndexSettings indexSettings) {
+        final Settings settings = indexSettings.getSettings();
+        this.indexName = indexSettings.getIndex().getName();
+        final List<String> fields = INDEX_SORT_FIELD_SETTING.get(settings);
+        final List<SortOrder> orders = getValues(INDEX_SORT_ORDER_SETTING, settings, fields);
+        final List<MultiValueMode> modes = getValues(INDEX_SORT_MODE_SETTING, settings, fields);
+        final List<String> missingValues = getValues(INDEX_SORT_MISSING_SETTING, settings, fields);
+        this.sortSpecs = new SortSpec[fields.size()];
+        for (int i = 0; i < sortSpecs.length; i++) {
+            final SortOrder order = orders == null ? SortOrder.ASC : orders.get(i);
+            final MultiValueMode mode;
+            if (modes == null) {
+                mode = order == SortOrder.DESC ? MultiValueMode.MAX : MultiValueMode.MIN;
+            } else {
+                mode = modes.get(i);
+            }
+            final boolean missingFirst = missingValues != null && "_first".equals(missingValues.get(i));
+            sortSpecs[i] = new SortSpec(fields.get(i), order, mode, missingFirst);
+        }
+    }
+
+    /**
+     * Returns the values of the given setting, or <code>null</code> if the setting is not set.
+     * Throws an {@link IllegalArgumentException} if there is not exactly one value per sort field.
+     */
+    private static <T> List<T> getValues(Setting<List<T>> setting, Settings settings, List<String> fields) {
+        if (setting.exists(settings) == false) {
+            return null;
+        }
+        final List<T> values = setting.get(settings);
+        if (values.size() != fields.size()) {
+            throw new IllegalArgumentException("index.sort.field:" + fields + " " + setting.getKey() + ":" + values +
+                ", size mismatch");
+        }
+        return values;
+    }
+
+    /**
+     * Returns true if the index should be sorted
+     */
+    public boolean hasIndexSort() {
+        return sortSpecs.length > 0;
+    }
+
+    /**
+     * Builds the {@link Sort} to sort the segments of the index by, or <code>null</code> if the index is not sorted.
+     *
+     * @param fieldTypeLookup resolves the mapped field types of the sort fields
+     * @throws IllegalArgumentException if a sort field is not mapped, has no doc values or is of a type that can't sort an index
+     */
+    public Sort buildIndexSort(Function<String, MappedFieldType> fieldTypeLookup) {
+        if (hasIndexSort() == false) {
+            return null;
+        }
+        final SortField[] sortFields = new SortField[sortSpecs.length];
+        for (int i = 0; i < sortSpecs.length; i++) {
+            final SortSpec sortSpec = sortSpecs[i];
+            final MappedFieldType fieldType = fieldTypeLookup.apply(sortSpec.field);
+            if (fieldType == null) {
+                throw new IllegalArgumentException("unknown index sort field:[" + sortSpec.field + "]");
+            }
+            final SortField.Type type = sortFieldType(fieldType);
+            if (type == null) {
+                throw new IllegalArgumentException("invalid index sort field:[" + sortSpec.field + "] of type [" +
+                    fieldType.typeName() + "]");
+            }
+            if (fieldType.hasDocValues() == false) {
+                throw new IllegalArgumentException("docvalues not found for index sort field:[" + sortSpec.field + "]");
+            }
+            final boolean reverse = sortSpec.order == SortOrder.DESC;
+            // the missing values of the sort field sort before all other values when they come first in ascending
+            // order, or last in descending order
+            final boolean missingLow = sortSpec.missingFirst != reverse;
+            final SortField sortField = new SortField(SORT_FIELD_PREFIX + sortSpec.field, type, reverse);
+            if (type == SortField.Type.LONG) {
+                sortField.setMissingValue(missingLow ? Long.MIN_VALUE : Long.MAX_VALUE);
+            } else {
+                sortField.setMissingValue(missingLow ? SortField.STRING_FIRST : SortField.STRING_LAST);
+            }
+            sortFields[i] = sortField;
+        }
+        return new Sort(sortFields);
+    }
+
+    /**
+     * The type of the hidden sort field of a mapped field: numbers, dates and booleans index their values as sortable longs
+     * and keywords and ips as sortable bytes.
+     */
+    private static SortField.Type sortFieldType(MappedFieldType fieldType) {
+        if (fieldType instanceof NumberFieldMapper.NumberFieldType
+                || fieldType instanceof ScaledFloatFieldMapper.ScaledFloatFieldType
+                || fieldType instanceof DateFieldMapper.DateFieldType
+                || fieldType instanceof BooleanFieldMapper.BooleanFieldType) {
+            return SortField.Type.LONG;
+        } else if (fieldType instanceof KeywordFieldMapper.KeywordFieldType
+                || fieldType instanceof IpFieldMapper.IpFieldType) {
+            return SortField.Type.STRING;
+        }
+        return null;
+    }
+
+    /**
+     * Adds the hidden sort fields to the given parsed document. The value of each sort field is the minimum or maximum
+     * of the doc values of the field in the document, depending on the sort mode.
+     */
+    public void addSortFields(ParseContext.Document document) {
+        for (SortSpec sortSpec : sortSpecs) {
+            final boolean min = sortSpec.mode == MultiValueMode.MIN;
+            Long numericValue = null;
+            BytesRef binaryValue = null;
+            for (IndexableField field : document.getFields(sortSpec.field)) {
+                final DocValuesType docValuesType = field.fieldType().docValuesType();
+                if (docValuesType == DocValuesType.SORTED_NUMERIC) {
+                    final long value = field.numericValue().longValue();
+                    if (numericValue == null || (min ? value < numericValue : value > numericValue)) {
+                        numericValue = value;
+                    }
+                } else if (docValuesType == DocValuesType.SORTED_SET) {
+                    final BytesRef value = field.binaryValue();
+                    if (binaryValue == null || (min ? value.compareTo(binaryValue) < 0 : value.compareTo(binaryValue) > 0)) {
+                        binaryValue = value;
+                    }
+                }
+            }
+            if (numericValue != null) {
+                document.add(new NumericDocValuesField(SORT_FIELD_PREFIX + sortSpec.field, numericValue));
+            } else if (binaryValue != null) {
+                document.add(new SortedDocValuesField(SORT_FIELD_PREFIX + sortSpec.field, binaryValue));
+            }
+        }
+    }
+
+    /**
+     * Returns true if the documents of each segment are sorted by the given search sort, ie. if the search sort is a prefix of the
+     * index sort that sorts on the same values and puts missing values at the same place.
+     */
+    public boolean isPrefixOf(Sort sort) {
+        final SortField[] sortFields = sort.getSort();
+        if (sortFields.length == 0 || sortFields.length > sortSpecs.length) {
+            return false;
+        }
+        for (int i = 0; i < sortFields.length; i++) {
+            final SortField sortField = sortFields[i];
+            final SortSpec sortSpec = sortSpecs[i];
+            if (sortSpec.field.equals(sortField.getField()) == false
+                    || sortField.getReverse() != (sortSpec.order == SortOrder.DESC)
+                    || sortField.getComparatorSource() instanceof IndexFieldData.XFieldComparatorSource == false) {
+                return false;
+            }
+            final IndexFieldData.XFieldComparatorSource source = (IndexFieldData.XFieldComparatorSource) sortField.getComparatorSource();
+            if (source.nested() != null || source.sortMode() != sortSpec.mode) {
+                return false;
+            }
+            final Object missingValue = source.missingValue();
+            final boolean missingFirst = "_first".equals(missingValue);
+            final boolean missingLast = missingValue == null || "_last".equals(missingValue);
+            if (sortSpec.missingFirst ? missingFirst == false : missingLast == false) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Validates that the sort fields of the index are mapped and can sort the index.
+     *
+     * @throws IllegalArgumentException if the index sort is invalid
+     */
+    public void validate(Function<String, MappedFieldType> fieldTypeLookup) {
+        try {
+            buildIndexSort(fieldTypeLookup);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("invalid index sort for index [" + indexName + "]: " + e.getMessage(), e);
+        }
+    }
+
+    private static SortOrder parseOrderMode(String value) {
+        try {
+            return SortOrder.fromString(value);
+        } catch (Exception e) {
+            throw new IllegalArgumentException("Illegal sort order:" + value);
+        }
+    }
+
+    private static MultiValueMode parseMultiValueMode(String value) {
+        final MultiValueMode mode = MultiValueMode.fromString(value);
+        if (mode != MultiValueMode.MAX && mode != MultiValueMode.MIN) {
+            throw new IllegalArgumentException("Illegal index sort mode:[" + mode.name().toLowerCase(Locale.ROOT) +
+                "], must be one of [min, max]");
+        }
+        return mode;
+    }
+
+    private static String validateMissingValue(String missing) {
+        if ("_last".equals(missing) == false && "_first".equals(missing) == false) {
+            throw new IllegalArgumentException("Illegal missing value:[" + missing + "], must be one of [_last, _first]");
+        }
+        return missing;
+    }
+
+    private static final class SortSpec {
+        final String field;
+        final SortOrder order;
+        final MultiValueMode mode;
+        final boolean missingFirst;
+
+        SortSpec(String field, SortOrder order, MultiValueMode mode, boolean missingFirst) {
+            this.field = field;
+            this.order = order;
+            this.mode = mode;
+            this.missingFirst = missingFirst;
+        }
+    }
+}
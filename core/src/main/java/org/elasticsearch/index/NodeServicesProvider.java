@@ -23,6 +23,7 @@ import org.elasticsearch.client.Client;
 import org.elasticsearch.cluster.service.ClusterService;
 import org.elasticsearch.common.inject.Inject;
 import org.elasticsearch.common.util.BigArrays;
+import org.elasticsearch.index.translog.TranslogSyncCoordinator;
 import org.elasticsearch.indices.breaker.CircuitBreakerService;
 import org.elasticsearch.indices.query.IndicesQueriesRegistry;
 import org.elasticsearch.script.ScriptService;
@@ -42,11 +43,12 @@ public final class NodeServicesProvider {
     private final ScriptService scriptService;
     private final CircuitBreakerService circuitBreakerService;
     private final ClusterService clusterService;
+    private final TranslogSyncCoordinator translogSyncCoordinator;
 
     @Inject
     public NodeServicesProvider(ThreadPool threadPool, BigArrays bigArrays, Client client, ScriptService scriptService,
                                 IndicesQueriesRegistry indicesQueriesRegistry, CircuitBreakerService circuitBreakerService,
-                                ClusterService clusterService) {
+                                ClusterService clusterService, TranslogSyncCoordinator translogSyncCoordinator) {
         this.threadPool = threadPool;
         this.bigArrays = bigArrays;
         this.client = client;
@@ -54,6 +56,7 @@ public final class NodeServicesProvider {
         this.scriptService = scriptService;
         this.circuitBreakerService = circuitBreakerService;
         this.clusterService = clusterService;
+        this.translogSyncCoordinator = translogSyncCoordinator;
     }
 
     public ThreadPool getThreadPool() {
@@ -81,4 +84,8 @@ public final class NodeServicesProvider {
     public ClusterService getClusterService() {
         return clusterService;
     }
+
+    public TranslogSyncCoordinator getTranslogSyncCoordinator() {
+        return translogSyncCoordinator;
+    }
 }
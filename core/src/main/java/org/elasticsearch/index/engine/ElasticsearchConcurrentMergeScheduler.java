@@ -50,6 +50,9 @@ import java.util.Set;
  */
 class ElasticsearchConcurrentMergeScheduler extends ConcurrentMergeScheduler {
 
+    /** Merges smaller than this are never throttled by the auto IO throttle, see {@link ConcurrentMergeScheduler} */
+    static final long MIN_THROTTLED_MERGE_BYTES = 50L * 1024 * 1024;
+
     protected final Logger logger;
     private final Settings indexSettings;
     private final ShardId shardId;
@@ -62,10 +65,13 @@ class ElasticsearchConcurrentMergeScheduler extends ConcurrentMergeScheduler {
     private final CounterMetric currentMergesSizeInBytes = new CounterMetric();
     private final CounterMetric totalMergeStoppedTime = new CounterMetric();
     private final CounterMetric totalMergeThrottledTime = new CounterMetric();
+    private final CounterMetric currentThrottledMerges = new CounterMetric();
 
     private final Set<OnGoingMerge> onGoingMerges = ConcurrentCollections.newConcurrentSet();
     private final Set<OnGoingMerge> readOnlyOnGoingMerges = Collections.unmodifiableSet(onGoingMerges);
     private final MergeSchedulerConfig config;
+    /** IO rate limit handed out by the node's merge IO controller, or NaN if the shard is left to Lucene's auto throttle */
+    private volatile double controlledMBPerSec = Double.NaN;
 
     public ElasticsearchConcurrentMergeScheduler(ShardId shardId, IndexSettings indexSettings) {
         this.config = indexSettings.getMergeSchedulerConfig();
@@ -84,7 +90,11 @@ class ElasticsearchConcurrentMergeScheduler extends ConcurrentMergeScheduler {
         int totalNumDocs = merge.totalNumDocs();
         long totalSizeInBytes = merge.totalBytesSize();
         long timeNS = System.nanoTime();
+        final boolean throttled = OneMergeHelper.isExternal(merge) == false && merge.estimatedMergeBytes >= MIN_THROTTLED_MERGE_BYTES;
         currentMerges.inc();
+        if (throttled) {
+            currentThrottledMerges.inc();
+        }
         currentMergesNumDocs.inc(totalNumDocs);
         currentMergesSizeInBytes.inc(totalSizeInBytes);
 
@@ -104,6 +114,9 @@ class ElasticsearchConcurrentMergeScheduler extends ConcurrentMergeScheduler {
             afterMerge(onGoingMerge);
 
             currentMerges.dec();
+            if (throttled) {
+                currentThrottledMerges.dec();
+            }
             currentMergesNumDocs.dec(totalNumDocs);
             currentMergesSizeInBytes.dec(totalSizeInBytes);
 
@@ -166,6 +179,32 @@ class ElasticsearchConcurrentMergeScheduler extends ConcurrentMergeScheduler {
         return thread;
     }
 
+    @Override
+    protected synchronized void updateMergeThreads() {
+        final double mbPerSec = controlledMBPerSec;
+        if (Double.isNaN(mbPerSec) == false && getAutoIOThrottle()) {
+            // the node wide controller knows about the device this shard lives on, it overrides the backlog based rate
+            targetMBPerSec = mbPerSec;
+        }
+        super.updateMergeThreads();
+    }
+
+    /**
+     * Sets the IO rate limit for merges that are subject to auto throttling. Passing {@link Double#NaN} hands the rate
+     * back to Lucene's backlog based auto throttle.
+     */
+    void setControlledIORateLimit(double mbPerSec) {
+        this.controlledMBPerSec = mbPerSec;
+        updateMergeThreads();
+    }
+
+    /**
+     * Returns the number of running merges that are subject to IO throttling. Small and forced merges are not counted.
+     */
+    int getCurrentThrottledMerges() {
+        return (int) currentThrottledMerges.count();
+    }
+
     MergeStats stats() {
         final MergeStats mergeStats = new MergeStats();
         mergeStats.add(totalMerges.count(), totalMerges.sum(), totalMergesNumDocs.count(), totalMergesSizeInBytes.count(),
@@ -71,6 +71,7 @@ import java.io.Closeable;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.nio.file.NoSuchFileException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Base64;
 import java.util.Comparator;
@@ -177,6 +178,20 @@ public abstract class Engine implements Closeable {
         return new MergeStats();
     }
 
+    /**
+     * Sets the IO rate limit, in MB/sec, that each auto throttled merge of this engine may use. {@link Double#NaN} reverts
+     * to the engine's own merge throttling. Engines that don't merge ignore this.
+     */
+    public void setMergeIORateLimit(double mbPerSec) {
+    }
+
+    /**
+     * Returns the number of currently running merges that are subject to IO throttling.
+     */
+    public int getCurrentThrottledMerges() {
+        return 0;
+    }
+
     /**
      * A throttling class that can be activated, causing the
      * {@code acquireThrottle} method to block on a lock when throttling
@@ -237,6 +252,22 @@ public abstract class Engine implements Closeable {
         return 0;
     }
 
+    /**
+     * Returns how many realtime gets of documents that weren't visible to searches yet were read from the translog.
+     */
+    public long getRealtimeGetTranslogHits() {
+        return 0;
+    }
+
+    /**
+     * Returns how many realtime gets of documents that weren't visible to searches yet had to refresh because the document
+     * couldn't be read from the translog.
+     * @see #getRealtimeGetTranslogHits()
+     */
+    public long getRealtimeGetTranslogMisses() {
+        return 0;
+    }
+
     /**
      * Returns the <code>true</code> iff this engine is currently under index throttling.
      * @see #getIndexThrottleTimeInMillis()
@@ -278,6 +309,24 @@ public abstract class Engine implements Closeable {
 
     public abstract void index(Index operation) throws EngineException;
 
+    /**
+     * Applies the given index operations in order. The returned array holds the failure of the operation at the same position
+     * or <code>null</code> if the operation succeeded. Failures of the engine itself may be thrown instead, in which case the
+     * remaining operations are not applied. This implementation calls {@link #index(Index)} for every operation, engines that
+     * can resolve versions and write documents for several operations at once should override it.
+     */
+    public Exception[] index(List<Index> operations) throws EngineException {
+        final Exception[] failures = new Exception[operations.size()];
+        for (int i = 0; i < failures.length; i++) {
+            try {
+                index(operations.get(i));
+            } catch (Exception e) {
+                failures[i] = e;
+            }
+        }
+        return failures;
+    }
+
     public abstract void delete(Delete delete) throws EngineException;
 
     /**
@@ -326,12 +375,62 @@ public abstract class Engine implements Closeable {
         }
     }
 
+    /**
+     * Looks up the uids of all gets whose result or failure isn't known yet together in one searcher, see
+     * {@link Versions#loadDocIdAndVersions}. The results found this way share the searcher of the returned {@link MultiGetResult}.
+     */
+    protected final MultiGetResult multiGetFromSearcher(List<Get> gets, GetResult[] results, Exception[] failures,
+                                                        Function<String, Searcher> searcherFactory) throws EngineException {
+        final List<Integer> positions = new ArrayList<>();
+        final List<Term> uids = new ArrayList<>();
+        for (int i = 0; i < gets.size(); i++) {
+            if (results[i] == null && failures[i] == null) {
+                positions.add(i);
+                uids.add(gets.get(i).uid());
+            }
+        }
+        if (uids.isEmpty()) {
+            return new MultiGetResult(null, results, failures);
+        }
+        final Searcher searcher = searcherFactory.apply("get");
+        final Versions.DocIdAndVersion[] docIdAndVersions;
+        try {
+            docIdAndVersions = Versions.loadDocIdAndVersions(searcher.reader(), uids);
+        } catch (Exception e) {
+            Releasables.closeWhileHandlingException(searcher);
+            throw new EngineException(shardId, "Couldn't resolve versions", e);
+        }
+        for (int j = 0; j < docIdAndVersions.length; j++) {
+            final int i = positions.get(j);
+            final Get get = gets.get(i);
+            final Versions.DocIdAndVersion docIdAndVersion = docIdAndVersions[j];
+            if (docIdAndVersion == null) {
+                results[i] = GetResult.NOT_EXISTS;
+            } else if (get.versionType().isVersionConflictForReads(docIdAndVersion.version, get.version())) {
+                Uid uid = Uid.createUid(get.uid().text());
+                failures[i] = new VersionConflictEngineException(shardId, uid.type(), uid.id(),
+                        get.versionType().explainConflictForReads(docIdAndVersion.version, get.version()));
+            } else {
+                results[i] = new GetResult(docIdAndVersion);
+            }
+        }
+        return new MultiGetResult(searcher, results, failures);
+    }
+
     public final GetResult get(Get get) throws EngineException {
         return get(get, this::acquireSearcher);
     }
 
     public abstract GetResult get(Get get, Function<String, Searcher> searcherFactory) throws EngineException;
 
+    /**
+     * Resolves many gets at once. Each get has the result or fails the way {@link #get(Get, Function)} would, but the documents
+     * that have to be loaded from the index are looked up together in a single searcher.
+     */
+    public MultiGetResult multiGet(List<Get> gets, Function<String, Searcher> searcherFactory) throws EngineException {
+        return multiGetFromSearcher(gets, new GetResult[gets.size()], new Exception[gets.size()], searcherFactory);
+    }
+
     /**
      * Returns a new searcher instance. The consumer of this
      * API is responsible for releasing the returned seacher in a
@@ -1001,6 +1100,7 @@ public abstract class Engine implements Closeable {
         private final Term uid;
         private long version = Versions.MATCH_ANY;
         private VersionType versionType = VersionType.INTERNAL;
+        private boolean loadFromTranslog = false;
 
         public Get(boolean realtime, Term uid) {
             this.realtime = realtime;
@@ -1032,6 +1132,19 @@ public abstract class Engine implements Closeable {
             this.versionType = versionType;
             return this;
         }
+
+        public boolean loadFromTranslog() {
+            return loadFromTranslog;
+        }
+
+        /**
+         * Allows a realtime get of a document that isn't visible to searches yet to read the document from the translog
+         * instead of refreshing. Such a result has a {@link GetResult#source()} but no {@link GetResult#docIdAndVersion()}.
+         */
+        public Get loadFromTranslog(boolean loadFromTranslog) {
+            this.loadFromTranslog = loadFromTranslog;
+            return this;
+        }
     }
 
     public static class GetResult implements Releasable {
@@ -1039,21 +1152,38 @@ public abstract class Engine implements Closeable {
         private final long version;
         private final Versions.DocIdAndVersion docIdAndVersion;
         private final Searcher searcher;
+        private final Translog.Source source;
 
-        public static final GetResult NOT_EXISTS = new GetResult(false, Versions.NOT_FOUND, null, null);
+        public static final GetResult NOT_EXISTS = new GetResult(false, Versions.NOT_FOUND, null, null, null);
 
-        private GetResult(boolean exists, long version, Versions.DocIdAndVersion docIdAndVersion, Searcher searcher) {
+        private GetResult(boolean exists, long version, Versions.DocIdAndVersion docIdAndVersion, Searcher searcher,
+                          Translog.Source source) {
             this.exists = exists;
             this.version = version;
             this.docIdAndVersion = docIdAndVersion;
             this.searcher = searcher;
+            this.source = source;
         }
 
         /**
          * Build a non-realtime get result from the searcher.
          */
         public GetResult(Searcher searcher, Versions.DocIdAndVersion docIdAndVersion) {
-            this(true, docIdAndVersion.version, docIdAndVersion, searcher);
+            this(true, docIdAndVersion.version, docIdAndVersion, searcher, null);
+        }
+
+        /**
+         * Build a get result from a searcher that is released by someone else, see {@link MultiGetResult}.
+         */
+        GetResult(Versions.DocIdAndVersion docIdAndVersion) {
+            this(true, docIdAndVersion.version, docIdAndVersion, null, null);
+        }
+
+        /**
+         * Build a realtime get result from the operation that was read from the translog.
+         */
+        public GetResult(long version, Translog.Source source) {
+            this(true, version, null, null, source);
         }
 
         public boolean exists() {
@@ -1072,6 +1202,13 @@ public abstract class Engine implements Closeable {
             return docIdAndVersion;
         }
 
+        /**
+         * The document as it was read from the translog, or <code>null</code> if it was loaded from the index.
+         */
+        public Translog.Source source() {
+            return source;
+        }
+
         @Override
         public void close() {
             release();
@@ -1082,6 +1219,42 @@ public abstract class Engine implements Closeable {
         }
     }
 
+    /**
+     * The results of {@link #multiGet}: for every get either its result or the exception it failed with. Results that were loaded
+     * from the index share the searcher that is released when this is closed, not when they are.
+     */
+    public static class MultiGetResult implements Releasable {
+        private final Searcher searcher;
+        private final GetResult[] results;
+        private final Exception[] failures;
+
+        MultiGetResult(Searcher searcher, GetResult[] results, Exception[] failures) {
+            assert results.length == failures.length;
+            this.searcher = searcher;
+            this.results = results;
+            this.failures = failures;
+        }
+
+        public int size() {
+            return results.length;
+        }
+
+        /** the result of the get at the given position, or <code>null</code> if it failed */
+        public GetResult result(int i) {
+            return results[i];
+        }
+
+        /** the failure of the get at the given position, or <code>null</code> if it didn't fail */
+        public Exception failure(int i) {
+            return failures[i];
+        }
+
+        @Override
+        public void close() {
+            Releasables.close(searcher);
+        }
+    }
+
     protected abstract SearcherManager getSearcherManager();
 
     /**
@@ -20,6 +20,8 @@
 package org.elasticsearch.index.engine;
 
 import org.apache.logging.log4j.Logger;
+import org.apache.logging.log4j.message.ParameterizedMessage;
+import org.apache.logging.log4j.util.Supplier;
 import org.apache.lucene.index.DirectoryReader;
 import org.apache.lucene.index.IndexCommit;
 import org.apache.lucene.index.IndexFormatTooOldException;
@@ -41,11 +43,13 @@ import org.apache.lucene.store.LockObtainFailedException;
 import org.apache.lucene.util.BytesRef;
 import org.apache.lucene.util.IOUtils;
 import org.apache.lucene.util.InfoStream;
+import org.elasticsearch.ElasticsearchException;
 import org.elasticsearch.ExceptionsHelper;
 import org.elasticsearch.Version;
 import org.elasticsearch.action.index.IndexRequest;
 import org.elasticsearch.common.Nullable;
 import org.elasticsearch.common.lease.Releasable;
+import org.elasticsearch.common.lease.Releasables;
 import org.elasticsearch.common.lucene.LoggerInfoStream;
 import org.elasticsearch.common.lucene.Lucene;
 import org.elasticsearch.common.lucene.index.ElasticsearchDirectoryReader;
@@ -57,6 +61,7 @@ import org.elasticsearch.common.util.concurrent.KeyedLock;
 import org.elasticsearch.common.util.concurrent.ReleasableLock;
 import org.elasticsearch.index.IndexSettings;
 import org.elasticsearch.index.VersionType;
+import org.elasticsearch.index.mapper.ParseContext;
 import org.elasticsearch.index.mapper.Uid;
 import org.elasticsearch.index.merge.MergeStats;
 import org.elasticsearch.index.merge.OnGoingMerge;
@@ -70,8 +75,10 @@ import org.elasticsearch.index.translog.TranslogCorruptedException;
 import org.elasticsearch.threadpool.ThreadPool;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -108,6 +115,9 @@ public class InternalEngine extends Engine {
 
     private final KeyedLock<BytesRef> keyedLock = new KeyedLock<>();
 
+    // the translog locations of recently indexed documents, for realtime gets of documents that are only in the version map
+    private final TranslogLocationCache translogLocations;
+
     private final AtomicBoolean versionMapRefreshPending = new AtomicBoolean();
 
     private volatile SegmentInfos lastCommittedSegmentInfos;
@@ -123,6 +133,10 @@ public class InternalEngine extends Engine {
     private final AtomicLong maxUnsafeAutoIdTimestamp = new AtomicLong(-1);
     private final CounterMetric numVersionLookups = new CounterMetric();
     private final CounterMetric numIndexVersionsLookups = new CounterMetric();
+    // number of append-only operations that skipped the version lookup entirely, and the number of them that had to fall back to
+    // updateDocument because they were retried or raced with a retry:
+    private final CounterMetric numOptimizedAppends = new CounterMetric();
+    private final CounterMetric numDeOptimizedAppends = new CounterMetric();
 
     public InternalEngine(EngineConfig engineConfig) throws EngineException {
         super(engineConfig);
@@ -133,7 +147,11 @@ public class InternalEngine extends Engine {
         } else {
             maxUnsafeAutoIdTimestamp.set(engineConfig.getMaxUnsafeAutoIdTimestamp());
         }
-        this.versionMap = new LiveVersionMap();
+        // the version map lives as long as the engine and its memory is accounted by the indexing memory controller, charging it to
+        // the request breaker would trip unrelated requests
+        this.versionMap = new LiveVersionMap(engineConfig.getTranslogConfig().getBigArrays().withoutCircuitBreaking());
+        this.translogLocations = new TranslogLocationCache(
+            engineConfig.getIndexSettings().getValue(IndexSettings.INDEX_TRANSLOG_REALTIME_GET_CACHE_SIZE_SETTING));
         store.incRef();
         IndexWriter writer = null;
         Translog translog = null;
@@ -332,7 +350,7 @@ public class InternalEngine extends Engine {
         try (ReleasableLock lock = readLock.acquire()) {
             ensureOpen();
             if (get.realtime()) {
-                VersionValue versionValue = versionMap.getUnderLock(get.uid());
+                VersionValue versionValue = getVersionFromMap(get.uid());
                 if (versionValue != null) {
                     if (versionValue.delete()) {
                         return GetResult.NOT_EXISTS;
@@ -342,6 +360,14 @@ public class InternalEngine extends Engine {
                         throw new VersionConflictEngineException(shardId, uid.type(), uid.id(),
                                 get.versionType().explainConflictForReads(versionValue.version(), get.version()));
                     }
+                    if (get.loadFromTranslog()) {
+                        final GetResult result = getFromTranslog(get.uid(), versionValue);
+                        if (result != null) {
+                            translogLocations.onHit();
+                            return result;
+                        }
+                        translogLocations.onMiss();
+                    }
                     refresh("realtime_get");
                 }
             }
@@ -351,6 +377,79 @@ public class InternalEngine extends Engine {
         }
     }
 
+    @Override
+    public MultiGetResult multiGet(List<Get> gets, Function<String, Searcher> searcherFactory) throws EngineException {
+        try (ReleasableLock lock = readLock.acquire()) {
+            ensureOpen();
+            final GetResult[] results = new GetResult[gets.size()];
+            final Exception[] failures = new Exception[gets.size()];
+            boolean refresh = false;
+            for (int i = 0; i < gets.size(); i++) {
+                final Get get = gets.get(i);
+                if (get.realtime() == false) {
+                    continue;
+                }
+                final VersionValue versionValue = getVersionFromMap(get.uid());
+                if (versionValue == null) {
+                    continue;
+                }
+                if (versionValue.delete()) {
+                    results[i] = GetResult.NOT_EXISTS;
+                } else if (get.versionType().isVersionConflictForReads(versionValue.version(), get.version())) {
+                    Uid uid = Uid.createUid(get.uid().text());
+                    failures[i] = new VersionConflictEngineException(shardId, uid.type(), uid.id(),
+                            get.versionType().explainConflictForReads(versionValue.version(), get.version()));
+                } else {
+                    if (get.loadFromTranslog()) {
+                        results[i] = getFromTranslog(get.uid(), versionValue);
+                        if (results[i] != null) {
+                            translogLocations.onHit();
+                            continue;
+                        }
+                        translogLocations.onMiss();
+                    }
+                    refresh = true;
+                }
+            }
+            if (refresh) {
+                // a single refresh makes all remaining documents visible
+                refresh("realtime_get");
+            }
+            return multiGetFromSearcher(gets, results, failures, searcherFactory);
+        }
+    }
+
+    /**
+     * Reads the document with the given uid from the translog if its location is still cached and points to the version in
+     * the version map, returns <code>null</code> otherwise or if the location can't be read.
+     */
+    private GetResult getFromTranslog(Term uid, VersionValue versionValue) {
+        final Translog.Location location = translogLocations.get(uid.bytes());
+        if (location == null) {
+            return null;
+        }
+        // the location might belong to an older or newer version of the document if it was concurrently indexed again, and
+        // its generation might be gone after a flush
+        final Translog.Operation operation;
+        try {
+            operation = translog.read(location);
+        } catch (ElasticsearchException e) {
+            if (e.getCause() instanceof IOException == false) {
+                throw e;
+            }
+            // the document can still be found in the index, so a failed read is only a miss
+            logger.debug(
+                (Supplier<?>) () -> new ParameterizedMessage("failed to read translog location [{}] of a realtime get", location), e);
+            return null;
+        }
+        if (operation instanceof Translog.Index && ((Translog.Index) operation).version() == versionValue.version()) {
+            final Translog.Index index = (Translog.Index) operation;
+            return new GetResult(index.version(),
+                new Translog.Source(index.source(), index.routing(), index.parent(), index.timestamp(), index.ttl()));
+        }
+        return null;
+    }
+
     private boolean checkVersionConflict(
             final Operation op,
             final long currentVersion,
@@ -391,12 +490,41 @@ public class InternalEngine extends Engine {
             final long updatedVersion,
             final Function<T, Translog.Operation> toTranslogOp,
             final VersionValueSupplier toVersionValue) throws IOException {
+        maybeAddToTranslog(op, toTranslogOp);
+        final VersionValue versionValue = toVersionValue.apply(updatedVersion, engineConfig.getThreadPool().estimatedTimeInMillis());
+        versionMap.putUnderLock(op.uid().bytes(), versionValue);
+        if (versionValue.delete() == false && op.getTranslogLocation() != null) {
+            translogLocations.put(op.uid().bytes(), op.getTranslogLocation());
+        } else {
+            translogLocations.remove(op.uid().bytes());
+        }
+    }
+
+    private <T extends Engine.Operation> void maybeAddToTranslog(final T op, final Function<T, Translog.Operation> toTranslogOp)
+            throws IOException {
         if (op.origin() != Operation.Origin.LOCAL_TRANSLOG_RECOVERY) {
             final Translog.Location translogLocation = translog.add(toTranslogOp.apply(op));
             op.setTranslogLocation(translogLocation);
         }
-        versionMap.putUnderLock(op.uid().bytes(), toVersionValue.apply(updatedVersion, engineConfig.getThreadPool().estimatedTimeInMillis()));
+    }
 
+    /**
+     * Returns the live version for the given uid. If append-only operations were indexed without going through the version map since
+     * the last refresh, a miss can't be trusted, so we refresh first and make sure subsequent appends are added to the map until the
+     * lookups stop.
+     */
+    private VersionValue getVersionFromMap(Term uid) {
+        if (versionMap.isUnsafe()) {
+            synchronized (versionMap) {
+                // we are switching from an unsafe map to a safe one. This might happen concurrently but we only need to refresh once
+                // since from here on every operation adds its uid to the map
+                if (versionMap.isUnsafe()) {
+                    refresh("unsafe_version_map");
+                }
+                versionMap.enforceSafeAccess();
+            }
+        }
+        return versionMap.getUnderLock(uid);
     }
 
     @Override
@@ -421,6 +549,196 @@ public class InternalEngine extends Engine {
         }
     }
 
+    /**
+     * Applies runs of consecutive operations on distinct uids together: the uids of a run are locked in sorted order, versions
+     * that are not in the version map are loaded from a single searcher in uid order and all new documents of the run are added
+     * with a single {@link IndexWriter#addDocuments(Iterable)} call. Append-only operations are applied one by one like in
+     * {@link #index(Index)} since they don't look up versions in the first place.
+     */
+    @Override
+    public Exception[] index(List<Index> operations) {
+        final Exception[] failures = new Exception[operations.size()];
+        Index current = null;
+        try (ReleasableLock lock = readLock.acquire()) {
+            ensureOpen();
+            int from = 0;
+            while (from < operations.size()) {
+                current = operations.get(from);
+                if (current.origin().isRecovery()) {
+                    // Don't throttle recovery operations
+                    from = innerIndex(operations, from, failures);
+                } else {
+                    try (Releasable r = throttle.acquireThrottle()) {
+                        from = innerIndex(operations, from, failures);
+                    }
+                }
+            }
+        } catch (IllegalStateException | IOException e) {
+            try {
+                maybeFailEngine("index", e);
+            } catch (Exception inner) {
+                e.addSuppressed(inner);
+            }
+            throw new IndexFailedEngineException(shardId, current.type(), current.id(), e);
+        }
+        return failures;
+    }
+
+    /**
+     * Applies the run of operations that starts at <code>from</code> and returns the position of the first operation after it.
+     */
+    private int innerIndex(List<Index> operations, int from, Exception[] failures) throws IOException {
+        final Set<BytesRef> uids = new HashSet<>();
+        int to = from;
+        while (to < operations.size() && canOptimizeAddDocument(operations.get(to)) == false
+            && uids.add(operations.get(to).uid().bytes())) {
+            to++;
+        }
+        if (to - from <= 1) {
+            final Index index = operations.get(from);
+            try {
+                innerIndex(index);
+            } catch (IllegalStateException | IOException e) {
+                throw e;
+            } catch (Exception e) {
+                failures[from] = e;
+            }
+            return from + 1;
+        }
+        final BytesRef[] sortedUids = uids.toArray(new BytesRef[uids.size()]);
+        Arrays.sort(sortedUids);
+        final List<Releasable> locks = new ArrayList<>(sortedUids.length);
+        try {
+            // lock in uid order so that concurrent runs can't deadlock
+            for (BytesRef uid : sortedUids) {
+                locks.add(acquireLock(uid));
+            }
+            innerIndexRun(operations.subList(from, to), from, failures);
+        } finally {
+            Releasables.close(locks);
+        }
+        return to;
+    }
+
+    private void innerIndexRun(List<Index> run, int offset, Exception[] failures) throws IOException {
+        lastWriteNanos = run.get(run.size() - 1).startTime();
+        final long[] currentVersions = new long[run.size()];
+        final boolean[] deleted = new boolean[run.size()];
+        loadCurrentVersions(run, currentVersions, deleted);
+
+        final boolean[] written = new boolean[run.size()];
+        final List<Integer> adds = new ArrayList<>();
+        for (int i = 0; i < run.size(); i++) {
+            final Index index = run.get(i);
+            final long expectedVersion = index.version();
+            try {
+                if (checkVersionConflict(index, currentVersions[i], expectedVersion, deleted[i])) {
+                    index.setCreated(false);
+                    continue;
+                }
+            } catch (VersionConflictEngineException e) {
+                failures[offset + i] = e;
+                continue;
+            }
+            updateVersion(index, currentVersions[i], expectedVersion);
+            index.setCreated(deleted[i]);
+            if (currentVersions[i] == Versions.NOT_FOUND) {
+                // document does not exists, we can optimize for create
+                adds.add(i);
+            } else {
+                written[i] = updateDocument(index, offset + i, failures);
+            }
+        }
+        if (adds.size() == 1) {
+            final int i = adds.get(0);
+            written[i] = addDocument(run.get(i), offset + i, failures);
+        } else if (adds.isEmpty() == false) {
+            final List<ParseContext.Document> docs = new ArrayList<>();
+            for (int i : adds) {
+                docs.addAll(run.get(i).docs());
+            }
+            try {
+                indexWriter.addDocuments(docs);
+                for (int i : adds) {
+                    written[i] = true;
+                }
+            } catch (IllegalStateException | IOException e) {
+                throw e;
+            } catch (Exception e) {
+                // a document of the block was rejected and IndexWriter dropped the whole block, find out which one
+                for (int i : adds) {
+                    written[i] = addDocument(run.get(i), offset + i, failures);
+                }
+            }
+        }
+        for (int i = 0; i < run.size(); i++) {
+            if (written[i]) {
+                final Index index = run.get(i);
+                maybeAddToTranslog(index, index.version(), Translog.Index::new, NEW_VERSION_VALUE);
+            }
+        }
+    }
+
+    /**
+     * Resolves the current versions of the uids of a run. Uids that are not in the version map are looked up together with
+     * {@link Versions#loadVersions} in a single searcher that is acquired after all version map lookups, which makes it see every
+     * change the map doesn't have.
+     */
+    private void loadCurrentVersions(List<Index> run, long[] currentVersions, boolean[] deleted) throws IOException {
+        final List<Integer> misses = new ArrayList<>();
+        for (int i = 0; i < run.size(); i++) {
+            final VersionValue versionValue = getVersionFromMap(run.get(i).uid());
+            assert incrementVersionLookup();
+            if (versionValue == null) {
+                misses.add(i);
+            } else {
+                currentVersions[i] = checkDeletedAndGCed(versionValue);
+                deleted[i] = versionValue.delete();
+            }
+        }
+        if (misses.isEmpty()) {
+            return;
+        }
+        final List<Term> uids = new ArrayList<>(misses.size());
+        for (int i : misses) {
+            assert incrementIndexVersionLookup();
+            uids.add(run.get(i).uid());
+        }
+        final long[] versions;
+        try (Searcher searcher = acquireSearcher("load_version")) {
+            versions = Versions.loadVersions(searcher.reader(), uids);
+        }
+        for (int j = 0; j < versions.length; j++) {
+            final int i = misses.get(j);
+            currentVersions[i] = versions[j];
+            deleted[i] = versions[j] == Versions.NOT_FOUND;
+        }
+    }
+
+    private boolean addDocument(Index index, int slot, Exception[] failures) throws IOException {
+        try {
+            index(index, indexWriter);
+            return true;
+        } catch (IllegalStateException | IOException e) {
+            throw e;
+        } catch (Exception e) {
+            failures[slot] = e;
+            return false;
+        }
+    }
+
+    private boolean updateDocument(Index index, int slot, Exception[] failures) throws IOException {
+        try {
+            update(index, indexWriter);
+            return true;
+        } catch (IllegalStateException | IOException e) {
+            throw e;
+        } catch (Exception e) {
+            failures[slot] = e;
+            return false;
+        }
+    }
+
     private boolean canOptimizeAddDocument(Index index) {
         if (index.getAutoGeneratedIdTimestamp() != IndexRequest.UNSET_AUTO_GENERATED_TIMESTAMP) {
             assert index.getAutoGeneratedIdTimestamp() >= 0 : "autoGeneratedIdTimestamp must be positive but was: "
@@ -477,7 +795,8 @@ public class InternalEngine extends Engine {
             // if anything is fishy here ie. there is a retry we go and force updateDocument below so we are updating the document in the
             // lucene index without checking the version map but we still do the version check
             final boolean forceUpdateDocument;
-            if (canOptimizeAddDocument(index)) {
+            final boolean canOptimizeAddDocument = canOptimizeAddDocument(index);
+            if (canOptimizeAddDocument) {
                 long deOptimizeTimestamp = maxUnsafeAutoIdTimestamp.get();
                 if (index.isRetry()) {
                     forceUpdateDocument = true;
@@ -498,7 +817,7 @@ public class InternalEngine extends Engine {
             } else {
                 // update the document
                 forceUpdateDocument = false; // we don't force it - it depends on the version
-                final VersionValue versionValue = versionMap.getUnderLock(index.uid());
+                final VersionValue versionValue = getVersionFromMap(index.uid());
                 assert incrementVersionLookup();
                 if (versionValue == null) {
                     currentVersion = loadCurrentVersionFromIndex(index.uid());
@@ -521,7 +840,21 @@ public class InternalEngine extends Engine {
             } else {
                 update(index, indexWriter);
             }
-            maybeAddToTranslog(index, updatedVersion, Translog.Index::new, NEW_VERSION_VALUE);
+            if (canOptimizeAddDocument) {
+                if (forceUpdateDocument) {
+                    numDeOptimizedAppends.inc();
+                } else {
+                    numOptimizedAppends.inc();
+                }
+            }
+            if (canOptimizeAddDocument && forceUpdateDocument == false && versionMap.isSafeAccessRequired() == false) {
+                // nobody looks up uids right now and this uid can't exist yet, so we skip the version map entirely and only remember
+                // that lookups need to refresh before they can trust a miss
+                maybeAddToTranslog(index, Translog.Index::new);
+                versionMap.markAsUnsafe();
+            } else {
+                maybeAddToTranslog(index, updatedVersion, Translog.Index::new, NEW_VERSION_VALUE);
+            }
         }
     }
 
@@ -578,7 +911,7 @@ public class InternalEngine extends Engine {
             lastWriteNanos = delete.startTime();
             final long currentVersion;
             final boolean deleted;
-            final VersionValue versionValue = versionMap.getUnderLock(delete.uid());
+            final VersionValue versionValue = getVersionFromMap(delete.uid());
             assert incrementVersionLookup();
             if (versionValue == null) {
                 currentVersion = loadCurrentVersionFromIndex(delete.uid());
@@ -786,6 +1119,7 @@ public class InternalEngine extends Engine {
                         refresh("version_table_flush");
                         // after refresh documents can be retrieved from the index so we can now commit the translog
                         translog.commit();
+                        translogLocations.clear();
                     } catch (Exception e) {
                         throw new FlushFailedEngineException(shardId, e);
                     }
@@ -991,6 +1325,7 @@ public class InternalEngine extends Engine {
         stats.addVersionMapMemoryInBytes(versionMap.ramBytesUsed());
         stats.addIndexWriterMemoryInBytes(indexWriter.ramBytesUsed());
         stats.updateMaxUnsafeAutoIdTimestamp(maxUnsafeAutoIdTimestamp.get());
+        stats.addAppendOnlyOperations(numOptimizedAppends.count(), numDeOptimizedAppends.count());
     }
 
     @Override
@@ -1102,6 +1437,10 @@ public class InternalEngine extends Engine {
             iwc.setRAMBufferSizeMB(engineConfig.getIndexingBufferSize().mbFrac());
             iwc.setCodec(engineConfig.getCodec());
             iwc.setUseCompoundFile(true); // always use compound on flush - reduces # of file-handles on refresh
+            if (engineConfig.getIndexSort() != null) {
+                // sorts the documents of each merged segment, whatever the merge policy; flushed segments stay unsorted
+                iwc.setIndexSort(engineConfig.getIndexSort());
+            }
             return new IndexWriter(store.directory(), iwc);
         } catch (LockObtainFailedException ex) {
             logger.warn("could not lock IndexWriter", ex);
@@ -1167,6 +1506,16 @@ public class InternalEngine extends Engine {
         return throttle.getThrottleTimeInMillis();
     }
 
+    @Override
+    public long getRealtimeGetTranslogHits() {
+        return translogLocations.hits();
+    }
+
+    @Override
+    public long getRealtimeGetTranslogMisses() {
+        return translogLocations.misses();
+    }
+
     long getGcDeletesInMillis() {
         return engineConfig.getIndexSettings().getGcDeletesInMillis();
     }
@@ -1312,6 +1661,16 @@ public class InternalEngine extends Engine {
         return mergeScheduler.stats();
     }
 
+    @Override
+    public void setMergeIORateLimit(double mbPerSec) {
+        mergeScheduler.setControlledIORateLimit(mbPerSec);
+    }
+
+    @Override
+    public int getCurrentThrottledMerges() {
+        return mergeScheduler.getCurrentThrottledMerges();
+    }
+
     @Override
     public DocsStats getDocStats() {
         final int numDocs = indexWriter.numDocs();
@@ -1336,6 +1695,27 @@ public class InternalEngine extends Engine {
         return numVersionLookups.count();
     }
 
+    /**
+     * Returns the number of append-only operations that were added to the index without a version lookup.
+     */
+    long getNumOptimizedAppends() {
+        return numOptimizedAppends.count();
+    }
+
+    /**
+     * Returns the number of append-only operations that had to be indexed with updateDocument since they were retried.
+     */
+    long getNumDeOptimizedAppends() {
+        return numDeOptimizedAppends.count();
+    }
+
+    /**
+     * Returns <code>true</code> iff the version map currently doesn't hold all uids that were indexed since the last refresh.
+     */
+    boolean isVersionMapUnsafe() { // for testing
+        return versionMap.isUnsafe();
+    }
+
     private boolean incrementVersionLookup() { // only used by asserts
         numVersionLookups.inc();
         return true;
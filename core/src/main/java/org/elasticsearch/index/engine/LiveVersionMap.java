@@ -16,48 +16,279 @@
  * specific language governing permissions and limitations
  * under the License.
  */
-
 package org.elasticsearch.index.engine;
 
+import com.carrotsearch.hppc.BitMixer;
 import org.apache.lucene.index.Term;
 import org.apache.lucene.search.ReferenceManager;
 import org.apache.lucene.util.Accountable;
 import org.apache.lucene.util.BytesRef;
 import org.apache.lucene.util.RamUsageEstimator;
+import org.elasticsearch.common.lease.Releasable;
+import org.elasticsearch.common.lease.Releasables;
+import org.elasticsearch.common.util.BigArrays;
+import org.elasticsearch.common.util.BytesRefHash;
+import org.elasticsearch.common.util.LongArray;
 import org.elasticsearch.common.util.concurrent.ConcurrentCollections;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 /** Maps _uid value to its version information. */
 class LiveVersionMap implements ReferenceManager.RefreshListener, Accountable {
 
-    private static class Maps {
+    /** Number of independently locked hash tables each uid to version map is split into, must be a power of two. */
+    static final int NUM_STRIPES = 16;
+
+    private static final int STRIPE_SHIFT = Integer.SIZE - Integer.numberOfTrailingZeros(NUM_STRIPES);
+
+    /** Initial number of entries of each stripe, stripes grow in place on demand. */
+    private static final int INITIAL_STRIPE_CAPACITY = 16;
+
+    /** Marks versions of adds in the delete time array. */
+    private static final long NOT_DELETED = -1L;
+
+    /**
+     * An open-addressing hash table from uid to version. The uid bytes, versions and delete timestamps live in arrays obtained from
+     * {@link BigArrays}, so an entry doesn't allocate any objects and large tables are built from recycled pages.
+     */
+    private static final class Stripe implements Releasable {
+
+        private final BigArrays bigArrays;
+        private final BytesRefHash uids;
+        private LongArray versions;
+        private LongArray deleteTimes;
+        private boolean closed;
+        private volatile long ramBytesUsed;
+
+        Stripe(BigArrays bigArrays) {
+            this.bigArrays = bigArrays;
+            boolean success = false;
+            try {
+                uids = new BytesRefHash(INITIAL_STRIPE_CAPACITY, bigArrays);
+                versions = bigArrays.newLongArray(INITIAL_STRIPE_CAPACITY, false);
+                deleteTimes = bigArrays.newLongArray(INITIAL_STRIPE_CAPACITY, false);
+                success = true;
+            } finally {
+                if (success == false) {
+                    close();
+                }
+            }
+            ramBytesUsed = uids.ramBytesUsed() + versions.ramBytesUsed() + deleteTimes.ramBytesUsed();
+        }
+
+        synchronized VersionValue get(BytesRef uid, int hash) {
+            if (closed) {
+                // the lookup was dropped because a refresh made all its operations visible
+                return null;
+            }
+            final long id = uids.find(uid, hash);
+            if (id < 0) {
+                return null;
+            }
+            final long time = deleteTimes.get(id);
+            return time == NOT_DELETED ? new VersionValue(versions.get(id)) : new DeleteVersionValue(versions.get(id), time);
+        }
+
+        synchronized void put(BytesRef uid, int hash, VersionValue version) {
+            if (closed) {
+                // the operation was added to the index before this lookup was replaced, so the refresh that dropped the lookup made
+                // it visible and it doesn't need to be tracked anymore
+                return;
+            }
+            long id = uids.add(uid, hash);
+            if (id < 0) {
+                id = -1 - id;
+            } else {
+                versions = bigArrays.grow(versions, id + 1);
+                deleteTimes = bigArrays.grow(deleteTimes, id + 1);
+            }
+            versions.set(id, version.version());
+            deleteTimes.set(id, version.delete() ? version.time() : NOT_DELETED);
+            ramBytesUsed = uids.ramBytesUsed() + versions.ramBytesUsed() + deleteTimes.ramBytesUsed();
+        }
+
+        synchronized long size() {
+            return closed ? 0 : uids.size();
+        }
+
+        long ramBytesUsed() {
+            return ramBytesUsed;
+        }
+
+        @Override
+        public synchronized void close() {
+            if (closed == false) {
+                closed = true;
+                ramBytesUsed = 0;
+                Releasables.close(uids, versions, deleteTimes);
+            }
+        }
+    }
+
+    /**
+     * A single uid to version map and whether all operations that went into the index while it was current are reflected in it.
+     * Stripes are allocated on their first put, so the map that is swapped in on every refresh costs nothing until it is used.
+     */
+    private static final class VersionLookup implements Releasable {
+
+        /** Shared lookup that never holds any entries, used as old map outside of refreshes. */
+        static final VersionLookup EMPTY = new VersionLookup(null);
+
+        static {
+            EMPTY.close();
+        }
+
+        private final BigArrays bigArrays;
+        private final AtomicReferenceArray<Stripe> stripes = new AtomicReferenceArray<>(NUM_STRIPES);
+        private boolean closed;
+
+        // Set once an append-only operation was indexed without adding its uid to this map. Lookups that miss can then not rely on the
+        // map and must refresh first:
+        volatile boolean unsafe;
+
+        VersionLookup(BigArrays bigArrays) {
+            this.bigArrays = bigArrays;
+        }
+
+        private static int stripeIndex(int hash) {
+            // BytesRefHash picks slots from the low bits of the mixed hash, so we pick stripes from the high bits
+            return BitMixer.mix32(hash) >>> STRIPE_SHIFT;
+        }
+
+        VersionValue get(BytesRef uid) {
+            final int hash = uid.hashCode();
+            final Stripe stripe = stripes.get(stripeIndex(hash));
+            return stripe == null ? null : stripe.get(uid, hash);
+        }
+
+        void put(BytesRef uid, VersionValue version) {
+            final int hash = uid.hashCode();
+            final int index = stripeIndex(hash);
+            Stripe stripe = stripes.get(index);
+            if (stripe == null) {
+                synchronized (this) {
+                    if (closed) {
+                        // same as a put on a closed stripe, the refresh that dropped this lookup made the operation visible
+                        return;
+                    }
+                    stripe = stripes.get(index);
+                    if (stripe == null) {
+                        stripe = new Stripe(bigArrays);
+                        stripes.set(index, stripe);
+                    }
+                }
+            }
+            stripe.put(uid, hash, version);
+        }
+
+        boolean isEmpty() {
+            for (int i = 0; i < NUM_STRIPES; i++) {
+                final Stripe stripe = stripes.get(i);
+                if (stripe != null && stripe.size() > 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        long ramBytesUsed() {
+            long ramBytesUsed = 0;
+            for (int i = 0; i < NUM_STRIPES; i++) {
+                final Stripe stripe = stripes.get(i);
+                if (stripe != null) {
+                    ramBytesUsed += stripe.ramBytesUsed();
+                }
+            }
+            return ramBytesUsed;
+        }
+
+        @Override
+        public void close() {
+            synchronized (this) {
+                closed = true;
+            }
+            // no stripes are added once closed
+            final List<Stripe> toClose = new ArrayList<>();
+            for (int i = 0; i < NUM_STRIPES; i++) {
+                final Stripe stripe = stripes.get(i);
+                if (stripe != null) {
+                    toClose.add(stripe);
+                }
+            }
+            Releasables.close(toClose);
+        }
+    }
+
+    private static class Maps implements Releasable {
 
         // All writes (adds and deletes) go into here:
-        final Map<BytesRef,VersionValue> current;
+        final VersionLookup current;
 
         // Used while refresh is running, and to hold adds/deletes until refresh finishes.  We read from both current and old on lookup:
-        final Map<BytesRef,VersionValue> old;
+        final VersionLookup old;
+
+        // True if the maps these were derived from were accessed in safe mode. We then stay in safe mode for another refresh cycle to
+        // prevent flip-flopping between safe and unsafe mode on workloads that mix appends with realtime gets or updates:
+        final boolean previousMapsNeededSafeAccess;
+
+        // Set once a caller needs every indexed uid to be in the map, from then on append-only operations are added as well:
+        volatile boolean needsSafeAccess;
 
-        public Maps(Map<BytesRef,VersionValue> current, Map<BytesRef,VersionValue> old) {
+        Maps(VersionLookup current, VersionLookup old, boolean previousMapsNeededSafeAccess) {
            this.current = current;
            this.old = old;
+           this.previousMapsNeededSafeAccess = previousMapsNeededSafeAccess;
         }
 
-        public Maps() {
-            this(ConcurrentCollections.<BytesRef,VersionValue>newConcurrentMapWithAggressiveConcurrency(),
-                 ConcurrentCollections.<BytesRef,VersionValue>newConcurrentMapWithAggressiveConcurrency());
+        Maps(BigArrays bigArrays) {
+            this(new VersionLookup(bigArrays), VersionLookup.EMPTY, false);
+        }
+
+        boolean isSafeAccessMode() {
+            return needsSafeAccess || previousMapsNeededSafeAccess;
+        }
+
+        boolean isUnsafe() {
+            return current.unsafe || old.unsafe;
+        }
+
+        boolean shouldInheritSafeAccess() {
+            final boolean mapHasNotSeenAnyOperations = current.isEmpty() && current.unsafe == false;
+            // if we haven't seen any operations since the previous maps needed safe access we keep it
+            return needsSafeAccess || (mapHasNotSeenAnyOperations && previousMapsNeededSafeAccess);
+        }
+
+        /** Returns the maps to use while a refresh is running: a fresh current map and the current map becoming the old one. */
+        Maps buildTransitionMaps(BigArrays bigArrays) {
+            return new Maps(new VersionLookup(bigArrays), current, shouldInheritSafeAccess());
+        }
+
+        /** Returns the maps to use once a refresh finished, dropping old since all its operations are now visible. */
+        Maps invalidateOldMap() {
+            final Maps newMaps = new Maps(current, VersionLookup.EMPTY, previousMapsNeededSafeAccess);
+            newMaps.needsSafeAccess = needsSafeAccess;
+            return newMaps;
+        }
+
+        @Override
+        public void close() {
+            Releasables.close(current, old);
         }
     }
 
     // All deletes also go here, and delete "tombstones" are retained after refresh:
     private final Map<BytesRef,VersionValue> tombstones = ConcurrentCollections.newConcurrentMapWithAggressiveConcurrency();
 
-    private volatile Maps maps = new Maps();
+    private final BigArrays bigArrays;
+
+    private volatile Maps maps;
 
     private ReferenceManager<?> mgr;
 
@@ -80,7 +311,7 @@ class LiveVersionMap implements ReferenceManager.RefreshListener, Accountable {
     /** Bytes used by having CHM point to a key/value. */
     private static final long BASE_BYTES_PER_CHM_ENTRY;
     static {
-        // use the same impl as the Maps does
+        // use the same impl as the tombstones do
         Map<Integer, Integer> map = ConcurrentCollections.newConcurrentMapWithAggressiveConcurrency();
         map.put(0, 0);
         long chmEntryShallowSize = RamUsageEstimator.shallowSizeOf(map.entrySet().iterator().next());
@@ -91,13 +322,14 @@ class LiveVersionMap implements ReferenceManager.RefreshListener, Accountable {
         BASE_BYTES_PER_CHM_ENTRY = chmEntryShallowSize + 2 * RamUsageEstimator.NUM_BYTES_OBJECT_REF;
     }
 
-    /** Tracks bytes used by current map, i.e. what is freed on refresh. For deletes, which are also added to tombstones, we only account
-     *  for the CHM entry here, and account for BytesRef/VersionValue against the tombstones, since refresh would not clear this RAM. */
-    final AtomicLong ramBytesUsedCurrent = new AtomicLong();
-
     /** Tracks bytes used by tombstones (deletes) */
     final AtomicLong ramBytesUsedTombstones = new AtomicLong();
 
+    LiveVersionMap(BigArrays bigArrays) {
+        this.bigArrays = bigArrays;
+        this.maps = new Maps(bigArrays);
+    }
+
     /** Sync'd because we replace old mgr. */
     synchronized void setManager(ReferenceManager<?> newMgr) {
         if (mgr != null) {
@@ -107,7 +339,9 @@ class LiveVersionMap implements ReferenceManager.RefreshListener, Accountable {
 
         // In case InternalEngine closes & opens a new IndexWriter/SearcherManager, all deletes are made visible, so we clear old and
         // current here.  This is safe because caller holds writeLock here (so no concurrent adds/deletes can be happeninge):
-        maps = new Maps();
+        final Maps previousMaps = maps;
+        maps = new Maps(bigArrays);
+        previousMaps.close();
 
         // So we are notified when reopen starts and finishes
         mgr.addListener(this);
@@ -119,11 +353,7 @@ class LiveVersionMap implements ReferenceManager.RefreshListener, Accountable {
         // map.  While reopen is running, any lookup will first
         // try this new map, then fallback to old, then to the
         // current searcher:
-        maps = new Maps(ConcurrentCollections.<BytesRef,VersionValue>newConcurrentMapWithAggressiveConcurrency(), maps.current);
-
-        // This is not 100% correct, since concurrent indexing ops can change these counters in between our execution of the previous
-        // line and this one, but that should be minor, and the error won't accumulate over time:
-        ramBytesUsedCurrent.set(0);
+        maps = maps.buildTransitionMaps(bigArrays);
     }
 
     @Override
@@ -133,8 +363,43 @@ class LiveVersionMap implements ReferenceManager.RefreshListener, Accountable {
         // is fine: it means they were actually already included in the previously opened reader, so we can still safely drop them in that
         // case.  This is because we assign new maps (in beforeRefresh) slightly before Lucene actually flushes any segments for the
         // reopen, and so any concurrent indexing requests can still sneak in a few additions to that current map that are in fact reflected
-        // in the previous reader.   We don't touch tombstones here: they expire on their own index.gc_deletes timeframe:
-        maps = new Maps(maps.current, ConcurrentCollections.<BytesRef,VersionValue>newConcurrentMapWithAggressiveConcurrency());
+        // in the previous reader.   We don't touch tombstones here: they expire on their own index.gc_deletes timeframe.  Releasing old
+        // hands its pages back to BigArrays, concurrent lookups that still see it treat it as empty which is fine since the searcher
+        // was already swapped:
+        final Maps transitionMaps = maps;
+        maps = transitionMaps.invalidateOldMap();
+        transitionMaps.old.close();
+    }
+
+    /**
+     * Returns <code>true</code> iff an append-only operation was indexed without adding its uid to this map and might not be visible
+     * to the searcher yet. A miss in this map can then not be used to conclude that the uid is not in the index.
+     */
+    boolean isUnsafe() {
+        return maps.isUnsafe();
+    }
+
+    /**
+     * Returns <code>true</code> iff append-only operations must be added to this map since somebody recently relied on lookups.
+     */
+    boolean isSafeAccessRequired() {
+        return maps.isSafeAccessMode();
+    }
+
+    /**
+     * Records that an append-only operation was indexed without adding its uid to this map. Must be called after the operation was
+     * added to the index writer, so the next refresh is guaranteed to make it visible.
+     */
+    void markAsUnsafe() {
+        maps.current.unsafe = true;
+    }
+
+    /**
+     * Forces append-only operations to be added to this map from now on. This is relaxed again once a refresh cycle passes without
+     * any operation needing safe access.
+     */
+    void enforceSafeAccess() {
+        maps.needsSafeAccess = true;
     }
 
     /** Returns the live version (add or delete) for this uid. */
@@ -158,40 +423,15 @@ class LiveVersionMap implements ReferenceManager.RefreshListener, Accountable {
     /** Adds this uid/version to the pending adds map. */
     void putUnderLock(BytesRef uid, VersionValue version) {
         assert uid.bytes.length == uid.length : "Oversized _uid! UID length: " + uid.length + ", bytes length: " + uid.bytes.length;
-        long uidRAMBytesUsed = BASE_BYTES_PER_BYTESREF + uid.bytes.length;
 
-        final VersionValue prev = maps.current.put(uid, version);
-        if (prev != null) {
-            // Deduct RAM for the version we just replaced:
-            long prevBytes = BASE_BYTES_PER_CHM_ENTRY;
-            if (prev.delete() == false) {
-                prevBytes += prev.ramBytesUsed() + uidRAMBytesUsed;
-            }
-            ramBytesUsedCurrent.addAndGet(-prevBytes);
-        }
-
-        // Add RAM for the new version:
-        long newBytes = BASE_BYTES_PER_CHM_ENTRY;
-        if (version.delete() == false) {
-            newBytes += version.ramBytesUsed() + uidRAMBytesUsed;
-        }
-        ramBytesUsedCurrent.addAndGet(newBytes);
+        // the uid bytes are copied into the pages of the current lookup:
+        maps.current.put(uid, version);
 
         final VersionValue prevTombstone;
         if (version.delete()) {
             // Also enroll the delete into tombstones, and account for its RAM too:
             prevTombstone = tombstones.put(uid, version);
-
-            // We initially account for BytesRef/VersionValue RAM for a delete against the tombstones, because this RAM will not be freed up
-            // on refresh. Later, in removeTombstoneUnderLock, if we clear the tombstone entry but the delete remains in current, we shift
-            // the accounting to current:
-            ramBytesUsedTombstones.addAndGet(BASE_BYTES_PER_CHM_ENTRY + version.ramBytesUsed() + uidRAMBytesUsed);
-
-            if (prevTombstone == null && prev != null && prev.delete()) {
-                // If prev was a delete that had already been removed from tombstones, then current was already accounting for the
-                // BytesRef/VersionValue RAM, so we now deduct that as well:
-                ramBytesUsedCurrent.addAndGet(-(prev.ramBytesUsed() + uidRAMBytesUsed));
-            }
+            ramBytesUsedTombstones.addAndGet(BASE_BYTES_PER_CHM_ENTRY + version.ramBytesUsed() + BASE_BYTES_PER_BYTESREF + uid.bytes.length);
         } else {
             // UID came back to life so we remove the tombstone:
             prevTombstone = tombstones.remove(uid);
@@ -199,29 +439,21 @@ class LiveVersionMap implements ReferenceManager.RefreshListener, Accountable {
 
         // Deduct tombstones bytes used for the version we just removed or replaced:
         if (prevTombstone != null) {
-            long v = ramBytesUsedTombstones.addAndGet(-(BASE_BYTES_PER_CHM_ENTRY + prevTombstone.ramBytesUsed() + uidRAMBytesUsed));
+            long v = ramBytesUsedTombstones.addAndGet(-(BASE_BYTES_PER_CHM_ENTRY + prevTombstone.ramBytesUsed() + BASE_BYTES_PER_BYTESREF
+                + uid.bytes.length));
             assert v >= 0: "bytes=" + v;
         }
     }
 
     /** Removes this uid from the pending deletes map. */
     void removeTombstoneUnderLock(BytesRef uid) {
-
-        long uidRAMBytesUsed = BASE_BYTES_PER_BYTESREF + uid.bytes.length;
-
         final VersionValue prev = tombstones.remove(uid);
         if (prev != null) {
             assert prev.delete();
-            long v = ramBytesUsedTombstones.addAndGet(-(BASE_BYTES_PER_CHM_ENTRY + prev.ramBytesUsed() + uidRAMBytesUsed));
+            long v = ramBytesUsedTombstones.addAndGet(-(BASE_BYTES_PER_CHM_ENTRY + prev.ramBytesUsed() + BASE_BYTES_PER_BYTESREF
+                + uid.bytes.length));
             assert v >= 0: "bytes=" + v;
         }
-        final VersionValue curVersion = maps.current.get(uid);
-        if (curVersion != null && curVersion.delete()) {
-            // We now shift accounting of the BytesRef from tombstones to current, because a refresh would clear this RAM.  This should be
-            // uncommon, because with the default refresh=1s and gc_deletes=60s, deletes should be cleared from current long before we drop
-            // them from tombstones:
-            ramBytesUsedCurrent.addAndGet(curVersion.ramBytesUsed() + uidRAMBytesUsed);
-        }
     }
 
     /** Caller has a lock, so that this uid will not be concurrently added/deleted by another thread. */
@@ -236,9 +468,9 @@ class LiveVersionMap implements ReferenceManager.RefreshListener, Accountable {
 
     /** Called when this index is closed. */
     synchronized void clear() {
-        maps = new Maps();
+        // Closed lookups behave like empty ones, so we keep them around instead of allocating new pages for a closed engine:
+        maps.close();
         tombstones.clear();
-        ramBytesUsedCurrent.set(0);
 
         // NOTE: we can't zero this here, because a refresh thread could be calling InternalEngine.pruneDeletedTombstones at the same time,
         // and this will lead to an assert trip.  Presumably it's fine if our ramBytesUsedTombstones is non-zero after clear since the index
@@ -253,13 +485,13 @@ class LiveVersionMap implements ReferenceManager.RefreshListener, Accountable {
 
     @Override
     public long ramBytesUsed() {
-        return ramBytesUsedCurrent.get() + ramBytesUsedTombstones.get();
+        return ramBytesUsedForRefresh() + ramBytesUsedTombstones.get();
     }
 
     /** Returns how much RAM would be freed up by refreshing. This is {@link #ramBytesUsed} except does not include tombstones because they
      *  don't clear on refresh. */
     long ramBytesUsedForRefresh() {
-        return ramBytesUsedCurrent.get();
+        return maps.current.ramBytesUsed();
     }
 
     @Override
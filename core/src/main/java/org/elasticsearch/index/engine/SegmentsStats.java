@@ -21,6 +21,7 @@ package org.elasticsearch.index.engine;
 
 import com.carrotsearch.hppc.cursors.ObjectObjectCursor;
 
+import org.elasticsearch.Version;
 import org.elasticsearch.common.collect.ImmutableOpenMap;
 import org.elasticsearch.common.io.stream.StreamInput;
 import org.elasticsearch.common.io.stream.StreamOutput;
@@ -45,6 +46,8 @@ public class SegmentsStats implements Streamable, ToXContent {
     private long indexWriterMemoryInBytes;
     private long versionMapMemoryInBytes;
     private long maxUnsafeAutoIdTimestamp = Long.MIN_VALUE;
+    private long optimizedAppendCount;
+    private long deOptimizedAppendCount;
     private long bitsetMemoryInBytes;
     private ImmutableOpenMap<String, Long> fileSizes = ImmutableOpenMap.of();
 
@@ -119,6 +122,11 @@ public class SegmentsStats implements Streamable, ToXContent {
         this.maxUnsafeAutoIdTimestamp = Math.max(maxUnsafeAutoIdTimestamp, this.maxUnsafeAutoIdTimestamp);
     }
 
+    void addAppendOnlyOperations(long optimizedAppendCount, long deOptimizedAppendCount) {
+        this.optimizedAppendCount += optimizedAppendCount;
+        this.deOptimizedAppendCount += deOptimizedAppendCount;
+    }
+
     public void addBitsetMemoryInBytes(long bitsetMemoryInBytes) {
         this.bitsetMemoryInBytes += bitsetMemoryInBytes;
     }
@@ -154,6 +162,7 @@ public class SegmentsStats implements Streamable, ToXContent {
         addIndexWriterMemoryInBytes(mergeStats.indexWriterMemoryInBytes);
         addVersionMapMemoryInBytes(mergeStats.versionMapMemoryInBytes);
         addBitsetMemoryInBytes(mergeStats.bitsetMemoryInBytes);
+        addAppendOnlyOperations(mergeStats.optimizedAppendCount, mergeStats.deOptimizedAppendCount);
         addFileSizes(mergeStats.fileSizes);
     }
 
@@ -286,6 +295,21 @@ public class SegmentsStats implements Streamable, ToXContent {
         return maxUnsafeAutoIdTimestamp;
     }
 
+    /**
+     * Returns the number of documents with auto-generated IDs that were appended to the index without looking up their version.
+     */
+    public long getOptimizedAppendCount() {
+        return optimizedAppendCount;
+    }
+
+    /**
+     * Returns the number of documents with auto-generated IDs that were indexed with a full update since they were retried, or arrived
+     * after a retry with a newer timestamp.
+     */
+    public long getDeOptimizedAppendCount() {
+        return deOptimizedAppendCount;
+    }
+
     public static SegmentsStats readSegmentsStats(StreamInput in) throws IOException {
         SegmentsStats stats = new SegmentsStats();
         stats.readFrom(in);
@@ -307,6 +331,8 @@ public class SegmentsStats implements Streamable, ToXContent {
         builder.byteSizeField(Fields.VERSION_MAP_MEMORY_IN_BYTES, Fields.VERSION_MAP_MEMORY, versionMapMemoryInBytes);
         builder.byteSizeField(Fields.FIXED_BIT_SET_MEMORY_IN_BYTES, Fields.FIXED_BIT_SET, bitsetMemoryInBytes);
         builder.field(Fields.MAX_UNSAFE_AUTO_ID_TIMESTAMP, maxUnsafeAutoIdTimestamp);
+        builder.field(Fields.OPTIMIZED_APPENDS, optimizedAppendCount);
+        builder.field(Fields.DEOPTIMIZED_APPENDS, deOptimizedAppendCount);
         builder.startObject(Fields.FILE_SIZES);
         for (Iterator<ObjectObjectCursor<String, Long>> it = fileSizes.iterator(); it.hasNext();) {
             ObjectObjectCursor<String, Long> entry = it.next();
@@ -342,6 +368,8 @@ public class SegmentsStats implements Streamable, ToXContent {
         static final String VERSION_MAP_MEMORY = "version_map_memory";
         static final String VERSION_MAP_MEMORY_IN_BYTES = "version_map_memory_in_bytes";
         static final String MAX_UNSAFE_AUTO_ID_TIMESTAMP = "max_unsafe_auto_id_timestamp";
+        static final String OPTIMIZED_APPENDS = "optimized_appends";
+        static final String DEOPTIMIZED_APPENDS = "deoptimized_appends";
         static final String FIXED_BIT_SET = "fixed_bit_set";
         static final String FIXED_BIT_SET_MEMORY_IN_BYTES = "fixed_bit_set_memory_in_bytes";
         static final String FILE_SIZES = "file_sizes";
@@ -364,6 +392,10 @@ public class SegmentsStats implements Streamable, ToXContent {
         versionMapMemoryInBytes = in.readLong();
         bitsetMemoryInBytes = in.readLong();
         maxUnsafeAutoIdTimestamp = in.readLong();
+        if (in.getVersion().onOrAfter(Version.V_6_0_0_alpha1)) {
+            optimizedAppendCount = in.readVLong();
+            deOptimizedAppendCount = in.readVLong();
+        }
 
         int size = in.readVInt();
         ImmutableOpenMap.Builder<String, Long> map = ImmutableOpenMap.builder(size);
@@ -389,6 +421,10 @@ public class SegmentsStats implements Streamable, ToXContent {
         out.writeLong(versionMapMemoryInBytes);
         out.writeLong(bitsetMemoryInBytes);
         out.writeLong(maxUnsafeAutoIdTimestamp);
+        if (out.getVersion().onOrAfter(Version.V_6_0_0_alpha1)) {
+            out.writeVLong(optimizedAppendCount);
+            out.writeVLong(deOptimizedAppendCount);
+        }
 
         out.writeVInt(fileSizes.size());
         for (Iterator<ObjectObjectCursor<String, Long>> it = fileSizes.iterator(); it.hasNext();) {
@@ -0,0 +1,86 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.index.engine;
+
+import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.common.cache.Cache;
+import org.elasticsearch.common.cache.CacheBuilder;
+import org.elasticsearch.common.metrics.CounterMetric;
+import org.elasticsearch.index.translog.Translog;
+
+/**
+ * Remembers the translog locations of the most recently indexed documents, so that realtime gets of documents that aren't
+ * visible to searches yet can read them from the translog instead of refreshing. The least recently used locations are
+ * evicted once the cache is full.
+ */
+final class TranslogLocationCache {
+
+    private final Cache<BytesRef, Translog.Location> locations;
+    private final CounterMetric hits = new CounterMetric();
+    private final CounterMetric misses = new CounterMetric();
+
+    /**
+     * @param size how many locations to remember, <code>0</code> disables the cache
+     */
+    TranslogLocationCache(int size) {
+        locations = size == 0 ? null : CacheBuilder.<BytesRef, Translog.Location>builder().setMaximumWeight(size).build();
+    }
+
+    /** remembers where the latest version of the document with the given uid was written, must be called under the uid lock */
+    void put(BytesRef uid, Translog.Location location) {
+        if (locations != null) {
+            locations.put(uid, location);
+        }
+    }
+
+    /** forgets the location of the document with the given uid, must be called under the uid lock */
+    void remove(BytesRef uid) {
+        if (locations != null) {
+            locations.invalidate(uid);
+        }
+    }
+
+    /** the location of the latest known version of the document with the given uid, or <code>null</code> if not known */
+    Translog.Location get(BytesRef uid) {
+        return locations == null ? null : locations.get(uid);
+    }
+
+    void clear() {
+        if (locations != null) {
+            locations.invalidateAll();
+        }
+    }
+
+    void onHit() {
+        hits.inc();
+    }
+
+    void onMiss() {
+        misses.inc();
+    }
+
+    long hits() {
+        return hits.count();
+    }
+
+    long misses() {
+        return misses.count();
+    }
+}
@@ -135,6 +135,31 @@ public interface IndexFieldData<FD extends AtomicFieldData> extends IndexCompone
             }
         }
 
+        protected final Object missingValue;
+        protected final MultiValueMode sortMode;
+        protected final Nested nested;
+
+        protected XFieldComparatorSource(@Nullable Object missingValue, MultiValueMode sortMode, @Nullable Nested nested) {
+            this.missingValue = missingValue;
+            this.sortMode = sortMode;
+            this.nested = nested;
+        }
+
+        /** The value of documents that don't have a value, or {@code _first}/{@code _last}, {@code null} means {@code _last}. */
+        public Object missingValue() {
+            return missingValue;
+        }
+
+        /** How the values of a multi-valued document are reduced to the value to sort on. */
+        public MultiValueMode sortMode() {
+            return sortMode;
+        }
+
+        /** The nested documents to take the values from, or {@code null} if the values come from the documents themselves. */
+        public Nested nested() {
+            return nested;
+        }
+
         /** Whether missing values should be sorted first. */
         protected final boolean sortMissingFirst(Object missingValue) {
             return "_first".equals(missingValue);
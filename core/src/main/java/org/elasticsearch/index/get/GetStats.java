@@ -19,6 +19,7 @@
 
 package org.elasticsearch.index.get;
 
+import org.elasticsearch.Version;
 import org.elasticsearch.common.io.stream.StreamInput;
 import org.elasticsearch.common.io.stream.StreamOutput;
 import org.elasticsearch.common.io.stream.Streamable;
@@ -37,16 +38,21 @@ public class GetStats implements Streamable, ToXContent {
     private long missingCount;
     private long missingTimeInMillis;
     private long current;
+    private long translogHitCount;
+    private long translogMissCount;
 
     public GetStats() {
     }
 
-    public GetStats(long existsCount, long existsTimeInMillis, long missingCount, long missingTimeInMillis, long current) {
+    public GetStats(long existsCount, long existsTimeInMillis, long missingCount, long missingTimeInMillis, long current,
+                    long translogHitCount, long translogMissCount) {
         this.existsCount = existsCount;
         this.existsTimeInMillis = existsTimeInMillis;
         this.missingCount = missingCount;
         this.missingTimeInMillis = missingTimeInMillis;
         this.current = current;
+        this.translogHitCount = translogHitCount;
+        this.translogMissCount = translogMissCount;
     }
 
     public void add(GetStats stats) {
@@ -66,6 +72,8 @@ public class GetStats implements Streamable, ToXContent {
         missingCount += stats.missingCount;
         missingTimeInMillis += stats.missingTimeInMillis;
         current += stats.current;
+        translogHitCount += stats.translogHitCount;
+        translogMissCount += stats.translogMissCount;
     }
 
     public long getCount() {
@@ -108,6 +116,20 @@ public class GetStats implements Streamable, ToXContent {
         return this.current;
     }
 
+    /**
+     * The number of realtime gets of documents that weren't visible to searches yet that were read from the translog.
+     */
+    public long getTranslogHitCount() {
+        return this.translogHitCount;
+    }
+
+    /**
+     * The number of realtime gets of documents that weren't visible to searches yet that had to refresh instead.
+     */
+    public long getTranslogMissCount() {
+        return this.translogMissCount;
+    }
+
     @Override
     public XContentBuilder toXContent(XContentBuilder builder, Params params) throws IOException {
         builder.startObject(Fields.GET);
@@ -118,6 +140,8 @@ public class GetStats implements Streamable, ToXContent {
         builder.field(Fields.MISSING_TOTAL, missingCount);
         builder.timeValueField(Fields.MISSING_TIME_IN_MILLIS, Fields.MISSING_TIME, missingTimeInMillis);
         builder.field(Fields.CURRENT, current);
+        builder.field(Fields.TRANSLOG_HIT_TOTAL, translogHitCount);
+        builder.field(Fields.TRANSLOG_MISS_TOTAL, translogMissCount);
         builder.endObject();
         return builder;
     }
@@ -134,6 +158,8 @@ public class GetStats implements Streamable, ToXContent {
         static final String MISSING_TIME = "missing_time";
         static final String MISSING_TIME_IN_MILLIS = "missing_time_in_millis";
         static final String CURRENT = "current";
+        static final String TRANSLOG_HIT_TOTAL = "translog_hit_total";
+        static final String TRANSLOG_MISS_TOTAL = "translog_miss_total";
     }
 
     public static GetStats readGetStats(StreamInput in) throws IOException {
@@ -149,6 +175,10 @@ public class GetStats implements Streamable, ToXContent {
         missingCount = in.readVLong();
         missingTimeInMillis = in.readVLong();
         current = in.readVLong();
+        if (in.getVersion().onOrAfter(Version.V_6_0_0_alpha1)) {
+            translogHitCount = in.readVLong();
+            translogMissCount = in.readVLong();
+        }
     }
 
     @Override
@@ -158,5 +188,9 @@ public class GetStats implements Streamable, ToXContent {
         out.writeVLong(missingCount);
         out.writeVLong(missingTimeInMillis);
         out.writeVLong(current);
+        if (out.getVersion().onOrAfter(Version.V_6_0_0_alpha1)) {
+            out.writeVLong(translogHitCount);
+            out.writeVLong(translogMissCount);
+        }
     }
 }
@@ -19,11 +19,20 @@
 
 package org.elasticsearch.index.get;
 
+import org.apache.lucene.codecs.StoredFieldsReader;
+import org.apache.lucene.index.CodecReader;
+import org.apache.lucene.index.IndexableField;
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.LeafReaderContext;
 import org.apache.lucene.index.Term;
+import org.apache.lucene.util.BytesRef;
 import org.elasticsearch.ElasticsearchException;
+import org.elasticsearch.action.get.MultiGetRequest;
 import org.elasticsearch.common.Nullable;
+import org.elasticsearch.common.bytes.BytesArray;
 import org.elasticsearch.common.bytes.BytesReference;
 import org.elasticsearch.common.collect.Tuple;
+import org.elasticsearch.common.lucene.index.ElasticsearchLeafReader;
 import org.elasticsearch.common.lucene.uid.Versions;
 import org.elasticsearch.common.metrics.CounterMetric;
 import org.elasticsearch.common.metrics.MeanMetric;
@@ -39,26 +48,41 @@ import org.elasticsearch.index.fieldvisitor.CustomFieldsVisitor;
 import org.elasticsearch.index.fieldvisitor.FieldsVisitor;
 import org.elasticsearch.index.mapper.DocumentMapper;
 import org.elasticsearch.index.mapper.FieldMapper;
+import org.elasticsearch.index.mapper.MappedFieldType;
 import org.elasticsearch.index.mapper.MapperService;
 import org.elasticsearch.index.mapper.ParentFieldMapper;
+import org.elasticsearch.index.mapper.ParsedDocument;
+import org.elasticsearch.index.mapper.RoutingFieldMapper;
 import org.elasticsearch.index.mapper.SourceFieldMapper;
+import org.elasticsearch.index.mapper.SourceToParse;
+import org.elasticsearch.index.mapper.TTLFieldMapper;
+import org.elasticsearch.index.mapper.TimestampFieldMapper;
 import org.elasticsearch.index.mapper.Uid;
 import org.elasticsearch.index.mapper.UidFieldMapper;
 import org.elasticsearch.index.shard.AbstractIndexShardComponent;
 import org.elasticsearch.index.shard.IndexShard;
+import org.elasticsearch.index.translog.Translog;
 import org.elasticsearch.search.fetch.subphase.FetchSourceContext;
 import org.elasticsearch.search.fetch.subphase.ParentFieldSubFetchPhase;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.TimeUnit;
+import java.util.function.ObjIntConsumer;
 
 /**
  */
 public final class ShardGetService extends AbstractIndexShardComponent {
+    // the metadata fields besides _uid and _parent that FieldsVisitor always loads
+    private static final Set<String> META_FIELDS = Collections.unmodifiableSet(Sets.newHashSet(
+        RoutingFieldMapper.NAME, TimestampFieldMapper.NAME, TTLFieldMapper.NAME));
     private final MapperService mapperService;
     private final MeanMetric existsMetric = new MeanMetric();
     private final MeanMetric missingMetric = new MeanMetric();
@@ -72,8 +96,13 @@ public final class ShardGetService extends AbstractIndexShardComponent {
         this.indexShard = indexShard;
     }
 
-    public GetStats stats() {
-        return new GetStats(existsMetric.count(), TimeUnit.NANOSECONDS.toMillis(existsMetric.sum()), missingMetric.count(), TimeUnit.NANOSECONDS.toMillis(missingMetric.sum()), currentMetric.count());
+    /**
+     * @param translogHits   how many realtime gets the engine read from the translog
+     * @param translogMisses how many realtime gets the engine had to refresh for
+     */
+    public GetStats stats(long translogHits, long translogMisses) {
+        return new GetStats(existsMetric.count(), TimeUnit.NANOSECONDS.toMillis(existsMetric.sum()), missingMetric.count(), TimeUnit.NANOSECONDS.toMillis(missingMetric.sum()), currentMetric.count(),
+            translogHits, translogMisses);
     }
 
     public GetResult get(String type, String id, String[] gFields, boolean realtime, long version, VersionType versionType, FetchSourceContext fetchSourceContext, boolean ignoreErrorsOnGeneratedFields) {
@@ -93,6 +122,141 @@ public final class ShardGetService extends AbstractIndexShardComponent {
         }
     }
 
+    /**
+     * Gets many documents at once. The uids of all items are looked up together, see {@link IndexShard#multiGet(List)}, and the
+     * documents that are loaded from the index are visited in doc id order, so that every block of stored fields is decompressed
+     * only once even if it holds several of them. Calls <code>onResult</code> or <code>onFailure</code> with the position of every
+     * item.
+     */
+    public void multiGet(List<MultiGetRequest.Item> items, boolean realtime, boolean ignoreErrorsOnGeneratedFields,
+                         ObjIntConsumer<GetResult> onResult, ObjIntConsumer<Exception> onFailure) {
+        final List<Engine.Get> gets = new ArrayList<>(items.size());
+        final List<Integer> positions = new ArrayList<>(items.size());
+        for (int i = 0; i < items.size(); i++) {
+            final MultiGetRequest.Item item = items.get(i);
+            if (item.type() == null || item.type().equals("_all")) {
+                // the type is found by looking the document up for every type in turn
+                final GetResult getResult;
+                try {
+                    getResult = get(item.type(), item.id(), item.fields(), realtime, item.version(), item.versionType(),
+                        item.fetchSourceContext(), ignoreErrorsOnGeneratedFields);
+                } catch (Exception e) {
+                    onFailure.accept(e, i);
+                    continue;
+                }
+                onResult.accept(getResult, i);
+            } else {
+                gets.add(new Engine.Get(realtime, new Term(UidFieldMapper.NAME, Uid.createUidAsBytes(item.type(), item.id())))
+                    .version(item.version()).versionType(item.versionType()).loadFromTranslog(true));
+                positions.add(i);
+            }
+        }
+        if (gets.isEmpty()) {
+            return;
+        }
+
+        currentMetric.inc(gets.size());
+        try {
+            final long start = System.nanoTime();
+            try (Engine.MultiGetResult results = indexShard.multiGet(gets)) {
+                // the time it took to look up all uids is shared by the items
+                final long lookupNanos = (System.nanoTime() - start) / gets.size();
+                final Map<Integer, StoredFieldsReader> fieldsReaders = storedFieldsReaders(results);
+                for (int j : docIdOrder(results)) {
+                    final long now = System.nanoTime();
+                    final int i = positions.get(j);
+                    final MultiGetRequest.Item item = items.get(i);
+                    if (results.failure(j) != null) {
+                        onFailure.accept(results.failure(j), i);
+                        continue;
+                    }
+                    final Engine.GetResult get = results.result(j);
+                    final GetResult getResult;
+                    try {
+                        if (get.exists() == false) {
+                            getResult = new GetResult(shardId.getIndexName(), item.type(), item.id(), -1, false, null, null);
+                        } else {
+                            final FetchSourceContext fetchSourceContext = normalizeFetchSourceContent(item.fetchSourceContext(), item.fields());
+                            if (get.source() != null) {
+                                getResult = innerGetLoadFromTranslog(item.type(), item.id(), item.fields(), fetchSourceContext, get, mapperService);
+                            } else {
+                                getResult = innerGetLoadFromStoredFields(item.type(), item.id(), item.fields(), fetchSourceContext, get, mapperService,
+                                    fieldsReaders.get(get.docIdAndVersion().context.ord));
+                            }
+                        }
+                    } catch (Exception e) {
+                        onFailure.accept(e, i);
+                        continue;
+                    }
+                    if (getResult.isExists()) {
+                        existsMetric.inc(lookupNanos + System.nanoTime() - now);
+                    } else {
+                        missingMetric.inc(lookupNanos + System.nanoTime() - now);
+                    }
+                    onResult.accept(getResult, i);
+                }
+            }
+        } finally {
+            currentMetric.dec(gets.size());
+        }
+    }
+
+    /**
+     * The positions of the results in the order in which their documents are stored in the index. Results that don't need to be
+     * loaded from the index come first.
+     */
+    private static Integer[] docIdOrder(Engine.MultiGetResult results) {
+        final Integer[] order = new Integer[results.size()];
+        final int[] docIds = new int[results.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+            final Engine.GetResult result = results.result(i);
+            if (result == null || result.docIdAndVersion() == null) {
+                docIds[i] = -1;
+            } else {
+                docIds[i] = result.docIdAndVersion().context.docBase + result.docIdAndVersion().docId;
+            }
+        }
+        Arrays.sort(order, Comparator.comparingInt(i -> docIds[i]));
+        return order;
+    }
+
+    /**
+     * Stored fields readers for the segments that hold more than one of the documents to load. They are merge instances, which
+     * decompress a whole block of documents once instead of decompressing the block up to the document for every document. Segments
+     * whose reader is wrapped by something else than {@link ElasticsearchLeafReader} might filter stored fields, so they are read
+     * through their reader.
+     */
+    private static Map<Integer, StoredFieldsReader> storedFieldsReaders(Engine.MultiGetResult results) {
+        final Map<Integer, Integer> docsPerSegment = new HashMap<>();
+        for (int i = 0; i < results.size(); i++) {
+            final Engine.GetResult result = results.result(i);
+            if (result != null && result.docIdAndVersion() != null) {
+                docsPerSegment.merge(result.docIdAndVersion().context.ord, 1, Integer::sum);
+            }
+        }
+        final Map<Integer, StoredFieldsReader> fieldsReaders = new HashMap<>();
+        for (int i = 0; i < results.size(); i++) {
+            final Engine.GetResult result = results.result(i);
+            if (result == null || result.docIdAndVersion() == null) {
+                continue;
+            }
+            final LeafReaderContext context = result.docIdAndVersion().context;
+            if (docsPerSegment.get(context.ord) > 1 && fieldsReaders.containsKey(context.ord) == false
+                    && context.reader().getClass() == ElasticsearchLeafReader.class) {
+                final LeafReader segmentReader = ((ElasticsearchLeafReader) context.reader()).getDelegate();
+                if (segmentReader instanceof CodecReader) {
+                    try {
+                        fieldsReaders.put(context.ord, ((CodecReader) segmentReader).getFieldsReader().getMergeInstance());
+                    } catch (IOException e) {
+                        // the documents are read through the segment's reader, which fails them if reading is really broken
+                    }
+                }
+            }
+        }
+        return fieldsReaders;
+    }
+
     /**
      * Returns {@link GetResult} based on the specified {@link org.elasticsearch.index.engine.Engine.GetResult} argument.
      * This method basically loads specified fields for the associated document in the engineGetResult.
@@ -109,7 +273,7 @@ public final class ShardGetService extends AbstractIndexShardComponent {
         try {
             long now = System.nanoTime();
             fetchSourceContext = normalizeFetchSourceContent(fetchSourceContext, fields);
-            GetResult getResult = innerGetLoadFromStoredFields(type, id, fields, fetchSourceContext, engineGetResult, mapperService);
+            GetResult getResult = innerGetLoadFromStoredFields(type, id, fields, fetchSourceContext, engineGetResult, mapperService, null);
             if (getResult.isExists()) {
                 existsMetric.inc(System.nanoTime() - now);
             } else {
@@ -146,7 +310,7 @@ public final class ShardGetService extends AbstractIndexShardComponent {
         if (type == null || type.equals("_all")) {
             for (String typeX : mapperService.types()) {
                 get = indexShard.get(new Engine.Get(realtime, new Term(UidFieldMapper.NAME, Uid.createUidAsBytes(typeX, id)))
-                        .version(version).versionType(versionType));
+                        .version(version).versionType(versionType).loadFromTranslog(true));
                 if (get.exists()) {
                     type = typeX;
                     break;
@@ -163,7 +327,7 @@ public final class ShardGetService extends AbstractIndexShardComponent {
             }
         } else {
             get = indexShard.get(new Engine.Get(realtime, new Term(UidFieldMapper.NAME, Uid.createUidAsBytes(type, id)))
-                    .version(version).versionType(versionType));
+                    .version(version).versionType(versionType).loadFromTranslog(true));
             if (!get.exists()) {
                 get.release();
                 return new GetResult(shardId.getIndexName(), type, id, -1, false, null, null);
@@ -172,20 +336,31 @@ public final class ShardGetService extends AbstractIndexShardComponent {
 
         try {
             // break between having loaded it from translog (so we only have _source), and having a document to load
-            return innerGetLoadFromStoredFields(type, id, gFields, fetchSourceContext, get, mapperService);
+            if (get.source() != null) {
+                return innerGetLoadFromTranslog(type, id, gFields, fetchSourceContext, get, mapperService);
+            }
+            return innerGetLoadFromStoredFields(type, id, gFields, fetchSourceContext, get, mapperService, null);
         } finally {
             get.release();
         }
     }
 
-    private GetResult innerGetLoadFromStoredFields(String type, String id, String[] gFields, FetchSourceContext fetchSourceContext, Engine.GetResult get, MapperService mapperService) {
+    /**
+     * @param fieldsReader the stored fields of the segment of the document, or <code>null</code> to read them through the segment's reader
+     */
+    private GetResult innerGetLoadFromStoredFields(String type, String id, String[] gFields, FetchSourceContext fetchSourceContext, Engine.GetResult get, MapperService mapperService,
+                                                   @Nullable StoredFieldsReader fieldsReader) {
         Map<String, GetField> fields = null;
         BytesReference source = null;
         Versions.DocIdAndVersion docIdAndVersion = get.docIdAndVersion();
         FieldsVisitor fieldVisitor = buildFieldsVisitors(gFields, fetchSourceContext);
         if (fieldVisitor != null) {
             try {
-                docIdAndVersion.context.reader().document(docIdAndVersion.docId, fieldVisitor);
+                if (fieldsReader == null) {
+                    docIdAndVersion.context.reader().document(docIdAndVersion.docId, fieldVisitor);
+                } else {
+                    fieldsReader.visitDocument(docIdAndVersion.docId, fieldVisitor);
+                }
             } catch (IOException e) {
                 throw new ElasticsearchException("Failed to get type [" + type + "] and id [" + id + "]", e);
             }
@@ -209,6 +384,80 @@ public final class ShardGetService extends AbstractIndexShardComponent {
             fields.put(ParentFieldMapper.NAME, new GetField(ParentFieldMapper.NAME, Collections.singletonList(parentId)));
         }
 
+        return buildGetResult(type, id, gFields, fetchSourceContext, docMapper, get, source, fields);
+    }
+
+    /**
+     * Builds the {@link GetResult} of a document that was read from the translog because it isn't visible to searches yet.
+     * Stored fields, and the stored _source if the mapping filters it, are what the document mapper makes of the source, so
+     * the source is parsed again when they are needed.
+     */
+    private GetResult innerGetLoadFromTranslog(String type, String id, String[] gFields, FetchSourceContext fetchSourceContext, Engine.GetResult get, MapperService mapperService) {
+        Translog.Source translogSource = get.source();
+        DocumentMapper docMapper = mapperService.documentMapper(type);
+        Map<String, GetField> fields = null;
+        BytesReference source = null;
+        boolean requestedFields = gFields != null && gFields.length > 0;
+        if (requestedFields || fetchSourceContext.fetchSource()) {
+            Map<String, List<Object>> storedFields = new HashMap<>();
+            if (requestedFields || docMapper.sourceMapper().isComplete() == false
+                    || docMapper.timestampFieldMapper().enabled() || docMapper.TTLFieldMapper().enabled()) {
+                Set<String> fieldNames = requestedFields ? Sets.newHashSet(gFields) : Collections.emptySet();
+                ParsedDocument parsedDocument = docMapper.parse(
+                    SourceToParse.source(shardId.getIndexName(), type, id, translogSource.source).routing(translogSource.routing)
+                        .parent(translogSource.parent).timestamp(translogSource.timestamp).ttl(translogSource.ttl));
+                for (IndexableField field : parsedDocument.rootDoc()) {
+                    if (field.fieldType().stored() == false) {
+                        continue;
+                    }
+                    if (SourceFieldMapper.NAME.equals(field.name())) {
+                        source = new BytesArray(BytesRef.deepCopyOf(field.binaryValue()));
+                    } else if (META_FIELDS.contains(field.name()) || fieldNames.contains(field.name())) {
+                        storedFields.computeIfAbsent(field.name(), name -> new ArrayList<>(2)).add(storedValue(field));
+                    }
+                }
+            } else {
+                source = translogSource.source;
+                if (translogSource.routing != null) {
+                    storedFields.put(RoutingFieldMapper.NAME, Collections.singletonList(translogSource.routing));
+                }
+            }
+            if (storedFields.isEmpty() == false) {
+                fields = new HashMap<>(storedFields.size());
+                for (Map.Entry<String, List<Object>> entry : storedFields.entrySet()) {
+                    MappedFieldType fieldType = mapperService.fullName(entry.getKey());
+                    List<Object> values = new ArrayList<>(entry.getValue().size());
+                    for (Object value : entry.getValue()) {
+                        values.add(fieldType.valueForSearch(value));
+                    }
+                    fields.put(entry.getKey(), new GetField(entry.getKey(), values));
+                }
+            }
+        }
+
+        if (docMapper.parentFieldMapper().active()) {
+            if (fields == null) {
+                fields = new HashMap<>(1);
+            }
+            fields.put(ParentFieldMapper.NAME, new GetField(ParentFieldMapper.NAME, Collections.singletonList(translogSource.parent)));
+        }
+
+        return buildGetResult(type, id, gFields, fetchSourceContext, docMapper, get, source, fields);
+    }
+
+    /** the value of a stored field the way {@link FieldsVisitor} reads it from the index */
+    private static Object storedValue(IndexableField field) {
+        if (field.numericValue() != null) {
+            return field.numericValue();
+        }
+        if (field.binaryValue() != null) {
+            return BytesRef.deepCopyOf(field.binaryValue());
+        }
+        return field.stringValue();
+    }
+
+    private GetResult buildGetResult(String type, String id, String[] gFields, FetchSourceContext fetchSourceContext, DocumentMapper docMapper,
+                                     Engine.GetResult get, BytesReference source, Map<String, GetField> fields) {
         if (gFields != null && gFields.length > 0) {
             for (String field : gFields) {
                 FieldMapper fieldMapper = docMapper.mappers().smartNameFieldMapper(field);
@@ -58,6 +58,13 @@ public final class ContentPath {
         path[index--] = null;
     }
 
+    /**
+     * The number of path elements that are included in {@link #pathAsText(String)}.
+     */
+    public int length() {
+        return index - offset;
+    }
+
     public String pathAsText(String name) {
         sb.setLength(0);
         for (int i = offset; i < index; i++) {
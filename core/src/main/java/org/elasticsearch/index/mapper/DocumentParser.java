@@ -47,11 +47,13 @@ final class DocumentParser {
     private final IndexSettings indexSettings;
     private final DocumentMapperParser docMapperParser;
     private final DocumentMapper docMapper;
+    private final DocumentParsingPlan parsingPlan;
 
     public DocumentParser(IndexSettings indexSettings, DocumentMapperParser docMapperParser, DocumentMapper docMapper) {
         this.indexSettings = indexSettings;
         this.docMapperParser = docMapperParser;
         this.docMapper = docMapper;
+        this.parsingPlan = new DocumentParsingPlan(docMapper.root());
     }
 
     ParsedDocument parseDocument(SourceToParse source) throws MapperParsingException {
@@ -63,7 +65,7 @@ final class DocumentParser {
             context = new ParseContext.InternalParseContext(indexSettings.getSettings(),
                     docMapperParser, docMapper, source, parser);
             validateStart(parser);
-            internalParseDocument(mapping, context, parser);
+            internalParseDocument(mapping, parsingPlan.root(), context, parser);
             validateEnd(parser);
         } catch (Exception e) {
             throw wrapInMapperParsingException(source, e);
@@ -73,13 +75,17 @@ final class DocumentParser {
             throw new IllegalStateException("found leftover path elements: " + remainingPath);
         }
 
+        if (indexSettings.getIndexSortConfig().hasIndexSort()) {
+            indexSettings.getIndexSortConfig().addSortFields(context.rootDoc());
+        }
         reverseOrder(context);
 
         ParsedDocument doc = parsedDocument(source, context, createDynamicUpdate(mapping, docMapper, context.getDynamicMappers()));
         return doc;
     }
 
-    private static void internalParseDocument(Mapping mapping, ParseContext.InternalParseContext context, XContentParser parser) throws IOException {
+    private static void internalParseDocument(Mapping mapping, DocumentParsingPlan.Node root, ParseContext.InternalParseContext context,
+                                              XContentParser parser) throws IOException {
         final boolean emptyDoc = isEmptyDoc(mapping, parser);
 
         for (MetadataFieldMapper metadataMapper : mapping.metadataMappers) {
@@ -90,7 +96,7 @@ final class DocumentParser {
             // entire type is disabled
             parser.skipChildren();
         } else if (emptyDoc == false) {
-            parseObjectOrNested(context, mapping.root, true);
+            parseObjectOrNested(context, mapping.root, root, true);
         }
 
         for (MetadataFieldMapper metadataMapper : mapping.metadataMappers) {
@@ -322,6 +328,15 @@ final class DocumentParser {
     }
 
     static void parseObjectOrNested(ParseContext context, ObjectMapper mapper, boolean atRoot) throws IOException {
+        parseObjectOrNested(context, mapper, null, atRoot);
+    }
+
+    /**
+     * Parses an object. The node of the object in the parsing plan is used to look up the mappers of its fields, it is
+     * <code>null</code> for objects that are not part of the plan, like dynamically created ones.
+     */
+    private static void parseObjectOrNested(ParseContext context, ObjectMapper mapper, DocumentParsingPlan.Node node,
+                                            boolean atRoot) throws IOException {
         if (mapper.isEnabled() == false) {
             context.parser().skipChildren();
             return;
@@ -358,30 +373,33 @@ final class DocumentParser {
             token = parser.nextToken();
         }
 
-        innerParseObject(context, mapper, parser, currentFieldName, token);
+        innerParseObject(context, mapper, node, parser, currentFieldName, token);
         // restore the enable path flag
         if (nested.isNested()) {
             nested(context, nested);
         }
     }
 
-    private static void innerParseObject(ParseContext context, ObjectMapper mapper, XContentParser parser, String currentFieldName, XContentParser.Token token) throws IOException {
+    private static void innerParseObject(ParseContext context, ObjectMapper mapper, DocumentParsingPlan.Node node, XContentParser parser,
+                                         String currentFieldName, XContentParser.Token token) throws IOException {
+        // metadata field names have no dots, so only fields at the root of the document can clash with them
+        final boolean checkMetadataFields = context.path().length() == 0;
         while (token != XContentParser.Token.END_OBJECT) {
             if (token == XContentParser.Token.START_OBJECT) {
-                parseObject(context, mapper, currentFieldName);
+                parseObject(context, mapper, node, currentFieldName);
             } else if (token == XContentParser.Token.START_ARRAY) {
-                parseArray(context, mapper, currentFieldName);
+                parseArray(context, mapper, node, currentFieldName);
             } else if (token == XContentParser.Token.FIELD_NAME) {
                 currentFieldName = parser.currentName();
-                if (MapperService.isMetadataField(context.path().pathAsText(currentFieldName))) {
+                if (checkMetadataFields && MapperService.isMetadataField(currentFieldName)) {
                     throw new MapperParsingException("Field [" + currentFieldName + "] is a metadata field and cannot be added inside a document. Use the index API request parameters.");
                 }
             } else if (token == XContentParser.Token.VALUE_NULL) {
-                parseNullValue(context, mapper, currentFieldName);
+                parseNullValue(context, mapper, node, currentFieldName);
             } else if (token == null) {
                 throw new MapperParsingException("object mapping for [" + mapper.name() + "] tried to parse field [" + currentFieldName + "] as object, but got EOF, has a concrete value been provided to it?");
             } else if (token.isValue()) {
-                parseValue(context, mapper, currentFieldName, token);
+                parseValue(context, mapper, node, currentFieldName, token);
             }
             token = parser.nextToken();
         }
@@ -431,8 +449,12 @@ final class DocumentParser {
     }
 
     private static void parseObjectOrField(ParseContext context, Mapper mapper) throws IOException {
+        parseObjectOrField(context, mapper, null);
+    }
+
+    private static void parseObjectOrField(ParseContext context, Mapper mapper, DocumentParsingPlan.Node node) throws IOException {
         if (mapper instanceof ObjectMapper) {
-            parseObjectOrNested(context, (ObjectMapper) mapper, false);
+            parseObjectOrNested(context, (ObjectMapper) mapper, node, false);
         } else {
             FieldMapper fieldMapper = (FieldMapper)mapper;
             Mapper update = fieldMapper.parse(context);
@@ -445,14 +467,16 @@ final class DocumentParser {
         }
     }
 
-    private static ObjectMapper parseObject(final ParseContext context, ObjectMapper mapper, String currentFieldName) throws IOException {
+    private static ObjectMapper parseObject(final ParseContext context, ObjectMapper mapper, DocumentParsingPlan.Node node,
+                                            String currentFieldName) throws IOException {
         assert currentFieldName != null;
 
         ObjectMapper update = null;
-        Mapper objectMapper = getMapper(mapper, currentFieldName);
+        DocumentParsingPlan.Node objectNode = findNode(node, currentFieldName);
+        Mapper objectMapper = getMapper(mapper, node, objectNode, currentFieldName);
         if (objectMapper != null) {
             context.path().add(currentFieldName);
-            parseObjectOrField(context, objectMapper);
+            parseObjectOrField(context, objectMapper, objectNode);
             context.path().remove();
         } else {
 
@@ -486,17 +510,19 @@ final class DocumentParser {
         return update;
     }
 
-    private static void parseArray(ParseContext context, ObjectMapper parentMapper, String lastFieldName) throws IOException {
+    private static void parseArray(ParseContext context, ObjectMapper parentMapper, DocumentParsingPlan.Node parentNode,
+                                   String lastFieldName) throws IOException {
         String arrayFieldName = lastFieldName;
-        Mapper mapper = getMapper(parentMapper, lastFieldName);
+        DocumentParsingPlan.Node node = findNode(parentNode, lastFieldName);
+        Mapper mapper = getMapper(parentMapper, parentNode, node, lastFieldName);
         if (mapper != null) {
             // There is a concrete mapper for this field already. Need to check if the mapper
             // expects an array, if so we pass the context straight to the mapper and if not
             // we serialize the array components
             if (mapper instanceof ArrayValueMapperParser) {
-                parseObjectOrField(context, mapper);
+                parseObjectOrField(context, mapper, node);
             } else {
-                parseNonDynamicArray(context, parentMapper, lastFieldName, arrayFieldName);
+                parseNonDynamicArray(context, parentMapper, parentNode, lastFieldName, arrayFieldName);
             }
         } else {
 
@@ -511,7 +537,7 @@ final class DocumentParser {
             } else if (dynamic == ObjectMapper.Dynamic.TRUE) {
                 Mapper.Builder builder = context.root().findTemplateBuilder(context, arrayFieldName, XContentFieldType.OBJECT);
                 if (builder == null) {
-                    parseNonDynamicArray(context, parentMapper, lastFieldName, arrayFieldName);
+                    parseNonDynamicArray(context, parentMapper, null, lastFieldName, arrayFieldName);
                 } else {
                     Mapper.BuilderContext builderContext = new Mapper.BuilderContext(context.indexSettings(), context.path());
                     mapper = builder.build(builderContext);
@@ -522,12 +548,12 @@ final class DocumentParser {
                         parseObjectOrField(context, mapper);
                         context.path().remove();
                     } else {
-                        parseNonDynamicArray(context, parentMapper, lastFieldName, arrayFieldName);
+                        parseNonDynamicArray(context, parentMapper, null, lastFieldName, arrayFieldName);
                     }
                 }
             } else {
                 // TODO: shouldn't this skip, not parse?
-                parseNonDynamicArray(context, parentMapper, lastFieldName, arrayFieldName);
+                parseNonDynamicArray(context, parentMapper, null, lastFieldName, arrayFieldName);
             }
             for (int i = 0; i < parentMapperTuple.v1(); i++) {
                 context.path().remove();
@@ -535,33 +561,36 @@ final class DocumentParser {
         }
     }
 
-    private static void parseNonDynamicArray(ParseContext context, ObjectMapper mapper, String lastFieldName, String arrayFieldName) throws IOException {
+    private static void parseNonDynamicArray(ParseContext context, ObjectMapper mapper, DocumentParsingPlan.Node node,
+                                             String lastFieldName, String arrayFieldName) throws IOException {
         XContentParser parser = context.parser();
         XContentParser.Token token;
         while ((token = parser.nextToken()) != XContentParser.Token.END_ARRAY) {
             if (token == XContentParser.Token.START_OBJECT) {
-                parseObject(context, mapper, lastFieldName);
+                parseObject(context, mapper, node, lastFieldName);
             } else if (token == XContentParser.Token.START_ARRAY) {
-                parseArray(context, mapper, lastFieldName);
+                parseArray(context, mapper, node, lastFieldName);
             } else if (token == XContentParser.Token.FIELD_NAME) {
                 lastFieldName = parser.currentName();
             } else if (token == XContentParser.Token.VALUE_NULL) {
-                parseNullValue(context, mapper, lastFieldName);
+                parseNullValue(context, mapper, node, lastFieldName);
             } else if (token == null) {
                 throw new MapperParsingException("object mapping for [" + mapper.name() + "] with array for [" + arrayFieldName + "] tried to parse as array, but got EOF, is there a mismatch in types for the same field?");
             } else {
-                parseValue(context, mapper, lastFieldName, token);
+                parseValue(context, mapper, node, lastFieldName, token);
             }
         }
     }
 
-    private static void parseValue(final ParseContext context, ObjectMapper parentMapper, String currentFieldName, XContentParser.Token token) throws IOException {
+    private static void parseValue(final ParseContext context, ObjectMapper parentMapper, DocumentParsingPlan.Node parentNode,
+                                   String currentFieldName, XContentParser.Token token) throws IOException {
         if (currentFieldName == null) {
             throw new MapperParsingException("object mapping [" + parentMapper.name() + "] trying to serialize a value with no field associated with it, current value [" + context.parser().textOrNull() + "]");
         }
-        Mapper mapper = getMapper(parentMapper, currentFieldName);
+        DocumentParsingPlan.Node node = findNode(parentNode, currentFieldName);
+        Mapper mapper = getMapper(parentMapper, parentNode, node, currentFieldName);
         if (mapper != null) {
-            parseObjectOrField(context, mapper);
+            parseObjectOrField(context, mapper, node);
         } else {
 
             final String[] paths = currentFieldName.split("\\.");
@@ -575,12 +604,14 @@ final class DocumentParser {
         }
     }
 
-    private static void parseNullValue(ParseContext context, ObjectMapper parentMapper, String lastFieldName) throws IOException {
+    private static void parseNullValue(ParseContext context, ObjectMapper parentMapper, DocumentParsingPlan.Node parentNode,
+                                       String lastFieldName) throws IOException {
         // we can only handle null values if we have mappings for them
-        Mapper mapper = getMapper(parentMapper, lastFieldName);
+        DocumentParsingPlan.Node node = findNode(parentNode, lastFieldName);
+        Mapper mapper = getMapper(parentMapper, parentNode, node, lastFieldName);
         if (mapper != null) {
             // TODO: passing null to an object seems bogus?
-            parseObjectOrField(context, mapper);
+            parseObjectOrField(context, mapper, node);
         } else if (parentMapper.dynamic() == ObjectMapper.Dynamic.STRICT) {
             throw new StrictDynamicMappingException(parentMapper.fullPath(), lastFieldName);
         }
@@ -899,6 +930,20 @@ final class DocumentParser {
         return dynamic;
     }
 
+    // looks up the node of a child mapper in the parsing plan, or returns null if the parent is not part of the plan
+    private static DocumentParsingPlan.Node findNode(DocumentParsingPlan.Node parentNode, String fieldName) {
+        return parentNode == null ? null : parentNode.find(fieldName);
+    }
+
+    // looks up a child mapper, through the parsing plan if the parent is part of it
+    private static Mapper getMapper(ObjectMapper objectMapper, DocumentParsingPlan.Node parentNode, DocumentParsingPlan.Node node,
+                                    String fieldName) {
+        if (parentNode == null) {
+            return getMapper(objectMapper, fieldName);
+        }
+        return node == null ? null : node.mapper();
+    }
+
     // looks up a child mapper, but takes into account field names that expand to objects
     static Mapper getMapper(ObjectMapper objectMapper, String fieldName) {
         String[] subfields = fieldName.split("\\.");
@@ -0,0 +1,87 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.index.mapper;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A trie of the mappers of a {@link DocumentMapper}, built once per mapping version. The {@link DocumentParser}
+ * walks it alongside the tokens of the document so that looking up the mapper of a field is a single hash
+ * lookup on the node of the enclosing object, without building the full path of the field.
+ */
+final class DocumentParsingPlan {
+
+    private final Node root;
+
+    DocumentParsingPlan(RootObjectMapper root) {
+        this.root = new Node(root);
+    }
+
+    /** the node of the root object mapper */
+    Node root() {
+        return root;
+    }
+
+    static final class Node {
+
+        private final Mapper mapper;
+        private final Map<String, Node> children;
+
+        private Node(Mapper mapper) {
+            this.mapper = mapper;
+            if (mapper instanceof ObjectMapper) {
+                Map<String, Node> children = new HashMap<>();
+                for (Mapper child : (ObjectMapper) mapper) {
+                    children.put(child.simpleName(), new Node(child));
+                }
+                this.children = children;
+            } else {
+                // sub fields of field mappers, like multi fields, are not addressable from the document
+                this.children = Collections.emptyMap();
+            }
+        }
+
+        Mapper mapper() {
+            return mapper;
+        }
+
+        /**
+         * Looks up the node of a field of this object. Field names that contain dots are expanded to objects,
+         * like {@link DocumentParser#getMapper(ObjectMapper, String)} does. Returns <code>null</code> if there
+         * is no mapper for the field.
+         */
+        Node find(String fieldName) {
+            if (fieldName.indexOf('.') == -1) {
+                return children.get(fieldName);
+            }
+            String[] subfields = fieldName.split("\\.");
+            if (subfields.length == 0) {
+                return null;
+            }
+            Node node = this;
+            for (int i = 0; i < subfields.length && node != null; ++i) {
+                node = node.children.get(subfields[i]);
+            }
+            return node;
+        }
+    }
+}
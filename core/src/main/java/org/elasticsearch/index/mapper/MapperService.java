@@ -344,6 +344,11 @@ public class MapperService extends AbstractIndexComponent {
             checkDepthLimit(fullPathObjectMappers.keySet());
         }
 
+        if (hasNested && indexSettings.getIndexSortConfig().hasIndexSort()) {
+            // the documents of a nested block must stay next to each other, which sorting the segments would break
+            throw new IllegalArgumentException("cannot have nested fields when index sort is activated");
+        }
+
         Set<String> parentTypes = this.parentTypes;
         if (oldMapper == null && newMapper.parentFieldMapper().active()) {
             parentTypes = new HashSet<>(parentTypes.size() + 1);
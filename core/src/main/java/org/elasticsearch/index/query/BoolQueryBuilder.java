@@ -477,6 +477,10 @@ public class BoolQueryBuilder extends AbstractQueryBuilder<BoolQueryBuilder> {
         changed |= rewriteClauses(queryRewriteContext, filterClauses, newBuilder::filter);
         changed |= rewriteClauses(queryRewriteContext, shouldClauses, newBuilder::should);
 
+        // a required clause that can't match any documents means that this query doesn't match any documents either
+        if (containsMatchNone(newBuilder.mustClauses) || containsMatchNone(newBuilder.filterClauses)) {
+            return new MatchNoneQueryBuilder();
+        }
         if (changed) {
             newBuilder.adjustPureNegative = adjustPureNegative;
             newBuilder.disableCoord = disableCoord;
@@ -499,6 +503,15 @@ public class BoolQueryBuilder extends AbstractQueryBuilder<BoolQueryBuilder> {
         }
     }
 
+    private static boolean containsMatchNone(List<QueryBuilder> clauses) {
+        for (QueryBuilder clause : clauses) {
+            if (clause instanceof MatchNoneQueryBuilder) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     private static boolean rewriteClauses(QueryRewriteContext queryRewriteContext, List<QueryBuilder> builders,
                                           Consumer<QueryBuilder> consumer) throws IOException {
         boolean changed = false;
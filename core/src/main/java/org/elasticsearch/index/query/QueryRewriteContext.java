@@ -29,6 +29,9 @@ import org.elasticsearch.index.mapper.MapperService;
 import org.elasticsearch.indices.query.IndicesQueriesRegistry;
 import org.elasticsearch.script.ScriptService;
 import org.elasticsearch.script.ScriptSettings;
+import org.elasticsearch.search.internal.SearchContext;
+
+import java.util.function.LongSupplier;
 
 /**
  * Context object used to rewrite {@link QueryBuilder} instances into simplified version.
@@ -41,10 +44,21 @@ public class QueryRewriteContext implements ParseFieldMatcherSupplier {
     protected final Client client;
     protected final IndexReader reader;
     protected final ClusterState clusterState;
+    protected final LongSupplier nowInMillis;
 
     public QueryRewriteContext(IndexSettings indexSettings, MapperService mapperService, ScriptService scriptService,
                                IndicesQueriesRegistry indicesQueriesRegistry, Client client, IndexReader reader,
                                ClusterState clusterState) {
+        this(indexSettings, mapperService, scriptService, indicesQueriesRegistry, client, reader, clusterState,
+            System::currentTimeMillis);
+    }
+
+    /**
+     * @param nowInMillis the current time of the request, used to resolve <code>now</code> if there is no current search context
+     */
+    public QueryRewriteContext(IndexSettings indexSettings, MapperService mapperService, ScriptService scriptService,
+                               IndicesQueriesRegistry indicesQueriesRegistry, Client client, IndexReader reader,
+                               ClusterState clusterState, LongSupplier nowInMillis) {
         this.mapperService = mapperService;
         this.scriptService = scriptService;
         this.indexSettings = indexSettings;
@@ -52,6 +66,7 @@ public class QueryRewriteContext implements ParseFieldMatcherSupplier {
         this.client = client;
         this.reader = reader;
         this.clusterState = clusterState;
+        this.nowInMillis = nowInMillis;
     }
 
     /**
@@ -93,6 +108,18 @@ public class QueryRewriteContext implements ParseFieldMatcherSupplier {
         return this.indexSettings.getParseFieldMatcher();
     }
 
+    /**
+     * Returns the time in milliseconds that <code>now</code> resolves to, which is the one of the current search context if there
+     * is one.
+     */
+    public long nowInMillis() {
+        SearchContext current = SearchContext.current();
+        if (current != null) {
+            return current.nowInMillis();
+        }
+        return nowInMillis.getAsLong();
+    }
+
     /**
      * Returns the cluster state as is when the operation started.
      */
@@ -19,6 +19,7 @@
 
 package org.elasticsearch.index.refresh;
 
+import org.elasticsearch.Version;
 import org.elasticsearch.common.io.stream.StreamInput;
 import org.elasticsearch.common.io.stream.StreamOutput;
 import org.elasticsearch.common.io.stream.Streamable;
@@ -34,13 +35,20 @@ public class RefreshStats implements Streamable, ToXContent {
 
     private long totalTimeInMillis;
 
+    private long skipped;
+
     public RefreshStats() {
 
     }
 
     public RefreshStats(long total, long totalTimeInMillis) {
+        this(total, totalTimeInMillis, 0);
+    }
+
+    public RefreshStats(long total, long totalTimeInMillis, long skipped) {
         this.total = total;
         this.totalTimeInMillis = totalTimeInMillis;
+        this.skipped = skipped;
     }
 
     public void add(long total, long totalTimeInMillis) {
@@ -58,6 +66,7 @@ public class RefreshStats implements Streamable, ToXContent {
         }
         this.total += refreshStats.total;
         this.totalTimeInMillis += refreshStats.totalTimeInMillis;
+        this.skipped += refreshStats.skipped;
     }
 
     /**
@@ -81,6 +90,13 @@ public class RefreshStats implements Streamable, ToXContent {
         return new TimeValue(totalTimeInMillis);
     }
 
+    /**
+     * The number of scheduled refreshes that were skipped because the shard was search idle.
+     */
+    public long getSkipped() {
+        return this.skipped;
+    }
+
     public static RefreshStats readRefreshStats(StreamInput in) throws IOException {
         RefreshStats refreshStats = new RefreshStats();
         refreshStats.readFrom(in);
@@ -92,6 +108,7 @@ public class RefreshStats implements Streamable, ToXContent {
         builder.startObject(Fields.REFRESH);
         builder.field(Fields.TOTAL, total);
         builder.timeValueField(Fields.TOTAL_TIME_IN_MILLIS, Fields.TOTAL_TIME, totalTimeInMillis);
+        builder.field(Fields.SKIPPED, skipped);
         builder.endObject();
         return builder;
     }
@@ -101,17 +118,24 @@ public class RefreshStats implements Streamable, ToXContent {
         static final String TOTAL = "total";
         static final String TOTAL_TIME = "total_time";
         static final String TOTAL_TIME_IN_MILLIS = "total_time_in_millis";
+        static final String SKIPPED = "skipped";
     }
 
     @Override
     public void readFrom(StreamInput in) throws IOException {
         total = in.readVLong();
         totalTimeInMillis = in.readVLong();
+        if (in.getVersion().onOrAfter(Version.V_6_0_0_alpha1)) {
+            skipped = in.readVLong();
+        }
     }
 
     @Override
     public void writeTo(StreamOutput out) throws IOException {
         out.writeVLong(total);
         out.writeVLong(totalTimeInMillis);
+        if (out.getVersion().onOrAfter(Version.V_6_0_0_alpha1)) {
+            out.writeVLong(skipped);
+        }
     }
 }
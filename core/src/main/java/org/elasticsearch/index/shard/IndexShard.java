@@ -32,6 +32,7 @@ import org.apache.lucene.index.SnapshotDeletionPolicy;
 import org.apache.lucene.index.Term;
 import org.apache.lucene.search.Query;
 import org.apache.lucene.search.QueryCachingPolicy;
+import org.apache.lucene.search.Sort;
 import org.apache.lucene.search.UsageTrackingQueryCachingPolicy;
 import org.apache.lucene.store.AlreadyClosedException;
 import org.apache.lucene.store.Lock;
@@ -57,6 +58,7 @@ import org.elasticsearch.common.lease.Releasable;
 import org.elasticsearch.common.lease.Releasables;
 import org.elasticsearch.common.logging.LoggerMessageFormat;
 import org.elasticsearch.common.lucene.Lucene;
+import org.elasticsearch.common.metrics.CounterMetric;
 import org.elasticsearch.common.metrics.MeanMetric;
 import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.common.unit.ByteSizeValue;
@@ -108,9 +110,11 @@ import org.elasticsearch.index.store.Store;
 import org.elasticsearch.index.store.Store.MetadataSnapshot;
 import org.elasticsearch.index.store.StoreFileMetaData;
 import org.elasticsearch.index.store.StoreStats;
+import org.elasticsearch.index.translog.GroupCommitMetrics;
 import org.elasticsearch.index.translog.Translog;
 import org.elasticsearch.index.translog.TranslogConfig;
 import org.elasticsearch.index.translog.TranslogStats;
+import org.elasticsearch.index.translog.TranslogSyncCoordinator;
 import org.elasticsearch.index.warmer.ShardIndexWarmerService;
 import org.elasticsearch.index.warmer.WarmerStats;
 import org.elasticsearch.indices.IndexingMemoryController;
@@ -148,6 +152,7 @@ import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.BiConsumer;
 import java.util.function.Consumer;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 public class IndexShard extends AbstractIndexShardComponent implements IndicesClusterStateService.Shard {
 
@@ -180,6 +185,22 @@ public class IndexShard extends AbstractIndexShardComponent implements IndicesCl
      * being indexed/deleted.
      */
     private final AtomicLong writingBytes = new AtomicLong();
+
+    /**
+     * How many bytes of index and delete operations this shard applied, IndexingMemoryController derives the ingest rate of the
+     * shard from it.
+     */
+    private final CounterMetric indexedBytes = new CounterMetric();
+
+    /**
+     * How much heap IndexingMemoryController allows this shard's indexing buffer to use before it is written to disk from the
+     * indexing path, or -1 if the shard is only checked periodically.
+     */
+    private volatile long indexBufferAllowance = -1;
+    private final AtomicLong bytesSinceIndexBufferCheck = new AtomicLong();
+    private final AtomicBoolean pendingIndexBufferWrite = new AtomicBoolean();
+    private static final int INDEX_BUFFER_CHECKS_PER_ALLOWANCE = 16;
+
     private final SearchOperationListener searchOperationListener;
 
     protected volatile ShardRouting shardRouting;
@@ -195,6 +216,7 @@ public class IndexShard extends AbstractIndexShardComponent implements IndicesCl
 
     private final RecoveryStats recoveryStats = new RecoveryStats();
     private final MeanMetric refreshMetric = new MeanMetric();
+    private final CounterMetric skippedRefreshMetric = new CounterMetric();
     private final MeanMetric flushMetric = new MeanMetric();
 
     private final ShardEventListener shardEventListener = new ShardEventListener();
@@ -225,12 +247,29 @@ public class IndexShard extends AbstractIndexShardComponent implements IndicesCl
      */
     @Nullable
     private final RefreshListeners refreshListeners;
+    /**
+     * The last time, as returned by {@link ThreadPool#estimatedTimeInMillis()}, a search accessed this shard.
+     */
+    private volatile long lastSearcherAccess;
+    /**
+     * The translog location that scheduled refreshes skipped while the shard was search idle would have made visible, or null if no
+     * refresh was skipped since the last one.
+     */
+    private final AtomicReference<Translog.Location> pendingRefreshLocation = new AtomicReference<>();
+    /**
+     * Group-commits translog syncs with other shards on the same data path. This is nullable because {@linkplain ShadowIndexShard}
+     * doesn't write to a translog.
+     */
+    @Nullable
+    private final TranslogSyncCoordinator translogSyncCoordinator;
+    private final GroupCommitMetrics groupCommitMetrics = new GroupCommitMetrics();
 
     public IndexShard(ShardRouting shardRouting, IndexSettings indexSettings, ShardPath path, Store store, IndexCache indexCache,
                       MapperService mapperService, SimilarityService similarityService, IndexFieldDataService indexFieldDataService,
                       @Nullable EngineFactory engineFactory,
                       IndexEventListener indexEventListener, IndexSearcherWrapper indexSearcherWrapper, ThreadPool threadPool, BigArrays bigArrays,
-                      Engine.Warmer warmer, List<SearchOperationListener> searchOperationListener, List<IndexingOperationListener> listeners) throws IOException {
+                      Engine.Warmer warmer, List<SearchOperationListener> searchOperationListener, List<IndexingOperationListener> listeners,
+                      @Nullable TranslogSyncCoordinator translogSyncCoordinator) throws IOException {
         super(shardRouting.shardId(), indexSettings);
         assert shardRouting.initializing();
         this.shardRouting = shardRouting;
@@ -244,11 +283,13 @@ public class IndexShard extends AbstractIndexShardComponent implements IndicesCl
         this.store = store;
         this.indexEventListener = indexEventListener;
         this.threadPool = threadPool;
+        this.translogSyncCoordinator = translogSyncCoordinator;
         this.mapperService = mapperService;
         this.indexCache = indexCache;
         this.internalIndexingStats = new InternalIndexingStats();
         final List<IndexingOperationListener> listenersList = new ArrayList<>(listeners);
         listenersList.add(internalIndexingStats);
+        listenersList.add(new IndexBufferAccounting());
         this.indexingOperationListeners = new IndexingOperationListener.CompositeListener(listenersList, logger);
         final List<SearchOperationListener> searchListenersList = new ArrayList<>(searchOperationListener);
         searchListenersList.add(searchStats);
@@ -278,6 +319,7 @@ public class IndexShard extends AbstractIndexShardComponent implements IndicesCl
         searcherWrapper = indexSearcherWrapper;
         primaryTerm = indexSettings.getIndexMetaData().primaryTerm(shardId.id());
         refreshListeners = buildRefreshListeners();
+        lastSearcherAccess = threadPool.estimatedTimeInMillis();
         persistMetadata(shardRouting, null);
     }
 
@@ -551,6 +593,47 @@ public class IndexShard extends AbstractIndexShardComponent implements IndicesCl
         indexingOperationListeners.postIndex(index, index.isCreated());
     }
 
+    /**
+     * Applies the given index operations in order, see {@link Engine#index(List)}. The returned array holds the failure of the
+     * operation at the same position or <code>null</code> if it succeeded.
+     */
+    public Exception[] index(List<Engine.Index> operations) {
+        for (Engine.Index index : operations) {
+            ensureWriteAllowed(index);
+        }
+        Engine engine = getEngine();
+        active.set(true);
+        final List<Engine.Index> indices = new ArrayList<>(operations.size());
+        for (Engine.Index index : operations) {
+            indices.add(indexingOperationListeners.preIndex(index));
+        }
+        final Exception[] failures;
+        try {
+            if (logger.isTraceEnabled()) {
+                for (Engine.Index index : indices) {
+                    logger.trace("index [{}][{}]{}", index.type(), index.id(), index.docs());
+                }
+            }
+            failures = engine.index(indices);
+        } catch (Exception e) {
+            for (Engine.Index index : indices) {
+                indexingOperationListeners.postIndex(index, e);
+            }
+            throw e;
+        }
+        final long endTime = System.nanoTime();
+        for (int i = 0; i < failures.length; i++) {
+            final Engine.Index index = indices.get(i);
+            if (failures[i] == null) {
+                index.endTime(endTime);
+                indexingOperationListeners.postIndex(index, index.isCreated());
+            } else {
+                indexingOperationListeners.postIndex(index, failures[i]);
+            }
+        }
+        return failures;
+    }
+
     public Engine.Delete prepareDeleteOnPrimary(String type, String id, long version, VersionType versionType) {
         verifyPrimary();
         final DocumentMapper documentMapper = docMapper(type).getDocumentMapper();
@@ -601,6 +684,11 @@ public class IndexShard extends AbstractIndexShardComponent implements IndicesCl
         return getEngine().get(get, this::acquireSearcher);
     }
 
+    public Engine.MultiGetResult multiGet(List<Engine.Get> gets) {
+        readAllowed();
+        return getEngine().multiGet(gets, this::acquireSearcher);
+    }
+
     /**
      * Writes all indexing changes to disk and opens a new searcher reflecting all changes.  This can throw {@link EngineClosedException}.
      */
@@ -641,7 +729,7 @@ public class IndexShard extends AbstractIndexShardComponent implements IndicesCl
     }
 
     public RefreshStats refreshStats() {
-        return new RefreshStats(refreshMetric.count(), TimeUnit.NANOSECONDS.toMillis(refreshMetric.sum()));
+        return new RefreshStats(refreshMetric.count(), TimeUnit.NANOSECONDS.toMillis(refreshMetric.sum()), skippedRefreshMetric.count());
     }
 
     public FlushStats flushStats() {
@@ -682,7 +770,11 @@ public class IndexShard extends AbstractIndexShardComponent implements IndicesCl
     }
 
     public GetStats getStats() {
-        return getService.stats();
+        Engine engine = getEngineOrNull();
+        if (engine == null) {
+            return getService.stats(0, 0);
+        }
+        return getService.stats(engine.getRealtimeGetTranslogHits(), engine.getRealtimeGetTranslogMisses());
     }
 
     public StoreStats storeStats() {
@@ -703,6 +795,26 @@ public class IndexShard extends AbstractIndexShardComponent implements IndicesCl
         return engine.getMergeStats();
     }
 
+    /**
+     * Sets the IO rate limit, in MB/sec, for each auto throttled merge of this shard. {@link Double#NaN} hands merge
+     * throttling back to the engine.
+     */
+    public void setMergeIORateLimit(double mbPerSec) {
+        final Engine engine = getEngineOrNull();
+        if (engine != null) {
+            engine.setMergeIORateLimit(mbPerSec);
+        }
+    }
+
+    /** returns the number of running merges of this shard that are subject to IO throttling */
+    public int getCurrentThrottledMerges() {
+        final Engine engine = getEngineOrNull();
+        if (engine == null) {
+            return 0;
+        }
+        return engine.getCurrentThrottledMerges();
+    }
+
     public SegmentsStats segmentStats(boolean includeSegmentFileSizes) {
         SegmentsStats segmentsStats = getEngine().segmentsStats(includeSegmentFileSizes);
         segmentsStats.addBitsetMemoryInBytes(shardBitsetFilterCache.getMemorySizeInBytes());
@@ -718,7 +830,9 @@ public class IndexShard extends AbstractIndexShardComponent implements IndicesCl
     }
 
     public TranslogStats translogStats() {
-        return getEngine().getTranslog().stats();
+        final TranslogStats translogStats = getEngine().getTranslog().stats();
+        groupCommitMetrics.addTo(translogStats);
+        return translogStats;
     }
 
     public CompletionStats completionStats(String... fields) {
@@ -1328,6 +1442,70 @@ public class IndexShard extends AbstractIndexShardComponent implements IndicesCl
         }
     }
 
+    /**
+     * Sets how many bytes this shard's indexing buffer may use before it is written to disk as part of indexing, or -1 to leave
+     * it to the periodic checks of {@link IndexingMemoryController}.
+     */
+    public void setIndexBufferAllowance(long bytes) {
+        this.indexBufferAllowance = bytes;
+    }
+
+    public long getIndexBufferAllowance() {
+        return indexBufferAllowance;
+    }
+
+    /**
+     * Returns the total number of bytes of index and delete operations applied to this shard.
+     */
+    public long getIndexedBytes() {
+        return indexedBytes.count();
+    }
+
+    /**
+     * Checks the indexing buffer against its allowance after an operation, writing it to disk in the background if it grew
+     * beyond it. Asking the engine for its RAM usage on every operation is too costly, so we only check a few times per
+     * allowance worth of operation bytes.
+     */
+    private void checkIndexBufferAllowance(long bytes) {
+        indexedBytes.inc(bytes);
+        final long allowance = indexBufferAllowance;
+        if (allowance == -1 || bytesSinceIndexBufferCheck.addAndGet(bytes) < allowance / INDEX_BUFFER_CHECKS_PER_ALLOWANCE) {
+            return;
+        }
+        bytesSinceIndexBufferCheck.set(0);
+        if (getIndexBufferRAMBytesUsed() - getWritingBytes() > allowance && pendingIndexBufferWrite.compareAndSet(false, true)) {
+            logger.trace("indexing buffer exceeds its allowance of [{}], writing it to disk", new ByteSizeValue(allowance));
+            threadPool.executor(ThreadPool.Names.REFRESH).execute(new AbstractRunnable() {
+                @Override
+                protected void doRun() throws Exception {
+                    writeIndexingBuffer();
+                }
+
+                @Override
+                public void onFailure(Exception e) {
+                    logger.warn("failed to write indexing buffer", e);
+                }
+
+                @Override
+                public void onAfter() {
+                    pendingIndexBufferWrite.set(false);
+                }
+            });
+        }
+    }
+
+    private final class IndexBufferAccounting implements IndexingOperationListener {
+        @Override
+        public void postIndex(Engine.Index index, boolean created) {
+            checkIndexBufferAllowance(index.sizeInBytes());
+        }
+
+        @Override
+        public void postDelete(Engine.Delete delete) {
+            checkIndexBufferAllowance(delete.sizeInBytes());
+        }
+    }
+
     /**
      * Should be called for each no-op update operation to increment relevant statistics.
      *
@@ -1337,6 +1515,16 @@ public class IndexShard extends AbstractIndexShardComponent implements IndicesCl
         internalIndexingStats.noopUpdate(type);
     }
 
+    /**
+     * Should be called for each index operation that waited for the master to apply its dynamic mapping update.
+     *
+     * @param type the doc type of the operation
+     * @param tookInNanos how long the operation waited for the mapping update
+     */
+    public void mappingUpdate(String type, long tookInNanos) {
+        internalIndexingStats.mappingUpdate(type, tookInNanos);
+    }
+
 
     private void checkIndex() throws IOException {
         if (store.tryIncRef()) {
@@ -1610,7 +1798,14 @@ public class IndexShard extends AbstractIndexShardComponent implements IndicesCl
             threadPool, indexSettings, warmer, store, deletionPolicy, indexSettings.getMergePolicy(),
             mapperService.indexAnalyzer(), similarityService.similarity(mapperService), codecService, shardEventListener, translogRecoveryPerformer, indexCache.query(), cachingPolicy, translogConfig,
             IndexingMemoryController.SHARD_INACTIVE_TIME_SETTING.get(indexSettings.getSettings()), refreshListeners,
-            maxUnsafeAutoIdTimestamp);
+            getIndexSort(), maxUnsafeAutoIdTimestamp);
+    }
+
+    /**
+     * Returns the sort order of the segments of this shard, or <code>null</code> if they are not sorted.
+     */
+    public Sort getIndexSort() {
+        return indexSettings.getIndexSortConfig().buildIndexSort(mapperService::fullName);
     }
 
     /**
@@ -1648,19 +1843,35 @@ public class IndexShard extends AbstractIndexShardComponent implements IndicesCl
     private final AsyncIOProcessor<Translog.Location> translogSyncProcessor = new AsyncIOProcessor<Translog.Location>(logger, 1024) {
         @Override
         protected void write(List<Tuple<Translog.Location, Consumer<Exception>>> candidates) throws IOException {
-                try {
-                    final Engine engine = getEngine();
-                    engine.getTranslog().ensureSynced(candidates.stream().map(Tuple::v1));
-                } catch (EngineClosedException ex) {
-                    // that's fine since we already synced everything on engine close - this also is conform with the methods
-                    // documentation
-                } catch (IOException ex) { // if this fails we are in deep shit - fail the request
-                    logger.debug("failed to sync translog", ex);
-                    throw ex;
-                }
+            ensureTranslogSynced(candidates.stream().map(Tuple::v1));
         }
     };
 
+    private final TranslogSyncCoordinator.SyncTarget translogSyncTarget = new TranslogSyncCoordinator.SyncTarget() {
+        @Override
+        public void ensureSynced(Stream<Translog.Location> locations) throws IOException {
+            ensureTranslogSynced(locations);
+        }
+
+        @Override
+        public GroupCommitMetrics groupCommitMetrics() {
+            return groupCommitMetrics;
+        }
+    };
+
+    private void ensureTranslogSynced(Stream<Translog.Location> locations) throws IOException {
+        try {
+            final Engine engine = getEngine();
+            engine.getTranslog().ensureSynced(locations);
+        } catch (EngineClosedException ex) {
+            // that's fine since we already synced everything on engine close - this also is conform with the methods
+            // documentation
+        } catch (IOException ex) { // if this fails we are in deep shit - fail the request
+            logger.debug("failed to sync translog", ex);
+            throw ex;
+        }
+    }
+
     /**
      * Syncs the given location with the underlying storage unless already synced. This method might return immediately without
      * actually fsyncing the location until the sync listener is called. Yet, unless there is already another thread fsyncing
@@ -1669,10 +1880,16 @@ public class IndexShard extends AbstractIndexShardComponent implements IndicesCl
      * one thread blocking on the sync an all others can continue indexing.
      * NOTE: if the syncListener throws an exception when it's processed the exception will only be logged. Users should make sure that the
      * listener handles all exception cases internally.
+     * If cross-shard group commit is enabled the location is handed to the node's {@link TranslogSyncCoordinator} instead and is
+     * synced together with the translogs of all other shards on the same data path.
      */
     public final void sync(Translog.Location location, Consumer<Exception> syncListener) {
         verifyNotClosed();
-        translogSyncProcessor.put(location, syncListener);
+        if (translogSyncCoordinator != null && translogSyncCoordinator.isEnabled()) {
+            translogSyncCoordinator.sync(path.getRootDataPath(), translogSyncTarget, location, syncListener);
+        } else {
+            translogSyncProcessor.put(location, syncListener);
+        }
     }
 
     /**
@@ -1784,6 +2001,83 @@ public class IndexShard extends AbstractIndexShardComponent implements IndicesCl
         refreshListeners.addOrNotify(location, listener);
     }
 
+    /**
+     * Returns <code>true</code> if this shard hasn't been searched for longer than {@link IndexSettings#getSearchIdleAfter()}.
+     */
+    public boolean isSearchIdle() {
+        final TimeValue searchIdleAfter = indexSettings.getSearchIdleAfter();
+        return searchIdleAfter.millis() >= 0 && threadPool.estimatedTimeInMillis() - lastSearcherAccess >= searchIdleAfter.millis();
+    }
+
+    /**
+     * Returns <code>true</code> if scheduled refreshes were skipped while this shard was search idle, i.e. if searchers acquired
+     * without {@link #awaitShardSearchActive(Consumer)} may miss changes that would otherwise be visible.
+     */
+    public boolean hasRefreshPending() {
+        return pendingRefreshLocation.get() != null;
+    }
+
+    /**
+     * Executes a scheduled refresh if one is needed. Search idle shards skip the refresh unless refresh listeners are waiting for it
+     * and leave it to the next search, see {@link #awaitShardSearchActive(Consumer)}.
+     *
+     * @return <code>true</code> if the shard was refreshed
+     */
+    public boolean scheduledRefresh() {
+        if (isRefreshNeeded() == false) {
+            return false;
+        }
+        if (refreshListeners != null && refreshListeners.refreshNeeded() == false && isSearchIdle()) {
+            pendingRefreshLocation.set(getEngine().getTranslog().getLastWriteLocation());
+            skippedRefreshMetric.inc();
+            return false;
+        }
+        refresh("schedule");
+        pendingRefreshLocation.set(null);
+        return true;
+    }
+
+    /**
+     * Marks this shard as search active. If scheduled refreshes were skipped while it was search idle the shard is refreshed and the
+     * listener is called once the changes these refreshes would have made visible are visible, otherwise it is called right away. The
+     * listener is called with <code>true</code> if refreshes were skipped and <code>false</code> otherwise.
+     */
+    public void awaitShardSearchActive(Consumer<Boolean> listener) {
+        lastSearcherAccess = threadPool.estimatedTimeInMillis();
+        final Translog.Location location = pendingRefreshLocation.get();
+        if (location == null) {
+            listener.accept(false);
+            return;
+        }
+        final AtomicBoolean notified = new AtomicBoolean();
+        addRefreshListener(location, forced -> {
+            pendingRefreshLocation.compareAndSet(location, null);
+            if (notified.compareAndSet(false, true)) {
+                listener.accept(true);
+            }
+        });
+        // don't wait for the next scheduled refresh
+        threadPool.executor(ThreadPool.Names.REFRESH).execute(new AbstractRunnable() {
+            @Override
+            public void onFailure(Exception e) {
+                if (state != IndexShardState.CLOSED) {
+                    logger.warn("failed to refresh search idle shard", e);
+                }
+                // the refresh listener won't be called, don't leave the search hanging
+                if (notified.compareAndSet(false, true)) {
+                    listener.accept(true);
+                }
+            }
+
+            @Override
+            protected void doRun() throws Exception {
+                if (isRefreshNeeded()) {
+                    refresh("search_idle");
+                }
+            }
+        });
+    }
+
     private class IndexShardRecoveryPerformer extends TranslogRecoveryPerformer {
 
         protected IndexShardRecoveryPerformer(ShardId shardId, MapperService mapperService, Logger logger) {
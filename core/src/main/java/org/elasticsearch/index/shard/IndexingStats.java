@@ -48,10 +48,13 @@ public class IndexingStats implements Streamable, ToXContent {
         private long noopUpdateCount;
         private long throttleTimeInMillis;
         private boolean isThrottled;
+        private long mappingUpdateCount;
+        private long mappingUpdateTimeInMillis;
 
         Stats() {}
 
-        public Stats(long indexCount, long indexTimeInMillis, long indexCurrent, long indexFailedCount, long deleteCount, long deleteTimeInMillis, long deleteCurrent, long noopUpdateCount, boolean isThrottled, long throttleTimeInMillis) {
+        public Stats(long indexCount, long indexTimeInMillis, long indexCurrent, long indexFailedCount, long deleteCount, long deleteTimeInMillis, long deleteCurrent, long noopUpdateCount, boolean isThrottled, long throttleTimeInMillis,
+                     long mappingUpdateCount, long mappingUpdateTimeInMillis) {
             this.indexCount = indexCount;
             this.indexTimeInMillis = indexTimeInMillis;
             this.indexCurrent = indexCurrent;
@@ -62,6 +65,8 @@ public class IndexingStats implements Streamable, ToXContent {
             this.noopUpdateCount = noopUpdateCount;
             this.isThrottled = isThrottled;
             this.throttleTimeInMillis = throttleTimeInMillis;
+            this.mappingUpdateCount = mappingUpdateCount;
+            this.mappingUpdateTimeInMillis = mappingUpdateTimeInMillis;
         }
 
         public void add(Stats stats) {
@@ -79,6 +84,8 @@ public class IndexingStats implements Streamable, ToXContent {
             if (isThrottled != stats.isThrottled) {
                 isThrottled = true; //When combining if one is throttled set result to throttled.
             }
+            mappingUpdateCount += stats.mappingUpdateCount;
+            mappingUpdateTimeInMillis += stats.mappingUpdateTimeInMillis;
         }
 
         /**
@@ -134,6 +141,18 @@ public class IndexingStats implements Streamable, ToXContent {
             return noopUpdateCount;
         }
 
+        /**
+         * Returns the number of index operations that waited for the master to apply the dynamic mapping update they introduced
+         */
+        public long getMappingUpdateCount() {
+            return mappingUpdateCount;
+        }
+
+        /**
+         * The total amount of time index operations waited for the master to apply dynamic mapping updates.
+         */
+        public TimeValue getMappingUpdateTime() { return new TimeValue(mappingUpdateTimeInMillis); }
+
         public static Stats readStats(StreamInput in) throws IOException {
             Stats stats = new Stats();
             stats.readFrom(in);
@@ -156,6 +175,10 @@ public class IndexingStats implements Streamable, ToXContent {
             noopUpdateCount = in.readVLong();
             isThrottled = in.readBoolean();
             throttleTimeInMillis = in.readLong();
+            if (in.getVersion().onOrAfter(Version.V_6_0_0_alpha1)) {
+                mappingUpdateCount = in.readVLong();
+                mappingUpdateTimeInMillis = in.readVLong();
+            }
         }
 
         @Override
@@ -174,6 +197,10 @@ public class IndexingStats implements Streamable, ToXContent {
             out.writeVLong(noopUpdateCount);
             out.writeBoolean(isThrottled);
             out.writeLong(throttleTimeInMillis);
+            if (out.getVersion().onOrAfter(Version.V_6_0_0_alpha1)) {
+                out.writeVLong(mappingUpdateCount);
+                out.writeVLong(mappingUpdateTimeInMillis);
+            }
 
         }
 
@@ -192,6 +219,9 @@ public class IndexingStats implements Streamable, ToXContent {
 
             builder.field(Fields.IS_THROTTLED, isThrottled);
             builder.timeValueField(Fields.THROTTLED_TIME_IN_MILLIS, Fields.THROTTLED_TIME, throttleTimeInMillis);
+
+            builder.field(Fields.MAPPING_UPDATE_TOTAL, mappingUpdateCount);
+            builder.timeValueField(Fields.MAPPING_UPDATE_TIME_IN_MILLIS, Fields.MAPPING_UPDATE_TIME, mappingUpdateTimeInMillis);
             return builder;
         }
     }
@@ -283,6 +313,9 @@ public class IndexingStats implements Streamable, ToXContent {
         static final String IS_THROTTLED = "is_throttled";
         static final String THROTTLED_TIME_IN_MILLIS = "throttle_time_in_millis";
         static final String THROTTLED_TIME = "throttle_time";
+        static final String MAPPING_UPDATE_TOTAL = "mapping_update_total";
+        static final String MAPPING_UPDATE_TIME = "mapping_update_time";
+        static final String MAPPING_UPDATE_TIME_IN_MILLIS = "mapping_update_time_in_millis";
     }
 
     public static IndexingStats readIndexingStats(StreamInput in) throws IOException {
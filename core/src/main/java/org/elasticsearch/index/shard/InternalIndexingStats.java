@@ -130,6 +130,11 @@ final class InternalIndexingStats implements IndexingOperationListener {
         typeStats(type).noopUpdates.inc();
     }
 
+    void mappingUpdate(String type, long tookInNanos) {
+        totalStats.mappingUpdateMetric.inc(tookInNanos);
+        typeStats(type).mappingUpdateMetric.inc(tookInNanos);
+    }
+
     private StatsHolder typeStats(String type) {
         StatsHolder stats = typesStats.get(type);
         if (stats == null) {
@@ -151,17 +156,20 @@ final class InternalIndexingStats implements IndexingOperationListener {
         private final CounterMetric indexFailed = new CounterMetric();
         private final CounterMetric deleteCurrent = new CounterMetric();
         private final CounterMetric noopUpdates = new CounterMetric();
+        private final MeanMetric mappingUpdateMetric = new MeanMetric();
 
         IndexingStats.Stats stats(boolean isThrottled, long currentThrottleMillis) {
             return new IndexingStats.Stats(
                 indexMetric.count(), TimeUnit.NANOSECONDS.toMillis(indexMetric.sum()), indexCurrent.count(), indexFailed.count(),
                 deleteMetric.count(), TimeUnit.NANOSECONDS.toMillis(deleteMetric.sum()), deleteCurrent.count(),
-                noopUpdates.count(), isThrottled, TimeUnit.MILLISECONDS.toMillis(currentThrottleMillis));
+                noopUpdates.count(), isThrottled, TimeUnit.MILLISECONDS.toMillis(currentThrottleMillis),
+                mappingUpdateMetric.count(), TimeUnit.NANOSECONDS.toMillis(mappingUpdateMetric.sum()));
         }
 
         void clear() {
             indexMetric.clear();
             deleteMetric.clear();
+            mappingUpdateMetric.clear();
         }
     }
 }
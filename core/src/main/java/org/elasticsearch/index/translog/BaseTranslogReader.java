@@ -19,6 +19,7 @@
 
 package org.elasticsearch.index.translog;
 
+import org.apache.lucene.codecs.compressing.Decompressor;
 import org.elasticsearch.ElasticsearchException;
 import org.elasticsearch.common.io.stream.ByteBufferStreamInput;
 
@@ -36,6 +37,8 @@ public abstract class BaseTranslogReader implements Comparable<BaseTranslogReade
     protected final FileChannel channel;
     protected final Path path;
     protected final long firstOperationOffset;
+    // the LZ4 decompressor is stateless, it can be shared by concurrent reads of the same reader
+    private final Decompressor decompressor = TranslogCompression.newDecompressor();
 
     public BaseTranslogReader(long generation, FileChannel channel, Path path, long firstOperationOffset) {
         assert Translog.parseIdFromFileName(path) == generation : "generation mismatch. Path: " + Translog.parseIdFromFileName(path) + " but generation: " + generation;
@@ -111,7 +114,7 @@ public abstract class BaseTranslogReader implements Comparable<BaseTranslogReade
     }
 
     protected Translog.Operation read(BufferedChecksumStreamInput inStream) throws IOException {
-        return Translog.readOperation(inStream);
+        return Translog.readOperation(inStream, decompressor);
     }
 
     /**
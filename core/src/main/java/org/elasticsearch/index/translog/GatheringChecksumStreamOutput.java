@@ -0,0 +1,163 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.index.translog;
+
+import org.apache.lucene.store.BufferedChecksum;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.BytesRefIterator;
+import org.elasticsearch.common.Nullable;
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.bytes.CompositeBytesReference;
+import org.elasticsearch.common.io.stream.ReleasableBytesStreamOutput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.common.lease.Releasable;
+import org.elasticsearch.common.lease.Releasables;
+import org.elasticsearch.common.util.BigArrays;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.Checksum;
+
+/**
+ * Serializes a translog operation in the same format as {@link Translog#writeOperationNoSize} prefixed with its size, but
+ * keeps large {@link BytesReference}s, like the source of index operations, by reference instead of copying them. Everything
+ * else is written to pages from {@link BigArrays}. {@link #bytes()} returns the size, the operation and its checksum as one
+ * reference which is only valid until this output is reset or closed. Once {@link #bytes()} was called, nothing can be written
+ * until the output is {@link #reset()}.
+ */
+final class GatheringChecksumStreamOutput extends StreamOutput implements Releasable {
+
+    /** bytes references that are shorter than this are copied, since keeping them by reference does not pay off */
+    static final int MIN_GATHERED_BYTES = 512;
+
+    private final BigArrays bigArrays;
+    private final Checksum digest = new BufferedChecksum(new CRC32());
+    private final List<BytesReference> parts = new ArrayList<>();
+    private final List<ReleasableBytesStreamOutput> buffers = new ArrayList<>();
+    private ReleasableBytesStreamOutput current;
+    private int length;
+    private BytesReference result;
+
+    GatheringChecksumStreamOutput(BigArrays bigArrays) {
+        this.bigArrays = bigArrays;
+        newBuffer();
+    }
+
+    private void newBuffer() {
+        current = new ReleasableBytesStreamOutput(bigArrays);
+        buffers.add(current);
+    }
+
+    private void closeBuffer() {
+        if (current.size() > 0) {
+            parts.add(current.bytes());
+            length += current.size();
+        }
+    }
+
+    private void ensureWritable() {
+        if (result != null) {
+            throw new IllegalStateException("the operation was serialized already, reset the output before writing another one");
+        }
+    }
+
+    @Override
+    public void writeByte(byte b) throws IOException {
+        ensureWritable();
+        current.writeByte(b);
+        digest.update(b);
+    }
+
+    @Override
+    public void writeBytes(byte[] b, int offset, int length) throws IOException {
+        ensureWritable();
+        current.writeBytes(b, offset, length);
+        digest.update(b, offset, length);
+    }
+
+    @Override
+    public void writeBytesReference(@Nullable BytesReference bytes) throws IOException {
+        ensureWritable();
+        if (bytes == null || bytes.length() < MIN_GATHERED_BYTES) {
+            super.writeBytesReference(bytes);
+            return;
+        }
+        writeVInt(bytes.length());
+        final BytesRefIterator iterator = bytes.iterator();
+        BytesRef ref;
+        while ((ref = iterator.next()) != null) {
+            digest.update(ref.bytes, ref.offset, ref.length);
+        }
+        closeBuffer();
+        parts.add(bytes);
+        length += bytes.length();
+        newBuffer();
+    }
+
+    /**
+     * Appends the checksum of everything written so far and returns the serialized operation, prefixed with its size. Further
+     * calls return the same reference.
+     */
+    BytesReference bytes() throws IOException {
+        if (result != null) {
+            return result;
+        }
+        current.writeInt((int) digest.getValue());
+        closeBuffer();
+        final BytesArray size = new BytesArray(new byte[Integer.BYTES]);
+        final int operationSize = length;
+        size.array()[0] = (byte) (operationSize >> 24);
+        size.array()[1] = (byte) (operationSize >> 16);
+        size.array()[2] = (byte) (operationSize >> 8);
+        size.array()[3] = (byte) operationSize;
+        parts.add(0, size);
+        result = new CompositeBytesReference(parts.toArray(new BytesReference[parts.size()]));
+        return result;
+    }
+
+    @Override
+    public void flush() throws IOException {
+    }
+
+    /**
+     * Discards everything written so far, including the checksum, and releases the pages of the reference returned by
+     * {@link #bytes()}, so that another operation can be written.
+     */
+    @Override
+    public void reset() throws IOException {
+        close();
+        buffers.clear();
+        parts.clear();
+        digest.reset();
+        length = 0;
+        result = null;
+        newBuffer();
+    }
+
+    @Override
+    public void close() {
+        for (ReleasableBytesStreamOutput buffer : buffers) {
+            Releasables.close(buffer.bytes());
+        }
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.elasticsearch.index.translog;
+
+import org.elasticsearch.common.metrics.CounterMetric;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per shard metrics of the group commits done by {@link TranslogSyncCoordinator}.
+ */
+public final class GroupCommitMetrics {
+
+    private final CounterMetric groupCommits = new CounterMetric();
+    private final CounterMetric syncedLocations = new CounterMetric();
+    private final CounterMetric[] batchSizes = newCounters(TranslogStats.BATCH_SIZE_BUCKETS.length);
+    private final CounterMetric[] latencies = newCounters(TranslogStats.LATENCY_BUCKETS_MICROS.length);
+
+    private static CounterMetric[] newCounters(int length) {
+        final CounterMetric[] counters = new CounterMetric[length];
+        for (int i = 0; i < length; i++) {
+            counters[i] = new CounterMetric();
+        }
+        return counters;
+    }
+
+    /**
+     * Records a group commit of <code>batchSize</code> translogs. Only one of the translogs of a group commit records it, so that
+     * the summed stats of all shards count every group commit once.
+     */
+    void onGroupCommit(int batchSize) {
+        groupCommits.inc();
+        batchSizes[bucket(TranslogStats.BATCH_SIZE_BUCKETS, batchSize)].inc();
+    }
+
+    /**
+     * Records that a group commit synced <code>numLocations</code> locations of this shard.
+     */
+    void onLocationsSynced(int numLocations) {
+        syncedLocations.inc(numLocations);
+    }
+
+    /**
+     * Records the time a single sync request waited until its location was durable.
+     */
+    void onSynced(long latencyNanos) {
+        latencies[bucket(TranslogStats.LATENCY_BUCKETS_MICROS, TimeUnit.NANOSECONDS.toMicros(latencyNanos))].inc();
+    }
+
+    /**
+     * Adds the metrics recorded so far to the given stats.
+     */
+    public void addTo(TranslogStats stats) {
+        final long[] batchSizeCounts = new long[batchSizes.length];
+        for (int i = 0; i < batchSizes.length; i++) {
+            batchSizeCounts[i] = batchSizes[i].count();
+        }
+        final long[] latencyCounts = new long[latencies.length];
+        for (int i = 0; i < latencies.length; i++) {
+            latencyCounts[i] = latencies[i].count();
+        }
+        stats.addGroupCommits(groupCommits.count(), syncedLocations.count(), batchSizeCounts, latencyCounts);
+    }
+
+    /** returns the index of the last bucket whose lower bound is less than or equal to the value */
+    static int bucket(long[] lowerBounds, long value) {
+        int bucket = 0;
+        while (bucket + 1 < lowerBounds.length && lowerBounds[bucket + 1] <= value) {
+            bucket++;
+        }
+        return bucket;
+    }
+}
@@ -21,6 +21,7 @@ package org.elasticsearch.index.translog;
 
 import org.apache.logging.log4j.message.ParameterizedMessage;
 import org.apache.logging.log4j.util.Supplier;
+import org.apache.lucene.codecs.compressing.Decompressor;
 import org.apache.lucene.index.Term;
 import org.apache.lucene.index.TwoPhaseCommit;
 import org.apache.lucene.store.AlreadyClosedException;
@@ -41,6 +42,7 @@ import org.elasticsearch.common.util.BigArrays;
 import org.elasticsearch.common.util.concurrent.ConcurrentCollections;
 import org.elasticsearch.common.util.concurrent.FutureUtils;
 import org.elasticsearch.common.util.concurrent.ReleasableLock;
+import org.elasticsearch.index.IndexSettings;
 import org.elasticsearch.index.VersionType;
 import org.elasticsearch.index.engine.Engine;
 import org.elasticsearch.index.shard.AbstractIndexShardComponent;
@@ -117,6 +119,7 @@ public class Translog extends AbstractIndexShardComponent implements IndexShardC
     // is that is being accessed by two separate classes (additions & reading are done by Translog, remove by View when closed)
     private final Set<View> outstandingViews = ConcurrentCollections.newConcurrentSet();
     private BigArrays bigArrays;
+    private final Codec codec;
     protected final ReleasableLock readLock;
     protected final ReleasableLock writeLock;
     private final Path location;
@@ -153,6 +156,7 @@ public class Translog extends AbstractIndexShardComponent implements IndexShardC
             translogUUID = translogGeneration.translogUUID;
         }
         bigArrays = config.getBigArrays();
+        codec = config.getIndexSettings().getValue(IndexSettings.INDEX_TRANSLOG_CODEC_SETTING);
         ReadWriteLock rwl = new ReentrantReadWriteLock();
         readLock = new ReleasableLock(rwl.readLock());
         writeLock = new ReleasableLock(rwl.writeLock());
@@ -380,7 +384,7 @@ public class Translog extends AbstractIndexShardComponent implements IndexShardC
     TranslogWriter createWriter(long fileGeneration) throws IOException {
         TranslogWriter newFile;
         try {
-            newFile = TranslogWriter.create(shardId, translogUUID, fileGeneration, location.resolve(getFilename(fileGeneration)), getChannelFactory(), config.getBufferSize());
+            newFile = TranslogWriter.create(shardId, translogUUID, fileGeneration, location.resolve(getFilename(fileGeneration)), getChannelFactory(), config.getBufferSize(), codec);
         } catch (IOException e) {
             throw new TranslogException(shardId, "failed to create new translog file", e);
         }
@@ -393,7 +397,7 @@ public class Translog extends AbstractIndexShardComponent implements IndexShardC
      * the current or from the currently committing translog file. If the location is in a file that has already
      * been closed or even removed the method will return <code>null</code> instead.
      */
-    Translog.Operation read(Location location) { // TODO this is only here for testing - we can remove it?
+    public Translog.Operation read(Location location) {
         try (ReleasableLock lock = readLock.acquire()) {
             final BaseTranslogReader reader;
             final long currentGeneration = current.getGeneration();
@@ -420,18 +424,15 @@ public class Translog extends AbstractIndexShardComponent implements IndexShardC
      * @see org.elasticsearch.index.translog.Translog.Delete
      */
     public Location add(Operation operation) throws IOException {
-        final ReleasableBytesStreamOutput out = new ReleasableBytesStreamOutput(bigArrays);
+        // the source of index operations is written to the file straight from the request instead of being copied first
+        final GatheringChecksumStreamOutput out = new GatheringChecksumStreamOutput(bigArrays);
         try {
-            final BufferedChecksumStreamOutput checksumStreamOutput = new BufferedChecksumStreamOutput(out);
-            final long start = out.position();
-            out.skip(Integer.BYTES);
-            writeOperationNoSize(checksumStreamOutput, operation);
-            final long end = out.position();
-            final int operationSize = (int) (end - Integer.BYTES - start);
-            out.seek(start);
-            out.writeInt(operationSize);
-            out.seek(end);
-            final ReleasablePagedBytesReference bytes = out.bytes();
+            if (codec == Codec.LZ4) {
+                TranslogCompression.writeType(operation, out);
+            } else {
+                Translog.Operation.writeType(operation, out);
+            }
+            final BytesReference bytes = out.bytes();
             try (ReleasableLock lock = readLock.acquire()) {
                 ensureOpen();
                 Location location = current.add(bytes);
@@ -453,7 +454,7 @@ public class Translog extends AbstractIndexShardComponent implements IndexShardC
             }
             throw new TranslogException(shardId, "Failed to write operation [" + operation + "]", e);
         } finally {
-            Releasables.close(out.bytes());
+            out.close();
         }
     }
 
@@ -790,7 +791,14 @@ public class Translog extends AbstractIndexShardComponent implements IndexShardC
          * {@link Operation#writeType(Operation, StreamOutput)}
          */
         static Operation readType(StreamInput input) throws IOException {
-            Translog.Operation.Type type = Translog.Operation.Type.fromId(input.readByte());
+            return readType(input.readByte(), input);
+        }
+
+        /**
+         * Reads the operation of the given type id from the given stream.
+         */
+        static Operation readType(byte typeId, StreamInput input) throws IOException {
+            Translog.Operation.Type type = Translog.Operation.Type.fromId(typeId);
             switch (type) {
                 case CREATE:
                     // the deserialization logic in Index was identical to that of Create when create was deprecated
@@ -1114,6 +1122,20 @@ public class Translog extends AbstractIndexShardComponent implements IndexShardC
     }
 
 
+    /**
+     * The format operations are written to the translog with
+     */
+    public enum Codec {
+        /**
+         * Operations are written as they are serialized
+         */
+        DEFAULT,
+        /**
+         * Large operations are LZ4 compressed, each in its own checksummed frame
+         */
+        LZ4
+    }
+
     public enum Durability {
         /**
          * Async durability - translogs are synced based on a time interval.
@@ -1143,13 +1165,14 @@ public class Translog extends AbstractIndexShardComponent implements IndexShardC
         ArrayList<Operation> operations = new ArrayList<>();
         int numOps = input.readInt();
         final BufferedChecksumStreamInput checksumStreamInput = new BufferedChecksumStreamInput(input);
+        final Decompressor decompressor = TranslogCompression.newDecompressor();
         for (int i = 0; i < numOps; i++) {
-            operations.add(readOperation(checksumStreamInput));
+            operations.add(readOperation(checksumStreamInput, decompressor));
         }
         return operations;
     }
 
-    static Translog.Operation readOperation(BufferedChecksumStreamInput in) throws IOException {
+    static Translog.Operation readOperation(BufferedChecksumStreamInput in, Decompressor decompressor) throws IOException {
         final Translog.Operation operation;
         try {
             final int opSize = in.readInt();
@@ -1167,7 +1190,7 @@ public class Translog extends AbstractIndexShardComponent implements IndexShardC
                 verifyChecksum(in);
                 in.reset();
             }
-            operation = Translog.Operation.readType(in);
+            operation = TranslogCompression.readType(in, decompressor);
             verifyChecksum(in);
         } catch (TranslogCorruptedException e) {
             throw e;
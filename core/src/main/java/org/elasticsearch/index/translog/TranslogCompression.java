@@ -0,0 +1,113 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.elasticsearch.index.translog;
+
+import org.apache.lucene.codecs.compressing.CompressionMode;
+import org.apache.lucene.codecs.compressing.Compressor;
+import org.apache.lucene.codecs.compressing.Decompressor;
+import org.apache.lucene.store.ByteArrayDataInput;
+import org.apache.lucene.store.OutputStreamDataOutput;
+import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.io.stream.BytesStreamOutput;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+
+import java.io.IOException;
+
+/**
+ * Compresses the serialized form of single translog operations with LZ4 so that every operation can still be read on its own
+ * from its {@link Translog.Location}. A compressed operation is written in place of the operation type and body, inside the same
+ * size-prefixed and checksummed frame as an uncompressed operation:
+ * <pre>
+ * [0x7F][vint uncompressed length][vint compressed length][LZ4 block]
+ * </pre>
+ * The marker byte is never a valid {@link Translog.Operation.Type} id, which allows compressed and uncompressed operations to be
+ * mixed in the same file and makes reading transparent for all readers.
+ */
+final class TranslogCompression {
+
+    /** marker written in place of the operation type for compressed operations */
+    static final byte COMPRESSED_OPERATION = (byte) 0x7F;
+
+    /** operations smaller than this are never compressed since the gain doesn't pay for the extra work */
+    static final int MIN_COMPRESSION_SIZE = 256;
+
+    private static final ThreadLocal<Compressor> COMPRESSOR = ThreadLocal.withInitial(CompressionMode.FAST::newCompressor);
+
+    private TranslogCompression() {}
+
+    /**
+     * Returns a new decompressor for {@link #readType(StreamInput, Decompressor)}. Readers should create it once and reuse it for
+     * all the operations they read.
+     */
+    static Decompressor newDecompressor() {
+        return CompressionMode.FAST.newDecompressor();
+    }
+
+    /**
+     * Writes the type and the given operation to the output, compressing it if it is large enough and compresses well.
+     */
+    static void writeType(Translog.Operation operation, StreamOutput out) throws IOException {
+        final BytesStreamOutput serialized = new BytesStreamOutput();
+        Translog.Operation.writeType(operation, serialized);
+        final BytesRef raw = serialized.bytes().toBytesRef();
+        if (raw.length >= MIN_COMPRESSION_SIZE) {
+            final BytesStreamOutput compressed = new BytesStreamOutput(raw.length / 2);
+            // not closed on purpose, it would close the underlying stream
+            COMPRESSOR.get().compress(raw.bytes, raw.offset, raw.length, new OutputStreamDataOutput(compressed));
+            if (compressed.size() < raw.length) {
+                out.writeByte(COMPRESSED_OPERATION);
+                out.writeVInt(raw.length);
+                out.writeVInt(compressed.size());
+                compressed.bytes().writeTo(out);
+                return;
+            }
+        }
+        out.writeBytes(raw.bytes, raw.offset, raw.length);
+    }
+
+    /**
+     * Reads an operation written with {@link #writeType(Translog.Operation, StreamOutput)} or
+     * {@link Translog.Operation#writeType(Translog.Operation, StreamOutput)}, decompressing it with the given decompressor if needed.
+     */
+    static Translog.Operation readType(StreamInput in, Decompressor decompressor) throws IOException {
+        final byte type = in.readByte();
+        if (type != COMPRESSED_OPERATION) {
+            return Translog.Operation.readType(type, in);
+        }
+        final int uncompressedLength = in.readVInt();
+        final int compressedLength = in.readVInt();
+        if (uncompressedLength < 0 || compressedLength < 0) {
+            throw new TranslogCorruptedException("compressed operation has negative length, uncompressed: [" + uncompressedLength
+                + "], compressed: [" + compressedLength + "]");
+        }
+        final byte[] compressed = new byte[compressedLength];
+        in.readBytes(compressed, 0, compressedLength);
+        final BytesRef uncompressed = new BytesRef();
+        decompressor.decompress(new ByteArrayDataInput(compressed), uncompressedLength, 0, uncompressedLength, uncompressed);
+        try (StreamInput operationInput = new BytesArray(uncompressed).streamInput()) {
+            final Translog.Operation operation = Translog.Operation.readType(operationInput);
+            if (operationInput.available() != 0) {
+                throw new TranslogCorruptedException("compressed operation has [" + operationInput.available() + "] trailing bytes");
+            }
+            return operation;
+        }
+    }
+}
@@ -18,6 +18,7 @@
  */
 package org.elasticsearch.index.translog;
 
+import org.elasticsearch.Version;
 import org.elasticsearch.action.support.ToXContentToBytes;
 import org.elasticsearch.common.io.stream.StreamInput;
 import org.elasticsearch.common.io.stream.StreamOutput;
@@ -25,14 +26,26 @@ import org.elasticsearch.common.io.stream.Streamable;
 import org.elasticsearch.common.xcontent.XContentBuilder;
 
 import java.io.IOException;
+import java.util.Arrays;
 
 /**
  *
  */
 public class TranslogStats extends ToXContentToBytes implements Streamable {
 
+    /** lower bounds of the buckets of the group commit batch size histogram (number of translogs synced per group commit) */
+    static final long[] BATCH_SIZE_BUCKETS = new long[] {1, 2, 4, 8, 16, 32};
+    static final String[] BATCH_SIZE_BUCKET_NAMES = new String[] {"1", "2-3", "4-7", "8-15", "16-31", "32+"};
+    /** lower bounds of the buckets of the group commit latency histogram in microseconds */
+    static final long[] LATENCY_BUCKETS_MICROS = new long[] {0, 100, 1000, 10000, 100000};
+    static final String[] LATENCY_BUCKET_NAMES = new String[] {"lt_100micros", "lt_1ms", "lt_10ms", "lt_100ms", "gte_100ms"};
+
     private long translogSizeInBytes;
     private int numberOfOperations;
+    private long groupCommits;
+    private long groupCommitSyncedLocations;
+    private long[] groupCommitBatchSizes = new long[BATCH_SIZE_BUCKETS.length];
+    private long[] groupCommitLatencies = new long[LATENCY_BUCKETS_MICROS.length];
 
     public TranslogStats() {
     }
@@ -56,6 +69,20 @@ public class TranslogStats extends ToXContentToBytes implements Streamable {
 
         this.numberOfOperations += translogStats.numberOfOperations;
         this.translogSizeInBytes += translogStats.translogSizeInBytes;
+        addGroupCommits(translogStats.groupCommits, translogStats.groupCommitSyncedLocations, translogStats.groupCommitBatchSizes,
+            translogStats.groupCommitLatencies);
+    }
+
+    void addGroupCommits(long groupCommits, long syncedLocations, long[] batchSizes, long[] latencies) {
+        assert batchSizes.length == groupCommitBatchSizes.length && latencies.length == groupCommitLatencies.length;
+        this.groupCommits += groupCommits;
+        this.groupCommitSyncedLocations += syncedLocations;
+        for (int i = 0; i < batchSizes.length; i++) {
+            groupCommitBatchSizes[i] += batchSizes[i];
+        }
+        for (int i = 0; i < latencies.length; i++) {
+            groupCommitLatencies[i] += latencies[i];
+        }
     }
 
     public long getTranslogSizeInBytes() {
@@ -66,11 +93,58 @@ public class TranslogStats extends ToXContentToBytes implements Streamable {
         return numberOfOperations;
     }
 
+    /**
+     * Returns the number of cross-shard group commits. Each group commit is counted by one of the translogs that took part in
+     * it, so that the stats summed over all shards count it once.
+     */
+    public long getGroupCommits() {
+        return groupCommits;
+    }
+
+    /**
+     * Returns the number of sync requests that were served by cross-shard group commits
+     */
+    public long getGroupCommitSyncedLocations() {
+        return groupCommitSyncedLocations;
+    }
+
+    /**
+     * Returns the histogram of the number of translogs synced per group commit, bucketed as 1, 2-3, 4-7, 8-15, 16-31 and 32+.
+     */
+    public long[] getGroupCommitBatchSizes() {
+        return Arrays.copyOf(groupCommitBatchSizes, groupCommitBatchSizes.length);
+    }
+
+    /**
+     * Returns the histogram of the time sync requests waited for their group commit, bucketed as &lt;100&micro;s, &lt;1ms,
+     * &lt;10ms, &lt;100ms and &ge;100ms.
+     */
+    public long[] getGroupCommitLatencies() {
+        return Arrays.copyOf(groupCommitLatencies, groupCommitLatencies.length);
+    }
+
     @Override
     public XContentBuilder toXContent(XContentBuilder builder, Params params) throws IOException {
         builder.startObject(Fields.TRANSLOG);
         builder.field(Fields.OPERATIONS, numberOfOperations);
         builder.byteSizeField(Fields.SIZE_IN_BYTES, Fields.SIZE, translogSizeInBytes);
+        // a group commit is only counted by one of the translogs that took part in it, the others still report their locations
+        if (groupCommits > 0 || groupCommitSyncedLocations > 0) {
+            builder.startObject(Fields.GROUP_COMMIT);
+            builder.field(Fields.TOTAL, groupCommits);
+            builder.field(Fields.SYNCED_LOCATIONS, groupCommitSyncedLocations);
+            builder.startObject(Fields.BATCH_SIZES);
+            for (int i = 0; i < BATCH_SIZE_BUCKET_NAMES.length; i++) {
+                builder.field(BATCH_SIZE_BUCKET_NAMES[i], groupCommitBatchSizes[i]);
+            }
+            builder.endObject();
+            builder.startObject(Fields.LATENCIES);
+            for (int i = 0; i < LATENCY_BUCKET_NAMES.length; i++) {
+                builder.field(LATENCY_BUCKET_NAMES[i], groupCommitLatencies[i]);
+            }
+            builder.endObject();
+            builder.endObject();
+        }
         builder.endObject();
         return builder;
     }
@@ -80,17 +154,42 @@ public class TranslogStats extends ToXContentToBytes implements Streamable {
         static final String OPERATIONS = "operations";
         static final String SIZE = "size";
         static final String SIZE_IN_BYTES = "size_in_bytes";
+        static final String GROUP_COMMIT = "group_commit";
+        static final String TOTAL = "total";
+        static final String SYNCED_LOCATIONS = "synced_locations";
+        static final String BATCH_SIZES = "batch_sizes";
+        static final String LATENCIES = "latencies";
     }
 
     @Override
     public void readFrom(StreamInput in) throws IOException {
         numberOfOperations = in.readVInt();
         translogSizeInBytes = in.readVLong();
+        if (in.getVersion().onOrAfter(Version.V_6_0_0_alpha1)) {
+            groupCommits = in.readVLong();
+            groupCommitSyncedLocations = in.readVLong();
+            for (int i = 0; i < groupCommitBatchSizes.length; i++) {
+                groupCommitBatchSizes[i] = in.readVLong();
+            }
+            for (int i = 0; i < groupCommitLatencies.length; i++) {
+                groupCommitLatencies[i] = in.readVLong();
+            }
+        }
     }
 
     @Override
     public void writeTo(StreamOutput out) throws IOException {
         out.writeVInt(numberOfOperations);
         out.writeVLong(translogSizeInBytes);
+        if (out.getVersion().onOrAfter(Version.V_6_0_0_alpha1)) {
+            out.writeVLong(groupCommits);
+            out.writeVLong(groupCommitSyncedLocations);
+            for (long count : groupCommitBatchSizes) {
+                out.writeVLong(count);
+            }
+            for (long count : groupCommitLatencies) {
+                out.writeVLong(count);
+            }
+        }
     }
 }
@@ -0,0 +1,302 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.elasticsearch.index.translog;
+
+import org.apache.logging.log4j.message.ParameterizedMessage;
+import org.apache.logging.log4j.util.Supplier;
+import org.apache.lucene.store.AlreadyClosedException;
+import org.elasticsearch.common.component.AbstractComponent;
+import org.elasticsearch.common.settings.Setting;
+import org.elasticsearch.common.settings.Setting.Property;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.common.util.concurrent.AbstractRunnable;
+import org.elasticsearch.common.util.concurrent.EsExecutors;
+import org.elasticsearch.common.util.concurrent.EsThreadPoolExecutor;
+import org.elasticsearch.common.util.concurrent.ParallelBatchRunner;
+import org.elasticsearch.threadpool.ThreadPool;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * A node level service that group-commits translog fsyncs of all shards that live on the same data path. Shards that use
+ * {@link Translog.Durability#REQUEST} durability hand their pending {@link Translog.Location}s to this coordinator instead of
+ * syncing them on the indexing thread. A single worker per data path collects the locations that arrive within the configured
+ * group-commit window and then syncs every translog that took part in the window once, concurrently, so that the file system
+ * can merge the fsyncs of the window, before notifying the listeners of each translog.
+ * <p>
+ * The coordinator is enabled when {@link #MAX_WAIT_SETTING} is set to a positive value. It is disabled by default, shards then
+ * sync their own translogs with per-shard batching.
+ */
+public final class TranslogSyncCoordinator extends AbstractComponent implements Closeable {
+
+    /**
+     * The maximum amount of time a sync request is held back to be group-committed with requests from other shards on the same
+     * data path. Typically configured in microseconds, e.g. {@code 500micros}. {@code 0} disables cross-shard group-commit.
+     */
+    public static final Setting<TimeValue> MAX_WAIT_SETTING =
+        Setting.timeSetting("indices.translog.group_commit.max_wait", TimeValue.timeValueMillis(0), TimeValue.timeValueMillis(0),
+            Property.NodeScope);
+
+    /**
+     * A translog that can take part in a group commit.
+     */
+    public interface SyncTarget {
+
+        /**
+         * Ensures all the given locations are synced to disk.
+         */
+        void ensureSynced(Stream<Translog.Location> locations) throws IOException;
+
+        /**
+         * Returns the metrics the group commits of this target are recorded in.
+         */
+        GroupCommitMetrics groupCommitMetrics();
+    }
+
+    // queued to every data path on close, the worker of the path exits once it takes it
+    private static final Pending CLOSE = new Pending(null, null, null, 0);
+
+    private final long maxWaitNanos;
+    private final EsThreadPoolExecutor executor;
+    private final ParallelBatchRunner syncRunner;
+    private final ConcurrentMap<Path, PathQueue> queues = new ConcurrentHashMap<>();
+    private volatile boolean closed = false;
+
+    public TranslogSyncCoordinator(Settings settings, ThreadPool threadPool) {
+        super(settings);
+        this.maxWaitNanos = MAX_WAIT_SETTING.get(settings).nanos();
+        // one long running worker per data path, started lazily the first time a shard on the path syncs
+        this.executor = EsExecutors.newScaling("translog_group_commit", 0, Integer.MAX_VALUE, 30, TimeUnit.SECONDS,
+            EsExecutors.daemonThreadFactory(settings, "translog_group_commit"), threadPool.getThreadContext());
+        // the worker fsyncs one translog of a window and forks the fsyncs of the others to helpers of the same executor
+        this.syncRunner = new ParallelBatchRunner(executor, 1, EsExecutors.boundedNumberOfProcessors(settings) - 1);
+    }
+
+    /**
+     * Returns <code>true</code> iff a group-commit window is configured. Shards must not hand their syncs to a disabled coordinator.
+     */
+    public boolean isEnabled() {
+        return maxWaitNanos > 0;
+    }
+
+    /**
+     * Queues the given location to be synced with the next group commit of the given data path. The listener is notified once the
+     * location is durable or the sync failed. Listener exceptions are only logged.
+     */
+    public void sync(Path dataPath, SyncTarget target, Translog.Location location, Consumer<Exception> listener) {
+        assert isEnabled() : "group commit is disabled";
+        if (closed) {
+            listener.accept(new AlreadyClosedException("translog sync coordinator is closed"));
+            return;
+        }
+        final PathQueue pathQueue = queues.computeIfAbsent(dataPath, this::startWorker);
+        pathQueue.queue.add(new Pending(target, location, listener, System.nanoTime()));
+        if (closed) {
+            // the worker might have exited before we added ourself - make sure nobody is left waiting
+            pathQueue.failPending();
+        }
+    }
+
+    private PathQueue startWorker(Path dataPath) {
+        final PathQueue pathQueue = new PathQueue(dataPath);
+        executor.execute(pathQueue);
+        return pathQueue;
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        for (PathQueue pathQueue : queues.values()) {
+            pathQueue.queue.add(CLOSE);
+        }
+        // the workers exit as soon as they take the close marker, this only waits for fsyncs that are in progress. Interrupting
+        // the workers instead would close the channels of the translogs they are syncing.
+        ThreadPool.terminate(executor, 10, TimeUnit.SECONDS);
+        for (PathQueue pathQueue : queues.values()) {
+            pathQueue.failPending();
+        }
+    }
+
+    private static final class Pending {
+        final SyncTarget target;
+        final Translog.Location location;
+        final Consumer<Exception> listener;
+        final long enqueueNanos;
+
+        Pending(SyncTarget target, Translog.Location location, Consumer<Exception> listener, long enqueueNanos) {
+            this.target = target;
+            this.location = location;
+            this.listener = listener;
+            this.enqueueNanos = enqueueNanos;
+        }
+    }
+
+    private final class PathQueue extends AbstractRunnable {
+        private final Path dataPath;
+        private final BlockingQueue<Pending> queue = new LinkedBlockingQueue<>();
+
+        PathQueue(Path dataPath) {
+            this.dataPath = dataPath;
+        }
+
+        @Override
+        protected void doRun() throws Exception {
+            final List<Pending> window = new ArrayList<>();
+            while (true) {
+                final Pending first;
+                try {
+                    first = queue.take();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    failPending();
+                    return;
+                }
+                if (first == CLOSE) {
+                    break;
+                }
+                window.add(first);
+                final long deadline = first.enqueueNanos + maxWaitNanos;
+                long remaining;
+                while ((remaining = deadline - System.nanoTime()) > 0) {
+                    final Pending next;
+                    try {
+                        next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    } catch (InterruptedException e) {
+                        // we are shutting down - don't fsync from an interrupted thread, it would close the translog channels
+                        Thread.currentThread().interrupt();
+                        queue.drainTo(window);
+                        for (Pending pending : window) {
+                            notifyListener(pending, new AlreadyClosedException("translog sync coordinator is closed"));
+                        }
+                        return;
+                    }
+                    if (next == null) {
+                        break;
+                    }
+                    window.add(next);
+                    if (next == CLOSE) {
+                        break;
+                    }
+                }
+                queue.drainTo(window);
+                if (window.remove(CLOSE)) {
+                    // we are shutting down and the translogs might be closed already
+                    for (Pending pending : window) {
+                        notifyListener(pending, new AlreadyClosedException("translog sync coordinator is closed"));
+                    }
+                    break;
+                }
+                groupCommit(window);
+                window.clear();
+            }
+            failPending();
+        }
+
+        @Override
+        public void onFailure(Exception e) {
+            logger.warn((Supplier<?>) () -> new ParameterizedMessage("translog group commit worker for [{}] failed", dataPath), e);
+            failPending();
+        }
+
+        @Override
+        public void onRejection(Exception e) {
+            failPending();
+        }
+
+        void failPending() {
+            Pending pending;
+            while ((pending = queue.poll()) != null) {
+                if (pending != CLOSE) {
+                    notifyListener(pending, new AlreadyClosedException("translog sync coordinator is closed"));
+                }
+            }
+        }
+    }
+
+    private void groupCommit(List<Pending> window) {
+        final Map<SyncTarget, List<Pending>> byTarget = new IdentityHashMap<>();
+        for (Pending pending : window) {
+            byTarget.computeIfAbsent(pending.target, t -> new ArrayList<>()).add(pending);
+        }
+        final List<Map.Entry<SyncTarget, List<Pending>>> targets = new ArrayList<>(byTarget.entrySet());
+        // the group commit is recorded once, by the first translog of the window, so that summing the stats of all shards
+        // counts it once
+        targets.get(0).getKey().groupCommitMetrics().onGroupCommit(targets.size());
+        // Java has no way to force several files in one call, but fsyncs that are issued concurrently can be merged by the file
+        // system, for instance into a single journal commit, instead of flushing the device once per translog
+        final AtomicIntegerArray started = new AtomicIntegerArray(targets.size());
+        try {
+            syncRunner.run(targets.size(), i -> {
+                if (started.compareAndSet(i, 0, 1)) {
+                    syncTarget(targets.get(i).getKey(), targets.get(i).getValue());
+                }
+            });
+        } catch (InterruptedException e) {
+            // we are shutting down - the fsyncs that already started notify their listeners themselves, fail the others
+            Thread.currentThread().interrupt();
+            for (int i = 0; i < targets.size(); i++) {
+                if (started.compareAndSet(i, 0, 1)) {
+                    for (Pending pending : targets.get(i).getValue()) {
+                        notifyListener(pending, new AlreadyClosedException("translog sync coordinator is closed"));
+                    }
+                }
+            }
+        }
+    }
+
+    private void syncTarget(SyncTarget target, List<Pending> pendings) {
+        Exception failure = null;
+        try {
+            target.ensureSynced(pendings.stream().map(p -> p.location));
+        } catch (Exception e) {
+            logger.debug("failed to group commit translog", e);
+            failure = e;
+        }
+        final GroupCommitMetrics metrics = target.groupCommitMetrics();
+        metrics.onLocationsSynced(pendings.size());
+        final long now = System.nanoTime();
+        for (Pending pending : pendings) {
+            metrics.onSynced(now - pending.enqueueNanos);
+            notifyListener(pending, failure);
+        }
+    }
+
+    private void notifyListener(Pending pending, Exception failure) {
+        try {
+            pending.listener.accept(failure);
+        } catch (Exception e) {
+            logger.warn("failed to notify translog sync listener", e);
+        }
+    }
+}
@@ -44,6 +44,7 @@ public class TranslogWriter extends BaseTranslogReader implements Closeable {
     public static final String TRANSLOG_CODEC = "translog";
     public static final int VERSION_CHECKSUMS = 1;
     public static final int VERSION_CHECKPOINTS = 2; // since 2.0 we have checkpoints?
+    public static final int VERSION_COMPRESSED = 3; // operations may be compressed, see TranslogCompression
     public static final int VERSION = VERSION_CHECKPOINTS;
 
     private final ShardId shardId;
@@ -81,12 +82,25 @@ public class TranslogWriter extends BaseTranslogReader implements Closeable {
     }
 
     static void writeHeader(OutputStreamDataOutput out, BytesRef ref) throws IOException {
-        CodecUtil.writeHeader(out, TRANSLOG_CODEC, VERSION);
+        writeHeader(out, ref, VERSION);
+    }
+
+    static void writeHeader(OutputStreamDataOutput out, BytesRef ref, int version) throws IOException {
+        CodecUtil.writeHeader(out, TRANSLOG_CODEC, version);
         out.writeInt(ref.length);
         out.writeBytes(ref.bytes, ref.offset, ref.length);
     }
 
     public static TranslogWriter create(ShardId shardId, String translogUUID, long fileGeneration, Path file, ChannelFactory channelFactory, ByteSizeValue bufferSize) throws IOException {
+        return create(shardId, translogUUID, fileGeneration, file, channelFactory, bufferSize, Translog.Codec.DEFAULT);
+    }
+
+    /**
+     * Creates a new translog file. Files written with the {@link Translog.Codec#LZ4} codec get a {@link #VERSION_COMPRESSED}
+     * header. Versions that can't read compressed operations don't know this header version and report the file as corrupted.
+     */
+    public static TranslogWriter create(ShardId shardId, String translogUUID, long fileGeneration, Path file, ChannelFactory channelFactory,
+                                        ByteSizeValue bufferSize, Translog.Codec codec) throws IOException {
         final BytesRef ref = new BytesRef(translogUUID);
         final int headerLength = getHeaderLength(ref.length);
         final FileChannel channel = channelFactory.open(file);
@@ -94,7 +108,7 @@ public class TranslogWriter extends BaseTranslogReader implements Closeable {
             // This OutputStreamDataOutput is intentionally not closed because
             // closing it will close the FileChannel
             final OutputStreamDataOutput out = new OutputStreamDataOutput(java.nio.channels.Channels.newOutputStream(channel));
-            writeHeader(out, ref);
+            writeHeader(out, ref, codec == Translog.Codec.LZ4 ? VERSION_COMPRESSED : VERSION);
             channel.force(true);
             writeCheckpoint(channelFactory, headerLength, 0, file.getParent(), fileGeneration);
             final TranslogWriter writer = new TranslogWriter(channelFactory, shardId, fileGeneration, channel, file, bufferSize);
@@ -0,0 +1,200 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.indices;
+
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.common.io.stream.Writeable;
+import org.elasticsearch.common.xcontent.ToXContent;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.index.shard.ShardId;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * How the indexing buffer of a node, see {@link IndexingMemoryController}, is used by its shards.
+ */
+public class IndexingBufferStats implements Writeable, ToXContent {
+
+    private final String allocation;
+    private final long limitInBytes;
+    private final long usedInBytes;
+    private final long writingInBytes;
+    private final List<ShardStats> shards;
+
+    public IndexingBufferStats(String allocation, long limitInBytes, long usedInBytes, long writingInBytes, List<ShardStats> shards) {
+        this.allocation = allocation;
+        this.limitInBytes = limitInBytes;
+        this.usedInBytes = usedInBytes;
+        this.writingInBytes = writingInBytes;
+        this.shards = Collections.unmodifiableList(shards);
+    }
+
+    public IndexingBufferStats(StreamInput in) throws IOException {
+        allocation = in.readString();
+        limitInBytes = in.readVLong();
+        usedInBytes = in.readVLong();
+        writingInBytes = in.readVLong();
+        shards = Collections.unmodifiableList(in.readList(ShardStats::new));
+    }
+
+    @Override
+    public void writeTo(StreamOutput out) throws IOException {
+        out.writeString(allocation);
+        out.writeVLong(limitInBytes);
+        out.writeVLong(usedInBytes);
+        out.writeVLong(writingInBytes);
+        out.writeList(shards);
+    }
+
+    /** the allocation policy, see {@link IndexingMemoryController#INDEX_BUFFER_ALLOCATION_SETTING} */
+    public String getAllocation() {
+        return allocation;
+    }
+
+    /** the heap all shards' indexing buffers may use together */
+    public long getLimitInBytes() {
+        return limitInBytes;
+    }
+
+    /** the heap used by indexing buffers that are not being written to disk */
+    public long getUsedInBytes() {
+        return usedInBytes;
+    }
+
+    /** the heap used by indexing buffers that are currently being written to disk */
+    public long getWritingInBytes() {
+        return writingInBytes;
+    }
+
+    public List<ShardStats> getShards() {
+        return shards;
+    }
+
+    @Override
+    public XContentBuilder toXContent(XContentBuilder builder, Params params) throws IOException {
+        builder.startObject(Fields.INDEXING_BUFFER);
+        builder.field(Fields.ALLOCATION, allocation);
+        builder.byteSizeField(Fields.LIMIT_IN_BYTES, Fields.LIMIT, limitInBytes);
+        builder.byteSizeField(Fields.USED_IN_BYTES, Fields.USED, usedInBytes);
+        builder.byteSizeField(Fields.WRITING_IN_BYTES, Fields.WRITING, writingInBytes);
+        builder.field(Fields.SHARD_COUNT, shards.size());
+        if ("shards".equals(params.param("level", "node"))) {
+            builder.startArray(Fields.SHARDS);
+            for (ShardStats shard : shards) {
+                shard.toXContent(builder, params);
+            }
+            builder.endArray();
+        }
+        builder.endObject();
+        return builder;
+    }
+
+    public static class ShardStats implements Writeable, ToXContent {
+
+        private final ShardId shardId;
+        private final long usedInBytes;
+        private final long writingInBytes;
+        private final long allowanceInBytes;
+        private final long ingestRateInBytesPerSec;
+
+        public ShardStats(ShardId shardId, long usedInBytes, long writingInBytes, long allowanceInBytes, long ingestRateInBytesPerSec) {
+            this.shardId = shardId;
+            this.usedInBytes = usedInBytes;
+            this.writingInBytes = writingInBytes;
+            this.allowanceInBytes = allowanceInBytes;
+            this.ingestRateInBytesPerSec = ingestRateInBytesPerSec;
+        }
+
+        public ShardStats(StreamInput in) throws IOException {
+            shardId = ShardId.readShardId(in);
+            usedInBytes = in.readVLong();
+            writingInBytes = in.readVLong();
+            allowanceInBytes = in.readLong();
+            ingestRateInBytesPerSec = in.readVLong();
+        }
+
+        @Override
+        public void writeTo(StreamOutput out) throws IOException {
+            shardId.writeTo(out);
+            out.writeVLong(usedInBytes);
+            out.writeVLong(writingInBytes);
+            out.writeLong(allowanceInBytes);
+            out.writeVLong(ingestRateInBytesPerSec);
+        }
+
+        public ShardId getShardId() {
+            return shardId;
+        }
+
+        public long getUsedInBytes() {
+            return usedInBytes;
+        }
+
+        public long getWritingInBytes() {
+            return writingInBytes;
+        }
+
+        /** the heap this shard's indexing buffer may use before the shard writes it to disk, or -1 if unbounded */
+        public long getAllowanceInBytes() {
+            return allowanceInBytes;
+        }
+
+        public long getIngestRateInBytesPerSec() {
+            return ingestRateInBytesPerSec;
+        }
+
+        @Override
+        public XContentBuilder toXContent(XContentBuilder builder, Params params) throws IOException {
+            builder.startObject();
+            builder.field(Fields.INDEX, shardId.getIndexName());
+            builder.field(Fields.SHARD, shardId.id());
+            builder.byteSizeField(Fields.USED_IN_BYTES, Fields.USED, usedInBytes);
+            builder.byteSizeField(Fields.WRITING_IN_BYTES, Fields.WRITING, writingInBytes);
+            if (allowanceInBytes != -1) {
+                builder.byteSizeField(Fields.ALLOWANCE_IN_BYTES, Fields.ALLOWANCE, allowanceInBytes);
+            }
+            builder.byteSizeField(Fields.INGEST_RATE_IN_BYTES_PER_SEC, Fields.INGEST_RATE_PER_SEC, ingestRateInBytesPerSec);
+            builder.endObject();
+            return builder;
+        }
+    }
+
+    static final class Fields {
+        static final String INDEXING_BUFFER = "indexing_buffer";
+        static final String ALLOCATION = "allocation";
+        static final String LIMIT = "limit";
+        static final String LIMIT_IN_BYTES = "limit_in_bytes";
+        static final String USED = "used";
+        static final String USED_IN_BYTES = "used_in_bytes";
+        static final String WRITING = "writing";
+        static final String WRITING_IN_BYTES = "writing_in_bytes";
+        static final String SHARD_COUNT = "shard_count";
+        static final String SHARDS = "shards";
+        static final String INDEX = "index";
+        static final String SHARD = "shard";
+        static final String ALLOWANCE = "allowance";
+        static final String ALLOWANCE_IN_BYTES = "allowance_in_bytes";
+        static final String INGEST_RATE_PER_SEC = "ingest_rate_per_sec";
+        static final String INGEST_RATE_IN_BYTES_PER_SEC = "ingest_rate_in_bytes_per_sec";
+    }
+}
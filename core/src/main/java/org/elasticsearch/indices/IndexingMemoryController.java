@@ -41,9 +41,13 @@ import org.elasticsearch.threadpool.ThreadPool.Names;
 
 import java.io.Closeable;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.EnumSet;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.PriorityQueue;
 import java.util.Set;
 import java.util.concurrent.atomic.AtomicLong;
@@ -75,6 +79,41 @@ public class IndexingMemoryController extends AbstractComponent implements Index
     /** How frequently we check indexing memory usage (default: 5 seconds). */
     public static final Setting<TimeValue> SHARD_MEMORY_INTERVAL_TIME_SETTING = Setting.positiveTimeSetting("indices.memory.interval", TimeValue.timeValueSeconds(5), Property.NodeScope);
 
+    /**
+     * How the indexing buffer is shared between shards (default: largest). <code>largest</code> only writes the largest buffers to
+     * disk once all shards together go over budget. <code>ingest_rate</code> additionally hands each shard an allowance in proportion
+     * to how fast it is indexing, which the shard checks as it indexes.
+     */
+    public static final Setting<Allocation> INDEX_BUFFER_ALLOCATION_SETTING =
+            new Setting<>("indices.memory.index_buffer_allocation", Allocation.LARGEST.toString(), Allocation::fromString, Property.NodeScope);
+
+    public enum Allocation {
+        LARGEST,
+        INGEST_RATE;
+
+        public static Allocation fromString(String allocation) {
+            switch (allocation) {
+                case "largest":
+                    return LARGEST;
+                case "ingest_rate":
+                    return INGEST_RATE;
+                default:
+                    throw new IllegalArgumentException("unknown index buffer allocation [" + allocation + "]");
+            }
+        }
+
+        @Override
+        public String toString() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    /** Weight of the most recent sample in a shard's ingest rate */
+    private static final double INGEST_RATE_ALPHA = 0.5;
+
+    /** Shards that don't index still get this fraction of an even share of the buffer */
+    private static final int MIN_ALLOWANCE_DIVISOR = 4;
+
     private final ThreadPool threadPool;
 
     private final Iterable<IndexShard> indexShards;
@@ -83,6 +122,10 @@ public class IndexingMemoryController extends AbstractComponent implements Index
 
     private final TimeValue inactiveTime;
     private final TimeValue interval;
+    private final Allocation allocation;
+
+    /** The ingest rate of each shard, replaced on every check so closed shards drop out */
+    private volatile Map<IndexShard, IngestRate> ingestRates = Collections.emptyMap();
 
     /** Contains shards currently being throttled because we can't write segments quickly enough */
     private final Set<IndexShard> throttled = new HashSet<>();
@@ -118,13 +161,15 @@ public class IndexingMemoryController extends AbstractComponent implements Index
         this.inactiveTime = SHARD_INACTIVE_TIME_SETTING.get(this.settings);
         // we need to have this relatively small to free up heap quickly enough
         this.interval = SHARD_MEMORY_INTERVAL_TIME_SETTING.get(this.settings);
+        this.allocation = INDEX_BUFFER_ALLOCATION_SETTING.get(this.settings);
 
         this.statusChecker = new ShardsIndicesStatusChecker();
 
-        logger.debug("using indexing buffer size [{}] with {} [{}], {} [{}]",
+        logger.debug("using indexing buffer size [{}] with {} [{}], {} [{}], {} [{}]",
                      this.indexingBuffer,
                      SHARD_INACTIVE_TIME_SETTING.getKey(), this.inactiveTime,
-                     SHARD_MEMORY_INTERVAL_TIME_SETTING.getKey(), this.interval);
+                     SHARD_MEMORY_INTERVAL_TIME_SETTING.getKey(), this.interval,
+                     INDEX_BUFFER_ALLOCATION_SETTING.getKey(), this.allocation);
         this.scheduler = scheduleTask(threadPool);
 
         // Need to save this so we can later launch async "write indexing buffer to disk" on shards:
@@ -170,6 +215,45 @@ public class IndexingMemoryController extends AbstractComponent implements Index
         return shard.getWritingBytes();
     }
 
+    /** returns how many bytes of operations this shard has indexed in total */
+    protected long getIndexedBytes(IndexShard shard) {
+        return shard.getIndexedBytes();
+    }
+
+    /** sets how much heap this shard's indexing buffer may use before the shard writes it to disk by itself */
+    protected void setIndexBufferAllowance(IndexShard shard, long bytes) {
+        shard.setIndexBufferAllowance(bytes);
+    }
+
+    /** returns how much heap this shard's indexing buffer may use, or -1 if it is unbounded */
+    protected long getIndexBufferAllowance(IndexShard shard) {
+        return shard.getIndexBufferAllowance();
+    }
+
+    protected long currentTimeInNanos() {
+        return System.nanoTime();
+    }
+
+    /**
+     * Returns how the indexing buffer is currently used by the shards of this node.
+     */
+    IndexingBufferStats stats() {
+        final Map<IndexShard, IngestRate> ingestRates = this.ingestRates;
+        final List<IndexingBufferStats.ShardStats> shards = new ArrayList<>();
+        long totalBytesUsed = 0;
+        long totalBytesWriting = 0;
+        for (IndexShard shard : availableShards()) {
+            final long shardWritingBytes = getShardWritingBytes(shard);
+            final long shardBytesUsed = Math.max(0, getIndexBufferRAMBytesUsed(shard) - shardWritingBytes);
+            final IngestRate ingestRate = ingestRates.get(shard);
+            totalBytesUsed += shardBytesUsed;
+            totalBytesWriting += shardWritingBytes;
+            shards.add(new IndexingBufferStats.ShardStats(shard.shardId(), shardBytesUsed, shardWritingBytes,
+                    getIndexBufferAllowance(shard), ingestRate == null ? 0 : (long) ingestRate.bytesPerSec));
+        }
+        return new IndexingBufferStats(allocation.toString(), indexingBuffer.bytes(), totalBytesUsed, totalBytesWriting, shards);
+    }
+
     /** ask this shard to refresh, in the background, to free up heap */
     protected void writeIndexingBufferAsync(IndexShard shard) {
         threadPool.executor(ThreadPool.Names.REFRESH).execute(new AbstractRunnable() {
@@ -219,6 +303,31 @@ public class IndexingMemoryController extends AbstractComponent implements Index
         bytesWritten(op.sizeInBytes());
     }
 
+    /** Tracks how many bytes per second a shard indexes, smoothed over the checks */
+    private static final class IngestRate {
+        private long lastIndexedBytes;
+        private long lastTimeInNanos;
+        private boolean sampled = false;
+        volatile double bytesPerSec;
+
+        IngestRate(long indexedBytes, long timeInNanos) {
+            this.lastIndexedBytes = indexedBytes;
+            this.lastTimeInNanos = timeInNanos;
+        }
+
+        void update(long indexedBytes, long timeInNanos) {
+            final long elapsed = timeInNanos - lastTimeInNanos;
+            if (elapsed <= 0) {
+                return;
+            }
+            final double current = (indexedBytes - lastIndexedBytes) * 1000000000d / elapsed;
+            bytesPerSec = sampled ? INGEST_RATE_ALPHA * current + (1 - INGEST_RATE_ALPHA) * bytesPerSec : current;
+            sampled = true;
+            lastIndexedBytes = indexedBytes;
+            lastTimeInNanos = timeInNanos;
+        }
+    }
+
     private static final class ShardAndBytesUsed implements Comparable<ShardAndBytesUsed> {
         final long bytesUsed;
         final IndexShard shard;
@@ -322,6 +431,12 @@ public class IndexingMemoryController extends AbstractComponent implements Index
             // throttle the top shards to send back-pressure to ongoing indexing:
             boolean doThrottle = (totalBytesWriting + totalBytesUsed) > 1.5 * indexingBuffer.bytes();
 
+            // Shards whose buffers we already asked to be written because they are over their allowance:
+            final Set<IndexShard> writing = Collections.newSetFromMap(new IdentityHashMap<>());
+            if (allocation == Allocation.INGEST_RATE) {
+                totalBytesUsed -= allocateByIngestRate(writing);
+            }
+
             if (totalBytesUsed > indexingBuffer.bytes()) {
                 // OK we are now over-budget; fill the priority queue and ask largest shard(s) to refresh:
                 PriorityQueue<ShardAndBytesUsed> queue = new PriorityQueue<>();
@@ -342,7 +457,7 @@ public class IndexingMemoryController extends AbstractComponent implements Index
                         continue;
                     }
 
-                    if (shardBytesUsed > 0) {
+                    if (shardBytesUsed > 0 && writing.contains(shard) == false) {
                         if (logger.isTraceEnabled()) {
                             if (shardWritingBytes != 0) {
                                 logger.trace("shard [{}] is using [{}] heap, writing [{}] heap", shard.shardId(), shardBytesUsed, shardWritingBytes);
@@ -378,6 +493,61 @@ public class IndexingMemoryController extends AbstractComponent implements Index
                 throttled.clear();
             }
         }
+
+        /**
+         * Hands each shard a share of the indexing buffer in proportion to its ingest rate, so that cold shards don't hold on to
+         * heap that hot shards need to write large segments. Shards without a rate yet get an even share and shards that don't
+         * index get a small floor. Buffers over their allowance are written to disk here, shards that keep indexing also check
+         * their allowance themselves. Returns the number of bytes that are now being written.
+         */
+        private long allocateByIngestRate(Set<IndexShard> writing) {
+            final long now = currentTimeInNanos();
+            final List<IndexShard> shards = availableShards();
+            if (shards.isEmpty()) {
+                ingestRates = Collections.emptyMap();
+                return 0;
+            }
+            final Map<IndexShard, IngestRate> previousRates = ingestRates;
+            final Map<IndexShard, IngestRate> rates = new IdentityHashMap<>();
+            double totalRate = 0;
+            for (IndexShard shard : shards) {
+                IngestRate rate = previousRates.get(shard);
+                if (rate == null) {
+                    rate = new IngestRate(getIndexedBytes(shard), now);
+                } else {
+                    rate.update(getIndexedBytes(shard), now);
+                }
+                rates.put(shard, rate);
+                if (rate.sampled) {
+                    totalRate += rate.bytesPerSec;
+                }
+            }
+            ingestRates = rates;
+
+            final long evenShare = indexingBuffer.bytes() / shards.size();
+            final long minAllowance = evenShare / MIN_ALLOWANCE_DIVISOR;
+            long bytesWriting = 0;
+            for (IndexShard shard : shards) {
+                final IngestRate rate = rates.get(shard);
+                final long allowance;
+                if (rate.sampled == false || totalRate == 0) {
+                    allowance = evenShare;
+                } else {
+                    allowance = Math.max(minAllowance, (long) (indexingBuffer.bytes() * (rate.bytesPerSec / totalRate)));
+                }
+                setIndexBufferAllowance(shard, allowance);
+
+                final long shardBytesUsed = getIndexBufferRAMBytesUsed(shard) - getShardWritingBytes(shard);
+                if (shardBytesUsed > allowance) {
+                    logger.debug("write indexing buffer to disk for shard [{}]: its [{}] indexing buffer is over its [{}] allowance",
+                                 shard.shardId(), new ByteSizeValue(shardBytesUsed), new ByteSizeValue(allowance));
+                    writeIndexingBufferAsync(shard);
+                    writing.add(shard);
+                    bytesWriting += shardBytesUsed;
+                }
+            }
+            return bytesWriting;
+        }
     }
 
     /**
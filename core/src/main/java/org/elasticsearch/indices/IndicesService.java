@@ -159,6 +159,7 @@ public class IndicesService extends AbstractLifecycleComponent
     private final MapperRegistry mapperRegistry;
     private final NamedWriteableRegistry namedWriteableRegistry;
     private final IndexingMemoryController indexingMemoryController;
+    private final MergeIOController mergeIOController;
     private final TimeValue cleanInterval;
     private final IndicesRequestCache indicesRequestCache;
     private final IndicesQueryCache indicesQueryCache;
@@ -194,6 +195,7 @@ public class IndicesService extends AbstractLifecycleComponent
         indexingMemoryController = new IndexingMemoryController(settings, threadPool,
                                                                 // ensure we pull an iter with new shards - flatten makes a copy
                                                                 () -> Iterables.flatten(this).iterator());
+        mergeIOController = new MergeIOController(settings, threadPool, nodeEnv, () -> Iterables.flatten(this).iterator());
         this.indexScopeSetting = indexScopedSettings;
         this.circuitBreakerService = circuitBreakerService;
         this.indicesFieldDataCache = new IndicesFieldDataCache(settings, new IndexFieldDataCache.Listener() {
@@ -239,7 +241,7 @@ public class IndicesService extends AbstractLifecycleComponent
 
     @Override
     protected void doClose() {
-        IOUtils.closeWhileHandlingException(analysisRegistry, indexingMemoryController, indicesFieldDataCache, cacheCleaner, indicesRequestCache, indicesQueryCache);
+        IOUtils.closeWhileHandlingException(analysisRegistry, indexingMemoryController, mergeIOController, indicesFieldDataCache, cacheCleaner, indicesRequestCache, indicesQueryCache);
     }
 
     /**
@@ -1148,6 +1150,20 @@ public class IndicesService extends AbstractLifecycleComponent
         return indexingMemoryController.indexingBufferSize();
     }
 
+    /**
+     * Returns how the indexing buffer is shared by the shards of this node.
+     */
+    public IndexingBufferStats indexingBufferStats() {
+        return indexingMemoryController.stats();
+    }
+
+    /**
+     * Returns the merge IO throttling stats of the devices holding this node's data paths.
+     */
+    public MergeIOStats mergeIOStats() {
+        return mergeIOController.stats();
+    }
+
     /**
      * Cache something calculated at the shard level.
      * @param shard the shard this item is part of
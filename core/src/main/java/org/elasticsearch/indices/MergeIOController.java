@@ -0,0 +1,362 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.indices;
+
+import org.apache.logging.log4j.message.ParameterizedMessage;
+import org.apache.logging.log4j.util.Supplier;
+import org.apache.lucene.util.Constants;
+import org.elasticsearch.common.SuppressForbidden;
+import org.elasticsearch.common.collect.Tuple;
+import org.elasticsearch.common.component.AbstractComponent;
+import org.elasticsearch.common.io.PathUtils;
+import org.elasticsearch.common.settings.Setting;
+import org.elasticsearch.common.settings.Setting.Property;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.ByteSizeUnit;
+import org.elasticsearch.common.unit.ByteSizeValue;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.env.NodeEnvironment;
+import org.elasticsearch.index.shard.IndexShard;
+import org.elasticsearch.threadpool.ThreadPool;
+import org.elasticsearch.threadpool.ThreadPool.Cancellable;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Controls the IO rate of merges across all shards of this node. Lucene's auto IO throttle only looks at the merge
+ * backlog of a single shard, which means it ignores how busy the underlying device is and how many other shards, recoveries
+ * or snapshots compete for it. This controller samples <code>/proc/diskstats</code> for every device that holds a data
+ * path, adjusts a per device merge byte budget based on the utilization and queue depth it sees, and splits that budget
+ * evenly across the big merges running on the device. Small merges are never throttled so they don't count against the
+ * budget either, which keeps the segment count low while big merges yield to the device.
+ */
+public class MergeIOController extends AbstractComponent implements Closeable {
+
+    /** Whether merges should be throttled based on device IO, only supported on Linux (default: false). */
+    public static final Setting<Boolean> MERGE_IO_CONTROL_ENABLED_SETTING =
+            Setting.boolSetting("indices.merge.io_control.enabled", false, Property.NodeScope);
+
+    /** How frequently devices are sampled and merge budgets adjusted (default: 1 second). */
+    public static final Setting<TimeValue> MERGE_IO_CONTROL_INTERVAL_SETTING =
+            Setting.positiveTimeSetting("indices.merge.io_control.interval", TimeValue.timeValueSeconds(1), Property.NodeScope);
+
+    /** The lowest merge budget a device can get (default: 5 MB/sec). */
+    public static final Setting<ByteSizeValue> MERGE_IO_CONTROL_MIN_BYTES_PER_SEC_SETTING =
+            Setting.byteSizeSetting("indices.merge.io_control.min_bytes_per_sec", new ByteSizeValue(5, ByteSizeUnit.MB),
+                    new ByteSizeValue(1, ByteSizeUnit.BYTES), new ByteSizeValue(Long.MAX_VALUE, ByteSizeUnit.BYTES), Property.NodeScope);
+
+    /** The highest merge budget a device can get (default: 10 GB/sec). */
+    public static final Setting<ByteSizeValue> MERGE_IO_CONTROL_MAX_BYTES_PER_SEC_SETTING =
+            Setting.byteSizeSetting("indices.merge.io_control.max_bytes_per_sec", new ByteSizeValue(10, ByteSizeUnit.GB),
+                    new ByteSizeValue(1, ByteSizeUnit.BYTES), new ByteSizeValue(Long.MAX_VALUE, ByteSizeUnit.BYTES), Property.NodeScope);
+
+    /** The device utilization above which merge budgets are lowered (default: 0.8). */
+    public static final Setting<Double> MERGE_IO_CONTROL_TARGET_UTILIZATION_SETTING =
+            Setting.doubleSetting("indices.merge.io_control.target_utilization", 0.8d, 0.0d, Property.NodeScope);
+
+    /** The average device queue depth above which merge budgets are lowered (default: 4). */
+    public static final Setting<Double> MERGE_IO_CONTROL_MAX_QUEUE_DEPTH_SETTING =
+            Setting.doubleSetting("indices.merge.io_control.max_queue_depth", 4.0d, 0.0d, Property.NodeScope);
+
+    /** Lucene's auto IO throttle starts merges at this rate */
+    private static final long START_BYTES_PER_SEC = new ByteSizeValue(20, ByteSizeUnit.MB).bytes();
+
+    /** the factor a budget is raised or lowered by per interval, the same step Lucene's auto IO throttle uses */
+    static final double BUDGET_STEP = 1.2d;
+
+    private static final double BYTES_PER_MB = 1024 * 1024;
+
+    private final Iterable<IndexShard> indexShards;
+    private final TimeValue interval;
+    private final long minBytesPerSec;
+    private final long maxBytesPerSec;
+    private final double targetUtilization;
+    private final double maxQueueDepth;
+
+    /** the devices holding data paths, keyed by major and minor device number */
+    private final Map<Tuple<Integer, Integer>, DeviceThrottle> devices;
+    private final Map<Path, DeviceThrottle> devicesByDataPath;
+
+    private final Cancellable scheduler;
+
+    MergeIOController(Settings settings, ThreadPool threadPool, NodeEnvironment nodeEnv, Iterable<IndexShard> indexShards) {
+        super(settings);
+        this.indexShards = indexShards;
+        this.interval = MERGE_IO_CONTROL_INTERVAL_SETTING.get(settings);
+        this.minBytesPerSec = MERGE_IO_CONTROL_MIN_BYTES_PER_SEC_SETTING.get(settings).bytes();
+        this.maxBytesPerSec = MERGE_IO_CONTROL_MAX_BYTES_PER_SEC_SETTING.get(settings).bytes();
+        this.targetUtilization = MERGE_IO_CONTROL_TARGET_UTILIZATION_SETTING.get(settings);
+        this.maxQueueDepth = MERGE_IO_CONTROL_MAX_QUEUE_DEPTH_SETTING.get(settings);
+        if (minBytesPerSec > maxBytesPerSec) {
+            throw new IllegalArgumentException("[" + MERGE_IO_CONTROL_MIN_BYTES_PER_SEC_SETTING.getKey() + "] must be <= ["
+                    + MERGE_IO_CONTROL_MAX_BYTES_PER_SEC_SETTING.getKey() + "] but was [" + minBytesPerSec + "] > ["
+                    + maxBytesPerSec + "]");
+        }
+        if (targetUtilization > 1.0d) {
+            throw new IllegalArgumentException("[" + MERGE_IO_CONTROL_TARGET_UTILIZATION_SETTING.getKey() + "] must be <= 1.0 but was ["
+                    + targetUtilization + "]");
+        }
+
+        final Map<Tuple<Integer, Integer>, DeviceThrottle> devices = new LinkedHashMap<>();
+        final Map<Path, DeviceThrottle> devicesByDataPath = new HashMap<>();
+        if (MERGE_IO_CONTROL_ENABLED_SETTING.get(settings) && nodeEnv.hasNodeFile()) {
+            for (NodeEnvironment.NodePath nodePath : nodeEnv.nodePaths()) {
+                if (nodePath.majorDeviceNumber == -1 || nodePath.minorDeviceNumber == -1) {
+                    continue;
+                }
+                final DeviceThrottle device = devices.computeIfAbsent(
+                        Tuple.tuple(nodePath.majorDeviceNumber, nodePath.minorDeviceNumber),
+                        k -> new DeviceThrottle(minBytesPerSec, maxBytesPerSec, targetUtilization, maxQueueDepth));
+                devicesByDataPath.put(nodePath.path, device);
+            }
+        }
+        this.devices = Collections.unmodifiableMap(devices);
+        this.devicesByDataPath = Collections.unmodifiableMap(devicesByDataPath);
+
+        if (devices.isEmpty()) {
+            this.scheduler = null;
+        } else {
+            logger.debug("controlling merge IO on [{}] devices with {} [{}], {} [{}], {} [{}], {} [{}], {} [{}]",
+                    devices.size(),
+                    MERGE_IO_CONTROL_INTERVAL_SETTING.getKey(), interval,
+                    MERGE_IO_CONTROL_MIN_BYTES_PER_SEC_SETTING.getKey(), new ByteSizeValue(minBytesPerSec),
+                    MERGE_IO_CONTROL_MAX_BYTES_PER_SEC_SETTING.getKey(), new ByteSizeValue(maxBytesPerSec),
+                    MERGE_IO_CONTROL_TARGET_UTILIZATION_SETTING.getKey(), targetUtilization,
+                    MERGE_IO_CONTROL_MAX_QUEUE_DEPTH_SETTING.getKey(), maxQueueDepth);
+            this.scheduler = scheduleTask(threadPool);
+        }
+    }
+
+    protected Cancellable scheduleTask(ThreadPool threadPool) {
+        // reading a few lines of /proc/diskstats is cheap enough for the scheduler thread
+        return threadPool.scheduleWithFixedDelay(this::updateThrottling, interval, ThreadPool.Names.SAME);
+    }
+
+    @Override
+    public void close() {
+        if (scheduler != null) {
+            scheduler.cancel();
+        }
+    }
+
+    /**
+     * Samples all devices and hands out the per device budgets to the shards that live on them.
+     */
+    synchronized void updateThrottling() {
+        if (devices.isEmpty()) {
+            return;
+        }
+        try {
+            sampleDevices(currentTimeInNanos(), readProcDiskStats());
+        } catch (Exception e) {
+            // do not fail merges if something unexpected happens here, the budgets are just not adjusted
+            logger.debug((Supplier<?>) () -> new ParameterizedMessage("unexpected exception sampling /proc/diskstats"), e);
+            for (DeviceThrottle device : devices.values()) {
+                device.invalidate();
+            }
+        }
+
+        final Map<DeviceThrottle, List<IndexShard>> shardsPerDevice = new IdentityHashMap<>();
+        for (IndexShard shard : indexShards) {
+            if (shard.canIndex() == false) {
+                // shadow replicas don't merge
+                continue;
+            }
+            final DeviceThrottle device = devicesByDataPath.get(shard.shardPath().getRootDataPath());
+            if (device != null) {
+                shardsPerDevice.computeIfAbsent(device, k -> new ArrayList<>()).add(shard);
+            }
+        }
+
+        for (DeviceThrottle device : devices.values()) {
+            final List<IndexShard> shards = shardsPerDevice.getOrDefault(device, Collections.emptyList());
+            int throttledMerges = 0;
+            for (IndexShard shard : shards) {
+                throttledMerges += shard.getCurrentThrottledMerges();
+            }
+            device.adjustBudget(shards.size(), throttledMerges);
+            final double mbPerSec = device.isSampled() ? device.getMergeRateBytesPerSec() / BYTES_PER_MB : Double.NaN;
+            for (IndexShard shard : shards) {
+                shard.setMergeIORateLimit(mbPerSec);
+            }
+        }
+    }
+
+    private void sampleDevices(long nowInNanos, List<String> lines) {
+        final Map<Tuple<Integer, Integer>, String[]> fieldsPerDevice = new HashMap<>();
+        for (String line : lines) {
+            final String[] fields = line.trim().split("\\s+");
+            // kernels before 2.6.25 report fewer fields for partitions, we need the io ticks
+            if (fields.length < 14) {
+                continue;
+            }
+            final Tuple<Integer, Integer> key = Tuple.tuple(Integer.parseInt(fields[0]), Integer.parseInt(fields[1]));
+            if (devices.containsKey(key)) {
+                fieldsPerDevice.put(key, fields);
+            }
+        }
+        for (Map.Entry<Tuple<Integer, Integer>, DeviceThrottle> entry : devices.entrySet()) {
+            final String[] fields = fieldsPerDevice.get(entry.getKey());
+            if (fields == null) {
+                entry.getValue().invalidate();
+            } else {
+                entry.getValue().sample(nowInNanos, fields[2],
+                        Long.parseLong(fields[5]) + Long.parseLong(fields[9]),
+                        Long.parseLong(fields[12]),
+                        Long.parseLong(fields[13]));
+            }
+        }
+    }
+
+    protected long currentTimeInNanos() {
+        return System.nanoTime();
+    }
+
+    @SuppressForbidden(reason = "read /proc/diskstats")
+    protected List<String> readProcDiskStats() throws IOException {
+        if (Constants.LINUX == false) {
+            return Collections.emptyList();
+        }
+        return Files.readAllLines(PathUtils.get("/proc/diskstats"));
+    }
+
+    public synchronized MergeIOStats stats() {
+        final List<MergeIOStats.DeviceStats> stats = new ArrayList<>(devices.size());
+        for (DeviceThrottle device : devices.values()) {
+            if (device.isSampled()) {
+                stats.add(device.stats());
+            }
+        }
+        return new MergeIOStats(stats);
+    }
+
+    /**
+     * The merge budget of a single device. Every interval the device is sampled, the budget is lowered if the device is
+     * saturated and raised, up to the maximum, if it has headroom and merges want to use it.
+     */
+    static final class DeviceThrottle {
+
+        /** the size of a sector as reported by /proc/diskstats, independent of the actual sector size of the device */
+        private static final int SECTOR_SIZE = 512;
+
+        private final long minBytesPerSec;
+        private final long maxBytesPerSec;
+        private final double targetUtilization;
+        private final double maxQueueDepth;
+
+        private String deviceName;
+        private long lastSampleNanos = -1;
+        private long lastSectors;
+        private long lastIoMillis;
+        private long lastWeightedIoMillis;
+        private boolean sampled = false;
+
+        private double utilization;
+        private double queueDepth;
+        private long throughputBytesPerSec;
+        private double budgetBytesPerSec;
+        private int shards;
+        private int throttledMerges;
+
+        DeviceThrottle(long minBytesPerSec, long maxBytesPerSec, double targetUtilization, double maxQueueDepth) {
+            this.minBytesPerSec = minBytesPerSec;
+            this.maxBytesPerSec = maxBytesPerSec;
+            this.targetUtilization = targetUtilization;
+            this.maxQueueDepth = maxQueueDepth;
+            this.budgetBytesPerSec = Math.min(maxBytesPerSec, Math.max(minBytesPerSec, START_BYTES_PER_SEC));
+        }
+
+        /**
+         * Records the cumulative counters of the device. Rates are only available once two samples have been taken.
+         */
+        void sample(long nowInNanos, String deviceName, long sectors, long ioMillis, long weightedIoMillis) {
+            this.deviceName = deviceName;
+            if (lastSampleNanos != -1) {
+                final double elapsedMillis = (nowInNanos - lastSampleNanos) / 1000000d;
+                if (elapsedMillis > 0) {
+                    utilization = Math.min(1.0d, Math.max(0.0d, (ioMillis - lastIoMillis) / elapsedMillis));
+                    queueDepth = Math.max(0.0d, (weightedIoMillis - lastWeightedIoMillis) / elapsedMillis);
+                    throughputBytesPerSec = Math.max(0L, (long) ((sectors - lastSectors) * SECTOR_SIZE * 1000d / elapsedMillis));
+                    sampled = true;
+                }
+            }
+            lastSampleNanos = nowInNanos;
+            lastSectors = sectors;
+            lastIoMillis = ioMillis;
+            lastWeightedIoMillis = weightedIoMillis;
+        }
+
+        /** forgets the previous sample, the shards on this device fall back to their own throttling until it is sampled again */
+        void invalidate() {
+            lastSampleNanos = -1;
+            sampled = false;
+        }
+
+        boolean isSampled() {
+            return sampled;
+        }
+
+        void adjustBudget(int shards, int throttledMerges) {
+            this.shards = shards;
+            this.throttledMerges = throttledMerges;
+            if (sampled == false) {
+                return;
+            }
+            if (utilization > targetUtilization || queueDepth > maxQueueDepth) {
+                budgetBytesPerSec = Math.max(minBytesPerSec, budgetBytesPerSec / BUDGET_STEP);
+            } else if (throttledMerges > 0) {
+                // only grow while merges could use it, so an idle device does not hand a huge budget to the next merge
+                budgetBytesPerSec = Math.min(maxBytesPerSec, budgetBytesPerSec * BUDGET_STEP);
+            }
+        }
+
+        long getBudgetBytesPerSec() {
+            return (long) budgetBytesPerSec;
+        }
+
+        /** returns the rate each throttled merge on this device may write at */
+        long getMergeRateBytesPerSec() {
+            return (long) (budgetBytesPerSec / Math.max(1, throttledMerges));
+        }
+
+        double getUtilization() {
+            return utilization;
+        }
+
+        double getQueueDepth() {
+            return queueDepth;
+        }
+
+        MergeIOStats.DeviceStats stats() {
+            return new MergeIOStats.DeviceStats(deviceName, shards, throttledMerges, getBudgetBytesPerSec(),
+                    getMergeRateBytesPerSec(), throughputBytesPerSec, utilization, queueDepth);
+        }
+    }
+}
@@ -0,0 +1,184 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.indices;
+
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.common.io.stream.Writeable;
+import org.elasticsearch.common.xcontent.ToXContent;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Per device merge throttling stats of the {@link MergeIOController}.
+ */
+public class MergeIOStats implements Writeable, ToXContent {
+
+    private final List<DeviceStats> devices;
+
+    public MergeIOStats(List<DeviceStats> devices) {
+        this.devices = Collections.unmodifiableList(devices);
+    }
+
+    public MergeIOStats(StreamInput in) throws IOException {
+        devices = Collections.unmodifiableList(in.readList(DeviceStats::new));
+    }
+
+    @Override
+    public void writeTo(StreamOutput out) throws IOException {
+        out.writeList(devices);
+    }
+
+    public List<DeviceStats> getDevices() {
+        return devices;
+    }
+
+    @Override
+    public XContentBuilder toXContent(XContentBuilder builder, Params params) throws IOException {
+        builder.startObject(Fields.MERGE_IO);
+        builder.startArray(Fields.DEVICES);
+        for (DeviceStats device : devices) {
+            device.toXContent(builder, params);
+        }
+        builder.endArray();
+        builder.endObject();
+        return builder;
+    }
+
+    public static class DeviceStats implements Writeable, ToXContent {
+
+        private final String deviceName;
+        private final int shards;
+        private final int currentThrottledMerges;
+        private final long budgetBytesPerSec;
+        private final long mergeRateBytesPerSec;
+        private final long throughputBytesPerSec;
+        private final double utilization;
+        private final double queueDepth;
+
+        public DeviceStats(String deviceName, int shards, int currentThrottledMerges, long budgetBytesPerSec,
+                           long mergeRateBytesPerSec, long throughputBytesPerSec, double utilization, double queueDepth) {
+            this.deviceName = deviceName;
+            this.shards = shards;
+            this.currentThrottledMerges = currentThrottledMerges;
+            this.budgetBytesPerSec = budgetBytesPerSec;
+            this.mergeRateBytesPerSec = mergeRateBytesPerSec;
+            this.throughputBytesPerSec = throughputBytesPerSec;
+            this.utilization = utilization;
+            this.queueDepth = queueDepth;
+        }
+
+        public DeviceStats(StreamInput in) throws IOException {
+            deviceName = in.readString();
+            shards = in.readVInt();
+            currentThrottledMerges = in.readVInt();
+            budgetBytesPerSec = in.readVLong();
+            mergeRateBytesPerSec = in.readVLong();
+            throughputBytesPerSec = in.readVLong();
+            utilization = in.readDouble();
+            queueDepth = in.readDouble();
+        }
+
+        @Override
+        public void writeTo(StreamOutput out) throws IOException {
+            out.writeString(deviceName);
+            out.writeVInt(shards);
+            out.writeVInt(currentThrottledMerges);
+            out.writeVLong(budgetBytesPerSec);
+            out.writeVLong(mergeRateBytesPerSec);
+            out.writeVLong(throughputBytesPerSec);
+            out.writeDouble(utilization);
+            out.writeDouble(queueDepth);
+        }
+
+        public String getDeviceName() {
+            return deviceName;
+        }
+
+        /** the number of shards that live on this device */
+        public int getShards() {
+            return shards;
+        }
+
+        /** the number of running merges on this device that share the budget */
+        public int getCurrentThrottledMerges() {
+            return currentThrottledMerges;
+        }
+
+        /** the merge IO budget of the device, shared by all throttled merges */
+        public long getBudgetBytesPerSec() {
+            return budgetBytesPerSec;
+        }
+
+        /** the IO rate each throttled merge on this device may use */
+        public long getMergeRateBytesPerSec() {
+            return mergeRateBytesPerSec;
+        }
+
+        /** the read and write throughput the device saw during the last sampling interval */
+        public long getThroughputBytesPerSec() {
+            return throughputBytesPerSec;
+        }
+
+        /** the fraction of the last sampling interval during which the device was busy */
+        public double getUtilization() {
+            return utilization;
+        }
+
+        /** the average number of requests queued on the device during the last sampling interval */
+        public double getQueueDepth() {
+            return queueDepth;
+        }
+
+        @Override
+        public XContentBuilder toXContent(XContentBuilder builder, Params params) throws IOException {
+            builder.startObject();
+            builder.field(Fields.DEVICE_NAME, deviceName);
+            builder.field(Fields.SHARDS, shards);
+            builder.field(Fields.CURRENT_THROTTLED_MERGES, currentThrottledMerges);
+            builder.byteSizeField(Fields.BUDGET_IN_BYTES_PER_SEC, Fields.BUDGET_PER_SEC, budgetBytesPerSec);
+            builder.byteSizeField(Fields.MERGE_RATE_IN_BYTES_PER_SEC, Fields.MERGE_RATE_PER_SEC, mergeRateBytesPerSec);
+            builder.byteSizeField(Fields.THROUGHPUT_IN_BYTES_PER_SEC, Fields.THROUGHPUT_PER_SEC, throughputBytesPerSec);
+            builder.field(Fields.UTILIZATION_PERCENT, Math.round(utilization * 100));
+            builder.field(Fields.QUEUE_DEPTH, queueDepth);
+            builder.endObject();
+            return builder;
+        }
+    }
+
+    static final class Fields {
+        static final String MERGE_IO = "merge_io";
+        static final String DEVICES = "devices";
+        static final String DEVICE_NAME = "device_name";
+        static final String SHARDS = "shards";
+        static final String CURRENT_THROTTLED_MERGES = "current_throttled_merges";
+        static final String BUDGET_PER_SEC = "budget_per_sec";
+        static final String BUDGET_IN_BYTES_PER_SEC = "budget_in_bytes_per_sec";
+        static final String MERGE_RATE_PER_SEC = "merge_rate_per_sec";
+        static final String MERGE_RATE_IN_BYTES_PER_SEC = "merge_rate_in_bytes_per_sec";
+        static final String THROUGHPUT_PER_SEC = "throughput_per_sec";
+        static final String THROUGHPUT_IN_BYTES_PER_SEC = "throughput_in_bytes_per_sec";
+        static final String UTILIZATION_PERCENT = "utilization_percent";
+        static final String QUEUE_DEPTH = "queue_depth";
+    }
+}
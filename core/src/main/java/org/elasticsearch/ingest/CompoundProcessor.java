@@ -25,6 +25,7 @@ import org.elasticsearch.ElasticsearchException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
@@ -88,6 +89,38 @@ public class CompoundProcessor implements Processor {
         return "compound";
     }
 
+    /**
+     * Returns the stats of the wrapped processors, so that processors with <code>on_failure</code> or <code>ignore_failure</code>
+     * still report theirs. The stats of the on failure processors are prefixed with <code>on_failure.&lt;type&gt;_&lt;position&gt;.</code>,
+     * and so are those of the processors if there is more than one.
+     */
+    @Override
+    public Map<String, Long> getStats() {
+        Map<String, Long> stats = new HashMap<>();
+        for (int i = 0; i < processors.size(); i++) {
+            Processor processor = processors.get(i);
+            String prefix = processors.size() == 1 ? "" : statsKey(processor, i) + ".";
+            processor.getStats().forEach((key, value) -> stats.put(prefix + key, value));
+        }
+        for (int i = 0; i < onFailureProcessors.size(); i++) {
+            Processor processor = onFailureProcessors.get(i);
+            String prefix = Pipeline.ON_FAILURE_KEY + "." + statsKey(processor, i) + ".";
+            processor.getStats().forEach((key, value) -> stats.put(prefix + key, value));
+        }
+        return stats;
+    }
+
+    /**
+     * Returns the key the stats of the given processor are reported under, its type and its position in the list of processors it
+     * belongs to. A compound processor that wraps a single processor is reported under the type of that processor.
+     */
+    static String statsKey(Processor processor, int position) {
+        while (processor instanceof CompoundProcessor && ((CompoundProcessor) processor).getProcessors().size() == 1) {
+            processor = ((CompoundProcessor) processor).getProcessors().get(0);
+        }
+        return processor.getType() + "_" + position;
+    }
+
     @Override
     public String getTag() {
         return "CompoundProcessor-" + flattenProcessors().stream().map(Processor::getTag).collect(Collectors.joining("-"));
@@ -19,6 +19,7 @@
 
 package org.elasticsearch.ingest;
 
+import org.elasticsearch.Version;
 import org.elasticsearch.common.io.stream.StreamInput;
 import org.elasticsearch.common.io.stream.StreamOutput;
 import org.elasticsearch.common.io.stream.Writeable;
@@ -26,6 +27,7 @@ import org.elasticsearch.common.xcontent.ToXContent;
 import org.elasticsearch.common.xcontent.XContentBuilder;
 
 import java.io.IOException;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
@@ -99,12 +101,21 @@ public class IngestStats implements Writeable, ToXContent {
         private final long ingestTimeInMillis;
         private final long ingestCurrent;
         private final long ingestFailedCount;
+        private final long ingestSizeInBytes;
+        private final Map<String, Map<String, Long>> processorStats;
 
-        public Stats(long ingestCount, long ingestTimeInMillis, long ingestCurrent, long ingestFailedCount) {
+        public Stats(long ingestCount, long ingestTimeInMillis, long ingestCurrent, long ingestFailedCount, long ingestSizeInBytes) {
+            this(ingestCount, ingestTimeInMillis, ingestCurrent, ingestFailedCount, ingestSizeInBytes, Collections.emptyMap());
+        }
+
+        public Stats(long ingestCount, long ingestTimeInMillis, long ingestCurrent, long ingestFailedCount, long ingestSizeInBytes,
+                     Map<String, Map<String, Long>> processorStats) {
             this.ingestCount = ingestCount;
             this.ingestTimeInMillis = ingestTimeInMillis;
             this.ingestCurrent = ingestCurrent;
             this.ingestFailedCount = ingestFailedCount;
+            this.ingestSizeInBytes = ingestSizeInBytes;
+            this.processorStats = processorStats;
         }
 
         /**
@@ -115,6 +126,23 @@ public class IngestStats implements Writeable, ToXContent {
             ingestTimeInMillis = in.readVLong();
             ingestCurrent = in.readVLong();
             ingestFailedCount = in.readVLong();
+            if (in.getVersion().onOrAfter(Version.V_6_0_0_alpha1)) {
+                ingestSizeInBytes = in.readVLong();
+                int size = in.readVInt();
+                processorStats = new HashMap<>(size);
+                for (int i = 0; i < size; i++) {
+                    String processor = in.readString();
+                    int numStats = in.readVInt();
+                    Map<String, Long> stats = new HashMap<>(numStats);
+                    for (int j = 0; j < numStats; j++) {
+                        stats.put(in.readString(), in.readVLong());
+                    }
+                    processorStats.put(processor, stats);
+                }
+            } else {
+                ingestSizeInBytes = 0;
+                processorStats = Collections.emptyMap();
+            }
         }
 
         @Override
@@ -123,6 +151,18 @@ public class IngestStats implements Writeable, ToXContent {
             out.writeVLong(ingestTimeInMillis);
             out.writeVLong(ingestCurrent);
             out.writeVLong(ingestFailedCount);
+            if (out.getVersion().onOrAfter(Version.V_6_0_0_alpha1)) {
+                out.writeVLong(ingestSizeInBytes);
+                out.writeVInt(processorStats.size());
+                for (Map.Entry<String, Map<String, Long>> processor : processorStats.entrySet()) {
+                    out.writeString(processor.getKey());
+                    out.writeVInt(processor.getValue().size());
+                    for (Map.Entry<String, Long> stat : processor.getValue().entrySet()) {
+                        out.writeString(stat.getKey());
+                        out.writeVLong(stat.getValue());
+                    }
+                }
+            }
         }
 
         /**
@@ -154,12 +194,55 @@ public class IngestStats implements Writeable, ToXContent {
             return ingestFailedCount;
         }
 
+        /**
+         * @return The total size of the sources of the documents that were preprocessed, as they were before preprocessing.
+         */
+        public long getIngestSizeInBytes() {
+            return ingestSizeInBytes;
+        }
+
+        /**
+         * @return The number of documents preprocessed per second of ingest preprocessing time, <code>0</code> if no time was spent.
+         */
+        public double getIngestDocsPerSecond() {
+            return ingestTimeInMillis == 0 ? 0 : ingestCount * 1000d / ingestTimeInMillis;
+        }
+
+        /**
+         * @return The number of source bytes preprocessed per second of ingest preprocessing time, <code>0</code> if no time was spent.
+         */
+        public double getIngestBytesPerSecond() {
+            return ingestTimeInMillis == 0 ? 0 : ingestSizeInBytes * 1000d / ingestTimeInMillis;
+        }
+
+        /**
+         * @return The processor specific stats of the processors of a pipeline that report any, keyed by the tag of the processor
+         * or, if it has no tag, by its type and position in the pipeline. Always empty for the accumulated stats of all pipelines.
+         */
+        public Map<String, Map<String, Long>> getProcessorStats() {
+            return processorStats;
+        }
+
         @Override
         public XContentBuilder toXContent(XContentBuilder builder, Params params) throws IOException {
             builder.field("count", ingestCount);
             builder.timeValueField("time_in_millis", "time", ingestTimeInMillis, TimeUnit.MILLISECONDS);
             builder.field("current", ingestCurrent);
             builder.field("failed", ingestFailedCount);
+            builder.byteSizeField("size_in_bytes", "size", ingestSizeInBytes);
+            builder.field("docs_per_sec", getIngestDocsPerSecond());
+            builder.field("size_in_bytes_per_sec", getIngestBytesPerSecond());
+            if (processorStats.isEmpty() == false) {
+                builder.startObject("processors");
+                for (Map.Entry<String, Map<String, Long>> processor : processorStats.entrySet()) {
+                    builder.startObject(processor.getKey());
+                    for (Map.Entry<String, Long> stat : processor.getValue().entrySet()) {
+                        builder.field(stat.getKey(), stat.getValue());
+                    }
+                    builder.endObject();
+                }
+                builder.endObject();
+            }
             return builder;
         }
     }
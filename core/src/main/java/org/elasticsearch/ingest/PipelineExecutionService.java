@@ -26,12 +26,19 @@ import org.elasticsearch.cluster.ClusterStateListener;
 import org.elasticsearch.common.Strings;
 import org.elasticsearch.common.metrics.CounterMetric;
 import org.elasticsearch.common.metrics.MeanMetric;
+import org.elasticsearch.common.settings.Setting;
+import org.elasticsearch.common.settings.Setting.Property;
+import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.common.util.concurrent.AbstractRunnable;
+import org.elasticsearch.common.util.concurrent.EsExecutors;
+import org.elasticsearch.common.util.concurrent.ParallelBatchRunner;
 import org.elasticsearch.threadpool.ThreadPool;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.TimeUnit;
@@ -40,15 +47,27 @@ import java.util.function.Consumer;
 
 public class PipelineExecutionService implements ClusterStateListener {
 
+    /**
+     * The maximum number of documents of a single bulk request that are run through their pipelines at the same time. The thread
+     * that executes the bulk request always takes part, the other documents are processed on the ingest thread pool.
+     */
+    public static final Setting<Integer> BULK_MAX_CONCURRENT_DOCUMENTS_SETTING = new Setting<>("ingest.bulk.max_concurrent_documents",
+        s -> Integer.toString(EsExecutors.boundedNumberOfProcessors(s)),
+        s -> Setting.parseInt(s, 1, "ingest.bulk.max_concurrent_documents"), Property.NodeScope);
+
     private final PipelineStore store;
     private final ThreadPool threadPool;
+    private final ParallelBatchRunner bulkRunner;
 
     private final StatsHolder totalStats = new StatsHolder();
     private volatile Map<String, StatsHolder> statsHolderPerPipeline = Collections.emptyMap();
 
-    public PipelineExecutionService(PipelineStore store, ThreadPool threadPool) {
+    public PipelineExecutionService(Settings settings, PipelineStore store, ThreadPool threadPool) {
         this.store = store;
         this.threadPool = threadPool;
+        // one document per batch, pipelines are expensive enough to not make claiming them the bottleneck
+        this.bulkRunner = new ParallelBatchRunner(threadPool.executor(ThreadPool.Names.INGEST), 1,
+            BULK_MAX_CONCURRENT_DOCUMENTS_SETTING.get(settings) - 1);
     }
 
     public void executeIndexRequest(IndexRequest request, Consumer<Exception> failureHandler, Consumer<Boolean> completionHandler) {
@@ -68,6 +87,12 @@ public class PipelineExecutionService implements ClusterStateListener {
         });
     }
 
+    /**
+     * Runs the pipelines of all index requests in the given requests that have one. The documents of the bulk are processed
+     * concurrently, see {@link #BULK_MAX_CONCURRENT_DOCUMENTS_SETTING}, but the given requests are iterated only once and the
+     * <code>itemFailureHandler</code> is called for the failed requests in the order of the requests, from a single thread and
+     * after all documents were processed.
+     */
     public void executeBulkRequest(Iterable<ActionRequest<?>> actionRequests,
                                    BiConsumer<IndexRequest, Exception> itemFailureHandler,
                                    Consumer<Exception> completionHandler) {
@@ -80,21 +105,32 @@ public class PipelineExecutionService implements ClusterStateListener {
 
             @Override
             protected void doRun() throws Exception {
+                final List<IndexRequest> indexRequests = new ArrayList<>();
                 for (ActionRequest actionRequest : actionRequests) {
                     if ((actionRequest instanceof IndexRequest)) {
                         IndexRequest indexRequest = (IndexRequest) actionRequest;
                         if (Strings.hasText(indexRequest.getPipeline())) {
-                            try {
-                                innerExecute(indexRequest, getPipeline(indexRequest.getPipeline()));
-                                //this shouldn't be needed here but we do it for consistency with index api
-                                // which requires it to prevent double execution
-                                indexRequest.setPipeline(null);
-                            } catch (Exception e) {
-                                itemFailureHandler.accept(indexRequest, e);
-                            }
+                            indexRequests.add(indexRequest);
                         }
                     }
                 }
+                final Exception[] failures = new Exception[indexRequests.size()];
+                bulkRunner.run(indexRequests.size(), i -> {
+                    IndexRequest indexRequest = indexRequests.get(i);
+                    try {
+                        innerExecute(indexRequest, getPipeline(indexRequest.getPipeline()));
+                        //this shouldn't be needed here but we do it for consistency with index api
+                        // which requires it to prevent double execution
+                        indexRequest.setPipeline(null);
+                    } catch (Exception e) {
+                        failures[i] = e;
+                    }
+                });
+                for (int i = 0; i < failures.length; i++) {
+                    if (failures[i] != null) {
+                        itemFailureHandler.accept(indexRequests.get(i), failures[i]);
+                    }
+                }
                 completionHandler.accept(null);
             }
         });
@@ -105,10 +141,27 @@ public class PipelineExecutionService implements ClusterStateListener {
 
         Map<String, IngestStats.Stats> statsPerPipeline = new HashMap<>(statsHolderPerPipeline.size());
         for (Map.Entry<String, StatsHolder> entry : statsHolderPerPipeline.entrySet()) {
-            statsPerPipeline.put(entry.getKey(), entry.getValue().createStats());
+            statsPerPipeline.put(entry.getKey(), entry.getValue().createStats(processorStats(store.get(entry.getKey()))));
         }
 
-        return new IngestStats(totalStats.createStats(), statsPerPipeline);
+        return new IngestStats(totalStats.createStats(Collections.emptyMap()), statsPerPipeline);
+    }
+
+    private static Map<String, Map<String, Long>> processorStats(Pipeline pipeline) {
+        if (pipeline == null) {
+            return Collections.emptyMap();
+        }
+        Map<String, Map<String, Long>> processorStats = new HashMap<>();
+        List<Processor> processors = pipeline.getProcessors();
+        for (int i = 0; i < processors.size(); i++) {
+            Processor processor = processors.get(i);
+            Map<String, Long> stats = processor.getStats();
+            if (stats.isEmpty() == false) {
+                // tags don't have to be unique, the position does
+                processorStats.put(CompoundProcessor.statsKey(processor, i), stats);
+            }
+        }
+        return processorStats;
     }
 
     @Override
@@ -148,6 +201,7 @@ public class PipelineExecutionService implements ClusterStateListener {
         }
 
         long startTimeInNanos = System.nanoTime();
+        long ingestBytes = indexRequest.source() == null ? 0 : indexRequest.source().length();
         // the pipeline specific stat holder may not exist and that is fine:
         // (e.g. the pipeline may have been removed while we're ingesting a document
         Optional<StatsHolder> pipelineStats = Optional.ofNullable(statsHolderPerPipeline.get(pipeline.getId()));
@@ -181,9 +235,9 @@ public class PipelineExecutionService implements ClusterStateListener {
             pipelineStats.ifPresent(StatsHolder::ingestFailed);
             throw e;
         } finally {
-            long ingestTimeInMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTimeInNanos);
-            totalStats.postIngest(ingestTimeInMillis);
-            pipelineStats.ifPresent(statsHolder -> statsHolder.postIngest(ingestTimeInMillis));
+            long ingestTimeInNanos = System.nanoTime() - startTimeInNanos;
+            totalStats.postIngest(ingestTimeInNanos, ingestBytes);
+            pipelineStats.ifPresent(statsHolder -> statsHolder.postIngest(ingestTimeInNanos, ingestBytes));
         }
     }
 
@@ -200,22 +254,26 @@ public class PipelineExecutionService implements ClusterStateListener {
         private final MeanMetric ingestMetric = new MeanMetric();
         private final CounterMetric ingestCurrent = new CounterMetric();
         private final CounterMetric ingestFailed = new CounterMetric();
+        private final CounterMetric ingestBytes = new CounterMetric();
 
         void preIngest() {
             ingestCurrent.inc();
         }
 
-        void postIngest(long ingestTimeInMillis) {
+        // the time is summed up in nanos as most documents take less than a milli
+        void postIngest(long ingestTimeInNanos, long ingestBytes) {
             ingestCurrent.dec();
-            ingestMetric.inc(ingestTimeInMillis);
+            ingestMetric.inc(ingestTimeInNanos);
+            this.ingestBytes.inc(ingestBytes);
         }
 
         void ingestFailed() {
             ingestFailed.inc();
         }
 
-        IngestStats.Stats createStats() {
-            return new IngestStats.Stats(ingestMetric.count(), ingestMetric.sum(), ingestCurrent.count(), ingestFailed.count());
+        IngestStats.Stats createStats(Map<String, Map<String, Long>> processorStats) {
+            return new IngestStats.Stats(ingestMetric.count(), TimeUnit.NANOSECONDS.toMillis(ingestMetric.sum()), ingestCurrent.count(),
+                ingestFailed.count(), ingestBytes.count(), processorStats);
         }
 
     }
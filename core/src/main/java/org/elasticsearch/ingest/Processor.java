@@ -24,6 +24,7 @@ import org.elasticsearch.env.Environment;
 import org.elasticsearch.index.analysis.AnalysisRegistry;
 import org.elasticsearch.script.ScriptService;
 
+import java.util.Collections;
 import java.util.Map;
 
 /**
@@ -47,6 +48,14 @@ public interface Processor {
      */
     String getTag();
 
+    /**
+     * Gets the processor specific stats, keyed by name, which are reported with the stats of the pipeline that the processor
+     * belongs to. Most processors don't have any.
+     */
+    default Map<String, Long> getStats() {
+        return Collections.emptyMap();
+    }
+
     /**
      * A factory that knows how to construct a processor based on a map of maps.
      */
@@ -0,0 +1,135 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.node;
+
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.common.io.stream.Writeable;
+import org.elasticsearch.common.xcontent.ToXContent;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * How a node ranks the other nodes as targets of its search requests, see {@link ResponseCollectorService}.
+ */
+public class AdaptiveSelectionStats implements Writeable, ToXContent {
+
+    private final Map<String, Long> clientOutgoingConnections;
+    private final Map<String, ResponseCollectorService.ComputedNodeStats> nodeComputedStats;
+
+    public AdaptiveSelectionStats(Map<String, Long> clientConnections,
+                                  Map<String, ResponseCollectorService.ComputedNodeStats> nodeComputedStats) {
+        this.clientOutgoingConnections = Collections.unmodifiableMap(clientConnections);
+        this.nodeComputedStats = Collections.unmodifiableMap(nodeComputedStats);
+    }
+
+    public AdaptiveSelectionStats(StreamInput in) throws IOException {
+        int size = in.readVInt();
+        Map<String, Long> clientOutgoingConnections = new HashMap<>(size);
+        for (int i = 0; i < size; i++) {
+            clientOutgoingConnections.put(in.readString(), in.readVLong());
+        }
+        this.clientOutgoingConnections = Collections.unmodifiableMap(clientOutgoingConnections);
+        size = in.readVInt();
+        Map<String, ResponseCollectorService.ComputedNodeStats> nodeComputedStats = new HashMap<>(size);
+        for (int i = 0; i < size; i++) {
+            ResponseCollectorService.ComputedNodeStats stats = new ResponseCollectorService.ComputedNodeStats(in);
+            nodeComputedStats.put(stats.getNodeId(), stats);
+        }
+        this.nodeComputedStats = Collections.unmodifiableMap(nodeComputedStats);
+    }
+
+    @Override
+    public void writeTo(StreamOutput out) throws IOException {
+        out.writeVInt(clientOutgoingConnections.size());
+        for (Map.Entry<String, Long> entry : clientOutgoingConnections.entrySet()) {
+            out.writeString(entry.getKey());
+            out.writeVLong(entry.getValue());
+        }
+        out.writeVInt(nodeComputedStats.size());
+        for (ResponseCollectorService.ComputedNodeStats stats : nodeComputedStats.values()) {
+            stats.writeTo(out);
+        }
+    }
+
+    /** the number of search requests that are outstanding with each node */
+    public Map<String, Long> getOutgoingConnections() {
+        return clientOutgoingConnections;
+    }
+
+    /** the statistics of the search responses received from each node */
+    public Map<String, ResponseCollectorService.ComputedNodeStats> getComputedStats() {
+        return nodeComputedStats;
+    }
+
+    /**
+     * Returns the rank of each node that there are statistics for, the lower the rank the more likely the node is to be picked.
+     */
+    public Map<String, Double> getRanks() {
+        Map<String, Double> ranks = new HashMap<>(nodeComputedStats.size());
+        for (ResponseCollectorService.ComputedNodeStats stats : nodeComputedStats.values()) {
+            ranks.put(stats.getNodeId(), stats.rank(clientOutgoingConnections.getOrDefault(stats.getNodeId(), 0L)));
+        }
+        return ranks;
+    }
+
+    @Override
+    public XContentBuilder toXContent(XContentBuilder builder, Params params) throws IOException {
+        builder.startObject(Fields.ADAPTIVE_SELECTION);
+        Set<String> nodeIds = new HashSet<>(clientOutgoingConnections.keySet());
+        nodeIds.addAll(nodeComputedStats.keySet());
+        for (String nodeId : nodeIds) {
+            builder.startObject(nodeId);
+            builder.field(Fields.OUTGOING_SEARCHES, clientOutgoingConnections.getOrDefault(nodeId, 0L));
+            ResponseCollectorService.ComputedNodeStats stats = nodeComputedStats.get(nodeId);
+            if (stats != null) {
+                builder.field(Fields.AVG_QUEUE_SIZE, stats.getQueueSize());
+                builder.timeValueField(Fields.AVG_SERVICE_TIME_NS, Fields.AVG_SERVICE_TIME, (long) stats.getServiceTime(),
+                    TimeUnit.NANOSECONDS);
+                builder.timeValueField(Fields.AVG_RESPONSE_TIME_NS, Fields.AVG_RESPONSE_TIME, (long) stats.getResponseTime(),
+                    TimeUnit.NANOSECONDS);
+                builder.field(Fields.RANK, String.format(Locale.ROOT, "%.1f",
+                    stats.rank(clientOutgoingConnections.getOrDefault(nodeId, 0L))));
+            }
+            builder.endObject();
+        }
+        builder.endObject();
+        return builder;
+    }
+
+    static final class Fields {
+        static final String ADAPTIVE_SELECTION = "adaptive_selection";
+        static final String OUTGOING_SEARCHES = "outgoing_searches";
+        static final String AVG_QUEUE_SIZE = "avg_queue_size";
+        static final String AVG_SERVICE_TIME = "avg_service_time";
+        static final String AVG_SERVICE_TIME_NS = "avg_service_time_ns";
+        static final String AVG_RESPONSE_TIME = "avg_response_time";
+        static final String AVG_RESPONSE_TIME_NS = "avg_response_time_ns";
+        static final String RANK = "rank";
+    }
+}
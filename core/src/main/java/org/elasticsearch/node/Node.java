@@ -81,6 +81,7 @@ import org.elasticsearch.gateway.MetaStateService;
 import org.elasticsearch.http.HttpServer;
 import org.elasticsearch.http.HttpServerTransport;
 import org.elasticsearch.index.analysis.AnalysisRegistry;
+import org.elasticsearch.index.translog.TranslogSyncCoordinator;
 import org.elasticsearch.indices.IndicesModule;
 import org.elasticsearch.indices.IndicesService;
 import org.elasticsearch.indices.analysis.AnalysisModule;
@@ -355,6 +356,9 @@ public class Node implements Closeable {
                 settingsModule.getClusterSettings(), analysisModule.getAnalysisRegistry(), searchModule.getQueryParserRegistry(),
                 clusterModule.getIndexNameExpressionResolver(), indicesModule.getMapperRegistry(), namedWriteableRegistry,
                 threadPool, settingsModule.getIndexScopedSettings(), circuitBreakerService, metaStateService);
+            final ResponseCollectorService responseCollectorService = new ResponseCollectorService(this.settings, clusterService);
+            final TranslogSyncCoordinator translogSyncCoordinator = new TranslogSyncCoordinator(settings, threadPool);
+            resourcesToClose.add(translogSyncCoordinator);
             client = new NodeClient(settings, threadPool);
             Collection<Object> pluginComponents = pluginsService.filterPlugins(Plugin.class).stream()
                 .flatMap(p -> p.createComponents(client, clusterService, threadPool, resourceWatcherService,
@@ -383,6 +387,8 @@ public class Node implements Closeable {
                     b.bind(MetaDataUpgrader.class).toInstance(metaDataUpgrader);
                     b.bind(MetaStateService.class).toInstance(metaStateService);
                     b.bind(IndicesService.class).toInstance(indicesService);
+                    b.bind(TranslogSyncCoordinator.class).toInstance(translogSyncCoordinator);
+                    b.bind(ResponseCollectorService.class).toInstance(responseCollectorService);
                     Class<? extends SearchService> searchServiceImpl = pickSearchServiceImplementation();
                     if (searchServiceImpl == SearchService.class) {
                         b.bind(SearchService.class).asEagerSingleton();
@@ -655,6 +661,7 @@ public class Node implements Closeable {
         toClose.add(() -> stopWatch.stop().start("indices"));
         toClose.add(injector.getInstance(IndicesTTLService.class));
         toClose.add(injector.getInstance(IndicesService.class));
+        toClose.add(injector.getInstance(TranslogSyncCoordinator.class));
         // close filter/fielddata caches after indices
         toClose.add(injector.getInstance(IndicesStore.class));
         toClose.add(() -> stopWatch.stop().start("routing"));
@@ -0,0 +1,220 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.node;
+
+import org.elasticsearch.cluster.ClusterChangedEvent;
+import org.elasticsearch.cluster.ClusterStateListener;
+import org.elasticsearch.cluster.node.DiscoveryNode;
+import org.elasticsearch.cluster.service.ClusterService;
+import org.elasticsearch.common.component.AbstractComponent;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.common.io.stream.Writeable;
+import org.elasticsearch.common.metrics.ExponentiallyWeightedMovingAverage;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.util.concurrent.ConcurrentCollections;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Collects statistics about the search responses that this node received from other nodes, like how long the responses took and
+ * how busy the nodes were, and uses them to rank the nodes for adaptive replica selection, see
+ * {@link org.elasticsearch.cluster.routing.OperationRouting#USE_ADAPTIVE_REPLICA_SELECTION_SETTING}.
+ */
+public final class ResponseCollectorService extends AbstractComponent implements ClusterStateListener {
+
+    /**
+     * The weight of a new response in the moving averages of queue size and response time.
+     */
+    private static final double ALPHA = 0.3;
+
+    private final ConcurrentMap<String, NodeStatistics> nodeIdToStats = ConcurrentCollections.newConcurrentMap();
+
+    public ResponseCollectorService(Settings settings, ClusterService clusterService) {
+        super(settings);
+        clusterService.add(this);
+    }
+
+    @Override
+    public void clusterChanged(ClusterChangedEvent event) {
+        if (event.nodesRemoved()) {
+            for (DiscoveryNode removedNode : event.nodesDelta().removedNodes()) {
+                removeNode(removedNode.getId());
+            }
+        }
+    }
+
+    void removeNode(String nodeId) {
+        nodeIdToStats.remove(nodeId);
+    }
+
+    /**
+     * Records a response of the given node.
+     *
+     * @param queueSize           the size of the node's search queue when it sent the response
+     * @param responseTimeNanos   how long it took the node to respond, as seen by this node
+     * @param avgServiceTimeNanos the moving average of how long it takes the node to execute a search request
+     */
+    public void addNodeStatistics(String nodeId, int queueSize, long responseTimeNanos, long avgServiceTimeNanos) {
+        nodeIdToStats.compute(nodeId, (id, stats) -> {
+            if (stats == null) {
+                return new NodeStatistics(nodeId, new ExponentiallyWeightedMovingAverage(ALPHA, queueSize),
+                    new ExponentiallyWeightedMovingAverage(ALPHA, responseTimeNanos), avgServiceTimeNanos);
+            }
+            stats.queueSize.addValue(queueSize);
+            stats.responseTime.addValue(responseTimeNanos);
+            stats.serviceTime = avgServiceTimeNanos;
+            return stats;
+        });
+    }
+
+    /**
+     * Moves the statistics of the given node a step towards half of the statistics of the node that won a replica selection against
+     * it, as if the node had answered better than the winner. This way a node that was slow once gets a request every now and then,
+     * and with it the chance to show that it got faster again, while the responses it sends keep its statistics honest.
+     */
+    public void adjustNodeStatistics(String nodeId, ComputedNodeStats winner) {
+        nodeIdToStats.computeIfPresent(nodeId, (id, stats) -> {
+            stats.queueSize.addValue(winner.queueSize / 2.0);
+            stats.responseTime.addValue(winner.responseTime / 2);
+            stats.serviceTime = (ALPHA * winner.serviceTime / 2) + ((1 - ALPHA) * stats.serviceTime);
+            return stats;
+        });
+    }
+
+    public Map<String, ComputedNodeStats> getAllNodeStatistics() {
+        final int clientNum = nodeIdToStats.size();
+        final Map<String, ComputedNodeStats> nodeStats = new HashMap<>(clientNum);
+        for (NodeStatistics stats : nodeIdToStats.values()) {
+            nodeStats.put(stats.nodeId, new ComputedNodeStats(clientNum, stats));
+        }
+        return nodeStats;
+    }
+
+    /**
+     * The statistics of the given node, or nothing if this node didn't receive any search response from it yet.
+     */
+    public Optional<ComputedNodeStats> getNodeStatistics(String nodeId) {
+        final int clientNum = nodeIdToStats.size();
+        final NodeStatistics stats = nodeIdToStats.get(nodeId);
+        return stats == null ? Optional.empty() : Optional.of(new ComputedNodeStats(clientNum, stats));
+    }
+
+    /**
+     * A snapshot of the statistics of a node, which ranks the node as a target of search requests.
+     */
+    public static class ComputedNodeStats implements Writeable {
+
+        private final String nodeId;
+        private final int clientNum;
+        private final int queueSize;
+        private final double responseTime;
+        private final double serviceTime;
+
+        public ComputedNodeStats(String nodeId, int clientNum, int queueSize, double responseTime, double serviceTime) {
+            this.nodeId = nodeId;
+            this.clientNum = clientNum;
+            this.queueSize = queueSize;
+            this.responseTime = responseTime;
+            this.serviceTime = serviceTime;
+        }
+
+        ComputedNodeStats(int clientNum, NodeStatistics nodeStats) {
+            this(nodeStats.nodeId, clientNum, (int) nodeStats.queueSize.getAverage(), nodeStats.responseTime.getAverage(),
+                nodeStats.serviceTime);
+        }
+
+        public ComputedNodeStats(StreamInput in) throws IOException {
+            this.nodeId = in.readString();
+            this.clientNum = in.readInt();
+            this.queueSize = in.readInt();
+            this.responseTime = in.readDouble();
+            this.serviceTime = in.readDouble();
+        }
+
+        @Override
+        public void writeTo(StreamOutput out) throws IOException {
+            out.writeString(nodeId);
+            out.writeInt(clientNum);
+            out.writeInt(queueSize);
+            out.writeDouble(responseTime);
+            out.writeDouble(serviceTime);
+        }
+
+        public String getNodeId() {
+            return nodeId;
+        }
+
+        /** the moving average of the node's search queue size */
+        public int getQueueSize() {
+            return queueSize;
+        }
+
+        /** the moving average of the node's response time in nanoseconds, as seen by this node */
+        public double getResponseTime() {
+            return responseTime;
+        }
+
+        /** the moving average of the time the node takes to execute a search request in nanoseconds */
+        public double getServiceTime() {
+            return serviceTime;
+        }
+
+        /**
+         * Ranks the node following the C3 replica selection algorithm, the lower the rank the better. The rank grows with the
+         * response and service times of the node and, cubically, with the length of the queue that requests sent now are expected
+         * to find on the node, which accounts for the requests this node has outstanding with it and for the requests of the
+         * other coordinating nodes.
+         *
+         * @param outstandingRequests the number of search requests this node has sent to the node and not received a response for
+         */
+        public double rank(long outstandingRequests) {
+            final double responseMillis = responseTime / 1_000_000;
+            final double serviceMillis = serviceTime / 1_000_000;
+            final double expectedQueueSize = 1 + outstandingRequests * clientNum + queueSize;
+            return responseMillis - serviceMillis + Math.pow(expectedQueueSize, 3) * serviceMillis;
+        }
+
+        @Override
+        public String toString() {
+            return "ComputedNodeStats[" + nodeId + "](nodes: " + clientNum + ", queue: " + queueSize + ", response time: " +
+                responseTime + ", service time: " + serviceTime + ")";
+        }
+    }
+
+    private static class NodeStatistics {
+        final String nodeId;
+        final ExponentiallyWeightedMovingAverage queueSize;
+        final ExponentiallyWeightedMovingAverage responseTime;
+        volatile double serviceTime;
+
+        NodeStatistics(String nodeId, ExponentiallyWeightedMovingAverage queueSize, ExponentiallyWeightedMovingAverage responseTime,
+                       double serviceTime) {
+            this.nodeId = nodeId;
+            this.queueSize = queueSize;
+            this.responseTime = responseTime;
+            this.serviceTime = serviceTime;
+        }
+    }
+}
@@ -39,8 +39,10 @@ import org.elasticsearch.indices.IndicesService;
 import org.elasticsearch.indices.breaker.CircuitBreakerService;
 import org.elasticsearch.ingest.IngestService;
 import org.elasticsearch.monitor.MonitorService;
+import org.elasticsearch.node.AdaptiveSelectionStats;
 import org.elasticsearch.plugins.PluginsService;
 import org.elasticsearch.script.ScriptService;
+import org.elasticsearch.search.action.SearchTransportService;
 import org.elasticsearch.threadpool.ThreadPool;
 import org.elasticsearch.transport.TransportService;
 
@@ -63,11 +65,14 @@ public class NodeService extends AbstractComponent implements Closeable {
 
     private final Discovery discovery;
 
+    private final SearchTransportService searchTransportService;
+
     @Inject
     public NodeService(Settings settings, ThreadPool threadPool, MonitorService monitorService, Discovery discovery,
                        TransportService transportService, IndicesService indicesService, PluginsService pluginService,
                        CircuitBreakerService circuitBreakerService, ScriptService scriptService, @Nullable HttpServer httpServer,
-                       IngestService ingestService, ClusterService clusterService, SettingsFilter settingsFilter) {
+                       IngestService ingestService, ClusterService clusterService, SettingsFilter settingsFilter,
+                       SearchTransportService searchTransportService) {
         super(settings);
         this.threadPool = threadPool;
         this.monitorService = monitorService;
@@ -80,6 +85,7 @@ public class NodeService extends AbstractComponent implements Closeable {
         this.ingestService = ingestService;
         this.settingsFilter = settingsFilter;
         this.scriptService = scriptService;
+        this.searchTransportService = searchTransportService;
         clusterService.add(ingestService.getPipelineStore());
         clusterService.add(ingestService.getPipelineExecutionService());
     }
@@ -102,7 +108,8 @@ public class NodeService extends AbstractComponent implements Closeable {
 
     public NodeStats stats(CommonStatsFlags indices, boolean os, boolean process, boolean jvm, boolean threadPool,
                            boolean fs, boolean transport, boolean http, boolean circuitBreaker,
-                           boolean script, boolean discoveryStats, boolean ingest) {
+                           boolean script, boolean discoveryStats, boolean ingest, boolean mergeIO,
+                           boolean indexingBuffer, boolean adaptiveSelection) {
         // for indices stats we want to include previous allocated shards stats as well (it will
         // only be applied to the sensible ones to use, like refresh/merge/flush/indexing stats)
         return new NodeStats(discovery.localNode(), System.currentTimeMillis(),
@@ -117,10 +124,18 @@ public class NodeService extends AbstractComponent implements Closeable {
                 circuitBreaker ? circuitBreakerService.stats() : null,
                 script ? scriptService.stats() : null,
                 discoveryStats ? discovery.stats() : null,
-                ingest ? ingestService.getPipelineExecutionService().stats() : null
+                ingest ? ingestService.getPipelineExecutionService().stats() : null,
+                mergeIO ? indicesService.mergeIOStats() : null,
+                indexingBuffer ? indicesService.indexingBufferStats() : null,
+                adaptiveSelection ? adaptiveSelectionStats() : null
         );
     }
 
+    private AdaptiveSelectionStats adaptiveSelectionStats() {
+        return new AdaptiveSelectionStats(searchTransportService.getPendingSearchRequests(),
+                searchTransportService.getResponseCollectorService().getAllNodeStatistics());
+    }
+
     public IngestService getIngestService() {
         return ingestService;
     }
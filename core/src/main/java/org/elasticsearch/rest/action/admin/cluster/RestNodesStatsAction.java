@@ -77,6 +77,9 @@ public class RestNodesStatsAction extends BaseRestHandler {
             nodesStatsRequest.script(metrics.contains("script"));
             nodesStatsRequest.discovery(metrics.contains("discovery"));
             nodesStatsRequest.ingest(metrics.contains("ingest"));
+            nodesStatsRequest.mergeIO(metrics.contains("merge_io"));
+            nodesStatsRequest.indexingBuffer(metrics.contains("indexing_buffer"));
+            nodesStatsRequest.adaptiveSelection(metrics.contains("adaptive_selection"));
 
             // check for index specific metrics
             if (metrics.contains("indices")) {
@@ -118,6 +118,8 @@ public class RestSearchAction extends BaseRestHandler {
         }
         parseSearchSource(searchRequest.source(), request);
         searchRequest.requestCache(request.paramAsBoolean("request_cache", null));
+        searchRequest.batchedReduceSize(request.paramAsInt("batched_reduce_size", searchRequest.batchedReduceSize()));
+        searchRequest.preFilterShardSize(request.paramAsInt("pre_filter_shard_size", searchRequest.preFilterShardSize()));
 
         String scroll = request.param("scroll");
         if (scroll != null) {
@@ -202,6 +204,10 @@ public class RestSearchAction extends BaseRestHandler {
             searchSourceBuilder.trackScores(request.paramAsBoolean("track_scores", false));
         }
 
+        if (request.hasParam("track_total_hits")) {
+            searchSourceBuilder.trackTotalHits(request.paramAsBoolean("track_total_hits", true));
+        }
+
         String sSorts = request.param("sort");
         if (sSorts != null) {
             String[] sorts = Strings.splitStringByCommaToArray(sSorts);
@@ -24,6 +24,7 @@ import org.apache.lucene.search.FieldDoc;
 import org.apache.lucene.search.TopDocs;
 import org.elasticsearch.ElasticsearchException;
 import org.elasticsearch.ExceptionsHelper;
+import org.elasticsearch.action.ActionListener;
 import org.elasticsearch.cluster.metadata.IndexMetaData;
 import org.elasticsearch.cluster.service.ClusterService;
 import org.elasticsearch.common.Nullable;
@@ -31,12 +32,14 @@ import org.elasticsearch.common.ParseFieldMatcher;
 import org.elasticsearch.common.component.AbstractLifecycleComponent;
 import org.elasticsearch.common.inject.Inject;
 import org.elasticsearch.common.lucene.Lucene;
+import org.elasticsearch.common.metrics.ExponentiallyWeightedMovingAverage;
 import org.elasticsearch.common.settings.ClusterSettings;
 import org.elasticsearch.common.settings.Setting;
 import org.elasticsearch.common.settings.Setting.Property;
 import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.common.unit.TimeValue;
 import org.elasticsearch.common.util.BigArrays;
+import org.elasticsearch.common.util.concurrent.AbstractRunnable;
 import org.elasticsearch.common.util.concurrent.ConcurrentCollections;
 import org.elasticsearch.common.util.concurrent.ConcurrentMapLong;
 import org.elasticsearch.common.xcontent.XContentFactory;
@@ -46,6 +49,8 @@ import org.elasticsearch.index.Index;
 import org.elasticsearch.index.IndexService;
 import org.elasticsearch.index.engine.Engine;
 import org.elasticsearch.index.query.InnerHitBuilder;
+import org.elasticsearch.index.query.MatchNoneQueryBuilder;
+import org.elasticsearch.index.query.QueryBuilder;
 import org.elasticsearch.index.query.QueryShardContext;
 import org.elasticsearch.index.shard.IndexEventListener;
 import org.elasticsearch.index.shard.IndexShard;
@@ -99,7 +104,10 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.atomic.AtomicLong;
 
 import static java.util.Collections.unmodifiableMap;
@@ -115,6 +123,7 @@ public class SearchService extends AbstractLifecycleComponent implements IndexEv
         Setting.positiveTimeSetting("search.keep_alive_interval", timeValueMinutes(1), Property.NodeScope);
 
     public static final TimeValue NO_TIMEOUT = timeValueMillis(-1);
+    private static final double QUERY_PHASE_EWMA_ALPHA = 0.3;
     public static final Setting<TimeValue> DEFAULT_SEARCH_TIMEOUT_SETTING =
         Setting.timeSetting("search.default_search_timeout", NO_TIMEOUT, Property.Dynamic, Property.NodeScope);
 
@@ -149,6 +158,13 @@ public class SearchService extends AbstractLifecycleComponent implements IndexEv
 
     private final ParseFieldMatcher parseFieldMatcher;
 
+    /**
+     * The moving average of the time it takes to execute the query phase, sent back with the query results for adaptive replica
+     * selection, see {@link QuerySearchResult#serviceTimeEWMA()}.
+     */
+    private final ExponentiallyWeightedMovingAverage queryPhaseServiceTime =
+        new ExponentiallyWeightedMovingAverage(QUERY_PHASE_EWMA_ALPHA, 0);
+
     @Inject
     public SearchService(Settings settings, ClusterSettings clusterSettings, ClusterService clusterService, IndicesService indicesService,
                          ThreadPool threadPool, ScriptService scriptService, BigArrays bigArrays, FetchPhase fetchPhase) {
@@ -159,7 +175,7 @@ public class SearchService extends AbstractLifecycleComponent implements IndexEv
         this.indicesService = indicesService;
         this.scriptService = scriptService;
         this.bigArrays = bigArrays;
-        this.queryPhase = new QueryPhase(settings);
+        this.queryPhase = new QueryPhase(settings, threadPool);
         this.fetchPhase = fetchPhase;
 
         TimeValue keepAliveInterval = KEEPALIVE_INTERVAL_SETTING.get(settings);
@@ -227,6 +243,92 @@ public class SearchService extends AbstractLifecycleComponent implements IndexEv
         keepAliveReaper.cancel();
     }
 
+    /**
+     * Returns <code>false</code> if the given request can't match any documents on its shard. Unlike the search phases this doesn't
+     * create a search context, it only rewrites the query against the shard's current reader, so that it is cheap enough to let
+     * the coordinating node skip shards that would return nothing anyway, see {@link #canRewriteToMatchNone(SearchSourceBuilder)}.
+     */
+    public boolean canMatch(ShardSearchRequest request) throws IOException {
+        final IndexService indexService = indicesService.indexServiceSafe(request.shardId().getIndex());
+        final IndexShard indexShard = indexService.getShard(request.shardId().getId());
+        if (canRewriteToMatchNone(request.source()) == false || indexShard.hasRefreshPending()) {
+            // search idle shards may not have made all changes visible yet, leave it to the query phase to refresh them
+            return true;
+        }
+        try (Engine.Searcher searcher = indexShard.acquireSearcher("can_match")) {
+            final QueryShardContext context = indexService.newQueryShardContext(searcher.reader(), request::nowInMillis);
+            context.setTypes(request.types());
+            final QueryBuilder query = QueryBuilder.rewriteQuery(request.source().query(), context);
+            return query instanceof MatchNoneQueryBuilder == false;
+        }
+    }
+
+    /**
+     * Returns <code>true</code> if a search with the given source doesn't return anything on a shard where its query rewrites to
+     * <code>match_none</code>, i.e. if it has a query and neither suggestions nor aggregations that visit all documents.
+     */
+    public static boolean canRewriteToMatchNone(SearchSourceBuilder source) {
+        if (source == null || source.query() == null || source.suggest() != null) {
+            return false;
+        }
+        return source.aggregations() == null || source.aggregations().mustVisitAllDocs() == false;
+    }
+
+    public void executeDfsPhase(ShardSearchRequest request, ActionListener<DfsSearchResult> listener) {
+        runWhenShardSearchActive(request, listener, () -> executeDfsPhase(request));
+    }
+
+    public void executeQueryPhase(ShardSearchRequest request, ActionListener<QuerySearchResultProvider> listener) {
+        runWhenShardSearchActive(request, listener, () -> executeQueryPhase(request));
+    }
+
+    public void executeFetchPhase(ShardSearchRequest request, ActionListener<QueryFetchSearchResult> listener) {
+        runWhenShardSearchActive(request, listener, () -> executeFetchPhase(request));
+    }
+
+    /**
+     * Marks the shard of the given request as search active and runs the phase once the changes that were left unrefreshed while
+     * the shard was search idle are visible. The phase runs on the calling thread if nothing was left unrefreshed, and is forked to
+     * the search thread pool from the refresh listener otherwise, so no search thread is parked while the shard refreshes.
+     */
+    private <T> void runWhenShardSearchActive(ShardSearchRequest request, ActionListener<T> listener, Callable<T> phase) {
+        final IndexShard indexShard;
+        try {
+            indexShard = indicesService.indexServiceSafe(request.shardId().getIndex()).getShard(request.shardId().getId());
+        } catch (Exception e) {
+            listener.onFailure(e);
+            return;
+        }
+        indexShard.awaitShardSearchActive(refreshed -> {
+            if (refreshed == false) {
+                runPhase(listener, phase);
+                return;
+            }
+            threadPool.executor(Names.SEARCH).execute(new AbstractRunnable() {
+                @Override
+                public void onFailure(Exception e) {
+                    listener.onFailure(e);
+                }
+
+                @Override
+                protected void doRun() throws Exception {
+                    runPhase(listener, phase);
+                }
+            });
+        });
+    }
+
+    private static <T> void runPhase(ActionListener<T> listener, Callable<T> phase) {
+        final T result;
+        try {
+            result = phase.call();
+        } catch (Exception e) {
+            listener.onFailure(e);
+            return;
+        }
+        listener.onResponse(result);
+    }
+
     public DfsSearchResult executeDfsPhase(ShardSearchRequest request) throws IOException {
         final SearchContext context = createAndPutContext(request);
         context.incRef();
@@ -272,7 +374,9 @@ public class SearchService extends AbstractLifecycleComponent implements IndexEv
             } else {
                 contextProcessedSuccessfully(context);
             }
-            operationListener.onQueryPhase(context, System.nanoTime() - time);
+            final long took = System.nanoTime() - time;
+            operationListener.onQueryPhase(context, took);
+            addNodeStatistics(context.queryResult(), took);
 
             return context.queryResult();
         } catch (Exception e) {
@@ -331,7 +435,9 @@ public class SearchService extends AbstractLifecycleComponent implements IndexEv
             } else {
                 contextProcessedSuccessfully(context);
             }
-            operationListener.onQueryPhase(context, System.nanoTime() - time);
+            final long took = System.nanoTime() - time;
+            operationListener.onQueryPhase(context, took);
+            addNodeStatistics(context.queryResult(), took);
             return context.queryResult();
         } catch (Exception e) {
             operationListener.onFailedQueryPhase(context);
@@ -343,6 +449,18 @@ public class SearchService extends AbstractLifecycleComponent implements IndexEv
         }
     }
 
+    /**
+     * Records how long the query phase took and adds the statistics that adaptive replica selection ranks this node by to the result.
+     */
+    private void addNodeStatistics(QuerySearchResult queryResult, long tookInNanos) {
+        queryPhaseServiceTime.addValue(tookInNanos);
+        final Executor searchExecutor = threadPool.executor(Names.SEARCH);
+        if (searchExecutor instanceof ThreadPoolExecutor) {
+            queryResult.nodeQueueSize(((ThreadPoolExecutor) searchExecutor).getQueue().size());
+        }
+        queryResult.serviceTimeEWMA((long) queryPhaseServiceTime.getAverage());
+    }
+
     private boolean fetchPhaseShouldFreeContext(SearchContext context) {
         if (context.scrollContext() == null) {
             // simple search, no scroll
@@ -369,6 +487,7 @@ public class SearchService extends AbstractLifecycleComponent implements IndexEv
             }
             long time2 = System.nanoTime();
             operationListener.onQueryPhase(context, time2 - time);
+            addNodeStatistics(context.queryResult(), time2 - time);
             operationListener.onPreFetchPhase(context);
             try {
                 shortcutDocIdsToLoad(context);
@@ -410,6 +529,7 @@ public class SearchService extends AbstractLifecycleComponent implements IndexEv
             }
             long time2 = System.nanoTime();
             operationListener.onQueryPhase(context, time2 - time);
+            addNodeStatistics(context.queryResult(), time2 - time);
             operationListener.onPreFetchPhase(context);
             try {
                 shortcutDocIdsToLoad(context);
@@ -536,6 +656,8 @@ public class SearchService extends AbstractLifecycleComponent implements IndexEv
         IndexService indexService = indicesService.indexServiceSafe(request.shardId().getIndex());
         IndexShard indexShard = indexService.getShard(request.shardId().getId());
         SearchShardTarget shardTarget = new SearchShardTarget(clusterService.localNode().getId(), indexShard.shardId());
+        // callers that don't go through runWhenShardSearchActive still keep the shard search active and trigger pending refreshes
+        indexShard.awaitShardSearchActive(refreshed -> {});
 
         Engine.Searcher engineSearcher = searcher == null ? indexShard.acquireSearcher("search") : searcher;
 
@@ -695,6 +817,7 @@ public class SearchService extends AbstractLifecycleComponent implements IndexEv
             }
         }
         context.trackScores(source.trackScores());
+        context.trackTotalHits(source.trackTotalHits());
         if (source.minScore() != null) {
             context.minimumScore(source.minScore());
         }
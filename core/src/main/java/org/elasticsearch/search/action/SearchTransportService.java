@@ -19,6 +19,7 @@
 
 package org.elasticsearch.search.action;
 
+import org.apache.logging.log4j.message.ParameterizedMessage;
 import org.elasticsearch.action.ActionListener;
 import org.elasticsearch.action.ActionListenerResponseHandler;
 import org.elasticsearch.action.IndicesRequest;
@@ -31,6 +32,8 @@ import org.elasticsearch.common.inject.Inject;
 import org.elasticsearch.common.io.stream.StreamInput;
 import org.elasticsearch.common.io.stream.StreamOutput;
 import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.util.concurrent.ConcurrentCollections;
+import org.elasticsearch.node.ResponseCollectorService;
 import org.elasticsearch.search.SearchService;
 import org.elasticsearch.search.dfs.DfsSearchResult;
 import org.elasticsearch.search.fetch.FetchSearchResult;
@@ -46,12 +49,17 @@ import org.elasticsearch.search.query.QuerySearchResultProvider;
 import org.elasticsearch.search.query.ScrollQuerySearchResult;
 import org.elasticsearch.threadpool.ThreadPool;
 import org.elasticsearch.transport.TransportChannel;
+import org.elasticsearch.transport.TransportException;
 import org.elasticsearch.transport.TransportRequest;
 import org.elasticsearch.transport.TransportRequestHandler;
 import org.elasticsearch.transport.TransportResponse;
 import org.elasticsearch.transport.TransportService;
 
 import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
 
 /**
  * An encapsulation of {@link org.elasticsearch.search.SearchService} operations exposed through
@@ -62,6 +70,7 @@ public class SearchTransportService extends AbstractComponent {
     public static final String FREE_CONTEXT_SCROLL_ACTION_NAME = "indices:data/read/search[free_context/scroll]";
     public static final String FREE_CONTEXT_ACTION_NAME = "indices:data/read/search[free_context]";
     public static final String CLEAR_SCROLL_CONTEXTS_ACTION_NAME = "indices:data/read/search[clear_scroll_contexts]";
+    public static final String CAN_MATCH_ACTION_NAME = "indices:data/read/search[can_match]";
     public static final String DFS_ACTION_NAME = "indices:data/read/search[phase/dfs]";
     public static final String QUERY_ACTION_NAME = "indices:data/read/search[phase/query]";
     public static final String QUERY_ID_ACTION_NAME = "indices:data/read/search[phase/query/id]";
@@ -74,18 +83,26 @@ public class SearchTransportService extends AbstractComponent {
 
     private final TransportService transportService;
     private final SearchService searchService;
+    private final ResponseCollectorService responseCollectorService;
+    private final ConcurrentMap<String, Long> clientConnections = ConcurrentCollections.newConcurrentMapWithAggressiveConcurrency();
 
     @Inject
-    public SearchTransportService(Settings settings, TransportService transportService, SearchService searchService) {
+    public SearchTransportService(Settings settings, TransportService transportService, SearchService searchService,
+                                  ResponseCollectorService responseCollectorService) {
         super(settings);
         this.transportService = transportService;
         this.searchService = searchService;
+        this.responseCollectorService = responseCollectorService;
         transportService.registerRequestHandler(FREE_CONTEXT_SCROLL_ACTION_NAME, ScrollFreeContextRequest::new, ThreadPool.Names.SAME,
                 new FreeContextTransportHandler<>());
         transportService.registerRequestHandler(FREE_CONTEXT_ACTION_NAME, SearchFreeContextRequest::new, ThreadPool.Names.SAME,
                 new FreeContextTransportHandler<>());
         transportService.registerRequestHandler(CLEAR_SCROLL_CONTEXTS_ACTION_NAME, ClearScrollContextsRequest::new, ThreadPool.Names.SAME,
                 new ClearScrollContextsTransportHandler());
+        // can match requests don't create a search context, but rewriting their query may fetch documents, like the terms
+        // lookup of a terms query or the indexed shape of a geo_shape query, which must not block a network thread
+        transportService.registerRequestHandler(CAN_MATCH_ACTION_NAME, ShardSearchTransportRequest::new, ThreadPool.Names.SEARCH,
+                new CanMatchTransportHandler());
         transportService.registerRequestHandler(DFS_ACTION_NAME, ShardSearchTransportRequest::new, ThreadPool.Names.SEARCH,
                 new SearchDfsTransportHandler());
         transportService.registerRequestHandler(QUERY_ACTION_NAME, ShardSearchTransportRequest::new, ThreadPool.Names.SEARCH,
@@ -131,6 +148,12 @@ public class SearchTransportService extends AbstractComponent {
                 new ActionListenerResponseHandler<>(listener, () -> TransportResponse.Empty.INSTANCE));
     }
 
+    public void sendCanMatch(DiscoveryNode node, final ShardSearchTransportRequest request,
+                             final ActionListener<CanMatchResponse> listener) {
+        transportService.sendRequest(node, CAN_MATCH_ACTION_NAME, request,
+                new ActionListenerResponseHandler<>(listener, CanMatchResponse::new));
+    }
+
     public void sendExecuteDfs(DiscoveryNode node, final ShardSearchTransportRequest request,
                                final ActionListener<DfsSearchResult> listener) {
         transportService.sendRequest(node, DFS_ACTION_NAME, request, new ActionListenerResponseHandler<>(listener, DfsSearchResult::new));
@@ -139,12 +162,12 @@ public class SearchTransportService extends AbstractComponent {
     public void sendExecuteQuery(DiscoveryNode node, final ShardSearchTransportRequest request,
                                  final ActionListener<QuerySearchResultProvider> listener) {
         transportService.sendRequest(node, QUERY_ACTION_NAME, request,
-                new ActionListenerResponseHandler<>(listener, QuerySearchResult::new));
+                new ConnectionCountingHandler<>(node, listener, QuerySearchResult::new));
     }
 
     public void sendExecuteQuery(DiscoveryNode node, final QuerySearchRequest request, final ActionListener<QuerySearchResult> listener) {
         transportService.sendRequest(node, QUERY_ID_ACTION_NAME, request,
-            new ActionListenerResponseHandler<>(listener, QuerySearchResult::new));
+            new ConnectionCountingHandler<>(node, listener, QuerySearchResult::new));
     }
 
     public void sendExecuteQuery(DiscoveryNode node, final InternalScrollSearchRequest request,
@@ -156,13 +179,13 @@ public class SearchTransportService extends AbstractComponent {
     public void sendExecuteFetch(DiscoveryNode node, final ShardSearchTransportRequest request,
                                  final ActionListener<QueryFetchSearchResult> listener) {
         transportService.sendRequest(node, QUERY_FETCH_ACTION_NAME, request,
-                new ActionListenerResponseHandler<>(listener, QueryFetchSearchResult::new));
+                new ConnectionCountingHandler<>(node, listener, QueryFetchSearchResult::new));
     }
 
     public void sendExecuteFetch(DiscoveryNode node, final QuerySearchRequest request,
                                  final ActionListener<QueryFetchSearchResult> listener) {
         transportService.sendRequest(node, QUERY_QUERY_FETCH_ACTION_NAME, request,
-                new ActionListenerResponseHandler<>(listener, QueryFetchSearchResult::new));
+                new ConnectionCountingHandler<>(node, listener, QueryFetchSearchResult::new));
     }
 
     public void sendExecuteFetch(DiscoveryNode node, final InternalScrollSearchRequest request,
@@ -186,6 +209,58 @@ public class SearchTransportService extends AbstractComponent {
         transportService.sendRequest(node, action, request, new ActionListenerResponseHandler<>(listener, FetchSearchResult::new));
     }
 
+    /**
+     * The statistics of the search responses this node received, used to rank shard copies for adaptive replica selection.
+     */
+    public ResponseCollectorService getResponseCollectorService() {
+        return responseCollectorService;
+    }
+
+    /**
+     * Returns a snapshot of the number of query requests this node has sent to each node and not received a response for yet.
+     */
+    public Map<String, Long> getPendingSearchRequests() {
+        return new HashMap<>(clientConnections);
+    }
+
+    /**
+     * A response handler for query requests that keeps track of the requests that are outstanding with the target node and that
+     * records the response time and the statistics the node sent with the query result in the {@link ResponseCollectorService}.
+     */
+    private final class ConnectionCountingHandler<Response extends QuerySearchResultProvider>
+            extends ActionListenerResponseHandler<Response> {
+        private final String nodeId;
+        private final long startNanos;
+
+        ConnectionCountingHandler(DiscoveryNode node, ActionListener<Response> listener, Supplier<Response> responseSupplier) {
+            super(listener, responseSupplier);
+            this.nodeId = node.getId();
+            this.startNanos = System.nanoTime();
+            clientConnections.merge(nodeId, 1L, Long::sum);
+        }
+
+        @Override
+        public void handleResponse(Response response) {
+            final QuerySearchResult queryResult = response.queryResult();
+            if (queryResult.nodeQueueSize() >= 0 && queryResult.serviceTimeEWMA() >= 0) {
+                responseCollectorService.addNodeStatistics(nodeId, queryResult.nodeQueueSize(), System.nanoTime() - startNanos,
+                    queryResult.serviceTimeEWMA());
+            }
+            decrementConnections();
+            super.handleResponse(response);
+        }
+
+        @Override
+        public void handleException(TransportException e) {
+            decrementConnections();
+            super.handleException(e);
+        }
+
+        private void decrementConnections() {
+            clientConnections.computeIfPresent(nodeId, (id, count) -> count > 1 ? count - 1 : null);
+        }
+    }
+
     static class ScrollFreeContextRequest extends TransportRequest {
         private long id;
 
@@ -301,19 +376,92 @@ public class SearchTransportService extends AbstractComponent {
         }
     }
 
+    public static class CanMatchResponse extends TransportResponse {
+
+        private boolean canMatch;
+
+        CanMatchResponse() {
+        }
+
+        CanMatchResponse(boolean canMatch) {
+            this.canMatch = canMatch;
+        }
+
+        public boolean canMatch() {
+            return canMatch;
+        }
+
+        @Override
+        public void readFrom(StreamInput in) throws IOException {
+            super.readFrom(in);
+            canMatch = in.readBoolean();
+        }
+
+        @Override
+        public void writeTo(StreamOutput out) throws IOException {
+            super.writeTo(out);
+            out.writeBoolean(canMatch);
+        }
+    }
+
+    /**
+     * Sends the result of a phase that might complete on another thread, for instance once a search idle shard was refreshed.
+     */
+    private final class ChannelListener<Response extends TransportResponse> implements ActionListener<Response> {
+        private final TransportChannel channel;
+        private final String actionName;
+        private final TransportRequest request;
+
+        ChannelListener(TransportChannel channel, String actionName, TransportRequest request) {
+            this.channel = channel;
+            this.actionName = actionName;
+            this.request = request;
+        }
+
+        @Override
+        public void onResponse(Response response) {
+            try {
+                channel.sendResponse(response);
+            } catch (Exception e) {
+                onFailure(e);
+            }
+        }
+
+        @Override
+        public void onFailure(Exception e) {
+            try {
+                channel.sendResponse(e);
+            } catch (Exception e1) {
+                logger.warn(
+                    (org.apache.logging.log4j.util.Supplier<?>)
+                        () -> new ParameterizedMessage(
+                            "Failed to send error response for action [{}] and request [{}]",
+                            actionName,
+                            request),
+                    e1);
+            }
+        }
+    }
+
+    class CanMatchTransportHandler implements TransportRequestHandler<ShardSearchTransportRequest> {
+        @Override
+        public void messageReceived(ShardSearchTransportRequest request, TransportChannel channel) throws Exception {
+            boolean canMatch = searchService.canMatch(request);
+            channel.sendResponse(new CanMatchResponse(canMatch));
+        }
+    }
+
     class SearchDfsTransportHandler implements TransportRequestHandler<ShardSearchTransportRequest> {
         @Override
         public void messageReceived(ShardSearchTransportRequest request, TransportChannel channel) throws Exception {
-            DfsSearchResult result = searchService.executeDfsPhase(request);
-            channel.sendResponse(result);
+            searchService.executeDfsPhase(request, new ChannelListener<>(channel, DFS_ACTION_NAME, request));
         }
     }
 
     class SearchQueryTransportHandler implements TransportRequestHandler<ShardSearchTransportRequest> {
         @Override
         public void messageReceived(ShardSearchTransportRequest request, TransportChannel channel) throws Exception {
-            QuerySearchResultProvider result = searchService.executeQueryPhase(request);
-            channel.sendResponse(result);
+            searchService.executeQueryPhase(request, new ChannelListener<>(channel, QUERY_ACTION_NAME, request));
         }
     }
 
@@ -336,8 +484,7 @@ public class SearchTransportService extends AbstractComponent {
     class SearchQueryFetchTransportHandler implements TransportRequestHandler<ShardSearchTransportRequest> {
         @Override
         public void messageReceived(ShardSearchTransportRequest request, TransportChannel channel) throws Exception {
-            QueryFetchSearchResult result = searchService.executeFetchPhase(request);
-            channel.sendResponse(result);
+            searchService.executeFetchPhase(request, new ChannelListener<>(channel, QUERY_FETCH_ACTION_NAME, request));
         }
     }
 
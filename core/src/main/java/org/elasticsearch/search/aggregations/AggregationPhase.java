@@ -25,6 +25,7 @@ import org.apache.lucene.search.Query;
 import org.elasticsearch.common.inject.Inject;
 import org.elasticsearch.common.lucene.search.Queries;
 import org.elasticsearch.search.SearchPhase;
+import org.elasticsearch.search.aggregations.InternalAggregation.ReduceContext;
 import org.elasticsearch.search.aggregations.bucket.global.GlobalAggregator;
 import org.elasticsearch.search.aggregations.pipeline.PipelineAggregator;
 import org.elasticsearch.search.aggregations.pipeline.SiblingPipelineAggregator;
@@ -81,6 +82,36 @@ public class AggregationPhase implements SearchPhase {
         }
     }
 
+    /**
+     * Creates another set of the top level aggregators of the search that collects a slice of the segments of the shard concurrently
+     * to the aggregators created in {@link #preProcess(SearchContext)}. The results of the slices are reduced into the result of the
+     * shard in {@link #execute(SearchContext)}. Must be called on the search thread, before collection starts.
+     *
+     * @return the collector of the slice, or <code>null</code> if there are no aggregators that collect the documents of the query
+     */
+    public static BucketCollector createSliceCollector(SearchContext context) {
+        assert context.aggregations().factories().supportsConcurrentCollection();
+        assert context.getProfilers() == null : "profiled searches search the segments of a shard sequentially";
+        List<Aggregator> collectors = new ArrayList<>();
+        try {
+            Aggregator[] aggregators = context.aggregations().factories().createTopLevelSliceAggregators();
+            for (int i = 0; i < aggregators.length; i++) {
+                if (aggregators[i] != null) {
+                    collectors.add(aggregators[i]);
+                }
+            }
+            context.aggregations().addSliceAggregators(aggregators);
+            if (collectors.isEmpty()) {
+                return null;
+            }
+            BucketCollector collector = BucketCollector.wrap(collectors);
+            collector.preCollection();
+            return collector;
+        } catch (IOException e) {
+            throw new AggregationInitializationException("Could not initialize aggregators", e);
+        }
+    }
+
     @Override
     public void execute(SearchContext context) {
         if (context.aggregations() == null) {
@@ -145,6 +176,28 @@ public class AggregationPhase implements SearchPhase {
                 throw new AggregationExecutionException("Failed to build aggregation [" + aggregator.name() + "]", e);
             }
         }
+        List<Aggregator[]> sliceAggregators = context.aggregations().sliceAggregators();
+        if (sliceAggregators.isEmpty() == false) {
+            // the segments were searched concurrently, reduce the results of all slices into the one of the shard with a partial
+            // reduce that only prunes buckets to the shard size, the thresholds and pipelines are still applied by the final reduce
+            ReduceContext reduceContext = new ReduceContext(context.bigArrays(), context.scriptService(), null, false, true);
+            for (int i = 0; i < aggregators.length; i++) {
+                if (aggregators[i] instanceof GlobalAggregator) {
+                    continue;
+                }
+                List<InternalAggregation> sliceAggregations = new ArrayList<>(sliceAggregators.size() + 1);
+                sliceAggregations.add(aggregations.get(i));
+                for (Aggregator[] slice : sliceAggregators) {
+                    try {
+                        slice[i].postCollection();
+                        sliceAggregations.add(slice[i].buildAggregation(0));
+                    } catch (IOException e) {
+                        throw new AggregationExecutionException("Failed to build aggregation [" + slice[i].name() + "]", e);
+                    }
+                }
+                aggregations.set(i, sliceAggregations.get(0).reduce(sliceAggregations, reduceContext));
+            }
+        }
         context.queryResult().aggregations(new InternalAggregations(aggregations));
         try {
             List<PipelineAggregator> pipelineAggregators = context.aggregations().factories().createPipelineAggregators();
@@ -23,6 +23,11 @@ import org.elasticsearch.common.io.stream.StreamInput;
 import org.elasticsearch.common.io.stream.StreamOutput;
 import org.elasticsearch.common.io.stream.Writeable;
 import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.search.aggregations.bucket.global.GlobalAggregationBuilder;
+import org.elasticsearch.search.aggregations.bucket.global.GlobalAggregatorFactory;
+import org.elasticsearch.search.aggregations.bucket.significant.SignificantTermsAggregationBuilder;
+import org.elasticsearch.search.aggregations.bucket.terms.TermsAggregationBuilder;
+import org.elasticsearch.search.aggregations.metrics.scripted.ScriptedMetricAggregationBuilder;
 import org.elasticsearch.search.aggregations.pipeline.PipelineAggregator;
 import org.elasticsearch.search.aggregations.support.AggregationContext;
 import org.elasticsearch.search.aggregations.support.AggregationPath;
@@ -109,6 +114,20 @@ public class AggregatorFactories {
         return aggregators;
     }
 
+    /**
+     * Creates the top level aggregators that collect an additional slice of the segments of a shard. Global aggregations run once
+     * over the whole shard rather than per slice, so their slots are left <code>null</code>.
+     */
+    public Aggregator[] createTopLevelSliceAggregators() throws IOException {
+        Aggregator[] aggregators = new Aggregator[factories.length];
+        for (int i = 0; i < factories.length; i++) {
+            if (factories[i] instanceof GlobalAggregatorFactory == false) {
+                aggregators[i] = factories[i].create(null, true);
+            }
+        }
+        return aggregators;
+    }
+
     /**
      * @return the number of sub-aggregator factories not including pipeline
      *         aggregator factories
@@ -124,6 +143,19 @@ public class AggregatorFactories {
         return pipelineAggregatorFactories.size();
     }
 
+    /**
+     * @return whether all aggregator factories support collecting slices of the segments of a shard concurrently, see
+     *         {@link AggregatorFactory#supportsConcurrentCollection()}
+     */
+    public boolean supportsConcurrentCollection() {
+        for (AggregatorFactory<?> factory : factories) {
+            if (factory.supportsConcurrentCollection() == false) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     public void validate() {
         for (AggregatorFactory<?> factory : factories) {
             factory.validate();
@@ -312,6 +344,32 @@ public class AggregatorFactories {
             return aggregationBuilders.size() + pipelineAggregatorBuilders.size();
         }
 
+        /**
+         * Returns <code>true</code> if any of the aggregations, including sub-aggregations, may return buckets or values on a shard
+         * where the query doesn't match any documents, i.e. the <code>global</code> and <code>scripted_metric</code> aggregations
+         * as well as terms aggregations with a <code>min_doc_count</code> of <code>0</code>. Histograms don't need all shards: the
+         * final reduce fills in their empty buckets and <code>extended_bounds</code> from the result of any shard.
+         */
+        public boolean mustVisitAllDocs() {
+            for (AggregationBuilder builder : aggregationBuilders) {
+                if (builder instanceof GlobalAggregationBuilder || builder instanceof ScriptedMetricAggregationBuilder) {
+                    return true;
+                } else if (builder instanceof TermsAggregationBuilder) {
+                    if (((TermsAggregationBuilder) builder).bucketCountThresholds().getMinDocCount() == 0) {
+                        return true;
+                    }
+                } else if (builder instanceof SignificantTermsAggregationBuilder) {
+                    if (((SignificantTermsAggregationBuilder) builder).bucketCountThresholds().getMinDocCount() == 0) {
+                        return true;
+                    }
+                }
+                if (builder.factoriesBuilder.mustVisitAllDocs()) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
         @Override
         public XContentBuilder toXContent(XContentBuilder builder, Params params) throws IOException {
             builder.startObject();
@@ -225,6 +225,16 @@ public abstract class AggregatorFactory<AF extends AggregatorFactory<AF>> {
         return createInternal(parent, collectsFromSingleBucket, this.factories.createPipelineAggregators(), this.metaData);
     }
 
+    /**
+     * Whether the aggregators of this factory and of its sub factories can collect separate slices of the segments of a shard
+     * concurrently. The results that the aggregators build for each slice are combined into the shard result with a shard
+     * reduce, see {@link InternalAggregation.ReduceContext#isShardReduce()}, so aggregations must override this and return
+     * <code>false</code> if reducing the results of slices isn't the same as building the result from all segments at once.
+     */
+    public boolean supportsConcurrentCollection() {
+        return factories.supportsConcurrentCollection();
+    }
+
     public String getType() {
         return type.name();
     }
@@ -70,11 +70,48 @@ public abstract class InternalAggregation implements Aggregation, ToXContent, Na
         private final BigArrays bigArrays;
         private final ScriptService scriptService;
         private final ClusterState clusterState;
+        private final boolean isFinalReduce;
+        private final boolean isShardReduce;
 
-        public ReduceContext(BigArrays bigArrays, ScriptService scriptService, ClusterState clusterState) {
+        /**
+         * @param isFinalReduce <code>false</code> if only the results of some of the shards are reduced and the result will be
+         *                      reduced again with the results of the other shards, <code>true</code> otherwise
+         */
+        public ReduceContext(BigArrays bigArrays, ScriptService scriptService, ClusterState clusterState, boolean isFinalReduce) {
+            this(bigArrays, scriptService, clusterState, isFinalReduce, false);
+        }
+
+        /**
+         * @param isShardReduce <code>true</code> if the results of the slices of the segments of a shard are reduced into the
+         *                      result of the shard, which is never a final reduce
+         */
+        public ReduceContext(BigArrays bigArrays, ScriptService scriptService, ClusterState clusterState, boolean isFinalReduce,
+                             boolean isShardReduce) {
+            assert isShardReduce == false || isFinalReduce == false : "a shard reduce can't be the final reduce";
             this.bigArrays = bigArrays;
             this.scriptService = scriptService;
             this.clusterState = clusterState;
+            this.isFinalReduce = isFinalReduce;
+            this.isShardReduce = isShardReduce;
+        }
+
+        /**
+         * Returns <code>true</code> iff the current reduce phase is the final reduce phase. Aggregations must not prune buckets,
+         * apply thresholds like <code>min_doc_count</code> or run pipeline aggregations and reduce scripts unless this is the
+         * final reduce phase, since the result of a partial reduce is reduced again with further shard results.
+         */
+        public boolean isFinalReduce() {
+            return isFinalReduce;
+        }
+
+        /**
+         * Returns <code>true</code> iff the results of the slices of the segments of a shard that were searched concurrently are
+         * reduced into the result of the shard. This is a partial reduce, but aggregations that prune their buckets to a shard
+         * size when they build their result on the shard must prune the reduced buckets to that size too, so that the shard
+         * doesn't return more buckets than if its segments had been searched one after the other.
+         */
+        public boolean isShardReduce() {
+            return isShardReduce;
         }
 
         public BigArrays bigArrays() {
@@ -136,12 +173,14 @@ public abstract class InternalAggregation implements Aggregation, ToXContent, Na
      * Reduces the given aggregations to a single one and returns it. In <b>most</b> cases, the assumption will be the all given
      * aggregations are of the same type (the same type as this aggregation). For best efficiency, when implementing,
      * try reusing an existing instance (typically the first in the given list) to save on redundant object
-     * construction.
+     * construction. Pipeline aggregations are only applied in the final reduce phase.
      */
     public final InternalAggregation reduce(List<InternalAggregation> aggregations, ReduceContext reduceContext) {
         InternalAggregation aggResult = doReduce(aggregations, reduceContext);
-        for (PipelineAggregator pipelineAggregator : pipelineAggregators) {
-            aggResult = pipelineAggregator.reduce(aggResult, reduceContext);
+        if (reduceContext.isFinalReduce()) {
+            for (PipelineAggregator pipelineAggregator : pipelineAggregators) {
+                aggResult = pipelineAggregator.reduce(aggResult, reduceContext);
+            }
         }
         return aggResult;
     }
@@ -20,6 +20,9 @@ package org.elasticsearch.search.aggregations;
 
 import org.elasticsearch.search.aggregations.support.AggregationContext;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * The aggregation context that is part of the search context.
  */
@@ -27,6 +30,7 @@ public class SearchContextAggregations {
 
     private final AggregatorFactories factories;
     private Aggregator[] aggregators;
+    private final List<Aggregator[]> sliceAggregators = new ArrayList<>();
     private AggregationContext aggregationContext;
 
     /**
@@ -61,4 +65,23 @@ public class SearchContextAggregations {
         this.aggregators = aggregators;
     }
 
+    /**
+     * Returns the additional top level aggregators that collect slices of the segments of the shard concurrently to
+     * {@link #aggregators()}, one array per slice.
+     */
+    public List<Aggregator[]> sliceAggregators() {
+        return sliceAggregators;
+    }
+
+    /**
+     * Registers additional top level aggregators that collect a slice of the segments of the shard concurrently to
+     * {@link #aggregators()}. Their results are reduced with the ones of {@link #aggregators()} into the result of the shard.
+     *
+     * @param aggregators The top level aggregators of the slice, in the same order as {@link #aggregators()}, <code>null</code> for
+     *                    global aggregations.
+     */
+    public void addSliceAggregators(Aggregator[] aggregators) {
+        this.sliceAggregators.add(aggregators);
+    }
+
 }
@@ -128,7 +128,7 @@ public class GeoHashGridAggregator extends BucketsAggregator {
             bucket.aggregations = bucketAggregations(bucket.bucketOrd);
             list[i] = bucket;
         }
-        return new InternalGeoHashGrid(name, requiredSize, Arrays.asList(list), pipelineAggregators(), metaData());
+        return new InternalGeoHashGrid(name, requiredSize, shardSize, Arrays.asList(list), pipelineAggregators(), metaData());
     }
 
     @Override
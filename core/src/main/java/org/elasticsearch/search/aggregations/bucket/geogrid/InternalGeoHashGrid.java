@@ -129,12 +129,23 @@ public class InternalGeoHashGrid extends InternalMultiBucketAggregation<Internal
     }
 
     private final int requiredSize;
+    // only known on the shard that built the grid, which is the only place where a shard reduce prunes to it
+    private final int shardSize;
     private final List<Bucket> buckets;
 
     public InternalGeoHashGrid(String name, int requiredSize, List<Bucket> buckets, List<PipelineAggregator> pipelineAggregators,
             Map<String, Object> metaData) {
+        this(name, requiredSize, -1, buckets, pipelineAggregators, metaData);
+    }
+
+    /**
+     * @param shardSize the maximum number of cells that the shard returns, see {@link ReduceContext#isShardReduce()}
+     */
+    public InternalGeoHashGrid(String name, int requiredSize, int shardSize, List<Bucket> buckets,
+            List<PipelineAggregator> pipelineAggregators, Map<String, Object> metaData) {
         super(name, pipelineAggregators, metaData);
         this.requiredSize = requiredSize;
+        this.shardSize = shardSize;
         this.buckets = buckets;
     }
 
@@ -144,6 +155,7 @@ public class InternalGeoHashGrid extends InternalMultiBucketAggregation<Internal
     public InternalGeoHashGrid(StreamInput in) throws IOException {
         super(in);
         requiredSize = readSize(in);
+        shardSize = -1;
         buckets = in.readList(Bucket::new);
     }
 
@@ -160,7 +172,7 @@ public class InternalGeoHashGrid extends InternalMultiBucketAggregation<Internal
 
     @Override
     public InternalGeoHashGrid create(List<Bucket> buckets) {
-        return new InternalGeoHashGrid(this.name, this.requiredSize, buckets, this.pipelineAggregators(), this.metaData);
+        return new InternalGeoHashGrid(this.name, this.requiredSize, this.shardSize, buckets, this.pipelineAggregators(), this.metaData);
     }
 
     @Override
@@ -192,7 +204,16 @@ public class InternalGeoHashGrid extends InternalMultiBucketAggregation<Internal
             }
         }
 
-        final int size = (int) Math.min(requiredSize, buckets.size());
+        // a partial reduce must keep all cells, the final reduce may still need them, unless it reduces the slices of a shard
+        // which must not return more than shard size cells
+        final int size;
+        if (reduceContext.isFinalReduce()) {
+            size = (int) Math.min(requiredSize, buckets.size());
+        } else if (reduceContext.isShardReduce() && shardSize > 0) {
+            size = (int) Math.min(shardSize, buckets.size());
+        } else {
+            size = (int) buckets.size();
+        }
         BucketPriorityQueue ordered = new BucketPriorityQueue(size);
         for (LongObjectPagedHashMap.Cursor<List<Bucket>> cursor : buckets) {
             List<Bucket> sameCellBuckets = cursor.value;
@@ -203,7 +224,7 @@ public class InternalGeoHashGrid extends InternalMultiBucketAggregation<Internal
         for (int i = ordered.size() - 1; i >= 0; i--) {
             list[i] = ordered.pop();
         }
-        return new InternalGeoHashGrid(getName(), requiredSize, Arrays.asList(list), pipelineAggregators(), getMetaData());
+        return new InternalGeoHashGrid(getName(), requiredSize, shardSize, Arrays.asList(list), pipelineAggregators(), getMetaData());
     }
 
     @Override
@@ -53,6 +53,12 @@ public class DiversifiedAggregatorFactory extends ValuesSourceAggregatorFactory<
         this.executionHint = executionHint;
     }
 
+    @Override
+    public boolean supportsConcurrentCollection() {
+        // the shard size and max docs per value limit the sampled documents per shard, not per slice of segments
+        return false;
+    }
+
     @Override
     protected Aggregator doCreateInternal(ValuesSource valuesSource, Aggregator parent, boolean collectsFromSingleBucket,
             List<PipelineAggregator> pipelineAggregators, Map<String, Object> metaData) throws IOException {
@@ -40,6 +40,12 @@ public class SamplerAggregatorFactory extends AggregatorFactory<SamplerAggregato
         this.shardSize = shardSize;
     }
 
+    @Override
+    public boolean supportsConcurrentCollection() {
+        // the shard size limits the number of sampled documents per shard, not per slice of segments
+        return false;
+    }
+
     @Override
     public Aggregator createInternal(Aggregator parent, boolean collectsFromSingleBucket, List<PipelineAggregator> pipelineAggregators,
             Map<String, Object> metaData) throws IOException {
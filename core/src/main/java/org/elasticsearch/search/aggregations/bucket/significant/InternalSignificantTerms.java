@@ -197,6 +197,14 @@ public abstract class InternalSignificantTerms<A extends InternalSignificantTerm
             }
         }
 
+        if (reduceContext.isFinalReduce() == false) {
+            // buckets are only scored and pruned once the frequencies of all shards are known
+            List<B> reducedBuckets = new ArrayList<>(buckets.size());
+            for (List<B> sameTermBuckets : buckets.values()) {
+                reducedBuckets.add(sameTermBuckets.get(0).reduce(sameTermBuckets, reduceContext));
+            }
+            return create(globalSubsetSize, globalSupersetSize, reducedBuckets);
+        }
         getSignificanceHeuristic().initialize(reduceContext);
         final int size = Math.min(requiredSize, buckets.size());
         BucketSignificancePriorityQueue<B> ordered = new BucketSignificancePriorityQueue<>(size);
@@ -156,6 +156,12 @@ public class SignificantTermsAggregatorFactory extends ValuesSourceAggregatorFac
         return getBackgroundFrequency(value);
     }
 
+    @Override
+    public boolean supportsConcurrentCollection() {
+        // the background frequencies and sizes are those of the whole shard and would be summed up once per slice
+        return false;
+    }
+
     @Override
     protected Aggregator createUnmapped(Aggregator parent, List<PipelineAggregator> pipelineAggregators, Map<String, Object> metaData)
             throws IOException {
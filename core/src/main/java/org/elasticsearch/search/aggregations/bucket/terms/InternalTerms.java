@@ -140,6 +140,12 @@ public abstract class InternalTerms<A extends InternalTerms<A, B>, B extends Int
     protected final Terms.Order order;
     protected final int requiredSize;
     protected final long minDocCount;
+    /**
+     * Whether this is the result of a partial reduce of shard results on the coordinating node, see
+     * {@link ReduceContext#isFinalReduce()}. Unlike shard results, such results aren't pruned to the shard size and already know
+     * their doc count errors. They are never sent over the wire, so this isn't serialized.
+     */
+    private boolean partiallyReduced = false;
 
     protected InternalTerms(String name, Terms.Order order, int requiredSize, long minDocCount,
             List<PipelineAggregator> pipelineAggregators, Map<String, Object> metaData) {
@@ -185,6 +191,8 @@ public abstract class InternalTerms<A extends InternalTerms<A, B>, B extends Int
         long sumDocCountError = 0;
         long otherDocCount = 0;
         InternalTerms<A, B> referenceTerms = null;
+        // this aggregation is one of the reduced ones and its error is modified below, so read it before that happens
+        final long ownDocCountError = getDocCountError();
         for (InternalAggregation aggregation : aggregations) {
             @SuppressWarnings("unchecked")
             InternalTerms<A, B> terms = (InternalTerms<A, B>) aggregation;
@@ -201,13 +209,26 @@ public abstract class InternalTerms<A extends InternalTerms<A, B>, B extends Int
                         + "types in two different indices");
             }
             otherDocCount += terms.getSumOfOtherDocCounts();
+            final boolean partiallyReduced = terms.partiallyReduced;
+            final long termsDocCountError = terms == this ? ownDocCountError : terms.getDocCountError();
             final long thisAggDocCountError;
-            if (terms.getBucketsInternal().size() < getShardSize() || InternalOrder.isTermOrder(order)) {
-                thisAggDocCountError = 0;
-            } else if (InternalOrder.isCountDesc(this.order)) {
-                thisAggDocCountError = terms.getBucketsInternal().get(terms.getBucketsInternal().size() - 1).docCount;
+            if (partiallyReduced) {
+                thisAggDocCountError = termsDocCountError;
             } else {
-                thisAggDocCountError = -1;
+                final long shardDocCountError;
+                if (terms.getBucketsInternal().size() < getShardSize() || InternalOrder.isTermOrder(order)) {
+                    shardDocCountError = 0;
+                } else if (InternalOrder.isCountDesc(this.order)) {
+                    shardDocCountError = terms.getBucketsInternal().get(terms.getBucketsInternal().size() - 1).docCount;
+                } else {
+                    shardDocCountError = -1;
+                }
+                // shards that reduced the results of their slices already know the error of the terms they pruned
+                if (shardDocCountError == -1 || termsDocCountError == -1) {
+                    thisAggDocCountError = -1;
+                } else {
+                    thisAggDocCountError = Math.max(shardDocCountError, termsDocCountError);
+                }
             }
             if (sumDocCountError != -1) {
                 if (thisAggDocCountError == -1) {
@@ -218,7 +239,14 @@ public abstract class InternalTerms<A extends InternalTerms<A, B>, B extends Int
             }
             setDocCountError(thisAggDocCountError);
             for (B bucket : terms.getBucketsInternal()) {
-                bucket.docCountError = thisAggDocCountError;
+                if (partiallyReduced == false) {
+                    bucket.docCountError = thisAggDocCountError;
+                } else if (thisAggDocCountError == -1 || bucket.docCountError == -1) {
+                    bucket.docCountError = -1;
+                } else {
+                    // the bucket only misses the counts of the shards that it wasn't returned by
+                    bucket.docCountError = thisAggDocCountError - bucket.docCountError;
+                }
                 List<B> bucketList = buckets.get(bucket.getKey());
                 if (bucketList == null) {
                     bucketList = new ArrayList<>();
@@ -228,7 +256,18 @@ public abstract class InternalTerms<A extends InternalTerms<A, B>, B extends Int
             }
         }
 
-        final int size = Math.min(requiredSize, buckets.size());
+        // a partial reduce must keep all buckets, the final reduce may still need them, unless it reduces the slices of a shard
+        // which must not return more than shard size buckets
+        final int size;
+        if (reduceContext.isFinalReduce()) {
+            size = Math.min(requiredSize, buckets.size());
+        } else if (reduceContext.isShardReduce()) {
+            size = Math.min(getShardSize(), buckets.size());
+        } else {
+            size = buckets.size();
+        }
+        // the highest count that a term which was pruned by a shard reduce may have on the shard
+        long prunedDocCountError = 0;
         BucketPriorityQueue<B> ordered = new BucketPriorityQueue<>(size, order.comparator(null));
         for (List<B> sameTermBuckets : buckets.values()) {
             final B b = sameTermBuckets.get(0).reduce(sameTermBuckets, reduceContext);
@@ -239,10 +278,18 @@ public abstract class InternalTerms<A extends InternalTerms<A, B>, B extends Int
                     b.docCountError = sumDocCountError - b.docCountError;
                 }
             }
-            if (b.docCount >= minDocCount) {
+            if (b.docCount >= minDocCount || reduceContext.isFinalReduce() == false) {
                 B removed = ordered.insertWithOverflow(b);
                 if (removed != null) {
                     otherDocCount += removed.getDocCount();
+                    // like on shards, terms that sort after the returned terms by term don't count as errors
+                    if (reduceContext.isShardReduce() && InternalOrder.isTermOrder(order) == false && prunedDocCountError != -1) {
+                        if (InternalOrder.isCountDesc(order) && removed.docCountError != -1) {
+                            prunedDocCountError = Math.max(prunedDocCountError, removed.docCount + removed.docCountError);
+                        } else {
+                            prunedDocCountError = -1;
+                        }
+                    }
                 }
             }
         }
@@ -250,13 +297,26 @@ public abstract class InternalTerms<A extends InternalTerms<A, B>, B extends Int
         for (int i = ordered.size() - 1; i >= 0; i--) {
             list[i] = ordered.pop();
         }
+        // the result of a partial reduce must keep the error of its shards, even if there is only one, since it doesn't report
+        // its counts as exact like a shard does
+        final boolean isPartialReduce = reduceContext.isFinalReduce() == false && reduceContext.isShardReduce() == false;
         long docCountError;
         if (sumDocCountError == -1) {
             docCountError = -1;
+        } else if (aggregations.size() == 1 && isPartialReduce == false
+                && ((InternalTerms<?, ?>) aggregations.get(0)).partiallyReduced == false) {
+            docCountError = 0;
         } else {
-            docCountError = aggregations.size() == 1 ? 0 : sumDocCountError;
+            docCountError = sumDocCountError;
+        }
+        if (prunedDocCountError == -1) {
+            docCountError = -1;
+        } else if (docCountError != -1) {
+            docCountError = Math.max(docCountError, prunedDocCountError);
         }
-        return create(name, Arrays.asList(list), docCountError, otherDocCount);
+        InternalTerms<A, B> reduced = create(name, Arrays.asList(list), docCountError, otherDocCount);
+        reduced.partiallyReduced = isPartialReduce;
+        return reduced;
     }
 
     protected abstract void setDocCountError(long docCountError);
@@ -66,6 +66,12 @@ public class TermsAggregatorFactory extends ValuesSourceAggregatorFactory<Values
         this.showTermDocCountError = showTermDocCountError;
     }
 
+    @Override
+    public boolean supportsConcurrentCollection() {
+        // the shard min doc count would be applied to the doc counts of each slice of segments instead of the shard
+        return bucketCountThresholds.getShardMinDocCount() <= 1 && super.supportsConcurrentCollection();
+    }
+
     @Override
     protected Aggregator createUnmapped(Aggregator parent, List<PipelineAggregator> pipelineAggregators, Map<String, Object> metaData)
             throws IOException {
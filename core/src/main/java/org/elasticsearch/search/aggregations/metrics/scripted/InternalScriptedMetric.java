@@ -40,11 +40,22 @@ import java.util.Map;
 public class InternalScriptedMetric extends InternalMetricsAggregation implements ScriptedMetric {
     private final Script reduceScript;
     private final Object aggregation;
+    /**
+     * The objects of the shards that a partial reduce collected for the reduce script, <code>null</code> if not partially reduced.
+     * Partially reduced aggregations only exist on the coordinating node and are never serialized.
+     */
+    private final List<Object> shardAggregations;
 
     public InternalScriptedMetric(String name, Object aggregation, Script reduceScript, List<PipelineAggregator> pipelineAggregators,
             Map<String, Object> metaData) {
+        this(name, aggregation, null, reduceScript, pipelineAggregators, metaData);
+    }
+
+    private InternalScriptedMetric(String name, Object aggregation, List<Object> shardAggregations, Script reduceScript,
+            List<PipelineAggregator> pipelineAggregators, Map<String, Object> metaData) {
         super(name, pipelineAggregators, metaData);
         this.aggregation = aggregation;
+        this.shardAggregations = shardAggregations;
         this.reduceScript = reduceScript;
     }
 
@@ -55,10 +66,12 @@ public class InternalScriptedMetric extends InternalMetricsAggregation implement
         super(in);
         reduceScript = in.readOptionalWriteable(Script::new);
         aggregation = in.readGenericValue();
+        shardAggregations = null;
     }
 
     @Override
     protected void doWriteTo(StreamOutput out) throws IOException {
+        assert shardAggregations == null : "partially reduced aggregations must not be serialized";
         out.writeOptionalWriteable(reduceScript);
         out.writeGenericValue(aggregation);
     }
@@ -78,9 +91,18 @@ public class InternalScriptedMetric extends InternalMetricsAggregation implement
         List<Object> aggregationObjects = new ArrayList<>();
         for (InternalAggregation aggregation : aggregations) {
             InternalScriptedMetric mapReduceAggregation = (InternalScriptedMetric) aggregation;
-            aggregationObjects.add(mapReduceAggregation.aggregation());
+            if (mapReduceAggregation.shardAggregations != null) {
+                aggregationObjects.addAll(mapReduceAggregation.shardAggregations);
+            } else {
+                aggregationObjects.add(mapReduceAggregation.aggregation());
+            }
         }
         InternalScriptedMetric firstAggregation = ((InternalScriptedMetric) aggregations.get(0));
+        if (reduceContext.isFinalReduce() == false) {
+            // the reduce script expects the objects of all shards at once
+            return new InternalScriptedMetric(firstAggregation.getName(), null, aggregationObjects, firstAggregation.reduceScript,
+                    pipelineAggregators(), getMetaData());
+        }
         Object aggregation;
         if (firstAggregation.reduceScript != null) {
             Map<String, Object> vars = new HashMap<>();
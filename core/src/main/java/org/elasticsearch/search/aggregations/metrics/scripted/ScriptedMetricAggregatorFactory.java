@@ -55,6 +55,13 @@ public class ScriptedMetricAggregatorFactory extends AggregatorFactory<ScriptedM
         this.params = params;
     }
 
+    @Override
+    public boolean supportsConcurrentCollection() {
+        // the combine script produces a single object per shard, the partial reduce of slices would return a list of them
+        // that can't be sent to the coordinating node
+        return false;
+    }
+
     @Override
     public Aggregator createInternal(Aggregator parent, boolean collectsFromSingleBucket, List<PipelineAggregator> pipelineAggregators,
             Map<String, Object> metaData) throws IOException {
@@ -92,6 +92,9 @@ public class InternalTopHits extends InternalMetricsAggregation implements TopHi
 
         final TopDocs reducedTopDocs;
         final TopDocs[] shardDocs;
+        // a partial reduce must keep the hits before from, the final reduce might still need them
+        final int mergeFrom = reduceContext.isFinalReduce() ? from : 0;
+        final int mergeSize = reduceContext.isFinalReduce() ? size : from + size;
 
         try {
             if (topDocs instanceof TopFieldDocs) {
@@ -102,7 +105,7 @@ public class InternalTopHits extends InternalMetricsAggregation implements TopHi
                     shardDocs[i] = (TopFieldDocs) topHitsAgg.topDocs;
                     shardHits[i] = topHitsAgg.searchHits;
                 }
-                reducedTopDocs = TopDocs.merge(sort, from, size, (TopFieldDocs[]) shardDocs);
+                reducedTopDocs = TopDocs.merge(sort, mergeFrom, mergeSize, (TopFieldDocs[]) shardDocs);
             } else {
                 shardDocs = new TopDocs[aggregations.size()];
                 for (int i = 0; i < shardDocs.length; i++) {
@@ -110,7 +113,7 @@ public class InternalTopHits extends InternalMetricsAggregation implements TopHi
                     shardDocs[i] = topHitsAgg.topDocs;
                     shardHits[i] = topHitsAgg.searchHits;
                 }
-                reducedTopDocs = TopDocs.merge(from, size, shardDocs);
+                reducedTopDocs = TopDocs.merge(mergeFrom, mergeSize, shardDocs);
             }
 
             final int[] tracker = new int[shardHits.length];
@@ -30,7 +30,9 @@ import org.apache.lucene.search.SortField;
 import org.apache.lucene.search.TermStatistics;
 import org.apache.lucene.search.TopDocs;
 import org.apache.lucene.search.TopFieldDocs;
+import org.elasticsearch.ExceptionsHelper;
 import org.elasticsearch.cluster.service.ClusterService;
+import org.elasticsearch.common.Nullable;
 import org.elasticsearch.common.collect.HppcMaps;
 import org.elasticsearch.common.component.AbstractComponent;
 import org.elasticsearch.common.inject.Inject;
@@ -357,6 +359,17 @@ public class SearchPhaseController extends AbstractComponent {
     public InternalSearchResponse merge(boolean ignoreFrom, ScoreDoc[] sortedDocs,
                                         AtomicArray<? extends QuerySearchResultProvider> queryResultsArr,
                                         AtomicArray<? extends FetchSearchResultProvider> fetchResultsArr) {
+        return merge(ignoreFrom, sortedDocs, queryResultsArr, fetchResultsArr, null);
+    }
+
+    /**
+     * Like {@link #merge(boolean, ScoreDoc[], AtomicArray, AtomicArray)} but takes the aggregations of the query results from
+     * the given consumer if not <code>null</code>, which reduced them in batches while the query results were received.
+     */
+    public InternalSearchResponse merge(boolean ignoreFrom, ScoreDoc[] sortedDocs,
+                                        AtomicArray<? extends QuerySearchResultProvider> queryResultsArr,
+                                        AtomicArray<? extends FetchSearchResultProvider> fetchResultsArr,
+                                        @Nullable QueryResultConsumer queryResultConsumer) {
 
         List<? extends AtomicArray.Entry<? extends QuerySearchResultProvider>> queryResults = queryResultsArr.asList();
         List<? extends AtomicArray.Entry<? extends FetchSearchResultProvider>> fetchResults = fetchResultsArr.asList();
@@ -485,24 +498,17 @@ public class SearchPhaseController extends AbstractComponent {
 
         // merge Aggregation
         InternalAggregations aggregations = null;
-        if (firstResult.aggregations() != null && firstResult.aggregations().asList() != null) {
-            List<InternalAggregations> aggregationsList = new ArrayList<>(queryResults.size());
-            for (AtomicArray.Entry<? extends QuerySearchResultProvider> entry : queryResults) {
-                aggregationsList.add((InternalAggregations) entry.value.queryResult().aggregations());
-            }
-            ReduceContext reduceContext = new ReduceContext(bigArrays, scriptService, clusterService.state());
-            aggregations = InternalAggregations.reduce(aggregationsList, reduceContext);
-            List<SiblingPipelineAggregator> pipelineAggregators = firstResult.pipelineAggregators();
-            if (pipelineAggregators != null) {
-                List<InternalAggregation> newAggs = StreamSupport.stream(aggregations.spliterator(), false)
-                    .map((p) -> (InternalAggregation) p)
-                    .collect(Collectors.toList());
-                for (SiblingPipelineAggregator pipelineAggregator : pipelineAggregators) {
-                    InternalAggregation newAgg = pipelineAggregator.doReduce(new InternalAggregations(newAggs), reduceContext);
-                    newAggs.add(newAgg);
+        if (firstResult.hasAggs()) {
+            final List<InternalAggregations> aggregationsList;
+            if (queryResultConsumer != null) {
+                aggregationsList = queryResultConsumer.consumeAggs();
+            } else {
+                aggregationsList = new ArrayList<>(queryResults.size());
+                for (AtomicArray.Entry<? extends QuerySearchResultProvider> entry : queryResults) {
+                    aggregationsList.add((InternalAggregations) entry.value.queryResult().aggregations());
                 }
-                aggregations = new InternalAggregations(newAggs);
             }
+            aggregations = reduceAggs(aggregationsList, firstResult.pipelineAggregators(), true);
         }
 
         //Collect profile results
@@ -521,6 +527,99 @@ public class SearchPhaseController extends AbstractComponent {
         return new InternalSearchResponse(searchHits, aggregations, suggest, shardResults, timedOut, terminatedEarly);
     }
 
+    private InternalAggregations reduceAggs(List<InternalAggregations> aggregationsList,
+                                            @Nullable List<SiblingPipelineAggregator> pipelineAggregators, boolean isFinalReduce) {
+        ReduceContext reduceContext = new ReduceContext(bigArrays, scriptService, clusterService.state(), isFinalReduce);
+        InternalAggregations aggregations = InternalAggregations.reduce(aggregationsList, reduceContext);
+        if (pipelineAggregators != null) {
+            List<InternalAggregation> newAggs = StreamSupport.stream(aggregations.spliterator(), false)
+                .map((p) -> (InternalAggregation) p)
+                .collect(Collectors.toList());
+            for (SiblingPipelineAggregator pipelineAggregator : pipelineAggregators) {
+                InternalAggregation newAgg = pipelineAggregator.doReduce(new InternalAggregations(newAggs), reduceContext);
+                newAggs.add(newAgg);
+            }
+            aggregations = new InternalAggregations(newAggs);
+        }
+        return aggregations;
+    }
+
+    /**
+     * Returns a new consumer for the query results of a search request on the given number of shards.
+     *
+     * @param batchedReduceSize the number of aggregations to buffer before they are reduced to a single partial result
+     */
+    public QueryResultConsumer newQueryResultConsumer(int batchedReduceSize, int numShards) {
+        return new QueryResultConsumer(Math.min(batchedReduceSize, numShards));
+    }
+
+    /**
+     * Takes the aggregations of the query results of the shards while they are received and reduces them to a partial result
+     * whenever <code>bufferSize</code> of them are buffered, so that the coordinating node doesn't have to hold the aggregations
+     * of all shards at the same time. The final reduce happens in
+     * {@link #merge(boolean, ScoreDoc[], AtomicArray, AtomicArray, QueryResultConsumer)}.
+     */
+    public final class QueryResultConsumer {
+        private final InternalAggregations[] buffer;
+        private int index;
+        private int numReducePhases;
+        private Exception failure;
+
+        private QueryResultConsumer(int bufferSize) {
+            if (bufferSize < 2) {
+                bufferSize = 2;
+            }
+            buffer = new InternalAggregations[bufferSize];
+        }
+
+        /**
+         * Takes the aggregations of the given query result, if it has any, and reduces the buffered aggregations if the buffer is
+         * full. A failure of a partial reduce is rethrown by the final reduce.
+         */
+        public synchronized void consume(QuerySearchResult result) {
+            if (result.hasAggs() == false) {
+                return;
+            }
+            final InternalAggregations aggregations = result.consumeAggs();
+            if (failure != null) {
+                // the search fails anyway, no need to keep the aggregations
+                return;
+            }
+            if (index == buffer.length) {
+                try {
+                    final InternalAggregations reducedAggs = reduceAggs(Arrays.asList(buffer), null, false);
+                    Arrays.fill(buffer, null);
+                    numReducePhases++;
+                    buffer[0] = reducedAggs;
+                    index = 1;
+                } catch (Exception e) {
+                    failure = e;
+                    Arrays.fill(buffer, null);
+                    index = 0;
+                    return;
+                }
+            }
+            buffer[index++] = aggregations;
+        }
+
+        /**
+         * Returns the number of partial reduces that were executed so far.
+         */
+        public synchronized int getNumReducePhases() {
+            return numReducePhases;
+        }
+
+        private synchronized List<InternalAggregations> consumeAggs() {
+            if (failure != null) {
+                throw ExceptionsHelper.convertToRuntime(failure);
+            }
+            List<InternalAggregations> aggregationsList = new ArrayList<>(Arrays.asList(buffer).subList(0, index));
+            Arrays.fill(buffer, null);
+            index = 0;
+            return aggregationsList;
+        }
+    }
+
     /**
      * returns the number of top results to be considered across all shards
      */
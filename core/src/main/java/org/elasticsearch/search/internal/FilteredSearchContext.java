@@ -340,6 +340,16 @@ public abstract class FilteredSearchContext extends SearchContext {
         return in.trackScores();
     }
 
+    @Override
+    public SearchContext trackTotalHits(boolean trackTotalHits) {
+        return in.trackTotalHits(trackTotalHits);
+    }
+
+    @Override
+    public boolean trackTotalHits() {
+        return in.trackTotalHits();
+    }
+
     @Override
     public SearchContext searchAfter(FieldDoc searchAfter) {
         return in.searchAfter(searchAfter);
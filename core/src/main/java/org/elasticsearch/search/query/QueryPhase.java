@@ -25,6 +25,7 @@ import org.apache.lucene.queries.MinDocQuery;
 import org.apache.lucene.search.BooleanClause;
 import org.apache.lucene.search.BooleanQuery;
 import org.apache.lucene.search.Collector;
+import org.apache.lucene.search.CollectorManager;
 import org.apache.lucene.search.ConstantScoreQuery;
 import org.apache.lucene.search.FieldDoc;
 import org.apache.lucene.search.IndexSearcher;
@@ -38,6 +39,7 @@ import org.apache.lucene.search.TimeLimitingCollector;
 import org.apache.lucene.search.TopDocs;
 import org.apache.lucene.search.TopDocsCollector;
 import org.apache.lucene.search.TopFieldCollector;
+import org.apache.lucene.search.TopFieldDocs;
 import org.apache.lucene.search.TopScoreDocCollector;
 import org.apache.lucene.search.TotalHitCountCollector;
 import org.apache.lucene.search.Weight;
@@ -45,11 +47,16 @@ import org.elasticsearch.action.search.SearchType;
 import org.elasticsearch.common.lucene.Lucene;
 import org.elasticsearch.common.lucene.MinimumScoreCollector;
 import org.elasticsearch.common.lucene.search.FilteredCollector;
+import org.elasticsearch.common.Nullable;
 import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.util.concurrent.ParallelBatchRunner;
+import org.elasticsearch.index.IndexSettings;
+import org.elasticsearch.index.IndexSortConfig;
 import org.elasticsearch.search.DocValueFormat;
 import org.elasticsearch.search.SearchPhase;
 import org.elasticsearch.search.SearchService;
 import org.elasticsearch.search.aggregations.AggregationPhase;
+import org.elasticsearch.search.internal.ContextIndexSearcher;
 import org.elasticsearch.search.internal.ScrollContext;
 import org.elasticsearch.search.internal.SearchContext;
 import org.elasticsearch.search.profile.ProfileShardResult;
@@ -60,12 +67,17 @@ import org.elasticsearch.search.rescore.RescorePhase;
 import org.elasticsearch.search.rescore.RescoreSearchContext;
 import org.elasticsearch.search.sort.SortAndFormats;
 import org.elasticsearch.search.suggest.SuggestPhase;
+import org.elasticsearch.threadpool.ThreadPool;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
 
 /**
  *
@@ -75,11 +87,13 @@ public class QueryPhase implements SearchPhase {
     private final AggregationPhase aggregationPhase;
     private final SuggestPhase suggestPhase;
     private RescorePhase rescorePhase;
+    private final ThreadPool threadPool;
 
-    public QueryPhase(Settings settings) {
+    public QueryPhase(Settings settings, ThreadPool threadPool) {
         this.aggregationPhase = new AggregationPhase();
         this.suggestPhase = new SuggestPhase(settings);
         this.rescorePhase = new RescorePhase(settings);
+        this.threadPool = threadPool;
     }
 
     @Override
@@ -102,7 +116,12 @@ public class QueryPhase implements SearchPhase {
         // here to make sure it happens during the QUERY phase
         aggregationPhase.preProcess(searchContext);
 
-        boolean rescore = execute(searchContext, searchContext.searcher());
+        final Executor executor = threadPool.executor(ThreadPool.Names.SEARCH_WORKER);
+        final IndexSettings indexSettings = searchContext.indexShard().indexSettings();
+        final IndexSortConfig indexSortConfig = indexSettings.getIndexSortConfig();
+        final Sort indexSort = indexSortConfig.hasIndexSort() ? searchContext.indexShard().getIndexSort() : null;
+        boolean rescore = execute(searchContext, searchContext.searcher(), executor, indexSettings.getSearchConcurrency(),
+            indexSortConfig, indexSort);
 
         if (rescore) { // only if we do a regular search
             rescorePhase.execute(searchContext);
@@ -135,6 +154,27 @@ public class QueryPhase implements SearchPhase {
      * @return whether the rescoring phase should be executed
      */
     static boolean execute(SearchContext searchContext, final IndexSearcher searcher) throws QueryPhaseExecutionException {
+        return execute(searchContext, searcher, null, 1, null, null);
+    }
+
+    /**
+     * Like {@link #execute(SearchContext, IndexSearcher)}, but splits the segments into up to <code>concurrency</code> slices that are
+     * searched concurrently, if the search allows for it, see {@link #canSearchConcurrently(SearchContext, IndexSearcher, int)}, and
+     * stops collecting the hits of a segment early if the segment is sorted by the search sort, see
+     * {@link #canEarlyTerminate(SearchContext, IndexSortConfig, Sort)}.
+     * @param executor the executor that slices are searched on, in addition to the calling thread
+     * @param indexSortConfig the sort of the segments of the index, or <code>null</code> if it is unknown
+     * @param indexSort the lucene sort that <code>indexSortConfig</code> builds for the mappings of the index, which sorted segments
+     *                  report as their {@link org.apache.lucene.index.LeafReader#getIndexSort() index sort}
+     * @return whether the rescoring phase should be executed
+     */
+    static boolean execute(SearchContext searchContext, final IndexSearcher searcher, Executor executor, int concurrency,
+                           @Nullable IndexSortConfig indexSortConfig, @Nullable Sort indexSort) throws QueryPhaseExecutionException {
+        final boolean earlyTerminate = canEarlyTerminate(searchContext, indexSortConfig, indexSort);
+        // a search that terminates early only collects the first hits of each segment, which isn't worth splitting up
+        if (earlyTerminate == false && canSearchConcurrently(searchContext, searcher, concurrency)) {
+            return executeConcurrently(searchContext, (ContextIndexSearcher) searcher, executor, concurrency);
+        }
         QuerySearchResult queryResult = searchContext.queryResult();
         queryResult.searchTimedOut(false);
 
@@ -152,6 +192,7 @@ public class QueryPhase implements SearchPhase {
 
             Collector collector;
             Callable<TopDocs> topDocsCallable;
+            Lucene.SegmentEarlyTerminatingCollector segmentTerminatingCollector = null;
             DocValueFormat[] sortValueFormats = new DocValueFormat[0];
 
             assert query == searcher.rewrite(query); // already rewritten
@@ -218,6 +259,12 @@ public class QueryPhase implements SearchPhase {
                     topDocsCollector = TopScoreDocCollector.create(numDocs, after);
                 }
                 collector = topDocsCollector;
+                if (earlyTerminate) {
+                    // the documents of merged segments are sorted by the search sort, so the documents that follow the first
+                    // numDocs matches of such a segment can't make it into the top docs
+                    segmentTerminatingCollector = Lucene.wrapSegmentEarlyTerminatingCollector(topDocsCollector, indexSort, numDocs);
+                    collector = segmentTerminatingCollector;
+                }
                 if (doProfile) {
                     collector = new InternalProfileCollector(collector, CollectorResult.REASON_SEARCH_TOP_HITS, Collections.emptyList());
                 }
@@ -312,37 +359,12 @@ public class QueryPhase implements SearchPhase {
             if (collector.getClass() == TotalHitCountCollector.class) {
                 // Optimize counts in simple cases to return in constant time
                 // instead of using a collector
-                while (true) {
-                    // remove wrappers that don't matter for counts
-                    // this is necessary so that we don't only optimize match_all
-                    // queries but also match_all queries that are nested in
-                    // a constant_score query
-                    if (query instanceof ConstantScoreQuery) {
-                        query = ((ConstantScoreQuery) query).getQuery();
-                    } else {
-                        break;
-                    }
-                }
-
-                if (query.getClass() == MatchAllDocsQuery.class) {
-                    collector = null;
-                    topDocsCallable = new Callable<TopDocs>() {
-                        @Override
-                        public TopDocs call() throws Exception {
-                            int count = searcher.getIndexReader().numDocs();
-                            return new TopDocs(count, Lucene.EMPTY_SCORE_DOCS, 0);
-                        }
-                    };
-                } else if (query.getClass() == TermQuery.class && searcher.getIndexReader().hasDeletions() == false) {
-                    final Term term = ((TermQuery) query).getTerm();
+                final int count = shortcutTotalHitCount(searcher, query);
+                if (count != -1) {
                     collector = null;
                     topDocsCallable = new Callable<TopDocs>() {
                         @Override
                         public TopDocs call() throws Exception {
-                            int count = 0;
-                            for (LeafReaderContext context : searcher.getIndexReader().leaves()) {
-                                count += context.reader().docFreq(term);
-                            }
                             return new TopDocs(count, Lucene.EMPTY_SCORE_DOCS, 0);
                         }
                     };
@@ -377,6 +399,10 @@ public class QueryPhase implements SearchPhase {
             } finally {
                 searchContext.clearReleasables(SearchContext.Lifetime.COLLECTION);
             }
+            if (segmentTerminatingCollector != null && segmentTerminatingCollector.terminatedEarly()) {
+                // the total hit count is a lower bound
+                queryResult.terminatedEarly(true);
+            }
             if (terminateAfterSet && queryResult.terminatedEarly() == null) {
                 queryResult.terminatedEarly(false);
             }
@@ -395,4 +421,257 @@ public class QueryPhase implements SearchPhase {
             throw new QueryPhaseExecutionException(searchContext, "Failed to execute main query", e);
         }
     }
+
+    /**
+     * Returns the number of documents that match the given query if it can be computed without collecting them, or <code>-1</code>.
+     */
+    private static int shortcutTotalHitCount(IndexSearcher searcher, Query query) throws IOException {
+        while (query instanceof ConstantScoreQuery) {
+            // remove wrappers that don't matter for counts
+            // this is necessary so that we don't only optimize match_all
+            // queries but also match_all queries that are nested in
+            // a constant_score query
+            query = ((ConstantScoreQuery) query).getQuery();
+        }
+        if (query.getClass() == MatchAllDocsQuery.class) {
+            return searcher.getIndexReader().numDocs();
+        } else if (query.getClass() == TermQuery.class && searcher.getIndexReader().hasDeletions() == false) {
+            final Term term = ((TermQuery) query).getTerm();
+            int count = 0;
+            for (LeafReaderContext context : searcher.getIndexReader().leaves()) {
+                count += context.reader().docFreq(term);
+            }
+            return count;
+        }
+        return -1;
+    }
+
+    /**
+     * Returns whether the collection of the top docs of a sorted segment can stop after the first <code>from + size</code> hits of
+     * the segment. This is the case if the total hit count isn't needed and the search sort is a prefix of the index sort, see
+     * {@link IndexSortConfig#isPrefixOf(Sort)}. Scroll and search_after searches skip the hits of the previous pages which
+     * would count towards the first hits.
+     */
+    static boolean canEarlyTerminate(SearchContext searchContext, @Nullable IndexSortConfig indexSortConfig, @Nullable Sort indexSort) {
+        if (indexSortConfig == null || indexSortConfig.hasIndexSort() == false || indexSort == null) {
+            return false;
+        }
+        if (searchContext.trackTotalHits() || searchContext.size() == 0 || searchContext.sort() == null) {
+            return false;
+        }
+        if (searchContext.scrollContext() != null || searchContext.searchAfter() != null) {
+            return false;
+        }
+        return indexSortConfig.isPrefixOf(searchContext.sort().sort);
+    }
+
+    /**
+     * Returns whether the segments can be split into slices that are searched concurrently. Scroll searches keep state across
+     * rounds that is computed over all segments, profiles and <code>terminate_after</code> are defined over a single collector and
+     * aggregations must be able to reduce the results of the slices, see
+     * {@link org.elasticsearch.search.aggregations.AggregatorFactories#supportsConcurrentCollection()}.
+     */
+    static boolean canSearchConcurrently(SearchContext searchContext, IndexSearcher searcher, int concurrency) {
+        if (concurrency <= 1 || searcher instanceof ContextIndexSearcher == false || searcher.getIndexReader().leaves().size() <= 1) {
+            return false;
+        }
+        if (searchContext.scrollContext() != null || searchContext.getProfilers() != null
+                || searchContext.terminateAfter() != SearchContext.DEFAULT_TERMINATE_AFTER) {
+            return false;
+        }
+        for (Class<?> queryCollector : searchContext.queryCollectors().keySet()) {
+            if (queryCollector != AggregationPhase.class) {
+                return false;
+            }
+        }
+        return searchContext.aggregations() == null || searchContext.aggregations().factories().supportsConcurrentCollection();
+    }
+
+    /**
+     * Splits the given leaves into at most <code>maxSlices</code> slices of contiguous leaves with similar numbers of documents.
+     * Merging the top docs of slices that are contiguous and in order breaks ties by doc id, like a sequential search does.
+     */
+    static List<List<LeafReaderContext>> slices(List<LeafReaderContext> leaves, int maxSlices) {
+        final int numSlices = Math.min(maxSlices, leaves.size());
+        long totalMaxDoc = 0;
+        for (LeafReaderContext leaf : leaves) {
+            totalMaxDoc += leaf.reader().maxDoc();
+        }
+        final List<List<LeafReaderContext>> slices = new ArrayList<>(numSlices);
+        int start = 0;
+        long maxDoc = 0;
+        for (int i = 0; i < leaves.size(); i++) {
+            maxDoc += leaves.get(i).reader().maxDoc();
+            final int remainingSlices = numSlices - slices.size() - 1;
+            final int remainingLeaves = leaves.size() - i - 1;
+            if (remainingLeaves == 0
+                    || (remainingSlices > 0
+                        && (remainingLeaves == remainingSlices || maxDoc * numSlices >= totalMaxDoc * (slices.size() + 1)))) {
+                slices.add(leaves.subList(start, i + 1));
+                start = i + 1;
+            }
+        }
+        return slices;
+    }
+
+    private static boolean executeConcurrently(SearchContext searchContext, ContextIndexSearcher searcher, Executor executor,
+                                               int concurrency) throws QueryPhaseExecutionException {
+        QuerySearchResult queryResult = searchContext.queryResult();
+        queryResult.searchTimedOut(false);
+        boolean rescore = false;
+        try {
+            queryResult.from(searchContext.from());
+            queryResult.size(searchContext.size());
+
+            final Query query = searchContext.query();
+            assert query == searcher.rewrite(query); // already rewritten
+
+            if (searchContext.size() == 0 && searchContext.queryCollectors().isEmpty() && searchContext.parsedPostFilter() == null
+                    && searchContext.minimumScore() == null) {
+                final int count = shortcutTotalHitCount(searcher, query);
+                if (count != -1) {
+                    queryResult.topDocs(new TopDocs(count, Lucene.EMPTY_SCORE_DOCS, 0), new DocValueFormat[0]);
+                    return false;
+                }
+            }
+
+            final CollectorManager<?, TopDocs> topDocsManager;
+            DocValueFormat[] sortValueFormats = new DocValueFormat[0];
+            if (searchContext.size() == 0) { // no matter what the value of from is
+                topDocsManager = new CollectorManager<TotalHitCountCollector, TopDocs>() {
+                    @Override
+                    public TotalHitCountCollector newCollector() {
+                        return new TotalHitCountCollector();
+                    }
+
+                    @Override
+                    public TopDocs reduce(Collection<TotalHitCountCollector> collectors) {
+                        int totalHits = 0;
+                        for (TotalHitCountCollector collector : collectors) {
+                            totalHits += collector.getTotalHits();
+                        }
+                        return new TopDocs(totalHits, Lucene.EMPTY_SCORE_DOCS, 0);
+                    }
+                };
+            } else {
+                final int totalNumDocs = searcher.getIndexReader().numDocs();
+                // top collectors don't like a size of 0
+                int numDocs = Math.max(1, Math.min(searchContext.from() + searchContext.size(), totalNumDocs));
+                if (searchContext.sort() != null) {
+                    final Sort sort = searchContext.sort().sort;
+                    final int topN = numDocs;
+                    final FieldDoc after = searchContext.searchAfter();
+                    final boolean trackScores = searchContext.trackScores();
+                    topDocsManager = new CollectorManager<TopFieldCollector, TopDocs>() {
+                        @Override
+                        public TopFieldCollector newCollector() throws IOException {
+                            return TopFieldCollector.create(sort, topN, after, true, trackScores, trackScores);
+                        }
+
+                        @Override
+                        public TopDocs reduce(Collection<TopFieldCollector> collectors) throws IOException {
+                            final TopFieldDocs[] sliceTopDocs = new TopFieldDocs[collectors.size()];
+                            int i = 0;
+                            for (TopFieldCollector collector : collectors) {
+                                sliceTopDocs[i++] = (TopFieldDocs) collector.topDocs();
+                            }
+                            return TopDocs.merge(sort, topN, sliceTopDocs);
+                        }
+                    };
+                    sortValueFormats = searchContext.sort().formats;
+                } else {
+                    rescore = !searchContext.rescore().isEmpty();
+                    for (RescoreSearchContext rescoreContext : searchContext.rescore()) {
+                        numDocs = Math.max(rescoreContext.window(), numDocs);
+                    }
+                    final int topN = numDocs;
+                    final ScoreDoc after = searchContext.searchAfter();
+                    topDocsManager = new CollectorManager<TopScoreDocCollector, TopDocs>() {
+                        @Override
+                        public TopScoreDocCollector newCollector() {
+                            return TopScoreDocCollector.create(topN, after);
+                        }
+
+                        @Override
+                        public TopDocs reduce(Collection<TopScoreDocCollector> collectors) throws IOException {
+                            final TopDocs[] sliceTopDocs = new TopDocs[collectors.size()];
+                            int i = 0;
+                            for (TopScoreDocCollector collector : collectors) {
+                                sliceTopDocs[i++] = collector.topDocs();
+                            }
+                            return TopDocs.merge(topN, sliceTopDocs);
+                        }
+                    };
+                }
+            }
+
+            final List<List<LeafReaderContext>> slices = slices(searcher.getIndexReader().leaves(), concurrency);
+            queryResult.topDocs(searchSlices(searchContext, searcher, query, slices, topDocsManager, executor), sortValueFormats);
+            return rescore;
+        } catch (Exception e) {
+            throw new QueryPhaseExecutionException(searchContext, "Failed to execute main query", e);
+        }
+    }
+
+    /**
+     * Searches each slice with its own collectors, the calling thread taking part, and reduces the top docs of the slices. The first
+     * slice collects into the aggregators of the search, the others into aggregators of their own that the aggregation phase reduces.
+     */
+    private static <C extends Collector> TopDocs searchSlices(SearchContext searchContext, ContextIndexSearcher searcher, Query query,
+                                                              List<List<LeafReaderContext>> slices,
+                                                              CollectorManager<C, TopDocs> topDocsManager,
+                                                              Executor executor) throws Exception {
+        final int numSlices = slices.size();
+        final List<C> topDocsCollectors = new ArrayList<>(numSlices);
+        final Collector[] collectors = new Collector[numSlices];
+        final Collector aggsCollector = searchContext.queryCollectors().get(AggregationPhase.class);
+        final Weight filterWeight = searchContext.parsedPostFilter() == null ? null
+            : searcher.createNormalizedWeight(searchContext.parsedPostFilter().query(), false);
+        final boolean timeoutSet = searchContext.timeout() != null && !searchContext.timeout().equals(SearchService.NO_TIMEOUT);
+        for (int i = 0; i < numSlices; i++) {
+            final C topDocsCollector = topDocsManager.newCollector();
+            topDocsCollectors.add(topDocsCollector);
+            Collector collector = topDocsCollector;
+            if (filterWeight != null) {
+                // the post filter only applies to the hits, not to the aggregations
+                collector = new FilteredCollector(collector, filterWeight);
+            }
+            if (aggsCollector != null) {
+                collector = MultiCollector.wrap(collector, i == 0 ? aggsCollector : AggregationPhase.createSliceCollector(searchContext));
+            }
+            if (searchContext.minimumScore() != null) {
+                collector = new MinimumScoreCollector(collector, searchContext.minimumScore());
+            }
+            if (timeoutSet) {
+                // throws TimeLimitingCollector.TimeExceededException when timeout has reached
+                collector = Lucene.wrapTimeLimitingCollector(collector, searchContext.timeEstimateCounter(),
+                    searchContext.timeout().millis());
+            }
+            collectors[i] = collector;
+        }
+        final Weight weight = searcher.createNormalizedWeight(query, collectors[0].needsScores());
+        final ParallelBatchRunner runner = new ParallelBatchRunner(command -> executor.execute(() -> {
+            // the search context is the current one of the thread that searches a slice, like on the search thread
+            SearchContext.setCurrent(searchContext);
+            try {
+                command.run();
+            } finally {
+                SearchContext.removeCurrent();
+            }
+        }), 1, numSlices - 1);
+        try {
+            runner.run(numSlices, slice -> {
+                try {
+                    searcher.search(slices.get(slice), weight, collectors[slice]);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (TimeLimitingCollector.TimeExceededException e) {
+            searchContext.queryResult().searchTimedOut(true);
+        } finally {
+            searchContext.clearReleasables(SearchContext.Lifetime.COLLECTION);
+        }
+        return topDocsManager.reduce(topDocsCollectors);
+    }
 }
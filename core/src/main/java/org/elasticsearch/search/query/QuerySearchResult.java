@@ -54,11 +54,14 @@ public class QuerySearchResult extends QuerySearchResultProvider {
     private TopDocs topDocs;
     private DocValueFormat[] sortValueFormats;
     private InternalAggregations aggregations;
+    private boolean hasAggs;
     private List<SiblingPipelineAggregator> pipelineAggregators;
     private Suggest suggest;
     private boolean searchTimedOut;
     private Boolean terminatedEarly = null;
     private ProfileShardResult profileShardResults;
+    private int nodeQueueSize = -1;
+    private long serviceTimeEWMA = -1;
 
     public QuerySearchResult() {
 
@@ -136,6 +139,27 @@ public class QuerySearchResult extends QuerySearchResultProvider {
 
     public void aggregations(InternalAggregations aggregations) {
         this.aggregations = aggregations;
+        hasAggs = aggregations != null;
+    }
+
+    /**
+     * Returns <code>true</code> if this result has aggregations, even if they were consumed already.
+     */
+    public boolean hasAggs() {
+        return hasAggs;
+    }
+
+    /**
+     * Returns the aggregations of this result and releases them, so that they can be garbage collected once they are reduced.
+     * Aggregations can only be consumed once.
+     */
+    public InternalAggregations consumeAggs() {
+        if (aggregations == null) {
+            throw new IllegalStateException("aggs already consumed");
+        }
+        InternalAggregations aggs = aggregations;
+        aggregations = null;
+        return aggs;
     }
 
     /**
@@ -154,6 +178,31 @@ public class QuerySearchResult extends QuerySearchResultProvider {
         this.profileShardResults = shardResults;
     }
 
+    /**
+     * The size of the search queue of the node that executed the query when it sent this result, or <code>-1</code> if unknown.
+     */
+    public int nodeQueueSize() {
+        return nodeQueueSize;
+    }
+
+    public QuerySearchResult nodeQueueSize(int nodeQueueSize) {
+        this.nodeQueueSize = nodeQueueSize;
+        return this;
+    }
+
+    /**
+     * The moving average of the time in nanoseconds that the node that executed the query takes to execute the query phase, or
+     * <code>-1</code> if unknown.
+     */
+    public long serviceTimeEWMA() {
+        return serviceTimeEWMA;
+    }
+
+    public QuerySearchResult serviceTimeEWMA(long serviceTimeEWMA) {
+        this.serviceTimeEWMA = serviceTimeEWMA;
+        return this;
+    }
+
     public List<SiblingPipelineAggregator> pipelineAggregators() {
         return pipelineAggregators;
     }
@@ -224,6 +273,7 @@ public class QuerySearchResult extends QuerySearchResultProvider {
         topDocs = readTopDocs(in);
         if (in.readBoolean()) {
             aggregations = InternalAggregations.readAggregations(in);
+            hasAggs = true;
         }
         pipelineAggregators = in.readNamedWriteableList(PipelineAggregator.class).stream().map(a -> (SiblingPipelineAggregator) a)
                 .collect(Collectors.toList());
@@ -236,6 +286,10 @@ public class QuerySearchResult extends QuerySearchResultProvider {
         if (in.getVersion().onOrAfter(Version.V_2_2_0) && in.readBoolean()) {
             profileShardResults = new ProfileShardResult(in);
         }
+        if (in.getVersion().onOrAfter(Version.V_6_0_0_alpha1)) {
+            nodeQueueSize = in.readInt();
+            serviceTimeEWMA = in.readZLong();
+        }
     }
 
     @Override
@@ -282,5 +336,9 @@ public class QuerySearchResult extends QuerySearchResultProvider {
                 profileShardResults.writeTo(out);
             }
         }
+        if (out.getVersion().onOrAfter(Version.V_6_0_0_alpha1)) {
+            out.writeInt(nodeQueueSize);
+            out.writeZLong(serviceTimeEWMA);
+        }
     }
 }
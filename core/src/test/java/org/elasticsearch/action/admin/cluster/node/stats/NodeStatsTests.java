@@ -26,6 +26,9 @@ import org.elasticsearch.common.transport.LocalTransportAddress;
 import org.elasticsearch.discovery.DiscoveryStats;
 import org.elasticsearch.discovery.zen.publish.PendingClusterStateStats;
 import org.elasticsearch.http.HttpStats;
+import org.elasticsearch.index.shard.ShardId;
+import org.elasticsearch.indices.IndexingBufferStats;
+import org.elasticsearch.indices.MergeIOStats;
 import org.elasticsearch.indices.breaker.AllCircuitBreakerStats;
 import org.elasticsearch.indices.breaker.CircuitBreakerStats;
 import org.elasticsearch.ingest.IngestStats;
@@ -33,6 +36,8 @@ import org.elasticsearch.monitor.fs.FsInfo;
 import org.elasticsearch.monitor.jvm.JvmStats;
 import org.elasticsearch.monitor.os.OsStats;
 import org.elasticsearch.monitor.process.ProcessStats;
+import org.elasticsearch.node.AdaptiveSelectionStats;
+import org.elasticsearch.node.ResponseCollectorService;
 import org.elasticsearch.script.ScriptStats;
 import org.elasticsearch.test.ESTestCase;
 import org.elasticsearch.test.VersionUtils;
@@ -240,6 +245,7 @@ public class NodeStatsTests extends ESTestCase {
                     assertEquals(totalStats.getIngestCurrent(), deserializedIngestStats.getTotalStats().getIngestCurrent());
                     assertEquals(totalStats.getIngestFailedCount(), deserializedIngestStats.getTotalStats().getIngestFailedCount());
                     assertEquals(totalStats.getIngestTimeInMillis(), deserializedIngestStats.getTotalStats().getIngestTimeInMillis());
+                    assertEquals(totalStats.getIngestSizeInBytes(), deserializedIngestStats.getTotalStats().getIngestSizeInBytes());
                     assertEquals(ingestStats.getStatsPerPipeline().size(), deserializedIngestStats.getStatsPerPipeline().size());
                     for (Map.Entry<String, IngestStats.Stats> entry : ingestStats.getStatsPerPipeline().entrySet()) {
                         IngestStats.Stats stats = entry.getValue();
@@ -247,9 +253,66 @@ public class NodeStatsTests extends ESTestCase {
                         assertEquals(stats.getIngestFailedCount(), deserializedStats.getIngestFailedCount());
                         assertEquals(stats.getIngestTimeInMillis(), deserializedStats.getIngestTimeInMillis());
                         assertEquals(stats.getIngestCurrent(), deserializedStats.getIngestCurrent());
+                        assertEquals(stats.getIngestSizeInBytes(), deserializedStats.getIngestSizeInBytes());
                         assertEquals(stats.getIngestCount(), deserializedStats.getIngestCount());
                     }
                 }
+                MergeIOStats mergeIOStats = nodeStats.getMergeIOStats();
+                MergeIOStats deserializedMergeIOStats = deserializedNodeStats.getMergeIOStats();
+                if (mergeIOStats == null) {
+                    assertNull(deserializedMergeIOStats);
+                } else {
+                    assertEquals(mergeIOStats.getDevices().size(), deserializedMergeIOStats.getDevices().size());
+                    for (int i = 0; i < mergeIOStats.getDevices().size(); i++) {
+                        MergeIOStats.DeviceStats device = mergeIOStats.getDevices().get(i);
+                        MergeIOStats.DeviceStats deserializedDevice = deserializedMergeIOStats.getDevices().get(i);
+                        assertEquals(device.getDeviceName(), deserializedDevice.getDeviceName());
+                        assertEquals(device.getShards(), deserializedDevice.getShards());
+                        assertEquals(device.getCurrentThrottledMerges(), deserializedDevice.getCurrentThrottledMerges());
+                        assertEquals(device.getBudgetBytesPerSec(), deserializedDevice.getBudgetBytesPerSec());
+                        assertEquals(device.getMergeRateBytesPerSec(), deserializedDevice.getMergeRateBytesPerSec());
+                        assertEquals(device.getThroughputBytesPerSec(), deserializedDevice.getThroughputBytesPerSec());
+                        assertEquals(device.getUtilization(), deserializedDevice.getUtilization(), 0.0);
+                        assertEquals(device.getQueueDepth(), deserializedDevice.getQueueDepth(), 0.0);
+                    }
+                }
+                IndexingBufferStats indexingBufferStats = nodeStats.getIndexingBufferStats();
+                IndexingBufferStats deserializedIndexingBufferStats = deserializedNodeStats.getIndexingBufferStats();
+                if (indexingBufferStats == null) {
+                    assertNull(deserializedIndexingBufferStats);
+                } else {
+                    assertEquals(indexingBufferStats.getAllocation(), deserializedIndexingBufferStats.getAllocation());
+                    assertEquals(indexingBufferStats.getLimitInBytes(), deserializedIndexingBufferStats.getLimitInBytes());
+                    assertEquals(indexingBufferStats.getUsedInBytes(), deserializedIndexingBufferStats.getUsedInBytes());
+                    assertEquals(indexingBufferStats.getWritingInBytes(), deserializedIndexingBufferStats.getWritingInBytes());
+                    assertEquals(indexingBufferStats.getShards().size(), deserializedIndexingBufferStats.getShards().size());
+                    for (int i = 0; i < indexingBufferStats.getShards().size(); i++) {
+                        IndexingBufferStats.ShardStats shard = indexingBufferStats.getShards().get(i);
+                        IndexingBufferStats.ShardStats deserializedShard = deserializedIndexingBufferStats.getShards().get(i);
+                        assertEquals(shard.getShardId(), deserializedShard.getShardId());
+                        assertEquals(shard.getUsedInBytes(), deserializedShard.getUsedInBytes());
+                        assertEquals(shard.getWritingInBytes(), deserializedShard.getWritingInBytes());
+                        assertEquals(shard.getAllowanceInBytes(), deserializedShard.getAllowanceInBytes());
+                        assertEquals(shard.getIngestRateInBytesPerSec(), deserializedShard.getIngestRateInBytesPerSec());
+                    }
+                }
+                AdaptiveSelectionStats adaptiveStats = nodeStats.getAdaptiveSelectionStats();
+                AdaptiveSelectionStats deserializedAdaptiveStats = deserializedNodeStats.getAdaptiveSelectionStats();
+                if (adaptiveStats == null) {
+                    assertNull(deserializedAdaptiveStats);
+                } else {
+                    assertEquals(adaptiveStats.getOutgoingConnections(), deserializedAdaptiveStats.getOutgoingConnections());
+                    assertEquals(adaptiveStats.getRanks(), deserializedAdaptiveStats.getRanks());
+                    for (String nodeId : adaptiveStats.getComputedStats().keySet()) {
+                        ResponseCollectorService.ComputedNodeStats stats = adaptiveStats.getComputedStats().get(nodeId);
+                        ResponseCollectorService.ComputedNodeStats deserializedStats =
+                                deserializedAdaptiveStats.getComputedStats().get(nodeId);
+                        assertEquals(stats.getNodeId(), deserializedStats.getNodeId());
+                        assertEquals(stats.getQueueSize(), deserializedStats.getQueueSize());
+                        assertEquals(stats.getResponseTime(), deserializedStats.getResponseTime(), 0.0);
+                        assertEquals(stats.getServiceTime(), deserializedStats.getServiceTime(), 0.0);
+                    }
+                }
             }
         }
     }
@@ -347,18 +410,56 @@ public class NodeStatsTests extends ESTestCase {
         IngestStats ingestStats = null;
         if (frequently()) {
             IngestStats.Stats totalStats = new IngestStats.Stats(randomPositiveLong(), randomPositiveLong(), randomPositiveLong(),
-                    randomPositiveLong());
+                    randomPositiveLong(), randomPositiveLong());
 
             int numStatsPerPipeline = randomIntBetween(0, 10);
             Map<String, IngestStats.Stats> statsPerPipeline = new HashMap<>();
             for (int i = 0; i < numStatsPerPipeline; i++) {
                 statsPerPipeline.put(randomAsciiOfLengthBetween(3, 10), new IngestStats.Stats(randomPositiveLong(),
-                        randomPositiveLong(), randomPositiveLong(), randomPositiveLong()));
+                        randomPositiveLong(), randomPositiveLong(), randomPositiveLong(), randomPositiveLong()));
             }
             ingestStats = new IngestStats(totalStats, statsPerPipeline);
         }
+        MergeIOStats mergeIOStats = null;
+        if (frequently()) {
+            int numDevices = randomIntBetween(0, 4);
+            List<MergeIOStats.DeviceStats> devices = new ArrayList<>(numDevices);
+            for (int i = 0; i < numDevices; i++) {
+                devices.add(new MergeIOStats.DeviceStats(randomAsciiOfLengthBetween(3, 10), randomIntBetween(0, 100),
+                        randomIntBetween(0, 10), randomPositiveLong(), randomPositiveLong(), randomPositiveLong(), randomDouble(),
+                        randomDouble()));
+            }
+            mergeIOStats = new MergeIOStats(devices);
+        }
+        IndexingBufferStats indexingBufferStats = null;
+        if (frequently()) {
+            int numShards = randomIntBetween(0, 10);
+            List<IndexingBufferStats.ShardStats> shards = new ArrayList<>(numShards);
+            for (int i = 0; i < numShards; i++) {
+                shards.add(new IndexingBufferStats.ShardStats(new ShardId(randomAsciiOfLengthBetween(3, 10), "_na_", i),
+                        randomPositiveLong(), randomPositiveLong(), randomBoolean() ? -1 : randomPositiveLong(), randomPositiveLong()));
+            }
+            indexingBufferStats = new IndexingBufferStats(randomFrom("largest", "ingest_rate"), randomPositiveLong(),
+                    randomPositiveLong(), randomPositiveLong(), shards);
+        }
+        AdaptiveSelectionStats adaptiveSelectionStats = null;
+        if (frequently()) {
+            int numNodes = randomIntBetween(0, 10);
+            Map<String, Long> nodeConnections = new HashMap<>();
+            Map<String, ResponseCollectorService.ComputedNodeStats> nodeStats = new HashMap<>();
+            for (int i = 0; i < numNodes; i++) {
+                String nodeId = randomAsciiOfLengthBetween(3, 10);
+                if (randomBoolean()) {
+                    nodeConnections.put(nodeId, randomLongBetween(0, 100));
+                }
+                nodeStats.put(nodeId, new ResponseCollectorService.ComputedNodeStats(nodeId, numNodes, randomIntBetween(0, 1000),
+                        randomDoubleBetween(1, 1000000000, true), randomDoubleBetween(1, 1000000000, true)));
+            }
+            adaptiveSelectionStats = new AdaptiveSelectionStats(nodeConnections, nodeStats);
+        }
         //TODO NodeIndicesStats are not tested here, way too complicated to create, also they need to be migrated to Writeable yet
         return new NodeStats(node, randomPositiveLong(), null, osStats, processStats, jvmStats, threadPoolStats, fsInfo,
-                transportStats, httpStats, allCircuitBreakerStats, scriptStats, discoveryStats, ingestStats);
+                transportStats, httpStats, allCircuitBreakerStats, scriptStats, discoveryStats, ingestStats,
+                mergeIOStats, indexingBufferStats, adaptiveSelectionStats);
     }
 }
@@ -60,6 +60,15 @@ import static org.hamcrest.Matchers.nullValue;
 
 public class BulkWithUpdatesIT extends ESIntegTestCase {
 
+    @Override
+    protected Settings nodeSettings(int nodeOrdinal) {
+        return Settings.builder()
+            .put(super.nodeSettings(nodeOrdinal))
+            .put(TransportShardBulkAction.PARALLEL_PARSING_ENABLED_SETTING.getKey(), randomBoolean())
+            .put(TransportShardBulkAction.PARALLEL_PARSING_BATCH_SIZE_SETTING.getKey(), randomIntBetween(1, 16))
+            .build();
+    }
+
     @Override
     protected Collection<Class<? extends Plugin>> nodePlugins() {
         return Collections.singleton(CustomScriptPlugin.class);
@@ -55,9 +55,9 @@ public class BulkRequestModifierTests extends ESTestCase {
         int i = 0;
         Set<Integer> failedSlots = new HashSet<>();
         while (bulkRequestModifier.hasNext()) {
-            bulkRequestModifier.next();
+            IndexRequest indexRequest = (IndexRequest) bulkRequestModifier.next();
             if (randomBoolean()) {
-                bulkRequestModifier.markCurrentItemAsFailed(new RuntimeException());
+                bulkRequestModifier.markItemAsFailed(indexRequest, new RuntimeException());
                 failedSlots.add(i);
             }
             i++;
@@ -93,9 +93,9 @@ public class BulkRequestModifierTests extends ESTestCase {
 
         IngestActionFilter.BulkRequestModifier modifier = new IngestActionFilter.BulkRequestModifier(originalBulkRequest);
         for (int i = 0; modifier.hasNext(); i++) {
-            modifier.next();
+            IndexRequest indexRequest = (IndexRequest) modifier.next();
             if (i % 2 == 0) {
-                modifier.markCurrentItemAsFailed(new RuntimeException());
+                modifier.markItemAsFailed(indexRequest, new RuntimeException());
             }
         }
 
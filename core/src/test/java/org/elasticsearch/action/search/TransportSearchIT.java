@@ -19,13 +19,26 @@
 
 package org.elasticsearch.action.search;
 
+import org.elasticsearch.action.admin.indices.stats.IndicesStatsResponse;
+import org.elasticsearch.action.index.IndexRequestBuilder;
 import org.elasticsearch.cluster.metadata.IndexMetaData;
+import org.elasticsearch.index.query.QueryBuilders;
+import org.elasticsearch.search.aggregations.AggregationBuilders;
+import org.elasticsearch.search.aggregations.bucket.histogram.Histogram;
+import org.elasticsearch.search.aggregations.bucket.terms.Terms;
+import org.elasticsearch.search.aggregations.metrics.max.Max;
 import org.elasticsearch.test.ESIntegTestCase;
 
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
 
 import static org.elasticsearch.test.hamcrest.ElasticsearchAssertions.assertAcked;
+import static org.elasticsearch.test.hamcrest.ElasticsearchAssertions.assertSearchResponse;
 import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
 
 public class TransportSearchIT extends ESIntegTestCase {
 
@@ -69,4 +82,104 @@ public class TransportSearchIT extends ESIntegTestCase {
         }
     }
 
+    public void testBatchedReduce() throws Exception {
+        final int numShards = randomIntBetween(3, 10);
+        assertAcked(prepareCreate("test").setSettings(IndexMetaData.SETTING_NUMBER_OF_SHARDS, numShards)
+                .addMapping("type", "number", "type=long", "tag", "type=keyword"));
+        List<IndexRequestBuilder> docs = new ArrayList<>();
+        final int numDocs = randomIntBetween(50, 200);
+        for (int i = 0; i < numDocs; i++) {
+            docs.add(client().prepareIndex("test", "type", Integer.toString(i))
+                    .setSource("number", randomIntBetween(0, 100), "tag", "tag" + randomIntBetween(0, 20)));
+        }
+        indexRandom(true, docs);
+
+        SearchType searchType = randomFrom(SearchType.QUERY_THEN_FETCH, SearchType.DFS_QUERY_THEN_FETCH);
+        SearchResponse expected = search(searchType, SearchRequest.DEFAULT_BATCHED_REDUCE_SIZE);
+        SearchResponse actual = search(searchType, randomIntBetween(2, numShards - 1));
+        assertSearchResponse(expected);
+        assertSearchResponse(actual);
+        assertThat(actual.getHits().getTotalHits(), equalTo(expected.getHits().getTotalHits()));
+
+        Max expectedMax = expected.getAggregations().get("max");
+        Max actualMax = actual.getAggregations().get("max");
+        assertThat(actualMax.getValue(), equalTo(expectedMax.getValue()));
+
+        Terms expectedTerms = expected.getAggregations().get("tags");
+        Terms actualTerms = actual.getAggregations().get("tags");
+        assertThat(actualTerms.getBuckets().size(), equalTo(expectedTerms.getBuckets().size()));
+        for (int i = 0; i < expectedTerms.getBuckets().size(); i++) {
+            assertThat(actualTerms.getBuckets().get(i).getKey(), equalTo(expectedTerms.getBuckets().get(i).getKey()));
+            assertThat(actualTerms.getBuckets().get(i).getDocCount(), equalTo(expectedTerms.getBuckets().get(i).getDocCount()));
+        }
+
+        Histogram expectedHistogram = expected.getAggregations().get("histogram");
+        Histogram actualHistogram = actual.getAggregations().get("histogram");
+        assertThat(actualHistogram.getBuckets().size(), equalTo(expectedHistogram.getBuckets().size()));
+        for (int i = 0; i < expectedHistogram.getBuckets().size(); i++) {
+            assertThat(actualHistogram.getBuckets().get(i).getKey(), equalTo(expectedHistogram.getBuckets().get(i).getKey()));
+            assertThat(actualHistogram.getBuckets().get(i).getDocCount(),
+                    equalTo(expectedHistogram.getBuckets().get(i).getDocCount()));
+        }
+    }
+
+    public void testPreFilterShards() throws Exception {
+        final int numIndices = randomIntBetween(2, 5);
+        final long[] numDocsPerIndex = new long[numIndices];
+        List<IndexRequestBuilder> docs = new ArrayList<>();
+        for (int i = 0; i < numIndices; i++) {
+            assertAcked(prepareCreate("logs-" + i).setSettings(IndexMetaData.SETTING_NUMBER_OF_SHARDS, randomIntBetween(1, 3))
+                    .addMapping("type", "@timestamp", "type=date"));
+            numDocsPerIndex[i] = randomIntBetween(1, 20);
+            for (int j = 0; j < numDocsPerIndex[i]; j++) {
+                // each index holds a different month of 2016
+                docs.add(client().prepareIndex("logs-" + i, "type")
+                        .setSource("@timestamp", String.format(Locale.ROOT, "2016-%02d-%02d", i + 1, randomIntBetween(1, 28))));
+            }
+        }
+        indexRandom(true, docs);
+
+        final int month = randomIntBetween(0, numIndices - 1);
+        SearchResponse response = client().prepareSearch("logs-*")
+                .setPreFilterShardSize(1)
+                .setQuery(QueryBuilders.boolQuery().filter(QueryBuilders.rangeQuery("@timestamp")
+                        .gte(String.format(Locale.ROOT, "2016-%02d-01", month + 1))
+                        .lt(String.format(Locale.ROOT, "2016-%02d-01||+1M", month + 1))))
+                .get();
+        assertSearchResponse(response);
+        assertThat(response.getHits().getTotalHits(), equalTo(numDocsPerIndex[month]));
+        assertThat(response.getSuccessfulShards(), equalTo(response.getTotalShards()));
+
+        IndicesStatsResponse stats = client().admin().indices().prepareStats("logs-*").setSearch(true).get();
+        for (int i = 0; i < numIndices; i++) {
+            final long queryCount = stats.getIndex("logs-" + i).getTotal().getSearch().getTotal().getQueryCount();
+            if (i == month) {
+                assertThat(queryCount, greaterThan(0L));
+            } else {
+                assertThat("shards of [logs-" + i + "] can't match and shouldn't be searched", queryCount, equalTo(0L));
+            }
+        }
+
+        // no shard can match, but one of them is still searched to build the response
+        response = client().prepareSearch("logs-*")
+                .setPreFilterShardSize(1)
+                .setQuery(QueryBuilders.rangeQuery("@timestamp").gte("2017-01-01"))
+                .get();
+        assertSearchResponse(response);
+        assertThat(response.getHits().getTotalHits(), equalTo(0L));
+        assertThat(response.getSuccessfulShards(), equalTo(response.getTotalShards()));
+    }
+
+    private SearchResponse search(SearchType searchType, int batchedReduceSize) {
+        return client().prepareSearch("test")
+                .setSearchType(searchType)
+                .setBatchedReduceSize(batchedReduceSize)
+                .setSize(0)
+                .addAggregation(AggregationBuilders.max("max").field("number"))
+                .addAggregation(AggregationBuilders.terms("tags").field("tag").size(5).minDocCount(3))
+                .addAggregation(AggregationBuilders.histogram("histogram").field("number").interval(10).minDocCount(0)
+                        .subAggregation(AggregationBuilders.max("max").field("number")))
+                .get();
+    }
+
 }
@@ -0,0 +1,229 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.cluster.action.index;
+
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.admin.indices.mapping.put.PutMappingResponse;
+import org.elasticsearch.common.collect.Tuple;
+import org.elasticsearch.common.compress.CompressedXContent;
+import org.elasticsearch.common.settings.ClusterSettings;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.common.xcontent.XContentFactory;
+import org.elasticsearch.discovery.MasterNotDiscoveredException;
+import org.elasticsearch.index.Index;
+import org.elasticsearch.index.IndexService;
+import org.elasticsearch.index.mapper.DocumentMapper;
+import org.elasticsearch.index.mapper.Mapping;
+import org.elasticsearch.test.ESSingleNodeTestCase;
+import org.elasticsearch.threadpool.ThreadPool;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.not;
+
+public class MappingUpdatedActionTests extends ESSingleNodeTestCase {
+
+    private class RecordingMappingUpdatedAction extends MappingUpdatedAction {
+
+        final BlockingQueue<Tuple<Mapping, ActionListener<PutMappingResponse>>> requests = new LinkedBlockingQueue<>();
+
+        RecordingMappingUpdatedAction(Settings settings) {
+            super(settings, new ClusterSettings(settings, ClusterSettings.BUILT_IN_CLUSTER_SETTINGS),
+                getInstanceFromNode(ThreadPool.class));
+        }
+
+        @Override
+        void putMapping(Index index, String type, Mapping mappingUpdate, TimeValue timeout, ActionListener<PutMappingResponse> listener) {
+            requests.add(new Tuple<>(mappingUpdate, listener));
+        }
+
+        Tuple<Mapping, ActionListener<PutMappingResponse>> nextRequest() throws InterruptedException {
+            Tuple<Mapping, ActionListener<PutMappingResponse>> request = requests.poll(10, TimeUnit.SECONDS);
+            assertNotNull("expected a put mapping request", request);
+            return request;
+        }
+    }
+
+    private static PutMappingResponse acknowledged() {
+        return new PutMappingResponse(true) {};
+    }
+
+    private Index index;
+    private DocumentMapper mapper;
+
+    @Override
+    public void setUp() throws Exception {
+        super.setUp();
+        IndexService indexService = createIndex("test");
+        index = indexService.index();
+        mapper = indexService.mapperService().documentMapperParser().parse("type", new CompressedXContent(
+            XContentFactory.jsonBuilder().startObject().startObject("type").endObject().endObject().string()));
+    }
+
+    private Mapping update(String field, Object value) throws Exception {
+        Mapping update = mapper.parse("test", "type", "1", XContentFactory.jsonBuilder().startObject()
+            .field(field, value).endObject().bytes()).dynamicMappingsUpdate();
+        assertNotNull(update);
+        return update;
+    }
+
+    private Thread updateInBackground(MappingUpdatedAction action, Mapping update, AtomicReference<Exception> failure) {
+        Thread thread = new Thread(() -> {
+            try {
+                action.updateMappingOnMaster(index, "type", update);
+            } catch (Exception e) {
+                failure.set(e);
+            }
+        });
+        thread.start();
+        return thread;
+    }
+
+    public void testUpdatesAreCoalescedWhileARequestIsInFlight() throws Exception {
+        RecordingMappingUpdatedAction action = new RecordingMappingUpdatedAction(Settings.EMPTY);
+        AtomicReference<Exception> failure = new AtomicReference<>();
+        List<Thread> threads = new ArrayList<>();
+        threads.add(updateInBackground(action, update("first", 1), failure));
+        Tuple<Mapping, ActionListener<PutMappingResponse>> first = action.nextRequest();
+        assertThat(first.v1().toString(), containsString("first"));
+
+        final int coalesced = randomIntBetween(2, 5);
+        for (int i = 0; i < coalesced; i++) {
+            threads.add(updateInBackground(action, update("field" + i, "value"), failure));
+        }
+        assertBusy(() -> assertEquals(coalesced, action.waitingUpdates(index, "type")));
+        assertTrue(action.requests.isEmpty());
+
+        first.v2().onResponse(acknowledged());
+        Tuple<Mapping, ActionListener<PutMappingResponse>> second = action.nextRequest();
+        for (int i = 0; i < coalesced; i++) {
+            assertThat(second.v1().toString(), containsString("field" + i));
+        }
+        assertThat(second.v1().toString(), not(containsString("first")));
+        second.v2().onResponse(acknowledged());
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertNull(failure.get());
+        assertTrue(action.requests.isEmpty());
+        assertEquals(0, action.waitingUpdates(index, "type"));
+    }
+
+    public void testConflictingUpdateIsSentOnItsOwn() throws Exception {
+        RecordingMappingUpdatedAction action = new RecordingMappingUpdatedAction(Settings.EMPTY);
+        AtomicReference<Exception> failure = new AtomicReference<>();
+        List<Thread> threads = new ArrayList<>();
+        threads.add(updateInBackground(action, update("first", 1), failure));
+        Tuple<Mapping, ActionListener<PutMappingResponse>> first = action.nextRequest();
+
+        threads.add(updateInBackground(action, update("field", 1), failure));
+        assertBusy(() -> assertEquals(1, action.waitingUpdates(index, "type")));
+        // a string can not be merged into the long field that is waiting
+        threads.add(updateInBackground(action, update("field", "value"), failure));
+        Tuple<Mapping, ActionListener<PutMappingResponse>> conflicting = action.nextRequest();
+        assertThat(conflicting.v1().toString(), containsString("text"));
+        assertEquals(1, action.waitingUpdates(index, "type"));
+
+        conflicting.v2().onResponse(acknowledged());
+        first.v2().onResponse(acknowledged());
+        Tuple<Mapping, ActionListener<PutMappingResponse>> second = action.nextRequest();
+        assertThat(second.v1().toString(), containsString("long"));
+        second.v2().onResponse(acknowledged());
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertNull(failure.get());
+    }
+
+    public void testFailedBatchIsRetriedUpdateByUpdate() throws Exception {
+        RecordingMappingUpdatedAction action = new RecordingMappingUpdatedAction(Settings.EMPTY);
+        AtomicReference<Exception> failure = new AtomicReference<>();
+        List<Thread> threads = new ArrayList<>();
+        threads.add(updateInBackground(action, update("first", 1), failure));
+        Tuple<Mapping, ActionListener<PutMappingResponse>> first = action.nextRequest();
+        threads.add(updateInBackground(action, update("good", 1), failure));
+        threads.add(updateInBackground(action, update("bad", 1), failure));
+        assertBusy(() -> assertEquals(2, action.waitingUpdates(index, "type")));
+        first.v2().onResponse(acknowledged());
+
+        action.nextRequest().v2().onFailure(new IllegalArgumentException("rejected"));
+        // both updates are sent again, on their own
+        for (int i = 0; i < 2; i++) {
+            Tuple<Mapping, ActionListener<PutMappingResponse>> retry = action.nextRequest();
+            if (retry.v1().toString().contains("bad")) {
+                retry.v2().onFailure(new IllegalArgumentException("rejected"));
+            } else {
+                assertThat(retry.v1().toString(), containsString("good"));
+                retry.v2().onResponse(acknowledged());
+            }
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertNotNull(failure.get());
+        assertThat(failure.get(), instanceOf(ExecutionException.class));
+        assertEquals("rejected", failure.get().getCause().getMessage());
+    }
+
+    public void testMasterFailureOfBatchIsNotRetried() throws Exception {
+        RecordingMappingUpdatedAction action = new RecordingMappingUpdatedAction(Settings.EMPTY);
+        AtomicReference<Exception> failure = new AtomicReference<>();
+        List<Thread> threads = new ArrayList<>();
+        threads.add(updateInBackground(action, update("first", 1), failure));
+        Tuple<Mapping, ActionListener<PutMappingResponse>> first = action.nextRequest();
+        threads.add(updateInBackground(action, update("second", 1), failure));
+        threads.add(updateInBackground(action, update("third", 1), failure));
+        assertBusy(() -> assertEquals(2, action.waitingUpdates(index, "type")));
+        first.v2().onResponse(acknowledged());
+
+        action.nextRequest().v2().onFailure(new MasterNotDiscoveredException("no master"));
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        // all contributors see the failure of the batch, without sending their updates again
+        assertTrue(action.requests.isEmpty());
+        assertThat(failure.get(), instanceOf(ExecutionException.class));
+        assertThat(failure.get().getCause(), instanceOf(MasterNotDiscoveredException.class));
+    }
+
+    public void testFirstUpdateWaitsForTheWindow() throws Exception {
+        Settings settings = Settings.builder()
+            .put(MappingUpdatedAction.INDICES_MAPPING_DYNAMIC_UPDATE_WINDOW_SETTING.getKey(), "200ms").build();
+        RecordingMappingUpdatedAction action = new RecordingMappingUpdatedAction(settings);
+        AtomicReference<Exception> failure = new AtomicReference<>();
+        final long start = System.nanoTime();
+        Thread thread = updateInBackground(action, update("first", 1), failure);
+        Tuple<Mapping, ActionListener<PutMappingResponse>> first = action.nextRequest();
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), greaterThanOrEqualTo(200L));
+        first.v2().onResponse(acknowledged());
+        thread.join();
+        assertNull(failure.get());
+    }
+}
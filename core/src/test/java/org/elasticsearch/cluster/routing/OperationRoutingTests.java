@@ -26,8 +26,10 @@ import org.elasticsearch.cluster.routing.allocation.decider.AwarenessAllocationD
 import org.elasticsearch.cluster.service.ClusterService;
 import org.elasticsearch.common.settings.ClusterSettings;
 import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.TimeValue;
 import org.elasticsearch.index.Index;
 import org.elasticsearch.index.shard.ShardId;
+import org.elasticsearch.node.ResponseCollectorService;
 import org.elasticsearch.test.ClusterServiceUtils;
 import org.elasticsearch.test.ESTestCase;
 import org.elasticsearch.threadpool.TestThreadPool;
@@ -35,6 +37,7 @@ import org.elasticsearch.threadpool.TestThreadPool;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
@@ -291,4 +294,55 @@ public class OperationRoutingTests extends ESTestCase{
         }
     }
 
+    public void testAdaptiveReplicaSelection() throws Exception {
+        TestThreadPool threadPool = null;
+        ClusterService clusterService = null;
+        try {
+            threadPool = new TestThreadPool("testAdaptiveReplicaSelection");
+            clusterService = ClusterServiceUtils.createClusterService(threadPool);
+            final String indexName = "test";
+            ClusterServiceUtils.setState(clusterService, ClusterStateCreationUtils.stateWithAssignedPrimariesAndOneReplica(indexName, 1));
+            final ResponseCollectorService collector = new ResponseCollectorService(Settings.EMPTY, clusterService);
+            final OperationRouting opRouting = new OperationRouting(
+                Settings.builder().put(OperationRouting.USE_ADAPTIVE_REPLICA_SELECTION_SETTING.getKey(), true).build(),
+                new ClusterSettings(Settings.EMPTY, ClusterSettings.BUILT_IN_CLUSTER_SETTINGS));
+            final String[] indexNames = new String[] { indexName };
+            final Map<String, Long> outstandingRequests = new HashMap<>();
+
+            // without statistics both copies are returned
+            GroupShardsIterator groupIterator = opRouting.searchShards(clusterService.state(), indexNames, null, null, collector,
+                outstandingRequests);
+            assertThat(groupIterator.size(), equalTo(1));
+            ShardIterator shardIterator = groupIterator.iterator().next();
+            assertThat(shardIterator.size(), equalTo(2));
+            final ShardRouting first = shardIterator.nextOrNull();
+            final ShardRouting second = shardIterator.nextOrNull();
+            assertNotEquals(first.currentNodeId(), second.currentNodeId());
+            // the outstanding requests of the caller are left alone
+            assertTrue(outstandingRequests.isEmpty());
+
+            // the node with the shorter queue and the faster responses wins
+            collector.addNodeStatistics(first.currentNodeId(), 10, TimeValue.timeValueMillis(200).nanos(),
+                TimeValue.timeValueMillis(150).nanos());
+            collector.addNodeStatistics(second.currentNodeId(), 1, TimeValue.timeValueMillis(20).nanos(),
+                TimeValue.timeValueMillis(15).nanos());
+            for (int i = 0; i < 3; i++) {
+                groupIterator = opRouting.searchShards(clusterService.state(), indexNames, null, null, collector, outstandingRequests);
+                shardIterator = groupIterator.iterator().next();
+                assertThat(shardIterator.nextOrNull().currentNodeId(), equalTo(second.currentNodeId()));
+                assertThat(shardIterator.nextOrNull().currentNodeId(), equalTo(first.currentNodeId()));
+            }
+
+            // the losing node catches up with the winner until it gets picked again
+            boolean switched = false;
+            for (int i = 0; i < 100 && switched == false; i++) {
+                groupIterator = opRouting.searchShards(clusterService.state(), indexNames, null, null, collector, outstandingRequests);
+                switched = groupIterator.iterator().next().nextOrNull().currentNodeId().equals(first.currentNodeId());
+            }
+            assertTrue("the slow node never got another request", switched);
+        } finally {
+            IOUtils.close(clusterService);
+            terminate(threadPool);
+        }
+    }
 }
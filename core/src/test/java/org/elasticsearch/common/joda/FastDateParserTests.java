@@ -0,0 +1,147 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.elasticsearch.common.joda;
+
+import org.elasticsearch.test.ESTestCase;
+import org.joda.time.DateTimeZone;
+import org.joda.time.format.DateTimeFormatter;
+import org.joda.time.format.ISODateTimeFormat;
+import org.joda.time.format.StrictISODateTimeFormat;
+
+import java.util.Locale;
+
+import static org.hamcrest.Matchers.equalTo;
+
+public class FastDateParserTests extends ESTestCase {
+
+    public void testDateOptionalTime() {
+        assertThat(FastDateParser.parseDateOptionalTime("1970-01-01", DateTimeZone.UTC), equalTo(0L));
+        assertThat(FastDateParser.parseDateOptionalTime("2016-05-01T12:34:56.789Z", DateTimeZone.UTC), equalTo(1462106096789L));
+        assertThat(FastDateParser.parseDateOptionalTime("2016-05-01T14:34:56.789+02:00", DateTimeZone.UTC), equalTo(1462106096789L));
+        assertThat(FastDateParser.parseDateOptionalTime("2016-05-01T12:34:56.789123Z", DateTimeZone.UTC), equalTo(1462106096789L));
+        assertThat(FastDateParser.parseDateOptionalTime("2016-05-01T12:34:56.789", DateTimeZone.forOffsetHours(-2)),
+            equalTo(1462113296789L));
+        assertThat(FastDateParser.parseDateOptionalTime("1969-12-31T23:59:59.999Z", DateTimeZone.UTC), equalTo(-1L));
+    }
+
+    public void testDateOptionalTimeUnsupported() {
+        for (String text : new String[] {
+            // valid dates that are left to joda
+            "2016", "2016-05", "2016-W17", "2016-122", "+2016-05-01", "2016-05-01T12", "2016-05-01T12:34:56,789", "2016-05-01t12:34",
+            "2016-05-01T12:34:56+02", "2016-05-01T12:34:56+0200", "2016-05-01T12:34.5",
+            // invalid dates
+            "", "2016-5-1", "2016-13-01", "2016-00-01", "2015-02-29", "2016-04-31", "2016-05-01T", "2016-05-01T24:00",
+            "2016-05-01T12:60", "2016-05-01T12:34:60", "2016-05-01T12:34:56.", "2016-05-01T12:34:56.1234567890",
+            "2016-05-01T12:34:56Z ", "2016-05-01T12:34:56+24:00", "2016-05-01Z", "2016-05-01 12:34:56", "abcd-ef-gh"}) {
+            assertThat(text, FastDateParser.parseDateOptionalTime(text, DateTimeZone.UTC), equalTo(FastDateParser.UNSUPPORTED));
+        }
+        // the offset of dates without one depends on the date for zones with daylight saving time
+        assertThat(FastDateParser.parseDateOptionalTime("2016-03-27T02:30", DateTimeZone.forID("Europe/Berlin")),
+            equalTo(FastDateParser.UNSUPPORTED));
+        assertThat(FastDateParser.parseDateOptionalTime("2016-03-27T02:30Z", DateTimeZone.forID("Europe/Berlin")),
+            equalTo(1459045800000L));
+    }
+
+    public void testDateOptionalTimeMatchesJoda() {
+        DateTimeZone zone = randomBoolean() ? DateTimeZone.UTC : DateTimeZone.forOffsetMillis(randomIntBetween(-23, 23) * 1800000);
+        DateTimeFormatter strict = StrictISODateTimeFormat.dateOptionalTimeParser().withZone(zone);
+        DateTimeFormatter lenient = ISODateTimeFormat.dateTimeParser().withZone(zone);
+        for (int i = 0; i < 1000; i++) {
+            String text = randomDate();
+            long millis = FastDateParser.parseDateOptionalTime(text, zone);
+            assertThat(text, millis, equalTo(strict.parseMillis(text)));
+            assertThat(text, millis, equalTo(lenient.parseMillis(text)));
+        }
+    }
+
+    public void testEpochMillis() {
+        assertThat(FastDateParser.parseEpochMillis("0"), equalTo(0L));
+        assertThat(FastDateParser.parseEpochMillis("1462106096789"), equalTo(1462106096789L));
+        assertThat(FastDateParser.parseEpochMillis("-1000"), equalTo(-1000L));
+        assertThat(FastDateParser.parseEpochMillis("999999999999999999"), equalTo(999999999999999999L));
+        for (String text : new String[] {"", "-", "+1000", "1000000000000000000", "12.5", "1e3", " 1"}) {
+            assertThat(text, FastDateParser.parseEpochMillis(text), equalTo(FastDateParser.UNSUPPORTED));
+        }
+    }
+
+    public void testFormatterParseMillisMatchesJoda() {
+        String format = randomFrom("strict_date_optional_time||epoch_millis", "strict_date_optional_time", "strictDateOptionalTime",
+            "date_optional_time", "epoch_millis");
+        FormatDateTimeFormatter formatter = Joda.forPattern(format, Locale.ROOT);
+        for (int i = 0; i < 1000; i++) {
+            final String text;
+            switch (randomInt(3)) {
+                case 0:
+                    text = randomDate();
+                    break;
+                case 1:
+                    text = Long.toString(randomLong() % 100000000000000L);
+                    break;
+                case 2:
+                    // four digit numbers are years, not epoch millis, for some formats
+                    text = (randomBoolean() ? "-" : "") + randomIntBetween(1000, 9999);
+                    break;
+                default:
+                    text = randomAsciiOfLengthBetween(1, 20);
+                    break;
+            }
+            Long expected;
+            try {
+                expected = formatter.parser().parseMillis(text);
+            } catch (IllegalArgumentException e) {
+                expected = null;
+            }
+            Long actual;
+            try {
+                actual = formatter.parseMillis(text);
+            } catch (IllegalArgumentException e) {
+                actual = null;
+            }
+            assertThat(format + " " + text, actual, equalTo(expected));
+        }
+    }
+
+    private static String randomDate() {
+        StringBuilder builder = new StringBuilder();
+        int month = randomIntBetween(1, 12);
+        builder.append(String.format(Locale.ROOT, "%04d-%02d-%02d", randomIntBetween(0, 9999), month, randomIntBetween(1, 28)));
+        if (randomBoolean()) {
+            builder.append(String.format(Locale.ROOT, "T%02d:%02d", randomIntBetween(0, 23), randomIntBetween(0, 59)));
+            if (randomBoolean()) {
+                builder.append(String.format(Locale.ROOT, ":%02d", randomIntBetween(0, 59)));
+                if (randomBoolean()) {
+                    builder.append('.');
+                    int digits = randomIntBetween(1, 9);
+                    for (int i = 0; i < digits; i++) {
+                        builder.append(randomIntBetween(0, 9));
+                    }
+                }
+            }
+            if (randomBoolean()) {
+                if (randomBoolean()) {
+                    builder.append('Z');
+                } else {
+                    builder.append(String.format(Locale.ROOT, "%s%02d:%02d", randomFrom("+", "-"), randomIntBetween(0, 23),
+                        randomIntBetween(0, 59)));
+                }
+            }
+        }
+        return builder.toString();
+    }
+}
@@ -191,4 +191,50 @@ public class VersionsTests extends ESTestCase {
         assertEquals(size, Versions.lookupStates.size());
         dir.close();
     }
+
+    /** Test that the batch lookup finds the same versions as looking up every uid on its own */
+    public void testLoadVersions() throws Exception {
+        Directory dir = newDirectory();
+        IndexWriter writer = new IndexWriter(dir, new IndexWriterConfig(Lucene.STANDARD_ANALYZER));
+        int numIds = randomIntBetween(1, 100);
+        int numOps = randomIntBetween(1, 300);
+        for (int i = 0; i < numOps; i++) {
+            String id = Integer.toString(randomInt(numIds - 1));
+            if (rarely()) {
+                writer.deleteDocuments(new Term(UidFieldMapper.NAME, id));
+            } else {
+                Document doc = new Document();
+                doc.add(new Field(UidFieldMapper.NAME, id, UidFieldMapper.Defaults.FIELD_TYPE));
+                doc.add(new NumericDocValuesField(VersionFieldMapper.NAME, i));
+                writer.updateDocument(new Term(UidFieldMapper.NAME, id), doc);
+            }
+            if (rarely()) {
+                // create more segments
+                writer.commit();
+            }
+        }
+        DirectoryReader reader = DirectoryReader.open(writer);
+        List<Term> terms = new ArrayList<>();
+        int numLookups = randomIntBetween(0, 200);
+        for (int i = 0; i < numLookups; i++) {
+            // include uids that sort before, after and in between the existing ones as well as duplicates
+            terms.add(new Term(UidFieldMapper.NAME, Integer.toString(randomIntBetween(-10, numIds + 10))));
+        }
+        long[] versions = Versions.loadVersions(reader, terms);
+        Versions.DocIdAndVersion[] docIdAndVersions = Versions.loadDocIdAndVersions(reader, terms);
+        assertThat(versions.length, equalTo(numLookups));
+        for (int i = 0; i < numLookups; i++) {
+            Versions.DocIdAndVersion expected = Versions.loadDocIdAndVersion(reader, terms.get(i));
+            assertThat(terms.get(i).text(), versions[i], equalTo(Versions.loadVersion(reader, terms.get(i))));
+            if (expected == null) {
+                assertThat(docIdAndVersions[i], nullValue());
+            } else {
+                assertThat(docIdAndVersions[i].docId, equalTo(expected.docId));
+                assertThat(docIdAndVersions[i].context.ord, equalTo(expected.context.ord));
+            }
+        }
+        reader.close();
+        writer.close();
+        dir.close();
+    }
 }
@@ -0,0 +1,104 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.common.util.concurrent;
+
+import org.elasticsearch.test.ESTestCase;
+import org.elasticsearch.threadpool.TestThreadPool;
+import org.elasticsearch.threadpool.ThreadPool;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import static org.hamcrest.Matchers.equalTo;
+
+public class ParallelBatchRunnerTests extends ESTestCase {
+
+    public void testEverySlotRunsOnce() throws Exception {
+        ThreadPool threadPool = new TestThreadPool(getTestName());
+        try {
+            ParallelBatchRunner runner = new ParallelBatchRunner(threadPool.generic(), randomIntBetween(1, 10), randomIntBetween(0, 4));
+            int count = randomIntBetween(0, 500);
+            AtomicIntegerArray calls = new AtomicIntegerArray(count);
+            runner.run(count, calls::incrementAndGet);
+            for (int i = 0; i < count; i++) {
+                assertThat("slot " + i, calls.get(i), equalTo(1));
+            }
+        } finally {
+            terminate(threadPool);
+        }
+    }
+
+    public void testCallerRunsEverythingIfHelpersNeverStart() throws Exception {
+        // helpers are queued but never executed, the caller must not wait for them
+        ParallelBatchRunner runner = new ParallelBatchRunner(command -> {}, 1, 3);
+        AtomicIntegerArray calls = new AtomicIntegerArray(20);
+        runner.run(20, calls::incrementAndGet);
+        for (int i = 0; i < 20; i++) {
+            assertThat(calls.get(i), equalTo(1));
+        }
+        runner = new ParallelBatchRunner(command -> { throw new EsRejectedExecutionException("rejected"); }, 1, 3);
+        calls = new AtomicIntegerArray(20);
+        runner.run(20, calls::incrementAndGet);
+        for (int i = 0; i < 20; i++) {
+            assertThat(calls.get(i), equalTo(1));
+        }
+    }
+
+    public void testFailureIsRethrownAfterAllBatches() throws Exception {
+        ThreadPool threadPool = new TestThreadPool(getTestName());
+        try {
+            ParallelBatchRunner runner = new ParallelBatchRunner(threadPool.generic(), 2, 2);
+            AtomicIntegerArray calls = new AtomicIntegerArray(10);
+            IllegalStateException e = expectThrows(IllegalStateException.class, () -> runner.run(10, i -> {
+                calls.incrementAndGet(i);
+                if (i == 4) {
+                    throw new IllegalStateException("boom");
+                }
+            }));
+            assertThat(e.getMessage(), equalTo("boom"));
+            for (int i = 0; i < 10; i++) {
+                // a failure only stops the rest of its own batch
+                assertThat(calls.get(i), equalTo(i == 5 ? 0 : 1));
+            }
+        } finally {
+            terminate(threadPool);
+        }
+    }
+
+    public void testErrorIsRethrownAfterAllBatches() throws Exception {
+        ThreadPool threadPool = new TestThreadPool(getTestName());
+        try {
+            ParallelBatchRunner runner = new ParallelBatchRunner(threadPool.generic(), 1, 3);
+            AtomicIntegerArray calls = new AtomicIntegerArray(20);
+            // whichever thread runs the failing slot, the caller must neither wait forever nor lose the error
+            AssertionError e = expectThrows(AssertionError.class, () -> runner.run(20, i -> {
+                calls.incrementAndGet(i);
+                if (i == 7) {
+                    throw new AssertionError("boom");
+                }
+            }));
+            assertThat(e.getMessage(), equalTo("boom"));
+            for (int i = 0; i < 20; i++) {
+                assertThat(calls.get(i), equalTo(1));
+            }
+        } finally {
+            terminate(threadPool);
+        }
+    }
+}
@@ -0,0 +1,197 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.elasticsearch.index;
+
+import org.apache.lucene.document.SortedNumericDocValuesField;
+import org.apache.lucene.document.SortedSetDocValuesField;
+import org.apache.lucene.index.IndexableField;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
+import org.apache.lucene.util.BytesRef;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.index.fielddata.IndexFieldData.XFieldComparatorSource.Nested;
+import org.elasticsearch.index.fielddata.fieldcomparator.BytesRefFieldComparatorSource;
+import org.elasticsearch.index.fielddata.fieldcomparator.LongValuesComparatorSource;
+import org.elasticsearch.index.mapper.KeywordFieldMapper;
+import org.elasticsearch.index.mapper.MappedFieldType;
+import org.elasticsearch.index.mapper.NumberFieldMapper;
+import org.elasticsearch.index.mapper.ParseContext;
+import org.elasticsearch.index.mapper.TextFieldMapper;
+import org.elasticsearch.search.MultiValueMode;
+import org.elasticsearch.test.ESTestCase;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.elasticsearch.index.IndexSettingsTests.newIndexMeta;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.equalTo;
+
+public class IndexSortConfigTests extends ESTestCase {
+
+    private static IndexSettings indexSettings(Settings settings) {
+        return new IndexSettings(newIndexMeta("test", settings), Settings.EMPTY);
+    }
+
+    private static Map<String, MappedFieldType> fieldTypes() {
+        Map<String, MappedFieldType> fieldTypes = new HashMap<>();
+        MappedFieldType fieldType = new NumberFieldMapper.NumberFieldType(NumberFieldMapper.NumberType.LONG);
+        fieldType.setName("long");
+        fieldTypes.put("long", fieldType);
+        fieldType = new KeywordFieldMapper.KeywordFieldType();
+        fieldType.setName("keyword");
+        fieldType.setHasDocValues(true);
+        fieldTypes.put("keyword", fieldType);
+        fieldType = new NumberFieldMapper.NumberFieldType(NumberFieldMapper.NumberType.LONG);
+        fieldType.setName("no_doc_values");
+        fieldType.setHasDocValues(false);
+        fieldTypes.put("no_doc_values", fieldType);
+        fieldType = new TextFieldMapper.TextFieldType();
+        fieldType.setName("text");
+        fieldTypes.put("text", fieldType);
+        return fieldTypes;
+    }
+
+    public void testNoIndexSort() {
+        IndexSortConfig config = indexSettings(Settings.EMPTY).getIndexSortConfig();
+        assertFalse(config.hasIndexSort());
+        assertNull(config.buildIndexSort(fieldTypes()::get));
+    }
+
+    public void testSimpleIndexSort() {
+        Settings settings = Settings.builder()
+            .put("index.sort.field", "long")
+            .put("index.sort.order", "desc")
+            .build();
+        IndexSortConfig config = indexSettings(settings).getIndexSortConfig();
+        assertTrue(config.hasIndexSort());
+        Sort sort = config.buildIndexSort(fieldTypes()::get);
+        assertThat(sort.getSort().length, equalTo(1));
+        SortField sortField = sort.getSort()[0];
+        assertThat(sortField.getField(), equalTo(IndexSortConfig.SORT_FIELD_PREFIX + "long"));
+        assertThat(sortField.getType(), equalTo(SortField.Type.LONG));
+        assertTrue(sortField.getReverse());
+        // missing values come last in descending order
+        assertThat(sortField.missingValue, equalTo(Long.MIN_VALUE));
+    }
+
+    public void testIndexSortWithArrays() {
+        Settings settings = Settings.builder()
+            .putArray("index.sort.field", "keyword", "long")
+            .putArray("index.sort.order", "asc", "desc")
+            .putArray("index.sort.mode", "max", "min")
+            .putArray("index.sort.missing", "_first", "_first")
+            .build();
+        Sort sort = indexSettings(settings).getIndexSortConfig().buildIndexSort(fieldTypes()::get);
+        assertThat(sort.getSort().length, equalTo(2));
+        assertThat(sort.getSort()[0].getType(), equalTo(SortField.Type.STRING));
+        assertFalse(sort.getSort()[0].getReverse());
+        assertThat(sort.getSort()[0].missingValue, equalTo(SortField.STRING_FIRST));
+        assertThat(sort.getSort()[1].getType(), equalTo(SortField.Type.LONG));
+        assertTrue(sort.getSort()[1].getReverse());
+        assertThat(sort.getSort()[1].missingValue, equalTo(Long.MAX_VALUE));
+    }
+
+    public void testInvalidIndexSort() {
+        final Settings sizeMismatch = Settings.builder()
+            .putArray("index.sort.field", "keyword", "long")
+            .put("index.sort.order", "asc")
+            .build();
+        IllegalArgumentException exc = expectThrows(IllegalArgumentException.class, () -> indexSettings(sizeMismatch));
+        assertThat(exc.getMessage(), containsString("index.sort.order:[asc], size mismatch"));
+
+        final Settings invalidMode = Settings.builder()
+            .put("index.sort.field", "long")
+            .put("index.sort.mode", "avg")
+            .build();
+        exc = expectThrows(IllegalArgumentException.class, () -> indexSettings(invalidMode));
+        assertThat(exc.getMessage(), containsString("Illegal index sort mode:[avg]"));
+
+        final Settings invalidMissing = Settings.builder()
+            .put("index.sort.field", "long")
+            .put("index.sort.missing", "0")
+            .build();
+        exc = expectThrows(IllegalArgumentException.class, () -> indexSettings(invalidMissing));
+        assertThat(exc.getMessage(), containsString("Illegal missing value:[0]"));
+    }
+
+    public void testInvalidIndexSortField() {
+        assertInvalidSortField("unknown", "unknown index sort field:[unknown]");
+        assertInvalidSortField("text", "invalid index sort field:[text] of type [text]");
+        assertInvalidSortField("no_doc_values", "docvalues not found for index sort field:[no_doc_values]");
+    }
+
+    private void assertInvalidSortField(String field, String message) {
+        IndexSortConfig config = indexSettings(Settings.builder().put("index.sort.field", field).build()).getIndexSortConfig();
+        IllegalArgumentException exc = expectThrows(IllegalArgumentException.class, () -> config.validate(fieldTypes()::get));
+        assertThat(exc.getMessage(), equalTo("invalid index sort for index [test]: " + message));
+    }
+
+    public void testAddSortFields() {
+        Settings settings = Settings.builder()
+            .putArray("index.sort.field", "long", "keyword")
+            .putArray("index.sort.order", "asc", "desc")
+            .build();
+        IndexSortConfig config = indexSettings(settings).getIndexSortConfig();
+
+        ParseContext.Document doc = new ParseContext.Document();
+        doc.add(new SortedNumericDocValuesField("long", 7));
+        doc.add(new SortedNumericDocValuesField("long", -3));
+        doc.add(new SortedSetDocValuesField("keyword", new BytesRef("a")));
+        doc.add(new SortedSetDocValuesField("keyword", new BytesRef("c")));
+        doc.add(new SortedSetDocValuesField("keyword", new BytesRef("b")));
+        config.addSortFields(doc);
+        // ascending fields sort on the minimum value and descending ones on the maximum value by default
+        IndexableField field = doc.getField(IndexSortConfig.SORT_FIELD_PREFIX + "long");
+        assertThat(field.numericValue().longValue(), equalTo(-3L));
+        field = doc.getField(IndexSortConfig.SORT_FIELD_PREFIX + "keyword");
+        assertThat(field.binaryValue(), equalTo(new BytesRef("c")));
+
+        doc = new ParseContext.Document();
+        config.addSortFields(doc);
+        assertNull(doc.getField(IndexSortConfig.SORT_FIELD_PREFIX + "long"));
+        assertNull(doc.getField(IndexSortConfig.SORT_FIELD_PREFIX + "keyword"));
+    }
+
+    public void testIsPrefixOf() {
+        Settings settings = Settings.builder()
+            .putArray("index.sort.field", "long", "keyword")
+            .putArray("index.sort.order", "desc", "asc")
+            .build();
+        IndexSortConfig config = indexSettings(settings).getIndexSortConfig();
+        SortField longSort = new SortField("long", new LongValuesComparatorSource(null, null, MultiValueMode.MAX, null), true);
+        SortField keywordSort = new SortField("keyword", new BytesRefFieldComparatorSource(null, "_last", MultiValueMode.MIN, null));
+        assertTrue(config.isPrefixOf(new Sort(longSort)));
+        assertTrue(config.isPrefixOf(new Sort(longSort, keywordSort)));
+        assertFalse(config.isPrefixOf(new Sort(keywordSort)));
+        assertFalse(config.isPrefixOf(new Sort(keywordSort, longSort)));
+        assertFalse(config.isPrefixOf(new Sort(longSort, keywordSort, SortField.FIELD_DOC)));
+        assertFalse(config.isPrefixOf(new Sort(new SortField("long", SortField.Type.LONG, true))));
+        assertFalse(config.isPrefixOf(new Sort(
+            new SortField("long", new LongValuesComparatorSource(null, null, MultiValueMode.MAX, null), false))));
+        assertFalse(config.isPrefixOf(new Sort(
+            new SortField("long", new LongValuesComparatorSource(null, null, MultiValueMode.MIN, null), true))));
+        assertFalse(config.isPrefixOf(new Sort(
+            new SortField("long", new LongValuesComparatorSource(null, "_first", MultiValueMode.MAX, null), true))));
+        assertFalse(config.isPrefixOf(new Sort(
+            new SortField("long", new LongValuesComparatorSource(null, 42L, MultiValueMode.MAX, null), true))));
+        assertFalse(config.isPrefixOf(new Sort(
+            new SortField("long", new LongValuesComparatorSource(null, null, MultiValueMode.MAX, new Nested(null, null)), true))));
+    }
+}
@@ -0,0 +1,230 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.index;
+
+import org.elasticsearch.action.admin.indices.segments.IndexShardSegments;
+import org.elasticsearch.action.admin.indices.segments.IndicesSegmentResponse;
+import org.elasticsearch.action.admin.indices.segments.ShardSegments;
+import org.elasticsearch.action.index.IndexRequestBuilder;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.cluster.metadata.IndexMetaData;
+import org.elasticsearch.cluster.node.DiscoveryNode;
+import org.elasticsearch.common.collect.ImmutableOpenMap;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.common.xcontent.XContentFactory;
+import org.elasticsearch.index.query.QueryBuilders;
+import org.elasticsearch.plugins.Plugin;
+import org.elasticsearch.search.sort.SortOrder;
+import org.elasticsearch.test.ESIntegTestCase;
+import org.elasticsearch.test.InternalSettingsPlugin;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import static org.elasticsearch.test.hamcrest.ElasticsearchAssertions.assertAcked;
+import static org.elasticsearch.test.hamcrest.ElasticsearchAssertions.assertSearchResponse;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+
+public class IndexSortIT extends ESIntegTestCase {
+
+    @Override
+    protected Collection<Class<? extends Plugin>> nodePlugins() {
+        return Collections.singletonList(InternalSettingsPlugin.class);
+    }
+
+    private static XContentBuilder mapping() throws IOException {
+        return XContentFactory.jsonBuilder()
+            .startObject()
+                .startObject("type")
+                    .startObject("properties")
+                        .startObject("date")
+                            .field("type", "date")
+                        .endObject()
+                        .startObject("keyword")
+                            .field("type", "keyword")
+                        .endObject()
+                        .startObject("text")
+                            .field("type", "text")
+                        .endObject()
+                    .endObject()
+                .endObject()
+            .endObject();
+    }
+
+    public void testIndexSort() throws Exception {
+        assertAcked(prepareCreate("test")
+            .setSettings(Settings.builder()
+                .put(indexSettings())
+                .put(IndexMetaData.SETTING_NUMBER_OF_SHARDS, 1)
+                .putArray("index.sort.field", "date", "keyword")
+                .putArray("index.sort.order", "desc", "asc"))
+            .addMapping("type", mapping()));
+        final int numSegments = randomIntBetween(1, 5);
+        int id = 0;
+        for (int i = 0; i < numSegments; i++) {
+            List<IndexRequestBuilder> docs = new ArrayList<>();
+            final int numDocs = randomIntBetween(10, 50);
+            for (int j = 0; j < numDocs; j++) {
+                docs.add(client().prepareIndex("test", "type", Integer.toString(id++))
+                    .setSource("date", randomIntBetween(0, 1000), "keyword", randomAsciiOfLength(5), "text", "foo"));
+            }
+            indexRandom(true, false, docs);
+        }
+        if (randomBoolean()) {
+            client().admin().indices().prepareForceMerge("test").setMaxNumSegments(1).get();
+            refresh();
+        }
+
+        final int size = randomIntBetween(1, 20);
+        final SearchResponse tracked = search(size, true);
+        final SearchResponse untracked = search(size, false);
+        assertEquals(tracked.getHits().getHits().length, untracked.getHits().getHits().length);
+        for (int i = 0; i < tracked.getHits().getHits().length; i++) {
+            assertEquals(tracked.getHits().getAt(i).getId(), untracked.getHits().getAt(i).getId());
+        }
+        assertThat(untracked.getHits().getTotalHits(), lessThanOrEqualTo(tracked.getHits().getTotalHits()));
+        if (untracked.getHits().getTotalHits() < tracked.getHits().getTotalHits()) {
+            assertTrue(untracked.isTerminatedEarly());
+        }
+
+        IllegalArgumentException exc = expectThrows(IllegalArgumentException.class,
+            () -> client().admin().indices().prepareUpdateSettings("test")
+                .setSettings(Settings.builder().put("index.sort.field", "keyword")).get());
+        assertThat(exc.getMessage(), containsString("can't change the index sort of an index"));
+    }
+
+    /**
+     * The segments that were flushed but not merged yet aren't sorted, shrinking adds them to the target index as they are.
+     * Searches on the target must still return the same top hits whether they terminate sorted segments early or not.
+     */
+    public void testShrinkIndexWithUnmergedSegments() throws Exception {
+        internalCluster().ensureAtLeastNumDataNodes(2);
+        assertAcked(prepareCreate("source")
+            .setSettings(Settings.builder()
+                .put(indexSettings())
+                .put(IndexMetaData.SETTING_NUMBER_OF_SHARDS, randomIntBetween(2, 5))
+                .put(IndexMetaData.SETTING_NUMBER_OF_REPLICAS, 0)
+                .put(MergePolicyConfig.INDEX_MERGE_ENABLED, false)
+                .putArray("index.sort.field", "date", "keyword")
+                .putArray("index.sort.order", "desc", "asc"))
+            .addMapping("type", mapping()));
+        final int numSegments = randomIntBetween(2, 5);
+        int id = 0;
+        for (int i = 0; i < numSegments; i++) {
+            List<IndexRequestBuilder> docs = new ArrayList<>();
+            final int numDocs = randomIntBetween(10, 50);
+            for (int j = 0; j < numDocs; j++) {
+                docs.add(client().prepareIndex("source", "type", Integer.toString(id++))
+                    .setSource("date", randomIntBetween(0, 1000), "keyword", randomAsciiOfLength(5), "text", "foo"));
+            }
+            indexRandom(true, false, docs);
+        }
+        flush("source");
+
+        ImmutableOpenMap<String, DiscoveryNode> dataNodes = client().admin().cluster().prepareState().get().getState().nodes()
+            .getDataNodes();
+        String mergeNode = dataNodes.values().toArray(DiscoveryNode.class)[0].getName();
+        ensureGreen();
+        client().admin().indices().prepareUpdateSettings("source")
+            .setSettings(Settings.builder()
+                .put("index.routing.allocation.require._name", mergeNode)
+                .put("index.blocks.write", true)).get();
+        ensureGreen();
+        assertAcked(client().admin().indices().prepareShrinkIndex("source", "target")
+            .setSettings(Settings.builder()
+                .put(IndexMetaData.SETTING_NUMBER_OF_REPLICAS, 0)
+                .put(MergePolicyConfig.INDEX_MERGE_ENABLED, false)
+                .build()).get());
+        ensureGreen();
+
+        IndicesSegmentResponse segments = client().admin().indices().prepareSegments("target").get();
+        int numTargetSegments = 0;
+        for (IndexShardSegments shardSegments : segments.getIndices().get("target")) {
+            for (ShardSegments shardSegment : shardSegments) {
+                numTargetSegments += shardSegment.getSegments().size();
+            }
+        }
+        assertThat(numTargetSegments, greaterThan(1));
+
+        final int size = randomIntBetween(1, 20);
+        final SearchResponse expected = search("source", size, true);
+        final SearchResponse tracked = search("target", size, true);
+        final SearchResponse untracked = search("target", size, false);
+        assertEquals(expected.getHits().getTotalHits(), tracked.getHits().getTotalHits());
+        assertThat(untracked.getHits().getTotalHits(), lessThanOrEqualTo(tracked.getHits().getTotalHits()));
+        assertEquals(expected.getHits().getHits().length, tracked.getHits().getHits().length);
+        assertEquals(tracked.getHits().getHits().length, untracked.getHits().getHits().length);
+        for (int i = 0; i < tracked.getHits().getHits().length; i++) {
+            // ties may be broken differently across the shards of the source index
+            assertEquals(expected.getHits().getAt(i).getSortValues()[0], tracked.getHits().getAt(i).getSortValues()[0]);
+            assertEquals(tracked.getHits().getAt(i).getId(), untracked.getHits().getAt(i).getId());
+        }
+    }
+
+    private SearchResponse search(int size, boolean trackTotalHits) {
+        return search("test", size, trackTotalHits);
+    }
+
+    private SearchResponse search(String index, int size, boolean trackTotalHits) {
+        SearchResponse response = client().prepareSearch(index)
+            .setQuery(QueryBuilders.matchQuery("text", "foo"))
+            .addSort("date", SortOrder.DESC)
+            .setSize(size)
+            .setTrackTotalHits(trackTotalHits)
+            .get();
+        assertSearchResponse(response);
+        return response;
+    }
+
+    public void testInvalidIndexSort() throws Exception {
+        IllegalArgumentException exc = expectThrows(IllegalArgumentException.class,
+            () -> prepareCreate("test")
+                .setSettings(Settings.builder()
+                    .put(indexSettings())
+                    .put("index.sort.field", "unknown"))
+                .addMapping("type", mapping())
+                .get());
+        assertThat(exc.getMessage(), containsString("unknown index sort field:[unknown]"));
+
+        exc = expectThrows(IllegalArgumentException.class,
+            () -> prepareCreate("test")
+                .setSettings(Settings.builder()
+                    .put(indexSettings())
+                    .put("index.sort.field", "text"))
+                .addMapping("type", mapping())
+                .get());
+        assertThat(exc.getMessage(), containsString("invalid index sort field:[text]"));
+
+        exc = expectThrows(IllegalArgumentException.class,
+            () -> prepareCreate("test")
+                .setSettings(Settings.builder()
+                    .put(indexSettings())
+                    .put("index.sort.field", "date"))
+                .addMapping("type", "date", "type=date", "nested", "type=nested")
+                .get());
+        assertThat(exc.getMessage(), containsString("cannot have nested fields when index sort is activated"));
+    }
+}
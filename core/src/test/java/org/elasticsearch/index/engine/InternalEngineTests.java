@@ -109,14 +109,17 @@ import org.junit.Before;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
 import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Base64;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
@@ -134,6 +137,7 @@ import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.everyItem;
 import static org.hamcrest.Matchers.greaterThan;
 import static org.hamcrest.Matchers.hasKey;
+import static org.hamcrest.Matchers.instanceOf;
 import static org.hamcrest.Matchers.not;
 import static org.hamcrest.Matchers.notNullValue;
 import static org.hamcrest.Matchers.nullValue;
@@ -207,7 +211,7 @@ public class InternalEngineTests extends ESTestCase {
             config.getStore(), config.getDeletionPolicy(), config.getMergePolicy(), config.getAnalyzer(), config.getSimilarity(),
             new CodecService(null, logger), config.getEventListener(), config.getTranslogRecoveryPerformer(), config.getQueryCache(),
             config.getQueryCachingPolicy(), config.getTranslogConfig(), config.getFlushMergesAfter(), config.getRefreshListeners(),
-            config.getMaxUnsafeAutoIdTimestamp());
+            config.getIndexSort(), config.getMaxUnsafeAutoIdTimestamp());
     }
 
     @Override
@@ -307,7 +311,8 @@ public class InternalEngineTests extends ESTestCase {
         EngineConfig config = new EngineConfig(openMode, shardId, threadPool, indexSettings, null, store, createSnapshotDeletionPolicy(),
                 mergePolicy, iwc.getAnalyzer(), iwc.getSimilarity(), new CodecService(null, logger), listener,
                 new TranslogHandler(shardId.getIndexName(), logger), IndexSearcher.getDefaultQueryCache(),
-                IndexSearcher.getDefaultQueryCachingPolicy(), translogConfig, TimeValue.timeValueMinutes(5), null, maxUnsafeAutoIdTimestamp);
+                IndexSearcher.getDefaultQueryCachingPolicy(), translogConfig, TimeValue.timeValueMinutes(5), null, null,
+                maxUnsafeAutoIdTimestamp);
 
         return config;
     }
@@ -712,6 +717,134 @@ public class InternalEngineTests extends ESTestCase {
         latestGetResult.get().release();
     }
 
+    public void testRealtimeGetFromTranslog() throws IOException {
+        ParsedDocument doc = testParsedDocument("1", "1", "test", "routing", -1, -1, testDocumentWithTextField(), B_1, null);
+        engine.index(new Engine.Index(newUid("1"), doc));
+
+        try (Engine.GetResult getResult = engine.get(new Engine.Get(true, newUid("1")).loadFromTranslog(true))) {
+            assertTrue(getResult.exists());
+            assertNull(getResult.docIdAndVersion());
+            assertEquals(B_1, getResult.source().source);
+            assertEquals("routing", getResult.source().routing);
+            assertEquals(1, getResult.version());
+        }
+        assertEquals(1, engine.getRealtimeGetTranslogHits());
+        assertEquals(0, engine.getRealtimeGetTranslogMisses());
+        // reading from the translog doesn't refresh
+        try (Engine.GetResult getResult = engine.get(new Engine.Get(false, newUid("1")))) {
+            assertFalse(getResult.exists());
+        }
+
+        // the latest version is returned
+        doc = testParsedDocument("1", "1", "test", null, -1, -1, testDocumentWithTextField(), B_2, null);
+        engine.index(new Engine.Index(newUid("1"), doc));
+        try (Engine.GetResult getResult = engine.get(new Engine.Get(true, newUid("1")).loadFromTranslog(true))) {
+            assertEquals(B_2, getResult.source().source);
+            assertEquals(2, getResult.version());
+        }
+
+        // documents that are visible to searches are loaded from the index
+        engine.refresh("test");
+        try (Engine.GetResult getResult = engine.get(new Engine.Get(true, newUid("1")).loadFromTranslog(true))) {
+            assertTrue(getResult.exists());
+            assertNull(getResult.source());
+            assertNotNull(getResult.docIdAndVersion());
+        }
+
+        // deletes are never read from the translog
+        engine.delete(new Engine.Delete("test", "1", newUid("1")));
+        try (Engine.GetResult getResult = engine.get(new Engine.Get(true, newUid("1")).loadFromTranslog(true))) {
+            assertFalse(getResult.exists());
+        }
+
+        // the translog generation is gone after a flush, so the document has to be refreshed
+        doc = testParsedDocument("2", "2", "test", null, -1, -1, testDocumentWithTextField(), B_1, null);
+        engine.index(new Engine.Index(newUid("2"), doc));
+        engine.flush();
+        doc = testParsedDocument("2", "2", "test", null, -1, -1, testDocumentWithTextField(), B_2, null);
+        engine.index(new Engine.Index(newUid("2"), doc));
+        try (Engine.GetResult getResult = engine.get(new Engine.Get(true, newUid("2")).loadFromTranslog(true))) {
+            assertEquals(B_2, getResult.source().source);
+        }
+        assertEquals(3, engine.getRealtimeGetTranslogHits());
+        assertEquals(0, engine.getRealtimeGetTranslogMisses());
+    }
+
+    public void testRealtimeGetWithoutTranslogLocations() throws IOException {
+        IndexSettings indexSettings = IndexSettingsModule.newIndexSettings(defaultSettings.getIndexMetaData().getIndex().getName(),
+            Settings.builder().put(defaultSettings.getSettings())
+                .put(IndexSettings.INDEX_TRANSLOG_REALTIME_GET_CACHE_SIZE_SETTING.getKey(), 0).build());
+        try (Store store = createStore();
+             Engine engine = createEngine(indexSettings, store, createTempDir(), newMergePolicy())) {
+            ParsedDocument doc = testParsedDocument("1", "1", "test", null, -1, -1, testDocumentWithTextField(), B_1, null);
+            engine.index(new Engine.Index(newUid("1"), doc));
+            try (Engine.GetResult getResult = engine.get(new Engine.Get(true, newUid("1")).loadFromTranslog(true))) {
+                assertTrue(getResult.exists());
+                assertNull(getResult.source());
+                assertNotNull(getResult.docIdAndVersion());
+            }
+            assertEquals(0, engine.getRealtimeGetTranslogHits());
+            assertEquals(1, engine.getRealtimeGetTranslogMisses());
+        }
+    }
+
+    public void testRealtimeGetFallsBackToRefreshIfTranslogCantBeRead() throws IOException {
+        ParsedDocument doc = testParsedDocument("1", "1", "test", null, -1, -1, testDocumentWithTextField(), B_1, null);
+        engine.index(new Engine.Index(newUid("1"), doc));
+        Translog translog = engine.getTranslog();
+        translog.sync();
+        // cut off the end of the operation so that reading its location fails
+        Path translogFile = translog.location().resolve(Translog.getFilename(translog.currentFileGeneration()));
+        try (FileChannel channel = FileChannel.open(translogFile, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 1);
+        }
+        try (Engine.GetResult getResult = engine.get(new Engine.Get(true, newUid("1")).loadFromTranslog(true))) {
+            assertTrue(getResult.exists());
+            assertNull(getResult.source());
+            assertNotNull(getResult.docIdAndVersion());
+        }
+        assertEquals(0, engine.getRealtimeGetTranslogHits());
+        assertEquals(1, engine.getRealtimeGetTranslogMisses());
+    }
+
+    public void testMultiGet() throws IOException {
+        // "1" and "2" are visible to searches, "3" and "4" are only in the version map, "2" is deleted after the refresh
+        for (String id : new String[] {"1", "2"}) {
+            engine.index(new Engine.Index(newUid("test#" + id), testParsedDocument("test#" + id, id, "test", null, -1, -1, testDocumentWithTextField(), B_1, null)));
+        }
+        engine.refresh("test");
+        engine.delete(new Engine.Delete("test", "2", newUid("test#2")));
+        for (String id : new String[] {"3", "4"}) {
+            engine.index(new Engine.Index(newUid("test#" + id), testParsedDocument("test#" + id, id, "test", null, -1, -1, testDocumentWithTextField(), B_2, null)));
+        }
+
+        List<Engine.Get> gets = Arrays.asList(
+            new Engine.Get(true, newUid("test#1")),
+            new Engine.Get(true, newUid("test#2")),
+            new Engine.Get(true, newUid("test#3")).loadFromTranslog(true),
+            new Engine.Get(true, newUid("test#4")).version(2),
+            new Engine.Get(true, newUid("test#5")),
+            new Engine.Get(false, newUid("test#1")).version(1),
+            new Engine.Get(true, newUid("test#4")));
+        try (Engine.MultiGetResult results = engine.multiGet(gets, engine::acquireSearcher)) {
+            assertEquals(gets.size(), results.size());
+            assertNotNull(results.result(0).docIdAndVersion());
+            assertFalse(results.result(1).exists());
+            assertEquals(B_2, results.result(2).source().source);
+            assertThat(results.failure(3), instanceOf(VersionConflictEngineException.class));
+            assertNull(results.result(3));
+            assertFalse(results.result(4).exists());
+            assertEquals(1, results.result(5).version());
+            assertSame(results.result(0).docIdAndVersion().context.reader(), results.result(5).docIdAndVersion().context.reader());
+            assertNotNull(results.result(6).docIdAndVersion());
+        }
+
+        // the realtime get of a document that wasn't read from the translog refreshed the engine
+        try (Engine.GetResult getResult = engine.get(new Engine.Get(false, newUid("test#4")))) {
+            assertTrue(getResult.exists());
+        }
+    }
+
     public void testSimpleOperations() throws Exception {
         Engine.Searcher searchResult = engine.acquireSearcher("test");
         MatcherAssert.assertThat(searchResult, EngineSearcherTotalHitsMatcher.engineSearcherTotalHits(0));
@@ -2058,7 +2191,7 @@ public class InternalEngineTests extends ESTestCase {
                 config.getIndexSettings(), null, store, createSnapshotDeletionPolicy(), newMergePolicy(), config.getAnalyzer(),
                 config.getSimilarity(), new CodecService(null, logger), config.getEventListener(), config.getTranslogRecoveryPerformer(),
                 IndexSearcher.getDefaultQueryCache(), IndexSearcher.getDefaultQueryCachingPolicy(), translogConfig,
-                TimeValue.timeValueMinutes(5), config.getRefreshListeners(), IndexRequest.UNSET_AUTO_GENERATED_TIMESTAMP);
+                TimeValue.timeValueMinutes(5), config.getRefreshListeners(), null, IndexRequest.UNSET_AUTO_GENERATED_TIMESTAMP);
 
         try {
             InternalEngine internalEngine = new InternalEngine(brokenConfig);
@@ -2438,6 +2571,104 @@ public class InternalEngineTests extends ESTestCase {
 
     }
 
+    public void testAppendOnlySkipsVersionMap() throws IOException {
+        final int numDocs = randomIntBetween(1, 10);
+        for (int i = 0; i < numDocs; i++) {
+            final ParsedDocument doc = testParsedDocument(Integer.toString(i), Integer.toString(i), "test", null, i, -1, testDocumentWithTextField(), new BytesArray("{}".getBytes(Charset.defaultCharset())), null);
+            Engine.Index index = randomAppendOnly(i, doc, false);
+            engine.index(index);
+            assertNotNull(index.getTranslogLocation());
+        }
+        assertEquals(numDocs, engine.getNumOptimizedAppends());
+        assertEquals(0, engine.getNumDeOptimizedAppends());
+        assertEquals(numDocs, engine.segmentsStats(false).getOptimizedAppendCount());
+        assertTrue(engine.isVersionMapUnsafe());
+        assertEquals(0, engine.segmentsStats(false).getVersionMapMemoryInBytes());
+
+        // a realtime get must not miss documents that skipped the version map
+        try (Engine.GetResult getResult = engine.get(new Engine.Get(true, newUid("0")))) {
+            assertTrue(getResult.exists());
+        }
+        assertFalse(engine.isVersionMapUnsafe());
+
+        // now that somebody looked up a uid, appends go through the version map until a refresh cycle passes without lookups
+        final ParsedDocument doc = testParsedDocument(Integer.toString(numDocs), Integer.toString(numDocs), "test", null, numDocs, -1, testDocumentWithTextField(), new BytesArray("{}".getBytes(Charset.defaultCharset())), null);
+        engine.index(randomAppendOnly(numDocs, doc, false));
+        assertFalse(engine.isVersionMapUnsafe());
+        assertThat(engine.segmentsStats(false).getVersionMapMemoryInBytes(), greaterThan(0L));
+        engine.refresh("test");
+        final ParsedDocument nextDoc = testParsedDocument(Integer.toString(numDocs + 1), Integer.toString(numDocs + 1), "test", null, numDocs + 1, -1, testDocumentWithTextField(), new BytesArray("{}".getBytes(Charset.defaultCharset())), null);
+        engine.index(randomAppendOnly(numDocs + 1, nextDoc, false));
+        assertFalse(engine.isVersionMapUnsafe());
+        engine.refresh("test");
+        final ParsedDocument lastDoc = testParsedDocument(Integer.toString(numDocs + 2), Integer.toString(numDocs + 2), "test", null, numDocs + 2, -1, testDocumentWithTextField(), new BytesArray("{}".getBytes(Charset.defaultCharset())), null);
+        engine.index(randomAppendOnly(numDocs + 2, lastDoc, false));
+        assertTrue(engine.isVersionMapUnsafe());
+
+        // deleting a document that skipped the version map must find it
+        Engine.Delete delete = new Engine.Delete("test", Integer.toString(numDocs + 2), newUid(Integer.toString(numDocs + 2)));
+        engine.delete(delete);
+        assertTrue(delete.found());
+        assertEquals(numDocs + 3, engine.getNumOptimizedAppends());
+    }
+
+    public void testIndexBatchOnReplica() throws IOException {
+        final int numIds = randomIntBetween(1, 20);
+        final int numOps = randomIntBetween(1, 100);
+        final List<Engine.Index> replicaOps = new ArrayList<>();
+        final Map<String, Long> latestVersions = new HashMap<>();
+        for (int i = 0; i < numOps; i++) {
+            final String id = Integer.toString(randomInt(numIds - 1));
+            final ParsedDocument doc = testParsedDocument(id, id, "test", null, -1, -1, testDocumentWithTextField(), B_1, null);
+            final Engine.Index primary = new Engine.Index(newUid(id), doc);
+            engine.index(primary);
+            latestVersions.put(id, primary.version());
+            replicaOps.add(new Engine.Index(newUid(id), doc, primary.version(),
+                primary.versionType().versionTypeForReplicationAndRecovery(), REPLICA, System.nanoTime(), -1, false));
+        }
+        // apply a prefix one by one so that the batch finds versions in the version map and in the index and has conflicts
+        final int numApplied = randomIntBetween(0, numOps);
+        for (int i = 0; i < numApplied; i++) {
+            final Engine.Index op = replicaOps.get(i);
+            replicaEngine.index(new Engine.Index(op.uid(), op.parsedDoc(), op.version(), op.versionType(), REPLICA, System.nanoTime(),
+                -1, false));
+            if (rarely()) {
+                replicaEngine.refresh("test");
+            }
+        }
+        if (randomBoolean()) {
+            replicaEngine.refresh("test");
+        }
+
+        final Exception[] failures = replicaEngine.index(replicaOps);
+        assertThat(failures.length, equalTo(numOps));
+        Translog.Location lastLocation = null;
+        for (int i = 0; i < numOps; i++) {
+            if (i < numApplied) {
+                assertThat("op " + i, failures[i], instanceOf(VersionConflictEngineException.class));
+            } else {
+                assertThat("op " + i, failures[i], nullValue());
+                final Translog.Location location = replicaOps.get(i).getTranslogLocation();
+                assertNotNull(location);
+                if (lastLocation != null) {
+                    assertThat(location, greaterThan(lastLocation));
+                }
+                lastLocation = location;
+            }
+        }
+
+        for (Map.Entry<String, Long> entry : latestVersions.entrySet()) {
+            try (Engine.GetResult get = replicaEngine.get(new Engine.Get(true, newUid(entry.getKey())))) {
+                assertTrue(get.exists());
+                assertThat(get.version(), equalTo(entry.getValue()));
+            }
+        }
+        replicaEngine.refresh("test");
+        try (Engine.Searcher searcher = replicaEngine.acquireSearcher("test")) {
+            assertThat(searcher.reader().numDocs(), equalTo(latestVersions.size()));
+        }
+    }
+
     public static long getNumVersionLookups(InternalEngine engine) { // for other tests to access this
         return engine.getNumVersionLookups();
     }
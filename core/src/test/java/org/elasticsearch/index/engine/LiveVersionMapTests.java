@@ -19,15 +19,24 @@
 
 package org.elasticsearch.index.engine;
 
+import org.apache.lucene.index.Term;
+import org.apache.lucene.util.BytesRef;
 import org.apache.lucene.util.BytesRefBuilder;
 import org.apache.lucene.util.RamUsageTester;
 import org.apache.lucene.util.TestUtil;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.util.BigArrays;
+import org.elasticsearch.common.util.MockBigArrays;
+import org.elasticsearch.indices.breaker.NoneCircuitBreakerService;
 import org.elasticsearch.test.ESTestCase;
 
+import java.util.HashMap;
+import java.util.Map;
+
 public class LiveVersionMapTests extends ESTestCase {
 
     public void testRamBytesUsed() throws Exception {
-        LiveVersionMap map = new LiveVersionMap();
+        LiveVersionMap map = new LiveVersionMap(BigArrays.NON_RECYCLING_INSTANCE);
         for (int i = 0; i < 100000; ++i) {
             BytesRefBuilder uid = new BytesRefBuilder();
             uid.copyChars(TestUtil.randomSimpleString(random(), 10, 20));
@@ -55,4 +64,86 @@ public class LiveVersionMapTests extends ESTestCase {
         assertEquals(actualRamBytesUsed, estimatedRamBytesUsed, actualRamBytesUsed / 4);
     }
 
+    public void testSafeAccessMode() throws Exception {
+        LiveVersionMap map = new LiveVersionMap(BigArrays.NON_RECYCLING_INSTANCE);
+        assertFalse(map.isUnsafe());
+        assertFalse(map.isSafeAccessRequired());
+
+        map.markAsUnsafe();
+        assertTrue(map.isUnsafe());
+        map.beforeRefresh();
+        // operations in old are not yet visible while the refresh is running
+        assertTrue(map.isUnsafe());
+        map.afterRefresh(true);
+        assertFalse(map.isUnsafe());
+
+        map.enforceSafeAccess();
+        assertTrue(map.isSafeAccessRequired());
+        map.beforeRefresh();
+        map.afterRefresh(true);
+        // we stay in safe mode for another refresh cycle
+        assertTrue(map.isSafeAccessRequired());
+        BytesRefBuilder uid = new BytesRefBuilder();
+        uid.copyChars(TestUtil.randomSimpleString(random(), 10, 20));
+        map.putUnderLock(uid.toBytesRef(), new VersionValue(randomLong()));
+        map.beforeRefresh();
+        map.afterRefresh(true);
+        assertFalse(map.isSafeAccessRequired());
+    }
+
+
+    public void testRefreshSwapsMaps() throws Exception {
+        LiveVersionMap map = new LiveVersionMap(new MockBigArrays(Settings.EMPTY, new NoneCircuitBreakerService()));
+        // stripes are only allocated on demand
+        assertEquals(0, map.ramBytesUsedForRefresh());
+        Map<BytesRef, Long> versions = new HashMap<>();
+        int numUids = randomIntBetween(1000, 2000);
+        for (int i = 0; i < numUids; ++i) {
+            BytesRefBuilder uid = new BytesRefBuilder();
+            uid.copyChars(TestUtil.randomSimpleString(random(), 10, 20));
+            long version = randomIntBetween(1, Integer.MAX_VALUE - 1);
+            BytesRef bytes = uid.toBytesRef();
+            map.putUnderLock(bytes, new VersionValue(version));
+            versions.put(bytes, version);
+        }
+        for (Map.Entry<BytesRef, Long> entry : versions.entrySet()) {
+            assertEquals(entry.getValue().longValue(), map.getUnderLock(new Term("_uid", entry.getKey())).version());
+        }
+        final long ramBytesUsedForRefresh = map.ramBytesUsedForRefresh();
+
+        // while a refresh is running the previous entries are still visible, and new ones go to a fresh map
+        assertTrue(ramBytesUsedForRefresh > 0);
+        map.beforeRefresh();
+        assertEquals(0, map.ramBytesUsedForRefresh());
+        BytesRef deleted = versions.keySet().iterator().next();
+        map.putUnderLock(deleted, new DeleteVersionValue(versions.get(deleted) + 1, 42));
+        for (Map.Entry<BytesRef, Long> entry : versions.entrySet()) {
+            VersionValue value = map.getUnderLock(new Term("_uid", entry.getKey()));
+            if (entry.getKey().equals(deleted)) {
+                assertTrue(value.delete());
+                assertEquals(42, value.time());
+                assertEquals(entry.getValue() + 1, value.version());
+            } else {
+                assertFalse(value.delete());
+                assertEquals(entry.getValue().longValue(), value.version());
+            }
+        }
+        map.afterRefresh(true);
+
+        // after the refresh only the delete is left, both in the current map and in the tombstones
+        for (BytesRef uid : versions.keySet()) {
+            VersionValue value = map.getUnderLock(new Term("_uid", uid));
+            if (uid.equals(deleted)) {
+                assertTrue(value.delete());
+            } else {
+                assertNull(value);
+            }
+        }
+        assertNotNull(map.getTombstoneUnderLock(deleted));
+        map.removeTombstoneUnderLock(deleted);
+        assertEquals(0, map.ramBytesUsedTombstones.get());
+        map.clear();
+        // closed maps behave as if they were empty
+        assertNull(map.getUnderLock(new Term("_uid", deleted)));
+    }
 }
@@ -0,0 +1,109 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.index.mapper;
+
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.compress.CompressedXContent;
+import org.elasticsearch.common.xcontent.XContentFactory;
+import org.elasticsearch.test.ESSingleNodeTestCase;
+
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.sameInstance;
+
+public class DocumentParsingPlanTests extends ESSingleNodeTestCase {
+
+    private DocumentMapper createMapper() throws Exception {
+        String mapping = XContentFactory.jsonBuilder().startObject().startObject("type").startObject("properties")
+            .startObject("foo").startObject("properties")
+                .startObject("bar").startObject("properties")
+                    .startObject("baz").field("type", "integer").endObject()
+                .endObject().endObject()
+                .startObject("qux").field("type", "keyword")
+                    .startObject("fields").startObject("raw").field("type", "keyword").endObject().endObject()
+                .endObject()
+            .endObject().endObject()
+            .startObject("field").field("type", "long").endObject()
+            .endObject().endObject().endObject().string();
+        return createIndex("test").mapperService().documentMapperParser().parse("type", new CompressedXContent(mapping));
+    }
+
+    public void testFind() throws Exception {
+        DocumentMapper mapper = createMapper();
+        DocumentParsingPlan.Node root = new DocumentParsingPlan(mapper.root()).root();
+        assertThat(root.mapper(), sameInstance(mapper.root()));
+
+        assertThat(root.find("field").mapper(), sameInstance(mapper.mappers().getMapper("field")));
+        DocumentParsingPlan.Node foo = root.find("foo");
+        assertThat(foo.mapper(), sameInstance(mapper.objectMappers().get("foo")));
+        assertThat(foo.find("bar").find("baz").mapper(), sameInstance(mapper.mappers().getMapper("foo.bar.baz")));
+        assertNull(root.find("missing"));
+        assertNull(foo.find("field"));
+    }
+
+    public void testFindExpandsDots() throws Exception {
+        DocumentMapper mapper = createMapper();
+        DocumentParsingPlan.Node root = new DocumentParsingPlan(mapper.root()).root();
+        for (String path : new String[] {"foo.bar", "foo.bar.baz", "foo.qux"}) {
+            DocumentParsingPlan.Node node = root.find(path);
+            assertNotNull(path, node);
+            assertThat(path, node.mapper(), sameInstance(DocumentParser.getMapper(mapper.root(), path)));
+        }
+        assertThat(root.find("foo").find("bar.baz").mapper(), instanceOf(FieldMapper.class));
+        assertNull(root.find("foo.missing"));
+        assertNull(root.find("foo.missing.baz"));
+        // multi fields and sub fields of concrete fields can not be addressed from documents
+        assertNull(root.find("foo.qux.raw"));
+        assertNull(root.find("field.sub"));
+    }
+
+    public void testParsingFollowsThePlan() throws Exception {
+        DocumentMapper mapper = createMapper();
+        BytesReference bytes = XContentFactory.jsonBuilder()
+            .startObject()
+                .field("field", 1)
+                .startObject("foo")
+                    .field("bar.baz", 2)
+                    .startArray("bar").startObject().field("baz", 3).endObject().endArray()
+                    .nullField("qux")
+                    .field("_id", "not a metadata field")
+                .endObject()
+                .field("foo.qux", "value")
+                .field("new", "dynamic")
+            .endObject().bytes();
+        ParsedDocument doc = mapper.parse("test", "type", "1", bytes);
+        assertNotNull(doc.rootDoc().getField("field"));
+        String[] values = doc.rootDoc().getValues("foo.bar.baz");
+        assertEquals(2, values.length);
+        assertEquals("2", values[0]);
+        assertEquals("3", values[1]);
+        assertNotNull(doc.rootDoc().getField("foo.qux"));
+        assertNotNull(doc.dynamicMappingsUpdate());
+        assertNotNull(doc.dynamicMappingsUpdate().root().getMapper("new"));
+        assertNotNull(((ObjectMapper) doc.dynamicMappingsUpdate().root().getMapper("foo")).getMapper("_id"));
+    }
+
+    public void testMetadataFieldsAreRejectedAtTheRoot() throws Exception {
+        DocumentMapper mapper = createMapper();
+        BytesReference bytes = XContentFactory.jsonBuilder().startObject().field("_id", "1").endObject().bytes();
+        MapperParsingException e = expectThrows(MapperParsingException.class, () -> mapper.parse("test", "type", "1", bytes));
+        assertEquals("Field [_id] is a metadata field and cannot be added inside a document. Use the index API request parameters.",
+            e.getMessage());
+    }
+}
@@ -424,6 +424,23 @@ public class BoolQueryBuilderTests extends AbstractQueryTestCase<BoolQueryBuilde
         }
     }
 
+    public void testRewriteWithMatchNone() throws IOException {
+        BoolQueryBuilder boolQueryBuilder = new BoolQueryBuilder();
+        boolQueryBuilder.must(new TermsQueryBuilder("foo", "must"));
+        if (randomBoolean()) {
+            boolQueryBuilder.must(new WrapperQueryBuilder(new MatchNoneQueryBuilder().toString()));
+        } else {
+            boolQueryBuilder.filter(new WrapperQueryBuilder(new MatchNoneQueryBuilder().toString()));
+        }
+        assertEquals(new MatchNoneQueryBuilder(), QueryBuilder.rewriteQuery(boolQueryBuilder, createShardContext()));
+
+        boolQueryBuilder = new BoolQueryBuilder();
+        boolQueryBuilder.must(new TermsQueryBuilder("foo", "must"));
+        boolQueryBuilder.should(new MatchNoneQueryBuilder());
+        boolQueryBuilder.mustNot(new MatchNoneQueryBuilder());
+        assertSame(boolQueryBuilder, boolQueryBuilder.rewrite(createShardContext()));
+    }
+
     public void testRewriteMultipleTimes() throws IOException {
         BoolQueryBuilder boolQueryBuilder = new BoolQueryBuilder();
         boolQueryBuilder.must(new WrapperQueryBuilder(new WrapperQueryBuilder(new MatchAllQueryBuilder().toString()).toString()));
@@ -42,6 +42,8 @@ import org.elasticsearch.action.admin.indices.stats.CommonStats;
 import org.elasticsearch.action.admin.indices.stats.CommonStatsFlags;
 import org.elasticsearch.action.admin.indices.stats.IndexStats;
 import org.elasticsearch.action.admin.indices.stats.ShardStats;
+import org.elasticsearch.action.get.GetResponse;
+import org.elasticsearch.action.get.MultiGetRequest;
 import org.elasticsearch.action.index.IndexRequest;
 import org.elasticsearch.action.index.TransportIndexAction;
 import org.elasticsearch.action.search.SearchResponse;
@@ -88,6 +90,8 @@ import org.elasticsearch.index.IndexService;
 import org.elasticsearch.index.IndexSettings;
 import org.elasticsearch.index.engine.Engine;
 import org.elasticsearch.index.engine.EngineException;
+import org.elasticsearch.index.engine.VersionConflictEngineException;
+import org.elasticsearch.index.get.GetResult;
 import org.elasticsearch.index.fielddata.FieldDataStats;
 import org.elasticsearch.index.fielddata.IndexFieldData;
 import org.elasticsearch.index.flush.FlushStats;
@@ -107,6 +111,7 @@ import org.elasticsearch.plugins.Plugin;
 import org.elasticsearch.repositories.IndexId;
 import org.elasticsearch.repositories.Repository;
 import org.elasticsearch.repositories.RepositoryData;
+import org.elasticsearch.search.fetch.subphase.FetchSourceContext;
 import org.elasticsearch.snapshots.Snapshot;
 import org.elasticsearch.snapshots.SnapshotId;
 import org.elasticsearch.snapshots.SnapshotInfo;
@@ -162,6 +167,8 @@ import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.greaterThan;
 import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.lessThan;
 
 /**
  * Simple unit-test IndexShard related operations.
@@ -618,6 +625,149 @@ public class IndexShardTests extends ESSingleNodeTestCase {
         assertTrue(semaphore.tryAcquire(Integer.MAX_VALUE, 10, TimeUnit.SECONDS));
     }
 
+    public void testScheduledRefreshSkippedWhileSearchIdle() {
+        // no scheduled refreshes, the test calls them explicitly
+        createIndex("test", Settings.builder().put(IndexSettings.INDEX_REFRESH_INTERVAL_SETTING.getKey(), -1)
+            .put(IndexSettings.INDEX_SEARCH_IDLE_AFTER_SETTING.getKey(), "0ms").build());
+        ensureGreen();
+        IndicesService indicesService = getInstanceFromNode(IndicesService.class);
+        IndexShard shard = indicesService.indexService(resolveIndex("test")).getShardOrNull(0);
+        client().prepareIndex("test", "test", "0").setSource("{}").get();
+        assertTrue(shard.isSearchIdle());
+        assertFalse(shard.scheduledRefresh());
+        assertEquals(1, shard.refreshStats().getSkipped());
+        assertTrue(shard.isRefreshNeeded());
+
+        // the first search refreshes the shard and sees the document
+        assertHitCount(client().prepareSearch("test").get(), 1);
+        assertFalse(shard.isRefreshNeeded());
+
+        client().admin().indices().prepareUpdateSettings("test")
+            .setSettings(Settings.builder().put(IndexSettings.INDEX_SEARCH_IDLE_AFTER_SETTING.getKey(), "1h")).get();
+        assertHitCount(client().prepareSearch("test").get(), 1);
+        assertFalse(shard.isSearchIdle());
+        client().prepareIndex("test", "test", "1").setSource("{}").get();
+        assertTrue(shard.scheduledRefresh());
+        assertEquals(1, shard.refreshStats().getSkipped());
+        assertHitCount(client().prepareSearch("test").get(), 2);
+    }
+
+    public void testRealtimeGetFromTranslog() throws Exception {
+        assertAcked(client().admin().indices().prepareCreate("test")
+            .setSettings(Settings.builder().put(IndexSettings.INDEX_REFRESH_INTERVAL_SETTING.getKey(), -1))
+            .addMapping("test", jsonBuilder().startObject().startObject("test")
+                .startObject("_source").array("excludes", "secret").endObject()
+                .startObject("properties").startObject("stored").field("type", "keyword").field("store", true).endObject().endObject()
+                .endObject().endObject()));
+        ensureGreen();
+        IndicesService indicesService = getInstanceFromNode(IndicesService.class);
+        IndexShard shard = indicesService.indexService(resolveIndex("test")).getShardOrNull(0);
+        client().prepareIndex("test", "test", "1").setRouting("r")
+            .setSource("{\"foo\" : \"bar\", \"stored\" : \"value\", \"secret\" : \"s\"}").get();
+
+        GetResponse plain = client().prepareGet("test", "test", "1").setRouting("r").get();
+        GetResponse filtered = client().prepareGet("test", "test", "1").setRouting("r")
+            .setFields("stored").setFetchSource("foo", null).get();
+        assertEquals(2, shard.getStats().getTranslogHitCount());
+        assertEquals(0, shard.getStats().getTranslogMissCount());
+        assertTrue(shard.isRefreshNeeded());
+        assertEquals(Collections.singletonMap("foo", "bar"), filtered.getSourceAsMap());
+        assertEquals("value", filtered.getField("stored").getValue());
+        assertFalse(plain.getSourceAsMap().containsKey("secret"));
+        assertEquals("r", plain.getField("_routing").getValue());
+
+        // the same as what is loaded from the index
+        shard.refresh("test");
+        GetResponse plainFromIndex = client().prepareGet("test", "test", "1").setRouting("r").get();
+        GetResponse filteredFromIndex = client().prepareGet("test", "test", "1").setRouting("r")
+            .setFields("stored").setFetchSource("foo", null).get();
+        assertEquals(2, shard.getStats().getTranslogHitCount());
+        assertEquals(plainFromIndex.getSourceAsMap(), plain.getSourceAsMap());
+        assertEquals(plainFromIndex.getVersion(), plain.getVersion());
+        assertEquals(plainFromIndex.getFields().keySet(), plain.getFields().keySet());
+        assertEquals(filteredFromIndex.getSourceAsMap(), filtered.getSourceAsMap());
+        assertEquals(filteredFromIndex.getField("stored").getValues(), filtered.getField("stored").getValues());
+        assertEquals(filteredFromIndex.getFields().keySet(), filtered.getFields().keySet());
+    }
+
+    public void testMultiGetMatchesGet() throws Exception {
+        assertAcked(client().admin().indices().prepareCreate("test")
+            .setSettings(Settings.builder().put(IndexSettings.INDEX_REFRESH_INTERVAL_SETTING.getKey(), -1))
+            .addMapping("test", "stored", "type=keyword,store=true"));
+        ensureGreen();
+        IndicesService indicesService = getInstanceFromNode(IndicesService.class);
+        IndexShard shard = indicesService.indexService(resolveIndex("test")).getShardOrNull(0);
+        int numDocs = randomIntBetween(10, 100);
+        for (int i = 0; i < numDocs; i++) {
+            client().prepareIndex("test", "test", Integer.toString(randomInt(numDocs)))
+                .setSource("{\"stored\" : \"value" + i + "\", \"foo\" : \"bar" + i + "\"}").get();
+            if (i == numDocs / 2 || rarely()) {
+                shard.refresh("test");
+            }
+        }
+
+        List<MultiGetRequest.Item> items = new ArrayList<>();
+        int numItems = randomIntBetween(1, 50);
+        for (int i = 0; i < numItems; i++) {
+            MultiGetRequest.Item item = new MultiGetRequest.Item("test", randomFrom("test", "_all", null),
+                Integer.toString(randomInt(numDocs + 5)));
+            if (randomBoolean()) {
+                item.fields("stored");
+            }
+            if (randomBoolean()) {
+                item.fetchSourceContext(new FetchSourceContext(true, new String[] {"foo"}, null));
+            }
+            if (rarely()) {
+                item.version(randomIntBetween(1, 3));
+            }
+            items.add(item);
+        }
+        boolean realtime = randomBoolean();
+        GetResult[] results = new GetResult[numItems];
+        Exception[] failures = new Exception[numItems];
+        shard.getService().multiGet(items, realtime, false, (result, i) -> results[i] = result, (e, i) -> failures[i] = e);
+
+        for (int i = 0; i < numItems; i++) {
+            MultiGetRequest.Item item = items.get(i);
+            GetResult expected;
+            try {
+                expected = shard.getService().get(item.type(), item.id(), item.fields(), realtime, item.version(), item.versionType(),
+                    item.fetchSourceContext(), false);
+            } catch (VersionConflictEngineException e) {
+                assertThat(failures[i], instanceOf(VersionConflictEngineException.class));
+                continue;
+            }
+            assertNull(failures[i]);
+            assertEquals(expected.isExists(), results[i].isExists());
+            assertEquals(expected.getVersion(), results[i].getVersion());
+            assertEquals(expected.sourceAsMap(), results[i].sourceAsMap());
+            assertEquals(expected.getFields().keySet(), results[i].getFields().keySet());
+            for (String field : expected.getFields().keySet()) {
+                assertEquals(expected.field(field).getValues(), results[i].field(field).getValues());
+            }
+        }
+    }
+
+    public void testIndexBufferAllowanceIsCheckedWhileIndexing() throws Exception {
+        createIndex("test", Settings.builder().put(IndexSettings.INDEX_REFRESH_INTERVAL_SETTING.getKey(), -1).build());
+        ensureGreen();
+        IndicesService indicesService = getInstanceFromNode(IndicesService.class);
+        IndexShard shard = indicesService.indexService(resolveIndex("test")).getShardOrNull(0);
+        assertEquals(-1, shard.getIndexBufferAllowance());
+        final int numDocs = randomIntBetween(10, 50);
+        for (int i = 0; i < numDocs; i++) {
+            client().prepareIndex("test", "test", Integer.toString(i)).setSource("{\"foo\" : \"bar\"}").get();
+        }
+        assertThat(shard.getIndexedBytes(), greaterThan(0L));
+        final long bytesUsed = shard.getIndexBufferRAMBytesUsed();
+        assertThat(bytesUsed, greaterThan(0L));
+
+        // the next operation notices the buffer is over its allowance and writes it out
+        shard.setIndexBufferAllowance(1);
+        client().prepareIndex("test", "test", Integer.toString(numDocs)).setSource("{\"foo\" : \"bar\"}").get();
+        assertBusy(() -> assertThat(shard.getIndexBufferRAMBytesUsed(), lessThan(bytesUsed)));
+    }
+
     private void setDurability(IndexShard shard, Translog.Durability durability) {
         client().admin().indices().prepareUpdateSettings(shard.shardId.getIndexName()).setSettings(Settings.builder().put(IndexSettings.INDEX_TRANSLOG_DURABILITY_SETTING.getKey(), durability.name()).build()).get();
         assertEquals(durability, shard.getTranslogDurability());
@@ -1576,7 +1726,8 @@ public class IndexShardTests extends ESSingleNodeTestCase {
         IndexShard newShard = new IndexShard(initializingShardRouting, indexService.getIndexSettings(), shard.shardPath(),
             shard.store(), indexService.cache(), indexService.mapperService(), indexService.similarityService(),
             indexService.fieldData(), shard.getEngineFactory(), indexService.getIndexEventListener(), wrapper,
-            indexService.getThreadPool(), indexService.getBigArrays(), null, Collections.emptyList(), Arrays.asList(listeners));
+            indexService.getThreadPool(), indexService.getBigArrays(), null, Collections.emptyList(), Arrays.asList(listeners),
+            indexService.getIndexServices().getTranslogSyncCoordinator());
         return newShard;
     }
 
@@ -0,0 +1,105 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.index.translog;
+
+import org.apache.lucene.index.Term;
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.io.stream.BytesStreamOutput;
+import org.elasticsearch.common.util.BigArrays;
+import org.elasticsearch.test.ESTestCase;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.hamcrest.Matchers.containsString;
+
+public class GatheringChecksumStreamOutputTests extends ESTestCase {
+
+    /** serializes the operation the way the translog did before it kept large sources by reference */
+    private static BytesReference copyingSerialization(Translog.Operation operation) throws IOException {
+        BytesStreamOutput out = new BytesStreamOutput();
+        out.skip(Integer.BYTES);
+        Translog.writeOperationNoSize(new BufferedChecksumStreamOutput(out), operation);
+        final long end = out.position();
+        out.seek(0);
+        out.writeInt((int) (end - Integer.BYTES));
+        out.seek(end);
+        return out.bytes();
+    }
+
+    private static BytesReference gatheringSerialization(Translog.Operation operation) throws IOException {
+        try (GatheringChecksumStreamOutput out = new GatheringChecksumStreamOutput(BigArrays.NON_RECYCLING_INSTANCE)) {
+            Translog.Operation.writeType(operation, out);
+            // copy since the bytes are only valid until the output is closed
+            return new BytesArray(BytesReference.toBytes(out.bytes()));
+        }
+    }
+
+    private static byte[] randomSource(int length) {
+        byte[] source = new byte[length];
+        random().nextBytes(source);
+        return source;
+    }
+
+    public void testSameFormatAsCopyingSerialization() throws IOException {
+        int iters = scaledRandomIntBetween(10, 100);
+        for (int i = 0; i < iters; i++) {
+            final Translog.Operation operation;
+            if (randomBoolean()) {
+                int length = randomBoolean() ? randomIntBetween(0, GatheringChecksumStreamOutput.MIN_GATHERED_BYTES * 3)
+                    : randomIntBetween(100 * 1024, 200 * 1024);
+                operation = new Translog.Index("type", randomAsciiOfLength(8), randomSource(length));
+            } else {
+                operation = new Translog.Delete(new Term("_uid", randomAsciiOfLength(8)));
+            }
+            assertEquals(copyingSerialization(operation).toBytesRef(), gatheringSerialization(operation).toBytesRef());
+        }
+    }
+
+    public void testLargeSourcesAreNotCopied() throws IOException {
+        final byte[] source = randomSource(randomIntBetween(GatheringChecksumStreamOutput.MIN_GATHERED_BYTES, 1024 * 1024));
+        try (GatheringChecksumStreamOutput out = new GatheringChecksumStreamOutput(BigArrays.NON_RECYCLING_INSTANCE)) {
+            Translog.Operation.writeType(new Translog.Index("type", "1", source), out);
+            final BytesReference bytes = out.bytes();
+            final byte[] before = BytesReference.toBytes(bytes);
+            Arrays.fill(source, (byte) 42);
+            // the output refers to the source instead of holding a copy
+            assertFalse(Arrays.equals(before, BytesReference.toBytes(bytes)));
+        }
+    }
+
+    public void testReset() throws IOException {
+        final Translog.Operation first = new Translog.Index("type", "1", randomSource(randomIntBetween(0, 1024)));
+        final Translog.Operation second = new Translog.Delete(new Term("_uid", randomAsciiOfLength(8)));
+        try (GatheringChecksumStreamOutput out = new GatheringChecksumStreamOutput(BigArrays.NON_RECYCLING_INSTANCE)) {
+            Translog.Operation.writeType(first, out);
+            final BytesReference bytes = out.bytes();
+            assertSame(bytes, out.bytes());
+            assertEquals(copyingSerialization(first).toBytesRef(), bytes.toBytesRef());
+            IllegalStateException e = expectThrows(IllegalStateException.class, () -> out.writeByte((byte) 0));
+            assertThat(e.getMessage(), containsString("reset the output"));
+
+            out.reset();
+            Translog.Operation.writeType(second, out);
+            assertEquals(copyingSerialization(second).toBytesRef(), out.bytes().toBytesRef());
+        }
+    }
+}
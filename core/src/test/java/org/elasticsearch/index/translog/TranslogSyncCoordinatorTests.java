@@ -0,0 +1,260 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.elasticsearch.index.translog;
+
+import org.apache.lucene.store.AlreadyClosedException;
+import org.elasticsearch.common.io.stream.BytesStreamOutput;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.xcontent.ToXContent;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.common.xcontent.XContentFactory;
+import org.elasticsearch.test.ESTestCase;
+import org.elasticsearch.threadpool.TestThreadPool;
+import org.elasticsearch.threadpool.ThreadPool;
+import org.junit.After;
+import org.junit.Before;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.sameInstance;
+
+public class TranslogSyncCoordinatorTests extends ESTestCase {
+
+    private ThreadPool threadPool;
+
+    @Override
+    @Before
+    public void setUp() throws Exception {
+        super.setUp();
+        threadPool = new TestThreadPool(getTestName());
+    }
+
+    @After
+    public void terminate() throws Exception {
+        terminate(threadPool);
+    }
+
+    private TranslogSyncCoordinator newCoordinator(String maxWait) {
+        return new TranslogSyncCoordinator(Settings.builder().put(TranslogSyncCoordinator.MAX_WAIT_SETTING.getKey(), maxWait).build(),
+            threadPool);
+    }
+
+    public void testDisabledByDefault() {
+        TranslogSyncCoordinator coordinator = new TranslogSyncCoordinator(Settings.EMPTY, threadPool);
+        assertFalse(coordinator.isEnabled());
+        coordinator.close();
+        coordinator = newCoordinator("500micros");
+        assertTrue(coordinator.isEnabled());
+        coordinator.close();
+    }
+
+    public void testGroupCommitAcrossTargets() throws Exception {
+        try (TranslogSyncCoordinator coordinator = newCoordinator("200ms")) {
+            final Path dataPath = createTempDir();
+            // hold the worker in the group commit of another translog so that all locations below are queued by the time it
+            // starts the next window, no matter how long queueing them takes
+            final CountDownLatch blockerStarted = new CountDownLatch(1);
+            final CountDownLatch releaseBlocker = new CountDownLatch(1);
+            final RecordingTarget blocker = new RecordingTarget() {
+                @Override
+                public void ensureSynced(Stream<Translog.Location> locations) throws IOException {
+                    blockerStarted.countDown();
+                    try {
+                        releaseBlocker.await();
+                    } catch (InterruptedException e) {
+                        throw new AssertionError(e);
+                    }
+                    super.ensureSynced(locations);
+                }
+            };
+            final CountDownLatch blockerSynced = new CountDownLatch(1);
+            coordinator.sync(dataPath, blocker, new Translog.Location(1, 0, 1), e -> blockerSynced.countDown());
+            assertTrue(blockerStarted.await(10, TimeUnit.SECONDS));
+
+            final int numTargets = randomIntBetween(2, 3);
+            final List<RecordingTarget> targets = new ArrayList<>();
+            for (int i = 0; i < numTargets; i++) {
+                targets.add(new RecordingTarget());
+            }
+            final int locationsPerTarget = randomIntBetween(1, 5);
+            final CountDownLatch latch = new CountDownLatch(numTargets * locationsPerTarget);
+            final AtomicReference<Exception> failure = new AtomicReference<>();
+            for (int i = 0; i < locationsPerTarget; i++) {
+                for (RecordingTarget target : targets) {
+                    coordinator.sync(dataPath, target, new Translog.Location(1, i, 1), e -> {
+                        if (e != null) {
+                            failure.set(e);
+                        }
+                        latch.countDown();
+                    });
+                }
+            }
+            releaseBlocker.countDown();
+            assertTrue(blockerSynced.await(10, TimeUnit.SECONDS));
+            assertTrue(latch.await(10, TimeUnit.SECONDS));
+            assertNull(failure.get());
+            final TranslogStats total = new TranslogStats();
+            for (RecordingTarget target : targets) {
+                assertThat(target.syncs.get(), equalTo(1));
+                assertThat(target.synced.size(), equalTo(locationsPerTarget));
+                TranslogStats stats = new TranslogStats();
+                target.metrics.addTo(stats);
+                assertThat(stats.getGroupCommitSyncedLocations(), equalTo((long) locationsPerTarget));
+                assertThat(LongStream.of(stats.getGroupCommitLatencies()).sum(), equalTo((long) locationsPerTarget));
+                total.add(stats);
+            }
+            // the group commit is counted once, not once per translog that took part in it
+            assertThat(total.getGroupCommits(), equalTo(1L));
+            assertThat(total.getGroupCommitBatchSizes()[1], equalTo(1L)); // 2-3 translogs per group commit
+            assertThat(LongStream.of(total.getGroupCommitBatchSizes()).sum(), equalTo(1L));
+        }
+    }
+
+    public void testCloseDoesNotWaitForIdleWorker() throws Exception {
+        final TranslogSyncCoordinator coordinator = newCoordinator("1ms");
+        final CountDownLatch latch = new CountDownLatch(1);
+        coordinator.sync(createTempDir(), new RecordingTarget(), new Translog.Location(1, 0, 1), e -> latch.countDown());
+        assertTrue(latch.await(10, TimeUnit.SECONDS));
+        // the worker is now waiting for the next sync, closing must wake it up rather than wait for the termination timeout
+        final long start = System.nanoTime();
+        coordinator.close();
+        assertThat(TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - start), lessThan(5L));
+    }
+
+    public void testFailureIsPropagatedPerTarget() throws Exception {
+        try (TranslogSyncCoordinator coordinator = newCoordinator("100ms")) {
+            final Path dataPath = createTempDir();
+            final IOException exception = new IOException("simulated");
+            final RecordingTarget failing = new RecordingTarget() {
+                @Override
+                public void ensureSynced(Stream<Translog.Location> locations) throws IOException {
+                    throw exception;
+                }
+            };
+            final RecordingTarget healthy = new RecordingTarget();
+            final CountDownLatch latch = new CountDownLatch(2);
+            final List<Exception> failingResults = new CopyOnWriteArrayList<>();
+            final List<Exception> healthyResults = new CopyOnWriteArrayList<>();
+            coordinator.sync(dataPath, failing, new Translog.Location(1, 0, 1), e -> {
+                failingResults.add(e);
+                latch.countDown();
+            });
+            coordinator.sync(dataPath, healthy, new Translog.Location(1, 0, 1), e -> {
+                healthyResults.add(e);
+                latch.countDown();
+            });
+            assertTrue(latch.await(10, TimeUnit.SECONDS));
+            assertThat(failingResults.size(), equalTo(1));
+            assertThat(failingResults.get(0), sameInstance(exception));
+            assertThat(healthyResults.size(), equalTo(1));
+            assertNull(healthyResults.get(0));
+            assertThat(healthy.syncs.get(), equalTo(1));
+        }
+    }
+
+    public void testSyncAfterCloseFails() {
+        TranslogSyncCoordinator coordinator = newCoordinator("1ms");
+        coordinator.close();
+        final AtomicReference<Exception> result = new AtomicReference<>();
+        coordinator.sync(createTempDir(), new RecordingTarget(), new Translog.Location(1, 0, 1), result::set);
+        assertThat(result.get(), instanceOf(AlreadyClosedException.class));
+    }
+
+    public void testBuckets() {
+        assertThat(GroupCommitMetrics.bucket(TranslogStats.BATCH_SIZE_BUCKETS, 1), equalTo(0));
+        assertThat(GroupCommitMetrics.bucket(TranslogStats.BATCH_SIZE_BUCKETS, 3), equalTo(1));
+        assertThat(GroupCommitMetrics.bucket(TranslogStats.BATCH_SIZE_BUCKETS, 4), equalTo(2));
+        assertThat(GroupCommitMetrics.bucket(TranslogStats.BATCH_SIZE_BUCKETS, 31), equalTo(4));
+        assertThat(GroupCommitMetrics.bucket(TranslogStats.BATCH_SIZE_BUCKETS, 1000), equalTo(5));
+        assertThat(GroupCommitMetrics.bucket(TranslogStats.LATENCY_BUCKETS_MICROS, 0), equalTo(0));
+        assertThat(GroupCommitMetrics.bucket(TranslogStats.LATENCY_BUCKETS_MICROS, 999), equalTo(1));
+        assertThat(GroupCommitMetrics.bucket(TranslogStats.LATENCY_BUCKETS_MICROS, 100000), equalTo(4));
+    }
+
+    public void testStatsSerialization() throws IOException {
+        GroupCommitMetrics metrics = new GroupCommitMetrics();
+        metrics.onGroupCommit(5);
+        metrics.onLocationsSynced(7);
+        metrics.onSynced(TimeUnit.MILLISECONDS.toNanos(2));
+        TranslogStats stats = new TranslogStats(3, 100);
+        metrics.addTo(stats);
+        BytesStreamOutput out = new BytesStreamOutput();
+        stats.writeTo(out);
+        StreamInput in = out.bytes().streamInput();
+        TranslogStats read = new TranslogStats();
+        read.readFrom(in);
+        assertThat(read.estimatedNumberOfOperations(), equalTo(3L));
+        assertThat(read.getGroupCommits(), equalTo(1L));
+        assertThat(read.getGroupCommitSyncedLocations(), equalTo(7L));
+        assertThat(read.getGroupCommitBatchSizes()[2], equalTo(1L));
+        assertThat(read.getGroupCommitLatencies()[2], equalTo(1L));
+        read.add(stats);
+        assertThat(read.getGroupCommits(), equalTo(2L));
+        assertThat(read.getGroupCommitLatencies()[2], equalTo(2L));
+    }
+
+    public void testStatsRenderedForTranslogsThatDidNotRecordTheGroupCommit() throws IOException {
+        GroupCommitMetrics metrics = new GroupCommitMetrics();
+        metrics.onLocationsSynced(2);
+        metrics.onSynced(TimeUnit.MILLISECONDS.toNanos(2));
+        metrics.onSynced(TimeUnit.MILLISECONDS.toNanos(2));
+        TranslogStats stats = new TranslogStats(0, 0);
+        metrics.addTo(stats);
+        try (XContentBuilder builder = XContentFactory.jsonBuilder()) {
+            builder.startObject();
+            stats.toXContent(builder, ToXContent.EMPTY_PARAMS);
+            builder.endObject();
+            assertThat(builder.string(), containsString("\"group_commit\":{\"total\":0,\"synced_locations\":2"));
+            assertThat(builder.string(), containsString("\"lt_10ms\":2"));
+        }
+    }
+
+    private static class RecordingTarget implements TranslogSyncCoordinator.SyncTarget {
+        final AtomicInteger syncs = new AtomicInteger();
+        final List<Translog.Location> synced = new CopyOnWriteArrayList<>();
+        final GroupCommitMetrics metrics = new GroupCommitMetrics();
+
+        @Override
+        public void ensureSynced(Stream<Translog.Location> locations) throws IOException {
+            syncs.incrementAndGet();
+            synced.addAll(locations.collect(Collectors.toList()));
+        }
+
+        @Override
+        public GroupCommitMetrics groupCommitMetrics() {
+            return metrics;
+        }
+    }
+}
@@ -47,6 +47,7 @@ import org.elasticsearch.common.util.concurrent.ConcurrentCollections;
 import org.elasticsearch.common.xcontent.ToXContent;
 import org.elasticsearch.common.xcontent.XContentBuilder;
 import org.elasticsearch.common.xcontent.XContentFactory;
+import org.elasticsearch.index.IndexSettings;
 import org.elasticsearch.index.VersionType;
 import org.elasticsearch.index.shard.ShardId;
 import org.elasticsearch.index.translog.Translog.Location;
@@ -89,6 +90,7 @@ import java.util.concurrent.atomic.AtomicReference;
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.greaterThan;
 import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.lessThan;
 
 @LuceneTestCase.SuppressFileSystems("ExtrasFS")
 public class TranslogTests extends ESTestCase {
@@ -139,8 +141,13 @@ public class TranslogTests extends ESTestCase {
     }
 
     private TranslogConfig getTranslogConfig(Path path) {
+        return getTranslogConfig(path, Settings.EMPTY);
+    }
+
+    private TranslogConfig getTranslogConfig(Path path, Settings settings) {
         Settings build = Settings.builder()
             .put(IndexMetaData.SETTING_VERSION_CREATED, org.elasticsearch.Version.CURRENT)
+            .put(settings)
             .build();
         ByteSizeValue bufferSize = randomBoolean() ? TranslogConfig.DEFAULT_BUFFER_SIZE : new ByteSizeValue(10 + randomInt(128 * 1024), ByteSizeUnit.BYTES);
         return new TranslogConfig(shardId, path, IndexSettingsModule.newIndexSettings(shardId.getIndex(), build), BigArrays.NON_RECYCLING_INSTANCE, bufferSize);
@@ -395,6 +402,92 @@ public class TranslogTests extends ESTestCase {
         assertThat(snapshot1.totalOperations(), equalTo(1));
     }
 
+    public void testCompressedOperations() throws IOException {
+        final Settings lz4 = Settings.builder().put(IndexSettings.INDEX_TRANSLOG_CODEC_SETTING.getKey(), "lz4").build();
+        final ArrayList<Translog.Operation> ops = new ArrayList<>();
+        final List<Translog.Location> locations = new ArrayList<>();
+        try (Translog compressed = new Translog(getTranslogConfig(createTempDir(), lz4), null);
+             Translog uncompressed = new Translog(getTranslogConfig(createTempDir()), null)) {
+            final int numOps = randomIntBetween(10, 100);
+            final int rollAt = randomIntBetween(0, numOps - 1);
+            for (int i = 0; i < numOps; i++) {
+                final Translog.Operation op;
+                switch (i == 0 ? 0 : randomInt(3)) {
+                    case 0: // large and compressible
+                        StringBuilder source = new StringBuilder("{\"body\":\"");
+                        final int repetitions = randomIntBetween(20, 200);
+                        for (int j = 0; j < repetitions; j++) {
+                            source.append("the quick brown fox jumps over the lazy dog ");
+                        }
+                        op = new Translog.Index("test", Integer.toString(i), source.append("\"}").toString().getBytes("UTF-8"));
+                        break;
+                    case 1: // large but incompressible
+                        final byte[] randomSource = new byte[randomIntBetween(300, 2000)];
+                        random().nextBytes(randomSource);
+                        op = new Translog.Index("test", Integer.toString(i), randomSource);
+                        break;
+                    case 2:
+                        op = new Translog.Index("test", Integer.toString(i), new byte[]{(byte) i});
+                        break;
+                    default:
+                        op = new Translog.Delete(newUid(Integer.toString(i)));
+                        break;
+                }
+                ops.add(op);
+                locations.add(compressed.add(op));
+                uncompressed.add(op);
+                if (i == rollAt) {
+                    // make sure snapshots span multiple generations
+                    compressed.prepareCommit();
+                }
+            }
+            for (int i = 0; i < numOps; i++) {
+                assertEquals(ops.get(i), compressed.read(locations.get(i)));
+            }
+            assertThat(compressed.newSnapshot(), SnapshotMatchers.equalsTo(ops));
+            assertThat(compressed.sizeInBytes(), lessThan(uncompressed.sizeInBytes() + TranslogWriter.getHeaderLength(compressed.getTranslogUUID())));
+
+            compressed.sync();
+            final Translog.TranslogGeneration generation = compressed.getGeneration();
+            final TranslogConfig config = compressed.getConfig();
+            compressed.close();
+            try (Translog recovered = new Translog(config, generation)) {
+                assertThat(recovered.newSnapshot(), SnapshotMatchers.equalsTo(new ArrayList<>(ops.subList(rollAt + 1, numOps))));
+            }
+        }
+    }
+
+    public void testTruncateCompressedTranslog() throws IOException {
+        final Settings lz4 = Settings.builder().put(IndexSettings.INDEX_TRANSLOG_CODEC_SETTING.getKey(), "lz4").build();
+        final Path path = createTempDir();
+        final TranslogConfig config = getTranslogConfig(path, lz4);
+        final Translog.TranslogGeneration generation;
+        try (Translog compressed = new Translog(config, null)) {
+            final byte[] source = new byte[randomIntBetween(1024, 4096)]; // all zeros compresses very well
+            for (int i = 0; i < randomIntBetween(1, 10); i++) {
+                compressed.add(new Translog.Index("test", Integer.toString(i), source));
+            }
+            compressed.sync();
+            generation = compressed.getGeneration();
+        }
+        // this is what TruncateTranslogCommand does
+        final Path emptyTranslog = path.resolve("temp-" + Translog.getFilename(generation.translogFileGeneration));
+        final Path emptyCheckpoint = path.resolve("temp-" + Translog.CHECKPOINT_FILE_NAME);
+        final int translogLength = TruncateTranslogCommand.writeEmptyTranslog(emptyTranslog, generation.translogUUID);
+        TruncateTranslogCommand.writeEmptyCheckpoint(emptyCheckpoint, translogLength, generation.translogFileGeneration);
+        IOUtils.rm(TruncateTranslogCommand.filesInDirectory(path).stream()
+            .filter(file -> file.getFileName().toString().startsWith("temp-") == false).toArray(Path[]::new));
+        Files.move(emptyCheckpoint, path.resolve(Translog.CHECKPOINT_FILE_NAME));
+        Files.move(emptyTranslog, path.resolve(Translog.getFilename(generation.translogFileGeneration)));
+
+        try (Translog truncated = new Translog(config, generation)) {
+            assertThat(truncated.newSnapshot(), SnapshotMatchers.size(0));
+            final Translog.Index op = new Translog.Index("test", "1", new byte[2048]);
+            final Translog.Location location = truncated.add(op);
+            assertEquals(op, truncated.read(location));
+        }
+    }
+
     public void testSnapshotWithNewTranslog() throws IOException {
         ArrayList<Translog.Operation> ops = new ArrayList<>();
         Translog.Snapshot snapshot = translog.newSnapshot();
@@ -45,6 +45,7 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 
@@ -52,6 +53,8 @@ import static java.util.Collections.emptyMap;
 import static java.util.Collections.emptySet;
 import static org.elasticsearch.test.hamcrest.ElasticsearchAssertions.assertNoFailures;
 import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.lessThan;
 
 public class IndexingMemoryControllerTests extends ESSingleNodeTestCase {
 
@@ -66,6 +69,15 @@ public class IndexingMemoryControllerTests extends ESSingleNodeTestCase {
         // Shards that are currently throttled
         final Set<IndexShard> throttled = new HashSet<>();
 
+        // How many bytes each shard has indexed in total
+        final Map<IndexShard, Long> indexedBytes = new HashMap<>();
+
+        // The indexing buffer allowance handed to each shard
+        final Map<IndexShard, Long> allowances = new HashMap<>();
+
+        // Every simulated document takes a second to index
+        long timeInNanos = 0;
+
         public MockController(Settings settings) {
             super(Settings.builder()
                             .put("indices.memory.interval", "200h") // disable it
@@ -102,6 +114,26 @@ public class IndexingMemoryControllerTests extends ESSingleNodeTestCase {
         protected void checkIdle(IndexShard shard, long inactiveTimeNS) {
         }
 
+        @Override
+        protected long getIndexedBytes(IndexShard shard) {
+            return indexedBytes.getOrDefault(shard, 0L);
+        }
+
+        @Override
+        protected void setIndexBufferAllowance(IndexShard shard, long bytes) {
+            allowances.put(shard, bytes);
+        }
+
+        @Override
+        protected long getIndexBufferAllowance(IndexShard shard) {
+            return allowances.getOrDefault(shard, -1L);
+        }
+
+        @Override
+        protected long currentTimeInNanos() {
+            return timeInNanos;
+        }
+
         @Override
         public void writeIndexingBufferAsync(IndexShard shard) {
             long bytes = indexBufferRAMBytesUsed.put(shard, 0L);
@@ -157,6 +189,8 @@ public class IndexingMemoryControllerTests extends ESSingleNodeTestCase {
             // Each doc we index takes up a megabyte!
             bytes += 1024*1024;
             indexBufferRAMBytesUsed.put(shard, bytes);
+            indexedBytes.put(shard, getIndexedBytes(shard) + 1024*1024);
+            timeInNanos += TimeUnit.SECONDS.toNanos(1);
             forceCheck();
         }
 
@@ -285,6 +319,87 @@ public class IndexingMemoryControllerTests extends ESSingleNodeTestCase {
         assertThat(controller.indexingBufferSize(), equalTo(new ByteSizeValue(6, ByteSizeUnit.MB)));
     }
 
+    public void testUnknownAllocation() {
+        Exception e = expectThrows(IllegalArgumentException.class,
+                                   () -> new MockController(Settings.builder()
+                                                            .put("indices.memory.index_buffer_allocation", "fair").build()));
+        assertEquals("unknown index buffer allocation [fair]", e.getMessage());
+    }
+
+    public void testLargestAllocationHandsOutNoAllowances() {
+        createIndex("test", Settings.builder().put("index.number_of_shards", 2).put("index.number_of_replicas", 0).build());
+        IndicesService indicesService = getInstanceFromNode(IndicesService.class);
+        IndexService test = indicesService.indexService(resolveIndex("test"));
+
+        MockController controller = new MockController(Settings.builder()
+                                                       .put("indices.memory.index_buffer_size", "10mb").build());
+        IndexShard shard0 = test.getShard(0);
+        IndexShard shard1 = test.getShard(1);
+        controller.simulateIndexing(shard1);
+        controller.simulateIndexing(shard1);
+        for (int i = 0; i < 9; i++) {
+            controller.simulateIndexing(shard0);
+        }
+        // the stale buffer of shard1 makes us write out shard0 before it could use the whole buffer
+        controller.assertWriting(shard0, 9);
+        controller.assertBuffer(shard1, 2);
+        assertTrue(controller.allowances.isEmpty());
+        IndexingBufferStats stats = controller.stats();
+        assertEquals("largest", stats.getAllocation());
+        for (IndexingBufferStats.ShardStats shardStats : stats.getShards()) {
+            assertEquals(-1, shardStats.getAllowanceInBytes());
+        }
+    }
+
+    public void testIngestRateAllocation() {
+        createIndex("test", Settings.builder().put("index.number_of_shards", 2).put("index.number_of_replicas", 0).build());
+        IndicesService indicesService = getInstanceFromNode(IndicesService.class);
+        IndexService test = indicesService.indexService(resolveIndex("test"));
+
+        MockController controller = new MockController(Settings.builder()
+                                                       .put("indices.memory.index_buffer_size", "10mb")
+                                                       .put("indices.memory.index_buffer_allocation", "ingest_rate").build());
+        IndexShard shard0 = test.getShard(0);
+        IndexShard shard1 = test.getShard(1);
+
+        // a shard we know nothing about yet gets the whole buffer to itself
+        controller.simulateIndexing(shard1);
+        assertEquals(10 * 1024 * 1024, controller.getIndexBufferAllowance(shard1));
+        controller.simulateIndexing(shard1);
+
+        // shard1 goes cold while shard0 gets hot
+        for (int i = 0; i < 3; i++) {
+            controller.simulateIndexing(shard0);
+        }
+        // shard1 is down to the floor allowance and its stale buffer is written out
+        final long evenShare = 5 * 1024 * 1024;
+        assertEquals(evenShare / 4, controller.getIndexBufferAllowance(shard1));
+        controller.assertWriting(shard1, 2);
+        controller.assertBuffer(shard1, 0);
+
+        // which leaves almost all of the buffer to shard0
+        for (int i = 0; i < 6; i++) {
+            controller.simulateIndexing(shard0);
+        }
+        controller.assertBuffer(shard0, 9);
+        controller.assertWriting(shard0, 0);
+        assertThat(controller.getIndexBufferAllowance(shard0), greaterThan(9L * 1024 * 1024));
+
+        IndexingBufferStats stats = controller.stats();
+        assertEquals("ingest_rate", stats.getAllocation());
+        assertEquals(10 * 1024 * 1024, stats.getLimitInBytes());
+        assertEquals(9 * 1024 * 1024, stats.getUsedInBytes());
+        assertEquals(2 * 1024 * 1024, stats.getWritingInBytes());
+        assertEquals(2, stats.getShards().size());
+        for (IndexingBufferStats.ShardStats shardStats : stats.getShards()) {
+            if (shardStats.getShardId().equals(shard0.shardId())) {
+                assertThat(shardStats.getIngestRateInBytesPerSec(), greaterThan(512L * 1024));
+            } else {
+                assertThat(shardStats.getIngestRateInBytesPerSec(), lessThan(64L * 1024));
+            }
+        }
+    }
+
     public void testThrottling() throws Exception {
         createIndex("test", Settings.builder().put("index.number_of_shards", 3).put("index.number_of_replicas", 0).build());
         IndicesService indicesService = getInstanceFromNode(IndicesService.class);
@@ -0,0 +1,109 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.indices;
+
+import org.elasticsearch.common.unit.ByteSizeUnit;
+import org.elasticsearch.common.unit.ByteSizeValue;
+import org.elasticsearch.indices.MergeIOController.DeviceThrottle;
+import org.elasticsearch.test.ESTestCase;
+
+import java.util.concurrent.TimeUnit;
+
+public class MergeIOControllerTests extends ESTestCase {
+
+    private static final long MIN = new ByteSizeValue(5, ByteSizeUnit.MB).bytes();
+    private static final long MAX = new ByteSizeValue(100, ByteSizeUnit.MB).bytes();
+    private static final long START = new ByteSizeValue(20, ByteSizeUnit.MB).bytes();
+
+    public void testRatesNeedTwoSamples() {
+        DeviceThrottle device = new DeviceThrottle(MIN, MAX, 0.8, 4.0);
+        device.sample(0, "sda", 0, 0, 0);
+        assertFalse(device.isSampled());
+        device.adjustBudget(1, 2);
+        assertEquals(START, device.getBudgetBytesPerSec());
+
+        // 1 second, busy for 500ms with an average of 1.5 queued requests, 2048 sectors moved
+        device.sample(TimeUnit.SECONDS.toNanos(1), "sda", 2048, 500, 1500);
+        assertTrue(device.isSampled());
+        assertEquals(0.5, device.getUtilization(), 0.0001);
+        assertEquals(1.5, device.getQueueDepth(), 0.0001);
+        MergeIOStats.DeviceStats stats = device.stats();
+        assertEquals("sda", stats.getDeviceName());
+        assertEquals(2048 * 512, stats.getThroughputBytesPerSec());
+
+        device.invalidate();
+        assertFalse(device.isSampled());
+    }
+
+    public void testBudgetFollowsDeviceLoad() {
+        DeviceThrottle device = new DeviceThrottle(MIN, MAX, 0.8, 4.0);
+        long nanos = 0;
+        long ioMillis = 0;
+        device.sample(nanos, "sda", 0, ioMillis, 0);
+
+        // an idle device with merges running grows the budget up to the max
+        for (int i = 0; i < 100; i++) {
+            nanos += TimeUnit.SECONDS.toNanos(1);
+            ioMillis += 100;
+            device.sample(nanos, "sda", 0, ioMillis, ioMillis);
+            device.adjustBudget(2, 2);
+        }
+        assertEquals(MAX, device.getBudgetBytesPerSec());
+        assertEquals(MAX / 2, device.getMergeRateBytesPerSec());
+
+        // a saturated device shrinks it down to the min
+        for (int i = 0; i < 100; i++) {
+            nanos += TimeUnit.SECONDS.toNanos(1);
+            ioMillis += 1000;
+            device.sample(nanos, "sda", 0, ioMillis, ioMillis);
+            device.adjustBudget(2, 2);
+        }
+        assertEquals(MIN, device.getBudgetBytesPerSec());
+    }
+
+    public void testDeepQueueShrinksBudget() {
+        DeviceThrottle device = new DeviceThrottle(MIN, MAX, 0.8, 4.0);
+        device.sample(0, "sda", 0, 0, 0);
+        // only half busy, but requests pile up
+        device.sample(TimeUnit.SECONDS.toNanos(1), "sda", 0, 500, 8000);
+        device.adjustBudget(1, 1);
+        assertEquals((long) (START / MergeIOController.BUDGET_STEP), device.getBudgetBytesPerSec());
+    }
+
+    public void testIdleDeviceWithoutMergesKeepsBudget() {
+        DeviceThrottle device = new DeviceThrottle(MIN, MAX, 0.8, 4.0);
+        device.sample(0, "sda", 0, 0, 0);
+        device.sample(TimeUnit.SECONDS.toNanos(1), "sda", 0, 0, 0);
+        device.adjustBudget(3, 0);
+        assertEquals(START, device.getBudgetBytesPerSec());
+        assertEquals(START, device.getMergeRateBytesPerSec());
+        assertEquals(3, device.stats().getShards());
+    }
+
+    public void testBudgetIsSharedByThrottledMerges() {
+        DeviceThrottle device = new DeviceThrottle(MIN, MAX, 0.8, 4.0);
+        device.sample(0, "sda", 0, 0, 0);
+        device.sample(TimeUnit.SECONDS.toNanos(1), "sda", 0, 900, 900);
+        int merges = randomIntBetween(1, 10);
+        device.adjustBudget(randomIntBetween(1, 10), merges);
+        assertEquals(device.getBudgetBytesPerSec() / merges, device.getMergeRateBytesPerSec(), 1);
+        assertEquals(merges, device.stats().getCurrentThrottledMerges());
+    }
+}
@@ -30,8 +30,9 @@ import java.util.Map;
 public class IngestStatsTests extends ESTestCase {
 
     public void testSerialization() throws IOException {
-        IngestStats.Stats total = new IngestStats.Stats(5, 10, 20, 30);
-        IngestStats.Stats foo = new IngestStats.Stats(50, 100, 200, 300);
+        IngestStats.Stats total = new IngestStats.Stats(5, 10, 20, 30, 40);
+        IngestStats.Stats foo = new IngestStats.Stats(50, 100, 200, 300, 400,
+            Collections.singletonMap("grok_0", Collections.singletonMap("pattern_0_matched", 500L)));
         IngestStats ingestStats = new IngestStats(total, Collections.singletonMap("foo", foo));
         IngestStats serialize = serialize(ingestStats);
         assertNotSame(serialize, ingestStats);
@@ -40,6 +41,7 @@ public class IngestStatsTests extends ESTestCase {
         assertEquals(total.getIngestFailedCount(), serialize.getTotalStats().getIngestFailedCount());
         assertEquals(total.getIngestTimeInMillis(), serialize.getTotalStats().getIngestTimeInMillis());
         assertEquals(total.getIngestCurrent(), serialize.getTotalStats().getIngestCurrent());
+        assertEquals(total.getIngestSizeInBytes(), serialize.getTotalStats().getIngestSizeInBytes());
 
         assertEquals(ingestStats.getStatsPerPipeline().size(), 1);
         assertTrue(ingestStats.getStatsPerPipeline().containsKey("foo"));
@@ -57,6 +59,9 @@ public class IngestStatsTests extends ESTestCase {
         assertEquals(leftStats.getIngestFailedCount(), rightStats.getIngestFailedCount());
         assertEquals(leftStats.getIngestTimeInMillis(), rightStats.getIngestTimeInMillis());
         assertEquals(leftStats.getIngestCurrent(), rightStats.getIngestCurrent());
+        assertEquals(leftStats.getIngestSizeInBytes(), rightStats.getIngestSizeInBytes());
+        assertEquals(leftStats.getProcessorStats(), rightStats.getProcessorStats());
+        assertEquals(Collections.emptyMap(), serialize.getTotalStats().getProcessorStats());
     }
 
     private IngestStats serialize(IngestStats stats) throws IOException {
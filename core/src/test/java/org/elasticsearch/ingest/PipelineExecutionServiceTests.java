@@ -27,24 +27,33 @@ import org.elasticsearch.action.delete.DeleteRequest;
 import org.elasticsearch.action.index.IndexRequest;
 import org.elasticsearch.action.update.UpdateRequest;
 import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.common.unit.TimeValue;
 import org.elasticsearch.test.ESTestCase;
+import org.elasticsearch.threadpool.TestThreadPool;
 import org.elasticsearch.threadpool.ThreadPool;
 import org.hamcrest.CustomTypeSafeMatcher;
 import org.junit.Before;
 import org.mockito.ArgumentMatcher;
 import org.mockito.invocation.InvocationOnMock;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.BiConsumer;
 import java.util.function.Consumer;
 
+import static org.hamcrest.Matchers.endsWith;
 import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
 import static org.hamcrest.Matchers.hasKey;
 import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.nullValue;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyBoolean;
 import static org.mockito.Matchers.anyString;
@@ -69,7 +78,7 @@ public class PipelineExecutionServiceTests extends ESTestCase {
         store = mock(PipelineStore.class);
         ThreadPool threadPool = mock(ThreadPool.class);
         when(threadPool.executor(anyString())).thenReturn(Runnable::run);
-        executionService = new PipelineExecutionService(store, threadPool);
+        executionService = new PipelineExecutionService(Settings.EMPTY, store, threadPool);
     }
 
     public void testExecuteIndexPipelineDoesNotExist() {
@@ -372,6 +381,72 @@ public class PipelineExecutionServiceTests extends ESTestCase {
         verify(completionHandler, times(1)).accept(null);
     }
 
+    public void testConcurrentBulkRequestExecution() throws Exception {
+        String pipelineId = "_id";
+        Processor processor = new TestProcessor(ingestDocument -> {
+            String id = ingestDocument.getFieldValue("_id", String.class);
+            if (Integer.parseInt(id) % 3 == 0) {
+                throw new IllegalArgumentException(id);
+            }
+            ingestDocument.setFieldValue("processed", true);
+        });
+        when(store.get(pipelineId)).thenReturn(new Pipeline(pipelineId, null, version, new CompoundProcessor(processor)));
+
+        BulkRequest bulkRequest = new BulkRequest();
+        List<String> expectedFailedIds = new ArrayList<>();
+        int numRequest = scaledRandomIntBetween(8, 256);
+        for (int i = 0; i < numRequest; i++) {
+            IndexRequest indexRequest = new IndexRequest("_index", "_type", Integer.toString(i)).setPipeline(pipelineId);
+            indexRequest.source("field1", "value1");
+            bulkRequest.add(indexRequest);
+            if (i % 3 == 0) {
+                expectedFailedIds.add(Integer.toString(i));
+            }
+        }
+
+        ThreadPool threadPool = new TestThreadPool(getTestName());
+        try {
+            Settings settings = Settings.builder()
+                .put(PipelineExecutionService.BULK_MAX_CONCURRENT_DOCUMENTS_SETTING.getKey(), randomIntBetween(1, 8))
+                .build();
+            PipelineExecutionService executionService = new PipelineExecutionService(settings, store, threadPool);
+            List<String> failedIds = new ArrayList<>();
+            List<Exception> failures = new ArrayList<>();
+            CountDownLatch latch = new CountDownLatch(1);
+            AtomicReference<Exception> completion = new AtomicReference<>();
+            executionService.executeBulkRequest(bulkRequest.requests(), (indexRequest, e) -> {
+                failedIds.add(indexRequest.id());
+                failures.add(e);
+            }, e -> {
+                completion.set(e);
+                latch.countDown();
+            });
+            latch.await();
+
+            assertNull(completion.get());
+            assertThat(failedIds, equalTo(expectedFailedIds));
+            for (int i = 0; i < failures.size(); i++) {
+                assertThat(failures.get(i).getMessage(), endsWith(": " + failedIds.get(i)));
+            }
+            for (ActionRequest request : bulkRequest.requests()) {
+                IndexRequest indexRequest = (IndexRequest) request;
+                if (expectedFailedIds.contains(indexRequest.id())) {
+                    assertThat(indexRequest.getPipeline(), equalTo(pipelineId));
+                } else {
+                    assertThat(indexRequest.getPipeline(), nullValue());
+                    assertThat(indexRequest.sourceAsMap().get("processed"), equalTo(true));
+                }
+            }
+            IngestStats.Stats totalStats = executionService.stats().getTotalStats();
+            assertThat(totalStats.getIngestCount(), equalTo((long) numRequest));
+            assertThat(totalStats.getIngestFailedCount(), equalTo((long) expectedFailedIds.size()));
+            assertThat(totalStats.getIngestCurrent(), equalTo(0L));
+            assertThat(totalStats.getIngestSizeInBytes(), greaterThan(0L));
+        } finally {
+            terminate(threadPool);
+        }
+    }
+
     public void testStats() throws Exception {
         IngestStats ingestStats = executionService.stats();
         assertThat(ingestStats.getStatsPerPipeline().size(), equalTo(0));
@@ -379,6 +454,7 @@ public class PipelineExecutionServiceTests extends ESTestCase {
         assertThat(ingestStats.getTotalStats().getIngestCurrent(), equalTo(0L));
         assertThat(ingestStats.getTotalStats().getIngestFailedCount(), equalTo(0L));
         assertThat(ingestStats.getTotalStats().getIngestTimeInMillis(), equalTo(0L));
+        assertThat(ingestStats.getTotalStats().getIngestSizeInBytes(), equalTo(0L));
 
         when(store.get("_id1")).thenReturn(new Pipeline("_id1", null, version, new CompoundProcessor(mock(Processor.class))));
         when(store.get("_id2")).thenReturn(new Pipeline("_id2", null, null, new CompoundProcessor(mock(Processor.class))));
@@ -411,6 +487,52 @@ public class PipelineExecutionServiceTests extends ESTestCase {
         assertThat(ingestStats.getTotalStats().getIngestCount(), equalTo(2L));
     }
 
+    public void testProcessorStats() throws Exception {
+        Processor tagged = mock(Processor.class);
+        when(tagged.getType()).thenReturn("my_tagged_type");
+        when(tagged.getTag()).thenReturn("my_tag");
+        when(tagged.getStats()).thenReturn(Collections.singletonMap("matched", 1L));
+        Processor untagged = mock(Processor.class);
+        when(untagged.getType()).thenReturn("my_type");
+        when(untagged.getStats()).thenReturn(Collections.singletonMap("matched", 2L));
+        Processor withoutStats = mock(Processor.class);
+        when(store.get("_id")).thenReturn(new Pipeline("_id", null, null, new CompoundProcessor(withoutStats, tagged, untagged)));
+        executionService.updatePipelineStats(new IngestMetadata(
+            Collections.singletonMap("_id", new PipelineConfiguration("_id", new BytesArray("{}")))));
+
+        IngestStats ingestStats = executionService.stats();
+        Map<String, Map<String, Long>> processorStats = ingestStats.getStatsPerPipeline().get("_id").getProcessorStats();
+        assertThat(processorStats.size(), equalTo(2));
+        assertThat(processorStats.get("my_tagged_type_1"), equalTo(Collections.singletonMap("matched", 1L)));
+        assertThat(processorStats.get("my_type_2"), equalTo(Collections.singletonMap("matched", 2L)));
+        assertThat(ingestStats.getTotalStats().getProcessorStats().size(), equalTo(0));
+    }
+
+    public void testProcessorStatsOfWrappedProcessors() throws Exception {
+        Processor processor = mock(Processor.class);
+        when(processor.getType()).thenReturn("my_type");
+        when(processor.getTag()).thenReturn("my_tag");
+        when(processor.getStats()).thenReturn(Collections.singletonMap("matched", 1L));
+        Processor onFailureProcessor = mock(Processor.class);
+        when(onFailureProcessor.getType()).thenReturn("my_type");
+        when(onFailureProcessor.getStats()).thenReturn(Collections.singletonMap("matched", 2L));
+        // a processor with on_failure, and one with the same tag and ignore_failure
+        Processor withOnFailure = new CompoundProcessor(false, Collections.singletonList(processor),
+            Collections.singletonList(onFailureProcessor));
+        Processor ignoringFailures = new CompoundProcessor(true, Collections.singletonList(processor), Collections.emptyList());
+        when(store.get("_id")).thenReturn(new Pipeline("_id", null, null, new CompoundProcessor(withOnFailure, ignoringFailures)));
+        executionService.updatePipelineStats(new IngestMetadata(
+            Collections.singletonMap("_id", new PipelineConfiguration("_id", new BytesArray("{}")))));
+
+        Map<String, Map<String, Long>> processorStats = executionService.stats().getStatsPerPipeline().get("_id").getProcessorStats();
+        assertThat(processorStats.size(), equalTo(2));
+        Map<String, Long> expected = new HashMap<>();
+        expected.put("matched", 1L);
+        expected.put("on_failure.my_type_0.matched", 2L);
+        assertThat(processorStats.get("my_type_0"), equalTo(expected));
+        assertThat(processorStats.get("my_type_1"), equalTo(Collections.singletonMap("matched", 1L)));
+    }
+
     // issue: https://github.com/elastic/elasticsearch/issues/18126
     public void testUpdatingStatsWhenRemovingPipelineWorks() throws Exception {
         Map<String, PipelineConfiguration> configurationMap = new HashMap<>();
@@ -112,6 +112,14 @@ public class SearchRequestTests extends ESTestCase {
 
         e = expectThrows(NullPointerException.class, () -> searchRequest.scroll((TimeValue)null));
         assertEquals("keepAlive must not be null", e.getMessage());
+
+        IllegalArgumentException iae = expectThrows(IllegalArgumentException.class,
+                () -> searchRequest.batchedReduceSize(randomIntBetween(Integer.MIN_VALUE, 1)));
+        assertEquals("batchedReduceSize must be >= 2", iae.getMessage());
+
+        iae = expectThrows(IllegalArgumentException.class,
+                () -> searchRequest.preFilterShardSize(randomIntBetween(Integer.MIN_VALUE, 0)));
+        assertEquals("preFilterShardSize must be >= 1", iae.getMessage());
     }
 
     public void testEqualsAndHashcode() throws IOException {
@@ -190,6 +198,18 @@ public class SearchRequestTests extends ESTestCase {
                 changed = true;
             }
         }
+        if (randomBoolean()) {
+            secondSearchRequest.batchedReduceSize(randomIntBetween(2, 1024));
+            if (secondSearchRequest.batchedReduceSize() != firstSearchRequest.batchedReduceSize()) {
+                changed = true;
+            }
+        }
+        if (randomBoolean()) {
+            secondSearchRequest.preFilterShardSize(randomIntBetween(1, 1024));
+            if (secondSearchRequest.preFilterShardSize() != firstSearchRequest.preFilterShardSize()) {
+                changed = true;
+            }
+        }
         if (randomBoolean()) {
             secondSearchRequest.source(createSearchSourceBuilder());
             if (secondSearchRequest.source().equals(firstSearchRequest.source()) == false) {
@@ -232,6 +252,12 @@ public class SearchRequestTests extends ESTestCase {
         if (randomBoolean()) {
             searchRequest.searchType(randomFrom(SearchType.values()));
         }
+        if (randomBoolean()) {
+            searchRequest.batchedReduceSize(randomIntBetween(2, 1024));
+        }
+        if (randomBoolean()) {
+            searchRequest.preFilterShardSize(randomIntBetween(1, 1024));
+        }
         if (randomBoolean()) {
             searchRequest.source(createSearchSourceBuilder());
         }
@@ -248,6 +274,8 @@ public class SearchRequestTests extends ESTestCase {
         result.routing(searchRequest.routing());
         result.requestCache(searchRequest.requestCache());
         result.scroll(searchRequest.scroll());
+        result.batchedReduceSize(searchRequest.batchedReduceSize());
+        result.preFilterShardSize(searchRequest.preFilterShardSize());
         if (searchRequest.source() != null) {
             result.source(searchRequest.source());
         }
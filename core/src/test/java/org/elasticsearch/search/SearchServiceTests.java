@@ -27,22 +27,33 @@ import org.elasticsearch.action.search.SearchPhaseExecutionException;
 import org.elasticsearch.action.search.SearchResponse;
 import org.elasticsearch.action.search.SearchType;
 import org.elasticsearch.action.support.WriteRequest;
+import org.elasticsearch.common.Strings;
 import org.elasticsearch.common.io.stream.StreamInput;
 import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.common.xcontent.XContentBuilder;
 import org.elasticsearch.index.IndexService;
+import org.elasticsearch.index.IndexSettings;
 import org.elasticsearch.index.query.AbstractQueryBuilder;
+import org.elasticsearch.index.query.BoolQueryBuilder;
+import org.elasticsearch.index.query.MatchAllQueryBuilder;
 import org.elasticsearch.index.query.QueryBuilder;
 import org.elasticsearch.index.query.QueryRewriteContext;
 import org.elasticsearch.index.query.QueryShardContext;
+import org.elasticsearch.index.query.RangeQueryBuilder;
+import org.elasticsearch.index.query.TermQueryBuilder;
 import org.elasticsearch.index.shard.IndexShard;
 import org.elasticsearch.indices.IndicesService;
 import org.elasticsearch.plugins.Plugin;
 import org.elasticsearch.plugins.SearchPlugin;
+import org.elasticsearch.search.aggregations.bucket.global.GlobalAggregationBuilder;
+import org.elasticsearch.search.aggregations.bucket.histogram.DateHistogramAggregationBuilder;
+import org.elasticsearch.search.aggregations.bucket.terms.TermsAggregationBuilder;
 import org.elasticsearch.search.builder.SearchSourceBuilder;
 import org.elasticsearch.search.fetch.ShardFetchRequest;
 import org.elasticsearch.search.internal.ShardSearchLocalRequest;
 import org.elasticsearch.search.query.QuerySearchResultProvider;
+import org.elasticsearch.search.suggest.SuggestBuilder;
 import org.elasticsearch.test.ESSingleNodeTestCase;
 
 import java.io.IOException;
@@ -51,7 +62,9 @@ import java.util.List;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static java.util.Collections.singletonList;
 import static org.elasticsearch.action.support.WriteRequest.RefreshPolicy.IMMEDIATE;
@@ -193,6 +206,107 @@ public class SearchServiceTests extends ESSingleNodeTestCase {
         }
     }
 
+    public void testCanMatch() throws IOException {
+        createIndex("index", Settings.builder().put("index.number_of_shards", 1).build(), "type", "date", "type=date");
+        client().prepareIndex("index", "type", "1").setSource("date", "2016-10-17").setRefreshPolicy(IMMEDIATE).get();
+        final SearchService service = getInstanceFromNode(SearchService.class);
+        final IndexShard indexShard = getInstanceFromNode(IndicesService.class).indexServiceSafe(resolveIndex("index")).getShard(0);
+
+        assertTrue(service.canMatch(new ShardSearchLocalRequest(indexShard.shardId(), 1, SearchType.QUERY_THEN_FETCH,
+            new SearchSourceBuilder().query(new RangeQueryBuilder("date").from("2016-10-01").to("2016-10-31")),
+            Strings.EMPTY_ARRAY, false)));
+        assertTrue(service.canMatch(new ShardSearchLocalRequest(indexShard.shardId(), 1, SearchType.QUERY_THEN_FETCH,
+            new SearchSourceBuilder().query(new BoolQueryBuilder().must(new TermQueryBuilder("date", "2016-10-17"))
+                .filter(new RangeQueryBuilder("date").from("2016-10-01"))), Strings.EMPTY_ARRAY, false)));
+        assertFalse(service.canMatch(new ShardSearchLocalRequest(indexShard.shardId(), 1, SearchType.QUERY_THEN_FETCH,
+            new SearchSourceBuilder().query(new RangeQueryBuilder("date").from("2016-11-01")), Strings.EMPTY_ARRAY, false)));
+        assertFalse(service.canMatch(new ShardSearchLocalRequest(indexShard.shardId(), 1, SearchType.QUERY_THEN_FETCH,
+            new SearchSourceBuilder().query(new BoolQueryBuilder().must(new TermQueryBuilder("date", "2016-10-17"))
+                .filter(new RangeQueryBuilder("date").from("2016-11-01"))), Strings.EMPTY_ARRAY, false)));
+        assertFalse(service.canMatch(new ShardSearchLocalRequest(indexShard.shardId(), 1, SearchType.QUERY_THEN_FETCH,
+            new SearchSourceBuilder().query(new RangeQueryBuilder("unmapped").from("2016-10-01")), Strings.EMPTY_ARRAY, false)));
+        // now is resolved with the time of the request, which is the epoch for these requests, rather than the current time
+        assertFalse(service.canMatch(new ShardSearchLocalRequest(indexShard.shardId(), 1, SearchType.QUERY_THEN_FETCH,
+            new SearchSourceBuilder().query(new RangeQueryBuilder("date").to("now")), Strings.EMPTY_ARRAY, false)));
+
+        // aggregations that return buckets even if no document matches need to visit the shard
+        assertFalse(service.canMatch(new ShardSearchLocalRequest(indexShard.shardId(), 1, SearchType.QUERY_THEN_FETCH,
+            new SearchSourceBuilder().query(new RangeQueryBuilder("date").from("2016-11-01"))
+                .aggregation(new TermsAggregationBuilder("terms", null).field("date")), Strings.EMPTY_ARRAY, false)));
+        assertTrue(service.canMatch(new ShardSearchLocalRequest(indexShard.shardId(), 1, SearchType.QUERY_THEN_FETCH,
+            new SearchSourceBuilder().query(new RangeQueryBuilder("date").from("2016-11-01"))
+                .aggregation(new TermsAggregationBuilder("terms", null).field("date").minDocCount(0)), Strings.EMPTY_ARRAY, false)));
+        assertTrue(service.canMatch(new ShardSearchLocalRequest(indexShard.shardId(), 1, SearchType.QUERY_THEN_FETCH,
+            new SearchSourceBuilder().query(new RangeQueryBuilder("date").from("2016-11-01"))
+                .aggregation(new GlobalAggregationBuilder("global")), Strings.EMPTY_ARRAY, false)));
+    }
+
+    public void testCanRewriteToMatchNone() {
+        assertFalse(SearchService.canRewriteToMatchNone(null));
+        assertFalse(SearchService.canRewriteToMatchNone(new SearchSourceBuilder()));
+        assertFalse(SearchService.canRewriteToMatchNone(new SearchSourceBuilder().query(new MatchAllQueryBuilder())
+            .suggest(new SuggestBuilder())));
+        assertTrue(SearchService.canRewriteToMatchNone(new SearchSourceBuilder().query(new MatchAllQueryBuilder())));
+        assertTrue(SearchService.canRewriteToMatchNone(new SearchSourceBuilder().query(new MatchAllQueryBuilder())
+            .aggregation(new DateHistogramAggregationBuilder("histo").field("date").minDocCount(1))));
+        // the empty buckets of histograms are added by the final reduce
+        assertTrue(SearchService.canRewriteToMatchNone(new SearchSourceBuilder().query(new MatchAllQueryBuilder())
+            .aggregation(new DateHistogramAggregationBuilder("histo").field("date").minDocCount(0))));
+        assertFalse(SearchService.canRewriteToMatchNone(new SearchSourceBuilder().query(new MatchAllQueryBuilder())
+            .aggregation(new DateHistogramAggregationBuilder("histo").field("date")
+                .subAggregation(new TermsAggregationBuilder("terms", null).field("field").minDocCount(0)))));
+    }
+
+    public void testQueryPhaseOnSearchIdleShard() throws Exception {
+        createIndex("index", Settings.builder().put(IndexSettings.INDEX_REFRESH_INTERVAL_SETTING.getKey(), -1)
+            .put(IndexSettings.INDEX_SEARCH_IDLE_AFTER_SETTING.getKey(), "0ms").build());
+        ensureGreen();
+        final SearchService service = getInstanceFromNode(SearchService.class);
+        final IndexShard indexShard = getInstanceFromNode(IndicesService.class).indexServiceSafe(resolveIndex("index")).getShard(0);
+        client().prepareIndex("index", "type", "1").setSource("field", "value").get();
+        assertFalse(indexShard.scheduledRefresh());
+        assertTrue(indexShard.hasRefreshPending());
+
+        // the calling thread returns right away, the query phase runs once the refresh made the document visible
+        final CountDownLatch latch = new CountDownLatch(1);
+        final AtomicReference<QuerySearchResultProvider> result = new AtomicReference<>();
+        final AtomicReference<Exception> failure = new AtomicReference<>();
+        service.executeQueryPhase(new ShardSearchLocalRequest(indexShard.shardId(), 1, SearchType.QUERY_THEN_FETCH,
+            new SearchSourceBuilder(), Strings.EMPTY_ARRAY, false), new ActionListener<QuerySearchResultProvider>() {
+                @Override
+                public void onResponse(QuerySearchResultProvider response) {
+                    result.set(response);
+                    latch.countDown();
+                }
+
+                @Override
+                public void onFailure(Exception e) {
+                    failure.set(e);
+                    latch.countDown();
+                }
+            });
+        assertTrue(latch.await(10, TimeUnit.SECONDS));
+        assertNull(failure.get());
+        assertEquals(1, result.get().queryResult().topDocs().totalHits);
+        assertFalse(indexShard.hasRefreshPending());
+        service.freeContext(result.get().id());
+    }
+
+    public void testValidateQueryActivatesSearchIdleShard() throws Exception {
+        createIndex("index", Settings.builder().put(IndexSettings.INDEX_REFRESH_INTERVAL_SETTING.getKey(), -1)
+            .put(IndexSettings.INDEX_SEARCH_IDLE_AFTER_SETTING.getKey(), "0ms").build());
+        ensureGreen();
+        final IndexShard indexShard = getInstanceFromNode(IndicesService.class).indexServiceSafe(resolveIndex("index")).getShard(0);
+        client().prepareIndex("index", "type", "1").setSource("field", "value").get();
+        assertFalse(indexShard.scheduledRefresh());
+        assertTrue(indexShard.hasRefreshPending());
+
+        // validate query doesn't go through the query phase but must still trigger the refresh that was left to the next search
+        assertTrue(client().admin().indices().prepareValidateQuery("index").setQuery(new MatchAllQueryBuilder()).get().isValid());
+        assertBusy(() -> assertFalse(indexShard.hasRefreshPending()));
+        assertEquals(1, client().prepareSearch("index").get().getHits().getTotalHits());
+    }
+
     public static class FailOnRewriteQueryPlugin extends Plugin implements SearchPlugin {
         @Override
         public List<QuerySpec<?>> getQueries() {
@@ -0,0 +1,180 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.search.aggregations.bucket.terms;
+
+import org.elasticsearch.search.DocValueFormat;
+import org.elasticsearch.search.aggregations.InternalAggregation;
+import org.elasticsearch.search.aggregations.InternalAggregation.ReduceContext;
+import org.elasticsearch.search.aggregations.InternalAggregations;
+import org.elasticsearch.test.ESTestCase;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+
+public class InternalTermsTests extends ESTestCase {
+
+    /**
+     * Reducing the shard results in batches must return the same buckets and doc count errors as reducing all of them at once.
+     * Ordering by ascending count has no known error, like ordering by a sub aggregation.
+     */
+    public void testPartialReduce() {
+        final Terms.Order order = Terms.Order.compound(Terms.Order.count(randomBoolean()), Terms.Order.term(true));
+        final int requiredSize = randomIntBetween(1, 10);
+        final int shardSize = requiredSize + randomIntBetween(0, 10);
+        final long minDocCount = randomIntBetween(1, 5);
+        final int numShards = randomIntBetween(2, 30);
+        final List<Map<Long, Long>> shardCounts = new ArrayList<>(numShards);
+        for (int i = 0; i < numShards; i++) {
+            Map<Long, Long> counts = new HashMap<>();
+            int numTerms = randomIntBetween(0, 30);
+            for (int j = 0; j < numTerms; j++) {
+                counts.merge((long) randomIntBetween(0, 50), (long) randomIntBetween(1, 100), Long::sum);
+            }
+            shardCounts.add(counts);
+        }
+        final int batchedReduceSize = randomIntBetween(2, numShards);
+
+        List<InternalAggregation> shardResults = createShardResults(shardCounts, order, requiredSize, shardSize, minDocCount);
+        LongTerms expected = (LongTerms) shardResults.get(0).reduce(shardResults, new ReduceContext(null, null, null, true));
+
+        LongTerms actual = reduceInBatches(createShardResults(shardCounts, order, requiredSize, shardSize, minDocCount),
+            batchedReduceSize);
+        assertSameReduce(expected, actual);
+    }
+
+    /**
+     * A partial result whose error is 0 may still hold shard size buckets or more, it must not be mistaken for a shard result that
+     * returned shard size buckets.
+     */
+    public void testPartialReduceWithoutError() {
+        final Terms.Order order = Terms.Order.compound(Terms.Order.count(false), Terms.Order.term(true));
+        final List<Map<Long, Long>> shardCounts = new ArrayList<>();
+        shardCounts.add(Collections.singletonMap(1L, 10L));
+        shardCounts.add(Collections.singletonMap(2L, 5L));
+        Map<Long, Long> counts = new HashMap<>();
+        counts.put(3L, 7L);
+        counts.put(4L, 1L);
+        shardCounts.add(counts);
+
+        List<InternalAggregation> shardResults = createShardResults(shardCounts, order, 2, 2, 1);
+        LongTerms expected = (LongTerms) shardResults.get(0).reduce(shardResults, new ReduceContext(null, null, null, true));
+        LongTerms actual = reduceInBatches(createShardResults(shardCounts, order, 2, 2, 1), 2);
+        assertSameReduce(expected, actual);
+        assertThat(actual.getDocCountError(), equalTo(1L));
+    }
+
+    /**
+     * Reducing the results of the slices of a shard must not return more than shard size buckets, the doc count errors must
+     * remain upper bounds of the counts on the shard.
+     */
+    public void testShardReduce() {
+        final Terms.Order order = Terms.Order.compound(Terms.Order.count(false), Terms.Order.term(true));
+        final int requiredSize = randomIntBetween(1, 10);
+        final int shardSize = requiredSize + randomIntBetween(0, 10);
+        final long minDocCount = randomIntBetween(1, 5);
+        final int numSlices = randomIntBetween(2, 8);
+        final List<Map<Long, Long>> sliceCounts = new ArrayList<>(numSlices);
+        final Map<Long, Long> shardCounts = new HashMap<>();
+        long totalDocCount = 0;
+        for (int i = 0; i < numSlices; i++) {
+            Map<Long, Long> counts = new HashMap<>();
+            int numTerms = randomIntBetween(0, 30);
+            for (int j = 0; j < numTerms; j++) {
+                final long term = randomIntBetween(0, 50);
+                final long count = randomIntBetween(1, 100);
+                counts.merge(term, count, Long::sum);
+                shardCounts.merge(term, count, Long::sum);
+                totalDocCount += count;
+            }
+            sliceCounts.add(counts);
+        }
+
+        List<InternalAggregation> sliceResults = createShardResults(sliceCounts, order, requiredSize, shardSize, minDocCount);
+        LongTerms reduced = (LongTerms) sliceResults.get(0).reduce(sliceResults, new ReduceContext(null, null, null, false, true));
+
+        assertThat(reduced.getBuckets().size(), lessThanOrEqualTo(shardSize));
+        long returnedDocCount = 0;
+        for (LongTerms.Bucket bucket : reduced.getBucketsInternal()) {
+            final long shardCount = shardCounts.get(bucket.getKeyAsNumber().longValue());
+            assertThat(bucket.getDocCount(), lessThanOrEqualTo(shardCount));
+            assertThat(bucket.getDocCount() + bucket.getDocCountError(), greaterThanOrEqualTo(shardCount));
+            returnedDocCount += bucket.getDocCount();
+        }
+        assertThat(returnedDocCount + reduced.getSumOfOtherDocCounts(), equalTo(totalDocCount));
+        for (Map.Entry<Long, Long> shardCount : shardCounts.entrySet()) {
+            if (reduced.getBucketByKey(Long.toString(shardCount.getKey())) == null) {
+                assertThat(reduced.getDocCountError(), greaterThanOrEqualTo(shardCount.getValue()));
+            }
+        }
+    }
+
+    private static LongTerms reduceInBatches(List<InternalAggregation> shardResults, int batchedReduceSize) {
+        List<InternalAggregation> buffer = new ArrayList<>();
+        for (InternalAggregation shardResult : shardResults) {
+            if (buffer.size() == batchedReduceSize) {
+                InternalAggregation partial = buffer.get(0).reduce(buffer, new ReduceContext(null, null, null, false));
+                buffer.clear();
+                buffer.add(partial);
+            }
+            buffer.add(shardResult);
+        }
+        return (LongTerms) buffer.get(0).reduce(buffer, new ReduceContext(null, null, null, true));
+    }
+
+    private static void assertSameReduce(LongTerms expected, LongTerms actual) {
+        assertThat(actual.getBuckets().size(), equalTo(expected.getBuckets().size()));
+        for (int i = 0; i < expected.getBuckets().size(); i++) {
+            LongTerms.Bucket expectedBucket = expected.getBucketsInternal().get(i);
+            LongTerms.Bucket actualBucket = actual.getBucketsInternal().get(i);
+            assertThat(actualBucket.getKey(), equalTo(expectedBucket.getKey()));
+            assertThat(actualBucket.getDocCount(), equalTo(expectedBucket.getDocCount()));
+            assertThat(actualBucket.getDocCountError(), equalTo(expectedBucket.getDocCountError()));
+        }
+        assertThat(actual.getSumOfOtherDocCounts(), equalTo(expected.getSumOfOtherDocCounts()));
+        assertThat(actual.getDocCountError(), equalTo(expected.getDocCountError()));
+    }
+
+    private static List<InternalAggregation> createShardResults(List<Map<Long, Long>> shardCounts, Terms.Order order,
+                                                                int requiredSize, int shardSize, long minDocCount) {
+        List<InternalAggregation> shardResults = new ArrayList<>(shardCounts.size());
+        for (Map<Long, Long> counts : shardCounts) {
+            List<LongTerms.Bucket> buckets = new ArrayList<>();
+            for (Map.Entry<Long, Long> count : counts.entrySet()) {
+                buckets.add(new LongTerms.Bucket(count.getKey(), count.getValue(), InternalAggregations.EMPTY, true, 0,
+                    DocValueFormat.RAW));
+            }
+            buckets.sort(order.comparator(null));
+            long otherDocCount = 0;
+            while (buckets.size() > shardSize) {
+                otherDocCount += buckets.remove(buckets.size() - 1).getDocCount();
+            }
+            shardResults.add(new LongTerms("terms", order, requiredSize, minDocCount, Collections.emptyList(), null,
+                DocValueFormat.RAW, shardSize, true, otherDocCount, buckets, 0));
+        }
+        return shardResults;
+    }
+}
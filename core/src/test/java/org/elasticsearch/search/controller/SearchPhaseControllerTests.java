@@ -21,12 +21,17 @@ package org.elasticsearch.search.controller;
 
 import org.apache.lucene.search.ScoreDoc;
 import org.apache.lucene.search.TopDocs;
+import org.elasticsearch.cluster.service.ClusterService;
 import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.common.text.Text;
 import org.elasticsearch.common.util.BigArrays;
 import org.elasticsearch.common.util.concurrent.AtomicArray;
 import org.elasticsearch.index.Index;
+import org.elasticsearch.search.DocValueFormat;
 import org.elasticsearch.search.SearchShardTarget;
+import org.elasticsearch.search.aggregations.InternalAggregation;
+import org.elasticsearch.search.aggregations.InternalAggregations;
+import org.elasticsearch.search.aggregations.metrics.max.InternalMax;
 import org.elasticsearch.search.fetch.FetchSearchResult;
 import org.elasticsearch.search.fetch.FetchSearchResultProvider;
 import org.elasticsearch.search.internal.InternalSearchHit;
@@ -50,13 +55,15 @@ import java.util.stream.Collectors;
 
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.instanceOf;
+import static org.mockito.Mockito.mock;
 
 public class SearchPhaseControllerTests extends ESTestCase {
     private SearchPhaseController searchPhaseController;
 
     @Before
     public void setup() {
-        searchPhaseController = new SearchPhaseController(Settings.EMPTY, BigArrays.NON_RECYCLING_INSTANCE, null, null);
+        searchPhaseController = new SearchPhaseController(Settings.EMPTY, BigArrays.NON_RECYCLING_INSTANCE, null,
+            mock(ClusterService.class));
     }
 
     public void testSort() throws Exception {
@@ -118,6 +125,66 @@ public class SearchPhaseControllerTests extends ESTestCase {
         }
     }
 
+    public void testConsumer() {
+        int numShards = randomIntBetween(1, 100);
+        int batchedReduceSize = randomIntBetween(2, 10);
+        SearchPhaseController.QueryResultConsumer consumer = searchPhaseController.newQueryResultConsumer(batchedReduceSize, numShards);
+        AtomicArray<QuerySearchResultProvider> queryResults = new AtomicArray<>(numShards);
+        double max = Double.NEGATIVE_INFINITY;
+        for (int shardIndex = 0; shardIndex < numShards; shardIndex++) {
+            SearchShardTarget shardTarget = new SearchShardTarget("node", new Index("test", "na"), shardIndex);
+            QuerySearchResult result = new QuerySearchResult(shardIndex, shardTarget);
+            result.topDocs(new TopDocs(0, new ScoreDoc[0], 0), null);
+            double value = randomDouble();
+            max = Math.max(max, value);
+            InternalAggregations aggs = new InternalAggregations(Collections.singletonList(
+                new InternalMax("test", value, DocValueFormat.RAW, Collections.emptyList(), Collections.emptyMap())));
+            result.aggregations(aggs);
+            queryResults.set(shardIndex, result);
+            consumer.consume(result);
+            // the consumer releases the aggregations of the shard
+            assertNull(result.aggregations());
+            assertTrue(result.hasAggs());
+        }
+        int bufferSize = Math.max(2, Math.min(batchedReduceSize, numShards));
+        int expectedNumReducePhases = numShards <= bufferSize ? 0 : (numShards - 2) / (bufferSize - 1);
+        assertEquals(expectedNumReducePhases, consumer.getNumReducePhases());
+
+        InternalSearchResponse response = searchPhaseController.merge(true, SearchPhaseController.EMPTY_DOCS, queryResults,
+            new AtomicArray<>(numShards), consumer);
+        InternalMax internalMax = (InternalMax) response.aggregations().asList().get(0);
+        assertEquals(max, internalMax.getValue(), 0.0d);
+    }
+
+    public void testConsumerRethrowsPartialReduceFailures() {
+        int numShards = randomIntBetween(3, 10);
+        SearchPhaseController.QueryResultConsumer consumer = searchPhaseController.newQueryResultConsumer(2, numShards);
+        AtomicArray<QuerySearchResultProvider> queryResults = new AtomicArray<>(numShards);
+        for (int shardIndex = 0; shardIndex < numShards; shardIndex++) {
+            SearchShardTarget shardTarget = new SearchShardTarget("node", new Index("test", "na"), shardIndex);
+            QuerySearchResult result = new QuerySearchResult(shardIndex, shardTarget);
+            result.topDocs(new TopDocs(0, new ScoreDoc[0], 0), null);
+            result.aggregations(new InternalAggregations(Collections.singletonList(new FailingAggregation("test"))));
+            queryResults.set(shardIndex, result);
+            // failures of partial reduces must not escape to the threads that receive the shard results
+            consumer.consume(result);
+        }
+        IllegalStateException e = expectThrows(IllegalStateException.class, () -> searchPhaseController.merge(true,
+            SearchPhaseController.EMPTY_DOCS, queryResults, new AtomicArray<>(numShards), consumer));
+        assertEquals("boom", e.getMessage());
+    }
+
+    private static class FailingAggregation extends InternalMax {
+        FailingAggregation(String name) {
+            super(name, 0, DocValueFormat.RAW, Collections.emptyList(), Collections.emptyMap());
+        }
+
+        @Override
+        public InternalMax doReduce(List<InternalAggregation> aggregations, ReduceContext reduceContext) {
+            throw new IllegalStateException("boom");
+        }
+    }
+
     private AtomicArray<QuerySearchResultProvider> generateQueryResults(int nShards,
                                                                         List<CompletionSuggestion> suggestions,
                                                                         int searchHitsSize) {
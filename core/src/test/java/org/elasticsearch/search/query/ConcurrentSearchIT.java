@@ -0,0 +1,157 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.elasticsearch.search.query;
+
+import org.elasticsearch.action.index.IndexRequestBuilder;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.cluster.metadata.IndexMetaData;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.index.IndexSettings;
+import org.elasticsearch.index.MergePolicyConfig;
+import org.elasticsearch.index.query.QueryBuilders;
+import org.elasticsearch.plugins.Plugin;
+import org.elasticsearch.script.Script;
+import org.elasticsearch.script.ScriptService.ScriptType;
+import org.elasticsearch.search.aggregations.AggregationBuilders;
+import org.elasticsearch.search.aggregations.bucket.global.Global;
+import org.elasticsearch.search.aggregations.bucket.terms.Terms;
+import org.elasticsearch.search.aggregations.metrics.ScriptedMetricIT;
+import org.elasticsearch.search.aggregations.metrics.avg.Avg;
+import org.elasticsearch.search.aggregations.metrics.scripted.ScriptedMetric;
+import org.elasticsearch.search.sort.SortOrder;
+import org.elasticsearch.test.ESIntegTestCase;
+import org.elasticsearch.test.InternalSettingsPlugin;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.elasticsearch.test.hamcrest.ElasticsearchAssertions.assertAcked;
+import static org.elasticsearch.test.hamcrest.ElasticsearchAssertions.assertSearchResponse;
+
+public class ConcurrentSearchIT extends ESIntegTestCase {
+
+    @Override
+    protected Collection<Class<? extends Plugin>> nodePlugins() {
+        return Arrays.asList(InternalSettingsPlugin.class, ScriptedMetricIT.CustomScriptPlugin.class);
+    }
+
+    public void testConcurrentSearchMatchesSequentialSearch() throws Exception {
+        assertAcked(prepareCreate("test")
+            .setSettings(Settings.builder()
+                .put(IndexMetaData.SETTING_NUMBER_OF_SHARDS, 1)
+                .put(IndexMetaData.SETTING_NUMBER_OF_REPLICAS, 0)
+                // keep the segments apart so that there is something to search concurrently
+                .put(MergePolicyConfig.INDEX_MERGE_ENABLED, false))
+            .addMapping("type", "field", "type=keyword", "value", "type=long"));
+        final int numSegments = randomIntBetween(2, 8);
+        int id = 0;
+        for (int i = 0; i < numSegments; i++) {
+            List<IndexRequestBuilder> docs = new ArrayList<>();
+            final int numDocs = randomIntBetween(1, 50);
+            for (int j = 0; j < numDocs; j++) {
+                docs.add(client().prepareIndex("test", "type", Integer.toString(id++))
+                    .setSource("field", "term" + randomIntBetween(0, 9), "value", randomIntBetween(0, 1000)));
+            }
+            indexRandom(true, false, docs);
+        }
+
+        final SearchResponse sequential = search();
+        assertAcked(client().admin().indices().prepareUpdateSettings("test")
+            .setSettings(Settings.builder().put(IndexSettings.INDEX_SEARCH_CONCURRENCY_SETTING.getKey(), randomIntBetween(2, 8))));
+        final SearchResponse concurrent = search();
+
+        assertEquals(sequential.getHits().getTotalHits(), concurrent.getHits().getTotalHits());
+        assertEquals(sequential.getHits().getHits().length, concurrent.getHits().getHits().length);
+        for (int i = 0; i < sequential.getHits().getHits().length; i++) {
+            assertEquals(sequential.getHits().getAt(i).getId(), concurrent.getHits().getAt(i).getId());
+        }
+        Terms sequentialTerms = sequential.getAggregations().get("terms");
+        Terms concurrentTerms = concurrent.getAggregations().get("terms");
+        assertEquals(sequentialTerms.getBuckets().size(), concurrentTerms.getBuckets().size());
+        for (Terms.Bucket bucket : sequentialTerms.getBuckets()) {
+            Terms.Bucket concurrentBucket = concurrentTerms.getBucketByKey(bucket.getKeyAsString());
+            assertNotNull(concurrentBucket);
+            assertEquals(bucket.getDocCount(), concurrentBucket.getDocCount());
+            Avg avg = bucket.getAggregations().get("avg");
+            Avg concurrentAvg = concurrentBucket.getAggregations().get("avg");
+            assertEquals(avg.getValue(), concurrentAvg.getValue(), 0.0001d);
+        }
+        // global aggregations are collected once over the whole shard, not per slice
+        Global concurrentGlobal = concurrent.getAggregations().get("global");
+        assertEquals(id, concurrentGlobal.getDocCount());
+    }
+
+    public void testScriptedMetricOnSeveralNodes() throws Exception {
+        internalCluster().ensureAtLeastNumDataNodes(2);
+        assertAcked(prepareCreate("test")
+            .setSettings(Settings.builder()
+                .put(IndexMetaData.SETTING_NUMBER_OF_SHARDS, randomIntBetween(2, 4))
+                .put(IndexMetaData.SETTING_NUMBER_OF_REPLICAS, 0)
+                .put(MergePolicyConfig.INDEX_MERGE_ENABLED, false)
+                .put(IndexSettings.INDEX_SEARCH_CONCURRENCY_SETTING.getKey(), randomIntBetween(2, 8)))
+            .addMapping("type", "value", "type=long"));
+        ensureGreen("test");
+        final int numSegments = randomIntBetween(2, 8);
+        int id = 0;
+        for (int i = 0; i < numSegments; i++) {
+            List<IndexRequestBuilder> docs = new ArrayList<>();
+            final int numDocs = randomIntBetween(1, 50);
+            for (int j = 0; j < numDocs; j++) {
+                docs.add(client().prepareIndex("test", "type", Integer.toString(id++)).setSource("value", randomIntBetween(0, 1000)));
+            }
+            indexRandom(true, false, docs);
+        }
+
+        // the shards must send the result of the combine script, which the partial reduce of slices can't produce
+        Map<String, Object> params = new HashMap<>();
+        params.put("_agg", new ArrayList<>());
+        SearchResponse response = client().prepareSearch("test")
+            .setSize(0)
+            .addAggregation(AggregationBuilders.scriptedMetric("scripted")
+                .params(params)
+                .mapScript(new Script("_agg.add(1)", ScriptType.INLINE, ScriptedMetricIT.CustomScriptPlugin.NAME, null))
+                .reduceScript(new Script("sum aggs of agg values as a new aggregation", ScriptType.INLINE,
+                    ScriptedMetricIT.CustomScriptPlugin.NAME, null)))
+            .get();
+        assertSearchResponse(response);
+        assertEquals(id, response.getHits().getTotalHits());
+        ScriptedMetric scripted = response.getAggregations().get("scripted");
+        assertEquals(Collections.singletonList(id), scripted.aggregation());
+    }
+
+    private SearchResponse search() {
+        SearchResponse response = client().prepareSearch("test")
+            .setQuery(QueryBuilders.rangeQuery("value").gte(100))
+            .addSort("value", SortOrder.DESC)
+            .addSort("_uid", SortOrder.ASC)
+            .setSize(20)
+            .addAggregation(AggregationBuilders.terms("terms").field("field").size(10)
+                .subAggregation(AggregationBuilders.avg("avg").field("value")))
+            .addAggregation(AggregationBuilders.global("global"))
+            .get();
+        assertSearchResponse(response);
+        return response;
+    }
+}
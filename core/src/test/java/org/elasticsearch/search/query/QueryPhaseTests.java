@@ -22,7 +22,11 @@ package org.elasticsearch.search.query;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.document.Field.Store;
 import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.NumericDocValuesField;
+import org.apache.lucene.document.SortedNumericDocValuesField;
+import org.apache.lucene.index.DirectoryReader;
 import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.IndexWriterConfig;
 import org.apache.lucene.index.LeafReaderContext;
 import org.apache.lucene.index.MultiReader;
@@ -37,16 +41,47 @@ import org.apache.lucene.search.IndexSearcher;
 import org.apache.lucene.search.MatchAllDocsQuery;
 import org.apache.lucene.search.MatchNoDocsQuery;
 import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
 import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TopDocs;
 import org.apache.lucene.search.Weight;
 import org.apache.lucene.store.Directory;
+import org.elasticsearch.common.Strings;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.util.concurrent.EsRejectedExecutionException;
+import org.elasticsearch.index.IndexSettings;
+import org.elasticsearch.index.IndexSortConfig;
+import org.elasticsearch.index.engine.Engine;
+import org.elasticsearch.index.fielddata.IndexNumericFieldData;
+import org.elasticsearch.index.fielddata.plain.SortedNumericDVIndexFieldData;
+import org.elasticsearch.index.mapper.MappedFieldType;
+import org.elasticsearch.index.mapper.NumberFieldMapper;
+import org.elasticsearch.index.mapper.ParseContext;
 import org.elasticsearch.index.query.ParsedQuery;
+import org.elasticsearch.search.DocValueFormat;
+import org.elasticsearch.search.MultiValueMode;
+import org.elasticsearch.search.internal.ContextIndexSearcher;
+import org.elasticsearch.search.internal.ShardSearchLocalRequest;
+import org.elasticsearch.search.internal.ShardSearchRequest;
+import org.elasticsearch.search.rescore.RescoreSearchContext;
+import org.elasticsearch.search.sort.SortAndFormats;
 import org.elasticsearch.test.ESTestCase;
+import org.elasticsearch.test.IndexSettingsModule;
 import org.elasticsearch.test.TestSearchContext;
+import org.elasticsearch.threadpool.TestThreadPool;
+import org.elasticsearch.threadpool.ThreadPool;
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.Executor;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.Matchers.lessThan;
 
 public class QueryPhaseTests extends ESTestCase {
 
@@ -165,4 +200,275 @@ public class QueryPhaseTests extends ESTestCase {
         assertTrue(collected.get());
     }
 
+    public void testSlices() throws Exception {
+        Directory dir = newDirectory();
+        IndexWriter w = new IndexWriter(dir, newIndexWriterConfig().setMergePolicy(NoMergePolicy.INSTANCE));
+        final int numSegments = randomIntBetween(1, 20);
+        for (int i = 0; i < numSegments; ++i) {
+            final int numDocs = randomIntBetween(1, 100);
+            for (int j = 0; j < numDocs; ++j) {
+                w.addDocument(new Document());
+            }
+            w.commit();
+        }
+        final IndexReader reader = DirectoryReader.open(w);
+        final List<LeafReaderContext> leaves = reader.leaves();
+        final int maxSlices = randomIntBetween(1, 30);
+        final List<List<LeafReaderContext>> slices = QueryPhase.slices(leaves, maxSlices);
+        assertEquals(Math.min(maxSlices, leaves.size()), slices.size());
+        final List<LeafReaderContext> sliceLeaves = new ArrayList<>();
+        for (List<LeafReaderContext> slice : slices) {
+            assertFalse(slice.isEmpty());
+            sliceLeaves.addAll(slice);
+        }
+        // slices are contiguous and in order
+        assertEquals(leaves, sliceLeaves);
+        reader.close();
+        w.close();
+        dir.close();
+    }
+
+    public void testConcurrentSearch() throws Exception {
+        Directory dir = newDirectory();
+        IndexWriter w = new IndexWriter(dir, newIndexWriterConfig().setMergePolicy(NoMergePolicy.INSTANCE));
+        final int numSegments = randomIntBetween(2, 10);
+        for (int i = 0; i < numSegments; ++i) {
+            final int numDocs = randomIntBetween(1, 50);
+            for (int j = 0; j < numDocs; ++j) {
+                Document doc = new Document();
+                if (randomBoolean()) {
+                    doc.add(new StringField("foo", "bar", Store.NO));
+                }
+                if (randomBoolean()) {
+                    doc.add(new StringField("foo", "baz", Store.NO));
+                }
+                doc.add(new NumericDocValuesField("rank", randomIntBetween(0, 10)));
+                w.addDocument(doc);
+            }
+            w.commit();
+        }
+        final IndexReader reader = DirectoryReader.open(w);
+        final Query query = new BooleanQuery.Builder()
+            .add(new TermQuery(new Term("foo", "bar")), Occur.SHOULD)
+            .add(new TermQuery(new Term("foo", "baz")), Occur.SHOULD)
+            .build();
+        final int size = randomIntBetween(0, 20);
+        final Sort sort = randomBoolean() ? null : new Sort(new SortField("rank", SortField.Type.LONG));
+
+        final IndexSearcher searcher = new IndexSearcher(reader);
+        final TopDocs expected;
+        if (size == 0) {
+            expected = new TopDocs(searcher.count(query), new ScoreDoc[0], Float.NaN);
+        } else if (sort == null) {
+            expected = searcher.search(query, size);
+        } else {
+            expected = searcher.search(query, size, sort);
+        }
+
+        final AtomicInteger searchedSlices = new AtomicInteger();
+        ContextIndexSearcher contextSearcher = new ContextIndexSearcher(new Engine.Searcher("test", new IndexSearcher(reader)),
+                IndexSearcher.getDefaultQueryCache(), IndexSearcher.getDefaultQueryCachingPolicy()) {
+            @Override
+            public void search(List<LeafReaderContext> leaves, Weight weight, Collector collector) throws IOException {
+                searchedSlices.incrementAndGet();
+                super.search(leaves, weight, collector);
+            }
+        };
+        final int concurrency = randomIntBetween(2, 8);
+        ThreadPool threadPool = new TestThreadPool(getTestName());
+        try {
+            // rejected slices are searched by the calling thread
+            final Executor executor = randomBoolean() ? threadPool.generic()
+                : command -> { throw new EsRejectedExecutionException("rejected"); };
+            TestSearchContext context = createSearchContext(query, size, sort);
+            assertTrue(QueryPhase.canSearchConcurrently(context, contextSearcher, concurrency));
+            QueryPhase.execute(context, contextSearcher, executor, concurrency, null, null);
+            assertEquals(Math.min(concurrency, reader.leaves().size()), searchedSlices.get());
+
+            final TopDocs topDocs = context.queryResult().topDocs();
+            assertEquals(expected.totalHits, topDocs.totalHits);
+            assertEquals(expected.scoreDocs.length, topDocs.scoreDocs.length);
+            for (int i = 0; i < expected.scoreDocs.length; ++i) {
+                assertEquals(expected.scoreDocs[i].doc, topDocs.scoreDocs[i].doc);
+                assertEquals(expected.scoreDocs[i].score, topDocs.scoreDocs[i].score, 0f);
+            }
+
+            context.terminateAfter(1);
+            assertFalse(QueryPhase.canSearchConcurrently(context, contextSearcher, concurrency));
+            assertFalse(QueryPhase.canSearchConcurrently(createSearchContext(query, size, sort), contextSearcher, 1));
+        } finally {
+            terminate(threadPool);
+        }
+        reader.close();
+        w.close();
+        dir.close();
+    }
+
+    public void testIndexSortEarlyTermination() throws Exception {
+        final boolean reverse = randomBoolean();
+        final IndexSettings indexSettings = IndexSettingsModule.newIndexSettings("index", Settings.builder()
+            .put(IndexSortConfig.INDEX_SORT_FIELD_SETTING.getKey(), "rank")
+            .put(IndexSortConfig.INDEX_SORT_ORDER_SETTING.getKey(), reverse ? "desc" : "asc")
+            .build());
+        final IndexSortConfig indexSortConfig = indexSettings.getIndexSortConfig();
+        final MappedFieldType fieldType = new NumberFieldMapper.NumberFieldType(NumberFieldMapper.NumberType.LONG);
+        fieldType.setName("rank");
+        final Sort indexSort = indexSortConfig.buildIndexSort(field -> field.equals("rank") ? fieldType : null);
+
+        Directory dir = newDirectory();
+        IndexWriter w = new IndexWriter(dir, newIndexWriterConfig().setIndexSort(indexSort));
+        final int numDocs = randomIntBetween(1, 200);
+        for (int i = 0; i < numDocs; ++i) {
+            ParseContext.Document doc = new ParseContext.Document();
+            if (randomBoolean()) {
+                doc.add(new StringField("foo", "bar", Store.NO));
+            }
+            final int numValues = randomIntBetween(0, 2);
+            for (int j = 0; j < numValues; ++j) {
+                doc.add(new SortedNumericDocValuesField("rank", randomIntBetween(0, 50)));
+            }
+            indexSortConfig.addSortFields(doc);
+            w.addDocument(doc);
+            if (rarely()) {
+                w.commit();
+            }
+        }
+        final IndexReader reader = DirectoryReader.open(w);
+        final Query query = randomBoolean() ? new MatchAllDocsQuery() : new TermQuery(new Term("foo", "bar"));
+        final int size = randomIntBetween(1, 20);
+        final IndexNumericFieldData fieldData = new SortedNumericDVIndexFieldData(indexSettings.getIndex(), "rank",
+            IndexNumericFieldData.NumericType.LONG);
+        final MultiValueMode sortMode = reverse ? MultiValueMode.MAX : MultiValueMode.MIN;
+        final Sort sort = new Sort(new SortField("rank", fieldData.comparatorSource(null, sortMode, null), reverse));
+
+        final IndexSearcher searcher = new IndexSearcher(reader);
+        final TopDocs expected = searcher.search(query, size, sort);
+        boolean expectTerminatedEarly = false;
+        for (LeafReaderContext leaf : reader.leaves()) {
+            // only merged segments are sorted
+            expectTerminatedEarly |= indexSort.equals(leaf.reader().getIndexSort()) && new IndexSearcher(leaf.reader()).count(query) > size;
+        }
+
+        TestSearchContext context = createSearchContext(query, size, sort);
+        assertFalse(QueryPhase.canEarlyTerminate(context, indexSortConfig, indexSort));
+        context.trackTotalHits(false);
+        assertTrue(QueryPhase.canEarlyTerminate(context, indexSortConfig, indexSort));
+        assertFalse(QueryPhase.canEarlyTerminate(context, null, null));
+        QueryPhase.execute(context, searcher, null, 1, indexSortConfig, indexSort);
+
+        final TopDocs topDocs = context.queryResult().topDocs();
+        assertEquals(expected.scoreDocs.length, topDocs.scoreDocs.length);
+        for (int i = 0; i < expected.scoreDocs.length; ++i) {
+            assertEquals(expected.scoreDocs[i].doc, topDocs.scoreDocs[i].doc);
+        }
+        if (expectTerminatedEarly) {
+            assertTrue(context.queryResult().terminatedEarly());
+            assertThat(topDocs.totalHits, lessThan(expected.totalHits));
+        } else {
+            assertNull(context.queryResult().terminatedEarly());
+            assertEquals(expected.totalHits, topDocs.totalHits);
+        }
+
+        // the segments are not sorted by the opposite order or by the average of the values
+        final Sort reverseSort = new Sort(new SortField("rank", fieldData.comparatorSource(null, sortMode, null), reverse == false));
+        context = createSearchContext(query, size, reverseSort);
+        context.trackTotalHits(false);
+        assertFalse(QueryPhase.canEarlyTerminate(context, indexSortConfig, indexSort));
+        final Sort avgSort = new Sort(new SortField("rank", fieldData.comparatorSource(null, MultiValueMode.AVG, null), reverse));
+        context = createSearchContext(query, size, avgSort);
+        context.trackTotalHits(false);
+        assertFalse(QueryPhase.canEarlyTerminate(context, indexSortConfig, indexSort));
+
+        reader.close();
+        w.close();
+        dir.close();
+    }
+
+    public void testIndexSortEarlyTerminationWithUnsortedSegment() throws Exception {
+        final IndexSettings indexSettings = IndexSettingsModule.newIndexSettings("index", Settings.builder()
+            .put(IndexSortConfig.INDEX_SORT_FIELD_SETTING.getKey(), "rank")
+            .put(IndexSortConfig.INDEX_SORT_ORDER_SETTING.getKey(), "desc")
+            .build());
+        final IndexSortConfig indexSortConfig = indexSettings.getIndexSortConfig();
+        final MappedFieldType fieldType = new NumberFieldMapper.NumberFieldType(NumberFieldMapper.NumberType.LONG);
+        fieldType.setName("rank");
+        final Sort indexSort = indexSortConfig.buildIndexSort(field -> field.equals("rank") ? fieldType : null);
+
+        Directory dir = newDirectory();
+        IndexWriter w = new IndexWriter(dir, new IndexWriterConfig().setIndexSort(indexSort));
+        final int numOldDocs = randomIntBetween(30, 100);
+        for (int i = 0; i < numOldDocs; ++i) {
+            w.addDocument(rankDocument(indexSortConfig, randomIntBetween(0, 50)));
+            if (i == numOldDocs / 2) {
+                // a single segment would not be merged
+                w.commit();
+            }
+        }
+        w.forceMerge(1);
+        w.close();
+
+        // the newest documents rank best but are in a flushed segment that is not sorted yet
+        w = new IndexWriter(dir, new IndexWriterConfig().setIndexSort(indexSort).setMergePolicy(NoMergePolicy.INSTANCE));
+        final int numNewDocs = randomIntBetween(30, 100);
+        for (int i = 0; i < numNewDocs; ++i) {
+            w.addDocument(rankDocument(indexSortConfig, randomIntBetween(100, 150)));
+        }
+        final IndexReader reader = DirectoryReader.open(w);
+        assertEquals(2, reader.leaves().size());
+        assertEquals(indexSort, reader.leaves().get(0).reader().getIndexSort());
+        assertNull(reader.leaves().get(1).reader().getIndexSort());
+
+        final int size = randomIntBetween(1, 20);
+        final IndexNumericFieldData fieldData = new SortedNumericDVIndexFieldData(indexSettings.getIndex(), "rank",
+            IndexNumericFieldData.NumericType.LONG);
+        final Sort sort = new Sort(new SortField("rank", fieldData.comparatorSource(null, MultiValueMode.MAX, null), true));
+        final IndexSearcher searcher = new IndexSearcher(reader);
+        final TopDocs expected = searcher.search(new MatchAllDocsQuery(), size, sort);
+
+        TestSearchContext context = createSearchContext(new MatchAllDocsQuery(), size, sort);
+        context.trackTotalHits(false);
+        QueryPhase.execute(context, searcher, null, 1, indexSortConfig, indexSort);
+
+        final TopDocs topDocs = context.queryResult().topDocs();
+        assertEquals(expected.scoreDocs.length, topDocs.scoreDocs.length);
+        for (int i = 0; i < expected.scoreDocs.length; ++i) {
+            assertEquals(expected.scoreDocs[i].doc, topDocs.scoreDocs[i].doc);
+        }
+        assertTrue(context.queryResult().terminatedEarly());
+        // the sorted segment is terminated early, the unsorted one is collected entirely
+        assertEquals(size + numNewDocs, topDocs.totalHits);
+
+        reader.close();
+        w.close();
+        dir.close();
+    }
+
+    private static ParseContext.Document rankDocument(IndexSortConfig indexSortConfig, long rank) {
+        ParseContext.Document doc = new ParseContext.Document();
+        doc.add(new SortedNumericDocValuesField("rank", rank));
+        indexSortConfig.addSortFields(doc);
+        return doc;
+    }
+
+    private static TestSearchContext createSearchContext(Query query, int size, Sort sort) {
+        TestSearchContext context = new TestSearchContext(null) {
+            @Override
+            public SortAndFormats sort() {
+                return sort == null ? null : new SortAndFormats(sort, new DocValueFormat[] { DocValueFormat.RAW });
+            }
+
+            @Override
+            public ShardSearchRequest request() {
+                return new ShardSearchLocalRequest(Strings.EMPTY_ARRAY, System.currentTimeMillis());
+            }
+
+            @Override
+            public List<RescoreSearchContext> rescore() {
+                return Collections.emptyList();
+            }
+        };
+        context.parsedQuery(new ParsedQuery(query));
+        context.setSize(size);
+        return context;
+    }
 }
@@ -19,9 +19,11 @@
 
 package org.elasticsearch.ingest.common;
 
+import org.elasticsearch.common.joda.FastDateParser;
 import org.joda.time.DateTime;
 import org.joda.time.DateTimeZone;
 import org.joda.time.format.DateTimeFormat;
+import org.joda.time.format.DateTimeFormatter;
 import org.joda.time.format.ISODateTimeFormat;
 
 import java.util.Locale;
@@ -31,7 +33,12 @@ enum DateFormat {
     Iso8601 {
         @Override
         Function<String, DateTime> getFunction(String format, DateTimeZone timezone, Locale locale) {
-            return ISODateTimeFormat.dateTimeParser().withZone(timezone)::parseDateTime;
+            DateTimeFormatter parser = ISODateTimeFormat.dateTimeParser().withZone(timezone);
+            return (date) -> {
+                // the most common ISO8601 dates are parsed without joda
+                long millis = FastDateParser.parseDateOptionalTime(date, timezone);
+                return millis == FastDateParser.UNSUPPORTED ? parser.parseDateTime(date) : new DateTime(millis, timezone);
+            };
         }
     },
     Unix {
@@ -72,6 +72,11 @@ public final class ForEachProcessor extends AbstractProcessor {
         return TYPE;
     }
 
+    @Override
+    public Map<String, Long> getStats() {
+        return processor.getStats();
+    }
+
     String getField() {
         return field;
     }
@@ -29,10 +29,16 @@ import org.joni.Syntax;
 import org.joni.exception.ValueException;
 
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
 
 final class Grok {
 
@@ -54,24 +60,43 @@ final class Grok {
             ")?" + "\\}";
     private static final Regex GROK_PATTERN_REGEX = new Regex(GROK_PATTERN.getBytes(StandardCharsets.UTF_8), 0,
             GROK_PATTERN.getBytes(StandardCharsets.UTF_8).length, Option.NONE, UTF8Encoding.INSTANCE, Syntax.DEFAULT);
+    // how deep pattern references are followed when looking for required literals
+    private static final int MAX_LITERAL_DEPTH = 16;
     private final Map<String, String> patternBank;
     private final boolean namedCaptures;
     private final Regex compiledExpression;
     private final String expression;
+    private final String[] requiredLiterals;
 
 
     public Grok(Map<String, String> patternBank, String grokPattern) {
         this(patternBank, grokPattern, true);
     }
 
-    @SuppressWarnings("unchecked")
     public Grok(Map<String, String> patternBank, String grokPattern, boolean namedCaptures) {
+        this(patternBank, grokPattern, namedCaptures, Grok::compile);
+    }
+
+    /**
+     * @param compiler compiles the regex expression that the grok pattern expands to, allows to share compiled expressions
+     */
+    Grok(Map<String, String> patternBank, String grokPattern, boolean namedCaptures, Function<String, Regex> compiler) {
         this.patternBank = patternBank;
         this.namedCaptures = namedCaptures;
 
         this.expression = toRegex(grokPattern);
+        this.compiledExpression = compiler.apply(expression);
+        this.requiredLiterals = requiredLiterals(patternBank, grokPattern).stream()
+            .sorted((first, second) -> Integer.compare(second.length(), first.length()))
+            .toArray(String[]::new);
+    }
+
+    /**
+     * compiles a regex expression as returned by {@link #toRegex(String)}
+     */
+    static Regex compile(String expression) {
         byte[] expressionBytes = expression.getBytes(StandardCharsets.UTF_8);
-        this.compiledExpression = new Regex(expressionBytes, 0, expressionBytes.length, Option.DEFAULT, UTF8Encoding.INSTANCE);
+        return new Regex(expressionBytes, 0, expressionBytes.length, Option.DEFAULT, UTF8Encoding.INSTANCE);
     }
 
 
@@ -125,6 +150,23 @@ final class Grok {
         return grokPattern;
     }
 
+    /**
+     * Cheaply checks whether the text contains the literals that any text matching this grok expression contains. If not,
+     * the expression can't match the text and there is no need to run the regex engine.
+     */
+    public boolean mayMatch(String text) {
+        for (String literal : requiredLiterals) {
+            if (text.contains(literal) == false) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    String[] getRequiredLiterals() {
+        return requiredLiterals;
+    }
+
     public boolean match(String text) {
         Matcher matcher = compiledExpression.matcher(text.getBytes(StandardCharsets.UTF_8));
         int result = matcher.search(0, text.length(), Option.DEFAULT);
@@ -157,5 +199,217 @@ final class Grok {
         }
         return null;
     }
-}
 
+    /**
+     * Extracts the literal strings that every text matching the given grok pattern contains. The extraction is conservative:
+     * characters that are optional, grouped, alternated with something else or part of escape sequences and character
+     * classes are ignored, referenced patterns contribute their own required literals unless they are optional.
+     */
+    static List<String> requiredLiterals(Map<String, String> patternBank, String grokPattern) {
+        Set<String> literals = new LinkedHashSet<>(requiredLiterals(patternBank, grokPattern, 0));
+        return new ArrayList<>(literals);
+    }
+
+    private static List<String> requiredLiterals(Map<String, String> patternBank, String pattern, int depth) {
+        if (pattern == null || depth > MAX_LITERAL_DEPTH) {
+            return Collections.emptyList();
+        }
+        List<String> literals = new ArrayList<>();
+        StringBuilder literal = new StringBuilder();
+        int i = 0;
+        while (i < pattern.length()) {
+            char c = pattern.charAt(i);
+            if (c == '%' && i + 1 < pattern.length() && pattern.charAt(i + 1) == '{') {
+                int end = pattern.indexOf('}', i);
+                if (end == -1) {
+                    return Collections.emptyList();
+                }
+                addLiteral(literal, literals);
+                String reference = pattern.substring(i + 2, end);
+                i = end + 1;
+                if (isOptionalQuantifier(pattern, i) == false) {
+                    int nameEnd = 0;
+                    while (nameEnd < reference.length() && Character.isLetterOrDigit(reference.charAt(nameEnd))) {
+                        nameEnd++;
+                    }
+                    if (isReference(reference, nameEnd) == false) {
+                        // toRegex() leaves it alone, the literal meaning of the braces is left to the regex engine
+                        return Collections.emptyList();
+                    }
+                    // the referenced pattern is wrapped in a group, so alternations within it don't affect this pattern
+                    literals.addAll(requiredLiterals(patternBank, patternBank.get(reference.substring(0, nameEnd)), depth + 1));
+                }
+                continue;
+            }
+            final char atom;
+            switch (c) {
+                case '\\':
+                    if (i + 1 == pattern.length()) {
+                        return Collections.emptyList();
+                    }
+                    char escaped = pattern.charAt(i + 1);
+                    if (Character.isLetterOrDigit(escaped)) {
+                        // character types, anchors, back references and escaped code points: skip them including their arguments
+                        addLiteral(literal, literals);
+                        i += 2;
+                        while (i < pattern.length() && isEscapeArgument(pattern.charAt(i))) {
+                            i++;
+                        }
+                        continue;
+                    }
+                    atom = escaped;
+                    i += 2;
+                    break;
+                case '(':
+                    if (pattern.startsWith("(?", i) && i + 2 < pattern.length() && "imx-".indexOf(pattern.charAt(i + 2)) >= 0) {
+                        // options like case insensitive matching change what the literals match
+                        return Collections.emptyList();
+                    }
+                    addLiteral(literal, literals);
+                    i = skipGroup(pattern, i);
+                    if (i == -1) {
+                        return Collections.emptyList();
+                    }
+                    continue;
+                case '[':
+                    addLiteral(literal, literals);
+                    i = skipCharacterClass(pattern, i);
+                    if (i == -1) {
+                        return Collections.emptyList();
+                    }
+                    continue;
+                case '{':
+                    addLiteral(literal, literals);
+                    i = pattern.indexOf('}', i);
+                    if (i == -1) {
+                        return Collections.emptyList();
+                    }
+                    i++;
+                    continue;
+                case '|':
+                    return Collections.emptyList();
+                case ')':
+                case '}':
+                case ']':
+                case '.':
+                case '^':
+                case '$':
+                case '?':
+                case '*':
+                case '+':
+                    addLiteral(literal, literals);
+                    i++;
+                    continue;
+                default:
+                    atom = c;
+                    i++;
+                    break;
+            }
+            if (isOptionalQuantifier(pattern, i)) {
+                addLiteral(literal, literals);
+            } else {
+                literal.append(atom);
+                if (i < pattern.length() && pattern.charAt(i) == '+') {
+                    // the repeated character may be followed by more of it
+                    addLiteral(literal, literals);
+                }
+            }
+        }
+        addLiteral(literal, literals);
+        return literals;
+    }
+
+    private static boolean isReference(String reference, int nameEnd) {
+        if (nameEnd == 0) {
+            return false;
+        }
+        int subNameEnd = reference.indexOf('=', nameEnd);
+        subNameEnd = subNameEnd == -1 ? reference.length() : subNameEnd;
+        if (subNameEnd > nameEnd && (reference.charAt(nameEnd) != ':' || subNameEnd == nameEnd + 1)) {
+            return false;
+        }
+        for (int i = nameEnd + 1; i < subNameEnd; i++) {
+            char c = reference.charAt(i);
+            if (Character.isLetterOrDigit(c) == false && "_:.-".indexOf(c) == -1) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isEscapeArgument(char c) {
+        return Character.isLetterOrDigit(c) || "{}<>'_-".indexOf(c) >= 0;
+    }
+
+    private static boolean isOptionalQuantifier(String pattern, int i) {
+        // bounded repetitions are treated as optional as well, as they may allow zero repetitions
+        return i < pattern.length() && (pattern.charAt(i) == '?' || pattern.charAt(i) == '*' || pattern.charAt(i) == '{');
+    }
+
+    private static void addLiteral(StringBuilder literal, List<String> literals) {
+        if (literal.length() > 0) {
+            literals.add(literal.toString());
+            literal.setLength(0);
+        }
+    }
+
+    /**
+     * @return the position after the group that starts at the given position or <code>-1</code> if the group isn't closed
+     */
+    private static int skipGroup(String pattern, int start) {
+        int depth = 0;
+        int i = start;
+        while (i < pattern.length()) {
+            char c = pattern.charAt(i);
+            if (c == '\\') {
+                i += 2;
+                continue;
+            } else if (c == '[') {
+                i = skipCharacterClass(pattern, i);
+                if (i == -1) {
+                    return -1;
+                }
+                continue;
+            } else if (c == '(') {
+                depth++;
+            } else if (c == ')') {
+                depth--;
+                if (depth == 0) {
+                    return i + 1;
+                }
+            }
+            i++;
+        }
+        return -1;
+    }
+
+    /**
+     * @return the position after the character class that starts at the given position or <code>-1</code> if it isn't closed
+     */
+    private static int skipCharacterClass(String pattern, int start) {
+        int depth = 0;
+        int i = start;
+        while (i < pattern.length()) {
+            char c = pattern.charAt(i);
+            if (c == '\\') {
+                i += 2;
+                continue;
+            } else if (c == '[') {
+                depth++;
+                // a closing bracket right at the start of a class is a literal
+                if (pattern.startsWith("^]", i + 1)) {
+                    i += 2;
+                } else if (pattern.startsWith("]", i + 1)) {
+                    i += 1;
+                }
+            } else if (c == ']') {
+                depth--;
+                if (depth == 0) {
+                    return i + 1;
+                }
+            }
+            i++;
+        }
+        return -1;
+    }
+}
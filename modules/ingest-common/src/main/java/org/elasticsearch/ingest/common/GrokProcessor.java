@@ -19,15 +19,26 @@
 
 package org.elasticsearch.ingest.common;
 
+import org.elasticsearch.common.cache.Cache;
+import org.elasticsearch.common.cache.CacheBuilder;
+import org.elasticsearch.common.metrics.CounterMetric;
+import org.elasticsearch.common.settings.Setting;
+import org.elasticsearch.common.settings.Setting.Property;
+import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.ingest.AbstractProcessor;
 import org.elasticsearch.ingest.ConfigurationUtils;
 import org.elasticsearch.ingest.IngestDocument;
 import org.elasticsearch.ingest.Processor;
+import org.joni.Regex;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Function;
 
 import static org.elasticsearch.ingest.ConfigurationUtils.newConfigurationException;
 
@@ -36,8 +47,15 @@ public final class GrokProcessor extends AbstractProcessor {
     public static final String TYPE = "grok";
     private static final String PATTERN_MATCH_KEY = "_ingest._grok_match_index";
 
+    /**
+     * How many compiled grok expressions are cached per node and shared between the grok processors of all pipelines,
+     * <code>0</code> disables the cache.
+     */
+    public static final Setting<Integer> CACHE_SIZE_SETTING = Setting.intSetting("ingest.grok.cache_size", 1000, 0, Property.NodeScope);
+
     private final String matchField;
-    private final Grok grok;
+    private final List<Grok> groks;
+    private final PatternStats[] patternStats;
     private final boolean traceMatch;
 
     public GrokProcessor(String tag, Map<String, String> patternBank, List<String> matchPatterns, String matchField) {
@@ -45,31 +63,60 @@ public final class GrokProcessor extends AbstractProcessor {
     }
 
     public GrokProcessor(String tag, Map<String, String> patternBank, List<String> matchPatterns, String matchField, boolean traceMatch) {
+        this(tag, patternBank, matchPatterns, matchField, traceMatch, Grok::compile);
+    }
+
+    GrokProcessor(String tag, Map<String, String> patternBank, List<String> matchPatterns, String matchField, boolean traceMatch,
+                  Function<String, Regex> compiler) {
         super(tag);
         this.matchField = matchField;
-        this.grok = new Grok(patternBank, combinePatterns(matchPatterns, traceMatch));
+        List<Grok> groks = new ArrayList<>(matchPatterns.size());
+        for (String matchPattern : matchPatterns) {
+            groks.add(new Grok(patternBank, matchPattern, true, compiler));
+        }
+        this.groks = Collections.unmodifiableList(groks);
+        this.patternStats = new PatternStats[groks.size()];
+        for (int i = 0; i < patternStats.length; i++) {
+            patternStats[i] = new PatternStats();
+        }
         this.traceMatch = traceMatch;
     }
 
     @Override
     public void execute(IngestDocument ingestDocument) throws Exception {
         String fieldValue = ingestDocument.getFieldValue(matchField, String.class);
-        Map<String, Object> matches = grok.captures(fieldValue);
-        if (matches == null) {
-            throw new IllegalArgumentException("Provided Grok expressions do not match field value: [" + fieldValue + "]");
+        // the patterns are tried in order, the first one that matches wins
+        for (int i = 0; i < groks.size(); i++) {
+            Map<String, Object> matches = captures(i, fieldValue);
+            if (matches != null) {
+                matches.entrySet().stream()
+                    .filter((e) -> Objects.nonNull(e.getValue()))
+                    .forEach((e) -> ingestDocument.setFieldValue(e.getKey(), e.getValue()));
+                if (traceMatch) {
+                    ingestDocument.setFieldValue(PATTERN_MATCH_KEY, String.valueOf(i));
+                }
+                return;
+            }
         }
+        throw new IllegalArgumentException("Provided Grok expressions do not match field value: [" + fieldValue + "]");
+    }
 
-        matches.entrySet().stream()
-            .filter((e) -> Objects.nonNull(e.getValue()))
-            .forEach((e) -> ingestDocument.setFieldValue(e.getKey(), e.getValue()));
-
-        if (traceMatch) {
-            @SuppressWarnings("unchecked")
-            HashMap<String, String> matchMap = (HashMap<String, String>) ingestDocument.getFieldValue(PATTERN_MATCH_KEY, Object.class);
-            matchMap.keySet().stream().findFirst().ifPresent((index) -> {
-                ingestDocument.setFieldValue(PATTERN_MATCH_KEY, index);
-            });
+    private Map<String, Object> captures(int index, String fieldValue) {
+        Grok grok = groks.get(index);
+        PatternStats stats = patternStats[index];
+        if (grok.mayMatch(fieldValue) == false) {
+            stats.skipped.inc();
+            return null;
+        }
+        long startTimeInNanos = System.nanoTime();
+        Map<String, Object> matches = grok.captures(fieldValue);
+        stats.timeInNanos.inc(System.nanoTime() - startTimeInNanos);
+        if (matches == null) {
+            stats.missed.inc();
+        } else {
+            stats.matched.inc();
         }
+        return matches;
     }
 
     @Override
@@ -77,49 +124,52 @@ public final class GrokProcessor extends AbstractProcessor {
         return TYPE;
     }
 
-    public Grok getGrok() {
-        return grok;
+    /**
+     * Reports for each pattern, by its position in the patterns, how often it matched, how often the regex engine ran but it
+     * didn't match, how often it was skipped because the field value lacks text that any matching value contains, and the
+     * time spent running the regex engine.
+     */
+    @Override
+    public Map<String, Long> getStats() {
+        Map<String, Long> stats = new HashMap<>(patternStats.length * 4);
+        for (int i = 0; i < patternStats.length; i++) {
+            String prefix = "pattern_" + i + "_";
+            stats.put(prefix + "matched", patternStats[i].matched.count());
+            stats.put(prefix + "missed", patternStats[i].missed.count());
+            stats.put(prefix + "skipped", patternStats[i].skipped.count());
+            stats.put(prefix + "time_in_nanos", patternStats[i].timeInNanos.count());
+        }
+        return stats;
+    }
+
+    public List<Grok> getGroks() {
+        return groks;
     }
 
     String getMatchField() {
         return matchField;
     }
 
-    static String combinePatterns(List<String> patterns, boolean traceMatch) {
-        String combinedPattern;
-        if (patterns.size() > 1) {
-            if (traceMatch) {
-                combinedPattern = "";
-                for (int i = 0; i < patterns.size(); i++) {
-                    String valueWrap = "(?<" + PATTERN_MATCH_KEY + "." + i + ">" + patterns.get(i) + ")";
-                    if (combinedPattern.equals("")) {
-                        combinedPattern = valueWrap;
-                    } else {
-                        combinedPattern = combinedPattern + "|" + valueWrap;
-                    }
-                }
-            } else {
-                combinedPattern = patterns.stream().reduce("", (prefix, value) -> {
-                    if (prefix.equals("")) {
-                        return "(?:" + value + ")";
-                    } else {
-                        return prefix + "|" + "(?:" + value + ")";
-                    }
-                });
-            }
-        }  else {
-            combinedPattern = patterns.get(0);
-        }
-
-        return combinedPattern;
+    private static final class PatternStats {
+        private final CounterMetric matched = new CounterMetric();
+        private final CounterMetric missed = new CounterMetric();
+        private final CounterMetric skipped = new CounterMetric();
+        private final CounterMetric timeInNanos = new CounterMetric();
     }
 
     public static final class Factory implements Processor.Factory {
 
         private final Map<String, String> builtinPatterns;
+        // compiled expressions keyed by the regex expression they were compiled from
+        private final Cache<String, Regex> compiledExpressions;
 
         public Factory(Map<String, String> builtinPatterns) {
+            this(builtinPatterns, CACHE_SIZE_SETTING.getDefault(Settings.EMPTY));
+        }
+
+        public Factory(Map<String, String> builtinPatterns, int cacheSize) {
             this.builtinPatterns = builtinPatterns;
+            this.compiledExpressions = cacheSize == 0 ? null : CacheBuilder.<String, Regex>builder().setMaximumWeight(cacheSize).build();
         }
 
         @Override
@@ -139,12 +189,30 @@ public final class GrokProcessor extends AbstractProcessor {
             }
 
             try {
-                return new GrokProcessor(processorTag, patternBank, matchPatterns, matchField, traceMatch);
+                return new GrokProcessor(processorTag, patternBank, matchPatterns, matchField, traceMatch, this::compile);
             } catch (Exception e) {
                 throw newConfigurationException(TYPE, processorTag, "patterns",
                     "Invalid regex pattern found in: " + matchPatterns + ". " + e.getMessage());
             }
 
         }
+
+        private Regex compile(String expression) {
+            if (compiledExpressions == null) {
+                return Grok.compile(expression);
+            }
+            try {
+                return compiledExpressions.computeIfAbsent(expression, Grok::compile);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                throw new IllegalStateException(e.getCause());
+            }
+        }
+
+        int cachedExpressions() {
+            return compiledExpressions == null ? 0 : compiledExpressions.count();
+        }
     }
 }
@@ -26,8 +26,10 @@ import java.io.InputStreamReader;
 import java.nio.charset.StandardCharsets;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
+import org.elasticsearch.common.settings.Setting;
 import org.elasticsearch.ingest.Processor;
 import org.elasticsearch.plugins.IngestPlugin;
 import org.elasticsearch.plugins.Plugin;
@@ -59,12 +61,18 @@ public class IngestCommonPlugin extends Plugin implements IngestPlugin {
         processors.put(ForEachProcessor.TYPE, new ForEachProcessor.Factory());
         processors.put(DateIndexNameProcessor.TYPE, new DateIndexNameProcessor.Factory());
         processors.put(SortProcessor.TYPE, new SortProcessor.Factory());
-        processors.put(GrokProcessor.TYPE, new GrokProcessor.Factory(builtinPatterns));
+        processors.put(GrokProcessor.TYPE, new GrokProcessor.Factory(builtinPatterns,
+            GrokProcessor.CACHE_SIZE_SETTING.get(parameters.env.settings())));
         processors.put(ScriptProcessor.TYPE, new ScriptProcessor.Factory(parameters.scriptService));
         processors.put(DotExpanderProcessor.TYPE, new DotExpanderProcessor.Factory());
         return Collections.unmodifiableMap(processors);
     }
 
+    @Override
+    public List<Setting<?>> getSettings() {
+        return Collections.singletonList(GrokProcessor.CACHE_SIZE_SETTING);
+    }
+
     // Code for loading built-in grok patterns packaged with the jar file:
 
     private static final String[] PATTERN_NAMES = new String[] {
@@ -19,12 +19,15 @@
 
 package org.elasticsearch.ingest.common;
 
+import java.util.HashMap;
 import java.util.Map;
 
+import org.elasticsearch.common.Nullable;
 import org.elasticsearch.common.Strings;
 import org.elasticsearch.ingest.AbstractProcessor;
 import org.elasticsearch.ingest.IngestDocument;
 import org.elasticsearch.ingest.Processor;
+import org.elasticsearch.script.CompiledScript;
 import org.elasticsearch.script.ExecutableScript;
 import org.elasticsearch.script.Script;
 import org.elasticsearch.script.ScriptContext;
@@ -50,16 +53,29 @@ public final class ScriptProcessor extends AbstractProcessor {
 
     private final Script script;
     private final ScriptService scriptService;
+    @Nullable
+    private final CompiledScript compiledScript;
 
-    ScriptProcessor(String tag, Script script, ScriptService scriptService)  {
+    /**
+     * @param compiledScript the compiled script if it can't change, <code>null</code> to resolve the script for every document
+     */
+    ScriptProcessor(String tag, Script script, @Nullable CompiledScript compiledScript, ScriptService scriptService)  {
         super(tag);
         this.script = script;
         this.scriptService = scriptService;
+        this.compiledScript = compiledScript;
     }
 
     @Override
     public void execute(IngestDocument document) {
-        ExecutableScript executableScript = scriptService.executable(script, ScriptContext.Standard.INGEST, emptyMap());
+        final ExecutableScript executableScript;
+        if (compiledScript == null) {
+            executableScript = scriptService.executable(script, ScriptContext.Standard.INGEST, emptyMap());
+        } else {
+            // binding the compiled script is cheap, and every document gets its own params and variables that way, so nothing a
+            // script writes into them leaks into the next document
+            executableScript = scriptService.executable(compiledScript, new HashMap<>(script.getParams()));
+        }
         executableScript.setNextVar("ctx",  document.getSourceAndMetadata());
         executableScript.run();
     }
@@ -112,7 +128,16 @@ public final class ScriptProcessor extends AbstractProcessor {
                 throw newConfigurationException(TYPE, processorTag, null, "Could not initialize script");
             }
 
-            return new ScriptProcessor(processorTag, script, scriptService);
+            // stored and file scripts can be updated while the processor exists, so only inline scripts are compiled up-front
+            CompiledScript compiledScript = null;
+            if (script.getType() == INLINE) {
+                try {
+                    compiledScript = scriptService.compile(script, ScriptContext.Standard.INGEST, emptyMap());
+                } catch (Exception e) {
+                    throw newConfigurationException(TYPE, processorTag, null, e);
+                }
+            }
+            return new ScriptProcessor(processorTag, script, compiledScript, scriptService);
         }
     }
 }
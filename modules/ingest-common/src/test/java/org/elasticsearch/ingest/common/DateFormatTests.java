@@ -53,6 +53,11 @@ public class DateFormatTests extends ESTestCase {
     public void testParseISO8601() {
         assertThat(DateFormat.Iso8601.getFunction(null, DateTimeZone.UTC, null).apply("2001-01-01T00:00:00-0800").getMillis(),
                 equalTo(978336000000L));
+        assertThat(DateFormat.Iso8601.getFunction(null, DateTimeZone.UTC, null).apply("2001-01-01T00:00:00.000-08:00").getMillis(),
+                equalTo(978336000000L));
+        DateTime dateTime = DateFormat.Iso8601.getFunction(null, DateTimeZone.forOffsetHours(-8), null).apply("2001-01-01T00:00:00");
+        assertThat(dateTime.getMillis(), equalTo(978336000000L));
+        assertThat(dateTime.getZone(), equalTo(DateTimeZone.forOffsetHours(-8)));
     }
 
     public void testParseISO8601Failure() {
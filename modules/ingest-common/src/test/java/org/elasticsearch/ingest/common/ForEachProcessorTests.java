@@ -59,6 +59,32 @@ public class ForEachProcessorTests extends ESTestCase {
         assertThat(result.get(2), equalTo("BAZ"));
     }
 
+    public void testStatsOfInnerProcessor() throws Exception {
+        Processor inner = new Processor() {
+            @Override
+            public void execute(IngestDocument ingestDocument) throws Exception {
+            }
+
+            @Override
+            public String getType() {
+                return "my_type";
+            }
+
+            @Override
+            public String getTag() {
+                return null;
+            }
+
+            @Override
+            public Map<String, Long> getStats() {
+                return Collections.singletonMap("matched", 1L);
+            }
+        };
+        ForEachProcessor processor = new ForEachProcessor("_tag", "values", new CompoundProcessor(true,
+            Collections.singletonList(inner), Collections.emptyList()));
+        assertThat(processor.getStats(), equalTo(Collections.singletonMap("matched", 1L)));
+    }
+
     public void testExecuteWithFailure() throws Exception {
         IngestDocument ingestDocument = new IngestDocument(
             "_index", "_type", "_id", null, null, null, null, Collections.singletonMap("values", Arrays.asList("a", "b", "c"))
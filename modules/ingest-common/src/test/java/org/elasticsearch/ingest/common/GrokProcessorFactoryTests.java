@@ -22,12 +22,12 @@ package org.elasticsearch.ingest.common;
 import org.elasticsearch.ElasticsearchParseException;
 import org.elasticsearch.test.ESTestCase;
 
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 
 import static org.hamcrest.Matchers.equalTo;
-import static org.hamcrest.Matchers.notNullValue;
 
 public class GrokProcessorFactoryTests extends ESTestCase {
 
@@ -41,7 +41,7 @@ public class GrokProcessorFactoryTests extends ESTestCase {
         GrokProcessor processor = factory.create(null, processorTag, config);
         assertThat(processor.getTag(), equalTo(processorTag));
         assertThat(processor.getMatchField(), equalTo("_field"));
-        assertThat(processor.getGrok(), notNullValue());
+        assertThat(processor.getGroks().size(), equalTo(1));
     }
 
     public void testBuildMissingField() throws Exception {
@@ -78,8 +78,8 @@ public class GrokProcessorFactoryTests extends ESTestCase {
         config.put("pattern_definitions", Collections.singletonMap("MY_PATTERN", "foo"));
         GrokProcessor processor = factory.create(null, null, config);
         assertThat(processor.getMatchField(), equalTo("_field"));
-        assertThat(processor.getGrok(), notNullValue());
-        assertThat(processor.getGrok().match("foo!"), equalTo(true));
+        assertThat(processor.getGroks().size(), equalTo(1));
+        assertThat(processor.getGroks().get(0).match("foo!"), equalTo(true));
     }
 
     public void testCreateWithInvalidPattern() throws Exception {
@@ -101,4 +101,35 @@ public class GrokProcessorFactoryTests extends ESTestCase {
         assertThat(e.getMessage(),
             equalTo("[patterns] Invalid regex pattern found in: [%{MY_PATTERN:name}!]. premature end of char-class"));
     }
+
+    public void testCompiledExpressionsAreShared() throws Exception {
+        GrokProcessor.Factory factory = new GrokProcessor.Factory(Collections.singletonMap("MY_PATTERN", "foo"));
+        for (int i = 0; i < 2; i++) {
+            Map<String, Object> config = new HashMap<>();
+            config.put("field", "_field");
+            config.put("patterns", Arrays.asList("%{MY_PATTERN:name}!", "%{MY_PATTERN:name}?"));
+            factory.create(null, null, config);
+            assertThat(factory.cachedExpressions(), equalTo(2));
+        }
+
+        // the same pattern expands to a different expression with other pattern definitions
+        Map<String, Object> config = new HashMap<>();
+        config.put("field", "_field");
+        config.put("patterns", Collections.singletonList("%{MY_PATTERN:name}!"));
+        config.put("pattern_definitions", Collections.singletonMap("MY_PATTERN", "bar"));
+        GrokProcessor processor = factory.create(null, null, config);
+        assertThat(factory.cachedExpressions(), equalTo(3));
+        assertThat(processor.getGroks().get(0).match("bar!"), equalTo(true));
+        assertThat(processor.getGroks().get(0).match("foo!"), equalTo(false));
+    }
+
+    public void testCacheDisabled() throws Exception {
+        GrokProcessor.Factory factory = new GrokProcessor.Factory(Collections.emptyMap(), 0);
+        Map<String, Object> config = new HashMap<>();
+        config.put("field", "_field");
+        config.put("patterns", Collections.singletonList("(?<foo>\\w+)"));
+        GrokProcessor processor = factory.create(null, null, config);
+        assertThat(factory.cachedExpressions(), equalTo(0));
+        assertThat(processor.getGroks().get(0).match("bar"), equalTo(true));
+    }
 }
@@ -29,6 +29,7 @@ import java.util.HashMap;
 import java.util.Map;
 
 import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
 
 
 public class GrokProcessorTests extends ESTestCase {
@@ -116,19 +117,47 @@ public class GrokProcessorTests extends ESTestCase {
         assertThat(doc.getFieldValue("_ingest._grok_match_index", String.class), equalTo("1"));
     }
 
-    public void testCombinedPatterns() {
-        String combined;
-        combined = GrokProcessor.combinePatterns(Arrays.asList(""), false);
-        assertThat(combined, equalTo(""));
-        combined = GrokProcessor.combinePatterns(Arrays.asList(""), true);
-        assertThat(combined, equalTo(""));
-        combined = GrokProcessor.combinePatterns(Arrays.asList("foo"), false);
-        assertThat(combined, equalTo("foo"));
-        combined = GrokProcessor.combinePatterns(Arrays.asList("foo"), true);
-        assertThat(combined, equalTo("foo"));
-        combined = GrokProcessor.combinePatterns(Arrays.asList("foo", "bar"), false);
-        assertThat(combined, equalTo("(?:foo)|(?:bar)"));
-        combined = GrokProcessor.combinePatterns(Arrays.asList("foo", "bar"), true);
-        assertThat(combined, equalTo("(?<_ingest._grok_match_index.0>foo)|(?<_ingest._grok_match_index.1>bar)"));
+    public void testSetMetadataWithSinglePattern() throws Exception {
+        String fieldName = RandomDocumentPicks.randomFieldName(random());
+        IngestDocument doc = RandomDocumentPicks.randomIngestDocument(random(), new HashMap<>());
+        doc.setFieldValue(fieldName, "1");
+        GrokProcessor processor = new GrokProcessor(randomAsciiOfLength(10), Collections.singletonMap("ONE", "1"),
+            Collections.singletonList("%{ONE:one}"), fieldName, true);
+        processor.execute(doc);
+        assertThat(doc.getFieldValue("one", String.class), equalTo("1"));
+        assertThat(doc.getFieldValue("_ingest._grok_match_index", String.class), equalTo("0"));
+    }
+
+    public void testStats() throws Exception {
+        String fieldName = RandomDocumentPicks.randomFieldName(random());
+        Map<String, String> patternBank = new HashMap<>();
+        // a character class, so that only "foo " is required by the first pattern
+        patternBank.put("ONE", "[1]");
+        patternBank.put("TWO", "2");
+        GrokProcessor processor = new GrokProcessor(randomAsciiOfLength(10), patternBank,
+            Arrays.asList("foo %{ONE:one}", "%{TWO:two}"), fieldName);
+
+        // the first pattern is skipped without running the regex engine, as the value doesn't contain "foo "
+        IngestDocument doc = RandomDocumentPicks.randomIngestDocument(random(), new HashMap<>());
+        doc.setFieldValue(fieldName, "2");
+        processor.execute(doc);
+        assertThat(doc.getFieldValue("two", String.class), equalTo("2"));
+        // the first pattern is tried but doesn't match
+        doc = RandomDocumentPicks.randomIngestDocument(random(), new HashMap<>());
+        doc.setFieldValue(fieldName, "foo 2");
+        processor.execute(doc);
+        assertThat(doc.hasField("one"), equalTo(false));
+        assertThat(doc.getFieldValue("two", String.class), equalTo("2"));
+
+        Map<String, Long> stats = processor.getStats();
+        assertThat(stats.size(), equalTo(8));
+        assertThat(stats.get("pattern_0_matched"), equalTo(0L));
+        assertThat(stats.get("pattern_0_missed"), equalTo(1L));
+        assertThat(stats.get("pattern_0_skipped"), equalTo(1L));
+        assertThat(stats.get("pattern_0_time_in_nanos"), greaterThanOrEqualTo(0L));
+        assertThat(stats.get("pattern_1_matched"), equalTo(2L));
+        assertThat(stats.get("pattern_1_missed"), equalTo(0L));
+        assertThat(stats.get("pattern_1_skipped"), equalTo(0L));
+        assertThat(stats.get("pattern_1_time_in_nanos"), greaterThanOrEqualTo(0L));
     }
 }
@@ -24,6 +24,7 @@ import org.junit.Before;
 
 import java.io.IOException;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -221,6 +222,7 @@ public class GrokTests extends ESTestCase {
                 "\"http://8rursodiol.enjin.com\" \"Mozilla/5.0 (Windows NT 6.1; WOW64) AppleWebKit/537.36 (KHTML, like Gecko) " +
                 "Chrome/30.0.1599.12785 YaBrowser/13.12.1599.12785 Safari/537.36\" \"www.dlwindianrailways.com\"";
         Grok grok = new Grok(basePatterns, "%{COMBINEDAPACHELOG}");
+        assertTrue(grok.mayMatch(logLine));
         Map<String, Object> matches = grok.captures(logLine);
 
         assertEquals("31.184.238.164", matches.get("clientip"));
@@ -296,6 +298,7 @@ public class GrokTests extends ESTestCase {
         expected.put("agent", "\"Mozilla/5.0 (Macintosh; Intel Mac OS X 10_9_1) AppleWebKit/537.36 (KHTML, like Gecko) " +
                 "Chrome/32.0.1700.77 Safari/537.36\"");
 
+        assertTrue(grok.mayMatch(text));
         Map<String, Object> actual = grok.captures(text);
 
         assertEquals(expected, actual);
@@ -307,4 +310,48 @@ public class GrokTests extends ESTestCase {
         Grok grok = new Grok(bank, "%{MONTHDAY:greatday}");
         assertThat(grok.captures("nomatch"), nullValue());
     }
+
+    public void testRequiredLiterals() {
+        Map<String, String> bank = new HashMap<>();
+        bank.put("NAME", "Tal");
+        bank.put("WORD", "\\b\\w+\\b");
+        bank.put("INT", "(?:[+-]?(?:[0-9]+))");
+        bank.put("GREETING", "hello|hi");
+
+        assertThat(Grok.requiredLiterals(bank, "value"), equalTo(Arrays.asList("value")));
+        assertThat(Grok.requiredLiterals(bank, "foo %{WORD:word} bar"), equalTo(Arrays.asList("foo ", " bar")));
+        assertThat(Grok.requiredLiterals(bank, "\\[%{INT:number}\\]"), equalTo(Arrays.asList("[", "]")));
+        assertThat(Grok.requiredLiterals(bank, "hi %{NAME}!"), equalTo(Arrays.asList("hi ", "Tal", "!")));
+        assertThat(Grok.requiredLiterals(bank, "hi %{NAME}?!"), equalTo(Arrays.asList("hi ", "!")));
+        assertThat(Grok.requiredLiterals(bank, "%{GREETING} %{NAME}"), equalTo(Arrays.asList(" ", "Tal")));
+        assertThat(Grok.requiredLiterals(bank, "colou?r"), equalTo(Arrays.asList("colo", "r")));
+        assertThat(Grok.requiredLiterals(bank, "ab+c*d{2}e"), equalTo(Arrays.asList("ab", "e")));
+        assertThat(Grok.requiredLiterals(bank, "foo(bar)?baz[xyz]qux"), equalTo(Arrays.asList("foo", "baz", "qux")));
+        assertThat(Grok.requiredLiterals(bank, "a.b^c$d"), equalTo(Arrays.asList("a", "b", "c", "d")));
+        assertThat(Grok.requiredLiterals(bank, "\\x41BC-\\d{2}"), equalTo(Collections.emptyList()));
+        assertThat(Grok.requiredLiterals(bank, "[]x] y"), equalTo(Arrays.asList(" y")));
+        assertThat(Grok.requiredLiterals(bank, "%{NAME:first name}"), equalTo(Collections.emptyList()));
+        // alternations and options that change what literals match disable the prefilter
+        assertThat(Grok.requiredLiterals(bank, "foo|bar"), equalTo(Collections.emptyList()));
+        assertThat(Grok.requiredLiterals(bank, "(?i)foo"), equalTo(Collections.emptyList()));
+        assertThat(Grok.requiredLiterals(bank, "foo(?i:bar)"), equalTo(Collections.emptyList()));
+
+        for (String pattern : basePatterns.keySet()) {
+            Grok.requiredLiterals(basePatterns, "%{" + pattern + "}");
+        }
+    }
+
+    public void testMayMatch() {
+        Map<String, String> bank = new HashMap<>();
+        bank.put("INT", "(?:[+-]?(?:[0-9]+))");
+        Grok grok = new Grok(bank, "took %{INT:took}ms");
+        assertThat(grok.getRequiredLiterals(), equalTo(new String[] {"took ", "ms"}));
+        assertThat(grok.mayMatch("request took 12ms"), is(true));
+        assertThat(grok.captures("request took 12ms").get("took"), equalTo("12"));
+        // may match doesn't guarantee a match
+        assertThat(grok.mayMatch("took ms"), is(true));
+        assertThat(grok.captures("took ms"), nullValue());
+        assertThat(grok.mayMatch("took 12s"), is(false));
+        assertThat(grok.mayMatch("12ms"), is(false));
+    }
 }
@@ -21,6 +21,8 @@ package org.elasticsearch.ingest.common;
 
 import org.elasticsearch.ElasticsearchException;
 import org.elasticsearch.cluster.service.ClusterService;
+import org.elasticsearch.script.Script;
+import org.elasticsearch.script.ScriptContext;
 import org.elasticsearch.script.ScriptService;
 import org.elasticsearch.test.ESTestCase;
 import org.junit.Before;
@@ -29,16 +31,25 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.is;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 public class ScriptProcessorFactoryTests extends ESTestCase {
 
+    private ScriptService scriptService;
     private ScriptProcessor.Factory factory;
 
     @Before
     public void init() {
-        factory = new ScriptProcessor.Factory(mock(ScriptService.class));
+        scriptService = mock(ScriptService.class);
+        factory = new ScriptProcessor.Factory(scriptService);
     }
 
 
@@ -68,4 +79,33 @@ public class ScriptProcessorFactoryTests extends ESTestCase {
 
         assertThat(exception.getMessage(), is("[null] Need [file], [id], or [inline] parameter to refer to scripts"));
     }
+
+    public void testInlineScriptIsCompiledOnCreation() throws Exception {
+        Map<String, Object> configMap = new HashMap<>();
+        configMap.put("inline", "foo");
+        configMap.put("lang", "mockscript");
+        factory.create(null, randomAsciiOfLength(10), configMap);
+        verify(scriptService).compile(any(Script.class), eq(ScriptContext.Standard.INGEST), any());
+    }
+
+    public void testStoredAndFileScriptsAreNotCompiledOnCreation() throws Exception {
+        Map<String, Object> configMap = new HashMap<>();
+        configMap.put(randomFrom("id", "file"), "foo");
+        configMap.put("lang", "mockscript");
+        factory.create(null, randomAsciiOfLength(10), configMap);
+        verify(scriptService, never()).compile(any(), any(), any());
+    }
+
+    public void testInlineScriptCompilationFailure() throws Exception {
+        Map<String, Object> configMap = new HashMap<>();
+        configMap.put("inline", "foo");
+        configMap.put("lang", "mockscript");
+        String processorTag = randomAsciiOfLength(10);
+        when(scriptService.compile(any(), any(), any())).thenThrow(new IllegalArgumentException("compilation failed"));
+
+        ElasticsearchException exception = expectThrows(ElasticsearchException.class,
+            () -> factory.create(null, processorTag, configMap));
+        assertThat(exception.getMessage(), containsString("compilation failed"));
+        assertThat(exception.getHeader("processor_tag"), equalTo(Collections.singletonList(processorTag)));
+    }
 }
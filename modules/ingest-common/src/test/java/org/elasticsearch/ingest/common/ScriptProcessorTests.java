@@ -19,7 +19,10 @@
 
 package org.elasticsearch.ingest.common;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import org.elasticsearch.ingest.IngestDocument;
@@ -35,7 +38,11 @@ import static org.hamcrest.Matchers.hasKey;
 import static org.hamcrest.core.Is.is;
 import static org.mockito.Mockito.any;
 import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.eq;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 public class ScriptProcessorTests extends ESTestCase {
@@ -60,7 +67,7 @@ public class ScriptProcessorTests extends ESTestCase {
             return null;
         }).when(executableScript).run();
 
-        ScriptProcessor processor = new ScriptProcessor(randomAsciiOfLength(10), script, scriptService);
+        ScriptProcessor processor = new ScriptProcessor(randomAsciiOfLength(10), script, null, scriptService);
 
         processor.execute(ingestDocument);
 
@@ -69,4 +76,36 @@ public class ScriptProcessorTests extends ESTestCase {
         assertThat(ingestDocument.getSourceAndMetadata(), hasKey("bytes_total"));
         assertThat(ingestDocument.getSourceAndMetadata().get("bytes_total"), is(randomBytesTotal));
     }
+
+    public void testCompiledScriptIsNotRecompiled() throws Exception {
+        ScriptService scriptService = mock(ScriptService.class);
+        Map<String, Object> params = Collections.singletonMap("field", "bytes_total");
+        Script script = new Script("_script", ScriptService.ScriptType.INLINE, "mockscript", params);
+        CompiledScript compiledScript = mock(CompiledScript.class);
+        List<Map<String, Object>> boundParams = new ArrayList<>();
+        ExecutableScript executableScript = mock(ExecutableScript.class);
+        when(scriptService.executable(eq(compiledScript), any())).thenAnswer(invocationOnMock -> {
+            @SuppressWarnings("unchecked")
+            Map<String, Object> vars = (Map<String, Object>) invocationOnMock.getArguments()[1];
+            boundParams.add(vars);
+            return executableScript;
+        });
+
+        ScriptProcessor processor = new ScriptProcessor(randomAsciiOfLength(10), script, compiledScript, scriptService);
+        int numDocs = randomIntBetween(2, 10);
+        for (int i = 0; i < numDocs; i++) {
+            IngestDocument ingestDocument = RandomDocumentPicks.randomIngestDocument(random(), new HashMap<>());
+            processor.execute(ingestDocument);
+            verify(executableScript).setNextVar("ctx", ingestDocument.getSourceAndMetadata());
+            // whatever the script writes into its params must not be seen by the next document
+            boundParams.get(i).put("written_by_doc", i);
+        }
+        verify(scriptService, never()).executable(any(Script.class), any(), any());
+        verify(executableScript, times(numDocs)).run();
+        assertThat(boundParams.size(), is(numDocs));
+        for (int i = 0; i < numDocs; i++) {
+            assertThat(boundParams.get(i).get("field"), is("bytes_total"));
+            assertThat(boundParams.get(i).get("written_by_doc"), is(i));
+        }
+    }
 }
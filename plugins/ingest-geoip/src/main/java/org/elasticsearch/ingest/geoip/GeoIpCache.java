@@ -0,0 +1,73 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.elasticsearch.ingest.geoip;
+
+import org.elasticsearch.common.cache.Cache;
+import org.elasticsearch.common.cache.CacheBuilder;
+
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Caches the geo data looked up for ip addresses, per database, on a node. The cached geo data holds all properties that
+ * the database provides and must not be modified.
+ */
+final class GeoIpCache {
+    private final Cache<CacheKey, Map<String, Object>> cache;
+
+    GeoIpCache(long maxSize) {
+        cache = CacheBuilder.<CacheKey, Map<String, Object>>builder().setMaximumWeight(maxSize).build();
+    }
+
+    Map<String, Object> get(String databaseFile, String ip) {
+        return cache.get(new CacheKey(databaseFile, ip));
+    }
+
+    void put(String databaseFile, String ip, Map<String, Object> geoData) {
+        cache.put(new CacheKey(databaseFile, ip), geoData);
+    }
+
+    int count() {
+        return cache.count();
+    }
+
+    private static final class CacheKey {
+        private final String databaseFile;
+        private final String ip;
+
+        CacheKey(String databaseFile, String ip) {
+            this.databaseFile = databaseFile;
+            this.ip = ip;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (obj instanceof CacheKey) {
+                CacheKey other = (CacheKey) obj;
+                return databaseFile.equals(other.databaseFile) && ip.equals(other.ip);
+            }
+            return false;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(databaseFile, ip);
+        }
+    }
+}
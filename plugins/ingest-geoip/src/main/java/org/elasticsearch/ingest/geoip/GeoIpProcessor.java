@@ -43,6 +43,7 @@ import com.maxmind.geoip2.record.Location;
 import com.maxmind.geoip2.record.Subdivision;
 import org.elasticsearch.ElasticsearchParseException;
 import org.elasticsearch.SpecialPermission;
+import org.elasticsearch.common.metrics.CounterMetric;
 import org.elasticsearch.common.network.InetAddresses;
 import org.elasticsearch.common.network.NetworkAddress;
 import org.elasticsearch.ingest.AbstractProcessor;
@@ -62,42 +63,73 @@ public final class GeoIpProcessor extends AbstractProcessor {
     private final String field;
     private final String targetField;
     private final DatabaseReader dbReader;
+    private final String databaseFile;
     private final Set<Property> properties;
+    private final GeoIpCache cache;
+    private final CounterMetric cacheHits = new CounterMetric();
+    private final CounterMetric cacheMisses = new CounterMetric();
 
-    GeoIpProcessor(String tag, String field, DatabaseReader dbReader, String targetField, Set<Property> properties) throws IOException {
+    GeoIpProcessor(String tag, String field, DatabaseReader dbReader, String databaseFile, String targetField, Set<Property> properties,
+                   GeoIpCache cache) throws IOException {
         super(tag);
         this.field = field;
         this.targetField = targetField;
         this.dbReader = dbReader;
+        this.databaseFile = databaseFile;
         this.properties = properties;
+        this.cache = cache;
     }
 
     @Override
     public void execute(IngestDocument ingestDocument) {
         String ip = ingestDocument.getFieldValue(field, String.class);
-        final InetAddress ipAddress = InetAddresses.forString(ip);
+        Map<String, Object> allGeoData = cache.get(databaseFile, ip);
+        if (allGeoData == null) {
+            cacheMisses.inc();
+            allGeoData = Collections.unmodifiableMap(retrieveGeoData(ip));
+            cache.put(databaseFile, ip, allGeoData);
+        } else {
+            cacheHits.inc();
+        }
+
+        // the cached geo data is shared, so the document gets its own copy of the configured properties
+        Map<String, Object> geoData = new HashMap<>();
+        for (Property property : properties) {
+            String key = property.name().toLowerCase(Locale.ROOT);
+            if (allGeoData.containsKey(key)) {
+                Object value = allGeoData.get(key);
+                if (value instanceof Map) {
+                    value = new HashMap<>((Map<?, ?>) value);
+                }
+                geoData.put(key, value);
+            }
+        }
+        ingestDocument.setFieldValue(targetField, geoData);
+    }
 
-        Map<String, Object> geoData;
+    /**
+     * Looks up all properties that the database provides for the given ip address, no properties if the database doesn't know
+     * the address.
+     */
+    private Map<String, Object> retrieveGeoData(String ip) {
+        final InetAddress ipAddress = InetAddresses.forString(ip);
         switch (dbReader.getMetadata().getDatabaseType()) {
             case CITY_DB_TYPE:
                 try {
-                    geoData = retrieveCityGeoData(ipAddress);
+                    return retrieveCityGeoData(ipAddress, Property.ALL_CITY_PROPERTIES);
                 } catch (AddressNotFoundRuntimeException e) {
-                    geoData = Collections.emptyMap();
+                    return Collections.emptyMap();
                 }
-                break;
             case COUNTRY_DB_TYPE:
                 try {
-                    geoData = retrieveCountryGeoData(ipAddress);
+                    return retrieveCountryGeoData(ipAddress, Property.ALL_COUNTRY_PROPERTIES);
                 } catch (AddressNotFoundRuntimeException e) {
-                    geoData = Collections.emptyMap();
+                    return Collections.emptyMap();
                 }
-                break;
             default:
                 throw new ElasticsearchParseException("Unsupported database type [" + dbReader.getMetadata().getDatabaseType()
                         + "]", new IllegalStateException());
         }
-        ingestDocument.setFieldValue(targetField, geoData);
     }
 
     @Override
@@ -105,6 +137,18 @@ public final class GeoIpProcessor extends AbstractProcessor {
         return TYPE;
     }
 
+    /**
+     * Reports how often the geo data of an ip address was found in the node's cache and how often it had to be looked up in
+     * the database.
+     */
+    @Override
+    public Map<String, Long> getStats() {
+        Map<String, Long> stats = new HashMap<>(2);
+        stats.put("cache_hits", cacheHits.count());
+        stats.put("cache_misses", cacheMisses.count());
+        return stats;
+    }
+
     String getField() {
         return field;
     }
@@ -117,11 +161,15 @@ public final class GeoIpProcessor extends AbstractProcessor {
         return dbReader;
     }
 
+    String getDatabaseFile() {
+        return databaseFile;
+    }
+
     Set<Property> getProperties() {
         return properties;
     }
 
-    private Map<String, Object> retrieveCityGeoData(InetAddress ipAddress) {
+    private Map<String, Object> retrieveCityGeoData(InetAddress ipAddress, Set<Property> properties) {
         SecurityManager sm = System.getSecurityManager();
         if (sm != null) {
             sm.checkPermission(new SpecialPermission());
@@ -143,7 +191,7 @@ public final class GeoIpProcessor extends AbstractProcessor {
         Subdivision subdivision = response.getMostSpecificSubdivision();
 
         Map<String, Object> geoData = new HashMap<>();
-        for (Property property : this.properties) {
+        for (Property property : properties) {
             switch (property) {
                 case IP:
                     geoData.put("ip", NetworkAddress.format(ipAddress));
@@ -177,7 +225,7 @@ public final class GeoIpProcessor extends AbstractProcessor {
         return geoData;
     }
 
-    private Map<String, Object> retrieveCountryGeoData(InetAddress ipAddress) {
+    private Map<String, Object> retrieveCountryGeoData(InetAddress ipAddress, Set<Property> properties) {
         SecurityManager sm = System.getSecurityManager();
         if (sm != null) {
             sm.checkPermission(new SpecialPermission());
@@ -196,7 +244,7 @@ public final class GeoIpProcessor extends AbstractProcessor {
         Continent continent = response.getContinent();
 
         Map<String, Object> geoData = new HashMap<>();
-        for (Property property : this.properties) {
+        for (Property property : properties) {
             switch (property) {
                 case IP:
                     geoData.put("ip", NetworkAddress.format(ipAddress));
@@ -223,9 +271,11 @@ public final class GeoIpProcessor extends AbstractProcessor {
         static final Set<Property> DEFAULT_COUNTRY_PROPERTIES = EnumSet.of(Property.CONTINENT_NAME, Property.COUNTRY_ISO_CODE);
 
         private final Map<String, DatabaseReader> databaseReaders;
+        private final GeoIpCache cache;
 
-        public Factory(Map<String, DatabaseReader> databaseReaders) {
+        public Factory(Map<String, DatabaseReader> databaseReaders, GeoIpCache cache) {
             this.databaseReaders = databaseReaders;
+            this.cache = cache;
         }
 
         @Override
@@ -265,7 +315,7 @@ public final class GeoIpProcessor extends AbstractProcessor {
                 }
             }
 
-            return new GeoIpProcessor(processorTag, ipField, databaseReader, targetField, properties);
+            return new GeoIpProcessor(processorTag, ipField, databaseReader, databaseFile, targetField, properties, cache);
         }
     }
 
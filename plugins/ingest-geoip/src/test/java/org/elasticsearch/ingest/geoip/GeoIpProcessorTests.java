@@ -20,8 +20,10 @@
 package org.elasticsearch.ingest.geoip;
 
 import com.maxmind.geoip2.DatabaseReader;
+import org.elasticsearch.ingest.CompoundProcessor;
 import org.elasticsearch.ingest.RandomDocumentPicks;
 import org.elasticsearch.ingest.IngestDocument;
+import org.elasticsearch.ingest.Processor;
 import org.elasticsearch.test.ESTestCase;
 
 import java.io.IOException;
@@ -31,6 +33,9 @@ import java.util.HashMap;
 import java.util.Map;
 import java.util.zip.GZIPInputStream;
 
+import static java.util.Collections.emptyList;
+import static java.util.Collections.singletonList;
+import static java.util.Collections.singletonMap;
 import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.equalTo;
 
@@ -39,7 +44,9 @@ public class GeoIpProcessorTests extends ESTestCase {
     public void testCity() throws Exception {
         InputStream database = getDatabaseFileInputStream("/GeoLite2-City.mmdb.gz");
         GeoIpProcessor processor = new GeoIpProcessor(randomAsciiOfLength(10), "source_field",
-                new DatabaseReader.Builder(database).build(), "target_field", EnumSet.allOf(GeoIpProcessor.Property.class));
+                new DatabaseReader.Builder(database).build(), "GeoLite2-City.mmdb.gz", "target_field",
+                EnumSet.allOf(GeoIpProcessor.Property.class),
+                new GeoIpCache(1000));
 
         Map<String, Object> document = new HashMap<>();
         document.put("source_field", "8.8.8.8");
@@ -66,7 +73,9 @@ public class GeoIpProcessorTests extends ESTestCase {
     public void testCountry() throws Exception {
         InputStream database = getDatabaseFileInputStream("/GeoLite2-Country.mmdb.gz");
         GeoIpProcessor processor = new GeoIpProcessor(randomAsciiOfLength(10), "source_field",
-                new DatabaseReader.Builder(database).build(), "target_field", EnumSet.allOf(GeoIpProcessor.Property.class));
+                new DatabaseReader.Builder(database).build(), "GeoLite2-Country.mmdb.gz", "target_field",
+                EnumSet.allOf(GeoIpProcessor.Property.class),
+                new GeoIpCache(1000));
 
         Map<String, Object> document = new HashMap<>();
         document.put("source_field", "82.170.213.79");
@@ -86,7 +95,9 @@ public class GeoIpProcessorTests extends ESTestCase {
     public void testAddressIsNotInTheDatabase() throws Exception {
         InputStream database = getDatabaseFileInputStream("/GeoLite2-City.mmdb.gz");
         GeoIpProcessor processor = new GeoIpProcessor(randomAsciiOfLength(10), "source_field",
-                new DatabaseReader.Builder(database).build(), "target_field", EnumSet.allOf(GeoIpProcessor.Property.class));
+                new DatabaseReader.Builder(database).build(), "GeoLite2-City.mmdb.gz", "target_field",
+                EnumSet.allOf(GeoIpProcessor.Property.class),
+                new GeoIpCache(1000));
 
         Map<String, Object> document = new HashMap<>();
         document.put("source_field", "127.0.0.1");
@@ -97,11 +108,69 @@ public class GeoIpProcessorTests extends ESTestCase {
         assertThat(geoData.size(), equalTo(0));
     }
 
+    public void testCachedLookups() throws Exception {
+        InputStream database = getDatabaseFileInputStream("/GeoLite2-City.mmdb.gz");
+        GeoIpCache cache = new GeoIpCache(1000);
+        DatabaseReader databaseReader = new DatabaseReader.Builder(database).build();
+        GeoIpProcessor allProperties = new GeoIpProcessor(randomAsciiOfLength(10), "source_field", databaseReader,
+                "GeoLite2-City.mmdb.gz", "target_field", EnumSet.allOf(GeoIpProcessor.Property.class), cache);
+        GeoIpProcessor countryOnly = new GeoIpProcessor(randomAsciiOfLength(10), "source_field", databaseReader,
+                "GeoLite2-City.mmdb.gz", "target_field", EnumSet.of(GeoIpProcessor.Property.COUNTRY_ISO_CODE), cache);
+
+        IngestDocument ingestDocument = RandomDocumentPicks.randomIngestDocument(random(), singletonMap("source_field", "8.8.8.8"));
+        allProperties.execute(ingestDocument);
+        @SuppressWarnings("unchecked")
+        Map<String, Object> geoData = (Map<String, Object>) ingestDocument.getSourceAndMetadata().get("target_field");
+        assertThat(geoData.size(), equalTo(8));
+        // the cached geo data must not be affected by changes to the document
+        @SuppressWarnings("unchecked")
+        Map<String, Object> location = (Map<String, Object>) geoData.get("location");
+        location.clear();
+        assertThat(cache.count(), equalTo(1));
+        assertThat(allProperties.getStats().get("cache_hits"), equalTo(0L));
+        assertThat(allProperties.getStats().get("cache_misses"), equalTo(1L));
+
+        ingestDocument = RandomDocumentPicks.randomIngestDocument(random(), singletonMap("source_field", "8.8.8.8"));
+        countryOnly.execute(ingestDocument);
+        assertThat(ingestDocument.getSourceAndMetadata().get("target_field"), equalTo(singletonMap("country_iso_code", "US")));
+        assertThat(countryOnly.getStats().get("cache_hits"), equalTo(1L));
+        assertThat(countryOnly.getStats().get("cache_misses"), equalTo(0L));
+
+        ingestDocument = RandomDocumentPicks.randomIngestDocument(random(), singletonMap("source_field", "8.8.8.8"));
+        allProperties.execute(ingestDocument);
+        @SuppressWarnings("unchecked")
+        Map<String, Object> cachedGeoData = (Map<String, Object>) ingestDocument.getSourceAndMetadata().get("target_field");
+        Map<String, Object> expectedLocation = new HashMap<>();
+        expectedLocation.put("lat", 37.386d);
+        expectedLocation.put("lon", -122.0838d);
+        assertThat(cachedGeoData.get("location"), equalTo(expectedLocation));
+        assertThat(allProperties.getStats().get("cache_hits"), equalTo(1L));
+        assertThat(allProperties.getStats().get("cache_misses"), equalTo(1L));
+        assertThat(cache.count(), equalTo(1));
+    }
+
+    public void testCacheStatsOfProcessorIgnoringFailures() throws Exception {
+        InputStream database = getDatabaseFileInputStream("/GeoLite2-City.mmdb.gz");
+        GeoIpProcessor processor = new GeoIpProcessor(randomAsciiOfLength(10), "source_field",
+                new DatabaseReader.Builder(database).build(), "GeoLite2-City.mmdb.gz", "target_field",
+                EnumSet.allOf(GeoIpProcessor.Property.class), new GeoIpCache(1000));
+        // processors with ignore_failure or on_failure are wrapped, their cache stats must still be reported
+        Processor wrapped = new CompoundProcessor(true, singletonList(processor), emptyList());
+        Map<String, Object> document = new HashMap<>();
+        document.put("source_field", "8.8.8.8");
+        wrapped.execute(RandomDocumentPicks.randomIngestDocument(random(), document));
+        wrapped.execute(RandomDocumentPicks.randomIngestDocument(random(), document));
+        assertThat(wrapped.getStats().get("cache_hits"), equalTo(1L));
+        assertThat(wrapped.getStats().get("cache_misses"), equalTo(1L));
+    }
+
     /** Don't silently do DNS lookups or anything trappy on bogus data */
     public void testInvalid() throws Exception {
         InputStream database = getDatabaseFileInputStream("/GeoLite2-City.mmdb.gz");
         GeoIpProcessor processor = new GeoIpProcessor(randomAsciiOfLength(10), "source_field",
-                new DatabaseReader.Builder(database).build(), "target_field", EnumSet.allOf(GeoIpProcessor.Property.class));
+                new DatabaseReader.Builder(database).build(), "GeoLite2-City.mmdb.gz", "target_field",
+                EnumSet.allOf(GeoIpProcessor.Property.class),
+                new GeoIpCache(1000));
 
         Map<String, Object> document = new HashMap<>();
         document.put("source_field", "www.google.com");
@@ -87,6 +87,7 @@ public class TestSearchContext extends SearchContext {
     ContextIndexSearcher searcher;
     int size;
     private int terminateAfter = DEFAULT_TERMINATE_AFTER;
+    private boolean trackTotalHits = true;
     private SearchContextAggregations aggregations;
 
     private final long originNanoTime = System.nanoTime();
@@ -362,6 +363,17 @@ public class TestSearchContext extends SearchContext {
         return false;
     }
 
+    @Override
+    public SearchContext trackTotalHits(boolean trackTotalHits) {
+        this.trackTotalHits = trackTotalHits;
+        return this;
+    }
+
+    @Override
+    public boolean trackTotalHits() {
+        return trackTotalHits;
+    }
+
     @Override
     public SearchContext searchAfter(FieldDoc searchAfter) {
         return null;